@@ -0,0 +1,50 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TokenTransportTest: Streams synthetic responses through the native token transport on device
+ */
+@RunWith(AndroidJUnit4.class)
+public class TokenTransportTest {
+    @BeforeClass
+    public static void loadLibrary() {
+        System.loadLibrary("chatapp");
+    }
+
+    /**
+     * expectedText: Returns the text of provided number of whole synthetic token cycles
+     */
+    private static String expectedText(int cycles) {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < cycles; ++i) {
+            expected.append(GenieWrapper.cSyntheticTokenCycle);
+        }
+        return expected.toString();
+    }
+
+    @Test
+    public void longResponseIsDecodedByteForByte() {
+        // 800 cycles: 4800 tokens and 16000 bytes, so the 4096 byte ring wraps around three times.
+        int cycles = 800;
+        StringBuilder received = new StringBuilder();
+        GenieWrapper.streamSyntheticTokens(cycles * GenieWrapper.cSyntheticTokensPerCycle, received::append);
+
+        byte[] expected = expectedText(cycles).getBytes(StandardCharsets.UTF_8);
+        assertTrue(expected.length > 3 * 4096);
+        assertArrayEquals(expected, received.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -9,21 +9,76 @@
 
 #include "GenieWrapper.hpp"
 
+namespace
+{
+
+/**
+ * ToString: Copies java string into std::string as standard UTF-8
+ *    - GetStringUTFChars returns modified UTF-8 instead, which encodes supplementary characters (e.g. emoji) as
+ *      surrogate pairs and U+0000 as two bytes; prompts, stop strings and turns must match model output byte for byte.
+ *
+ * @throws if the string cannot be encoded
+ */
+std::string ToString(JNIEnv* env, jstring java_string)
+{
+    jclass string_class = env->GetObjectClass(java_string);
+    jmethodID get_bytes_method = env->GetMethodID(string_class, "getBytes", "(Ljava/lang/String;)[B");
+    env->DeleteLocalRef(string_class);
+    jstring charset_name = env->NewStringUTF("UTF-8");
+    auto bytes = static_cast<jbyteArray>(env->CallObjectMethod(java_string, get_bytes_method, charset_name));
+    env->DeleteLocalRef(charset_name);
+    if (env->ExceptionCheck())
+    {
+        env->ExceptionClear();
+        throw std::runtime_error("Failed to encode java string as UTF-8.");
+    }
+
+    std::string result(static_cast<size_t>(env->GetArrayLength(bytes)), '\0');
+    env->GetByteArrayRegion(bytes, 0, static_cast<jsize>(result.size()), reinterpret_cast<jbyte*>(result.data()));
+    env->DeleteLocalRef(bytes);
+    return result;
+}
+
+/**
+ * ToTokenSink: Wraps java TokenRing and its direct buffer
+ *
+ * @throws if buffer is not a direct buffer
+ */
+App::TokenSink ToTokenSink(JNIEnv* env, jobject ring_buffer, jobject ring)
+{
+    auto data = static_cast<uint8_t*>(env->GetDirectBufferAddress(ring_buffer));
+    if (data == nullptr)
+    {
+        throw std::runtime_error("Token ring buffer is not a direct buffer.");
+    }
+    jclass ring_class = env->GetObjectClass(ring);
+    jmethodID on_bytes_method = env->GetMethodID(ring_class, "onBytes", "(II)V");
+    env->DeleteLocalRef(ring_class);
+    return App::TokenSink{.env = env,
+                          .ring = ring,
+                          .on_bytes_method = on_bytes_method,
+                          .data = data,
+                          .capacity = static_cast<size_t>(env->GetDirectBufferCapacity(ring_buffer))};
+}
+
+} // namespace
+
 extern "C" JNIEXPORT jlong JNICALL Java_com_quicinc_chatapp_GenieWrapper_loadModel(JNIEnv* env,
-                                                                                   jobject /* this */,
+                                                                                   jclass /* clazz */,
                                                                                    jstring model_dir_path,
-                                                                                   jstring htp_config_path)
+                                                                                   jstring config_path,
+                                                                                   jint context_size,
+                                                                                   jstring prefix_cache_dir_path)
 {
 
     try
     {
-        std::string model_dir = std::string(env->GetStringUTFChars(model_dir_path, 0));
-        std::string htp_config = std::string(env->GetStringUTFChars(htp_config_path, 0));
-        std::filesystem::path model_config_path = std::filesystem::path(model_dir) / "genie_config.json";
-        std::filesystem::path tokenizer_path = std::filesystem::path(model_dir) / "tokenizer.json";
+        std::string model_dir = ToString(env, model_dir_path);
+        std::string prefix_cache_dir = ToString(env, prefix_cache_dir_path);
+        std::string model_config_path = ToString(env, config_path);
 
         App::GenieWrapper* chatApp =
-            new App::GenieWrapper(model_config_path.string(), model_dir, htp_config, tokenizer_path.string());
+            new App::GenieWrapper(model_config_path, model_dir, context_size, prefix_cache_dir);
         return reinterpret_cast<jlong>(chatApp);
     }
     catch (std::exception& e)
@@ -31,25 +86,178 @@ extern "C" JNIEXPORT jlong JNICALL Java_com_quicinc_chatapp_GenieWrapper_loadMod
         jclass exception_cls = env->FindClass("java/lang/RuntimeException");
         env->ThrowNew(exception_cls, e.what());
     }
+    return 0;
 }
 
-extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_getResponseForPrompt(JNIEnv* env,
-                                                                                             jobject /* this */,
+extern "C" JNIEXPORT jint JNICALL Java_com_quicinc_chatapp_GenieWrapper_getResponseForPrompt(JNIEnv* env,
+                                                                                             jclass /* clazz */,
                                                                                              jlong genie_wrapper_handle,
                                                                                              jstring user_question,
-                                                                                             jobject callback)
+                                                                                             jint max_tokens,
+                                                                                             jlong time_budget_ms,
+                                                                                             jobjectArray stop_strings,
+                                                                                             jobject ring_buffer,
+                                                                                             jobject ring)
 {
     try
     {
-        // Get callback method
-        jclass callbackClass = env->GetObjectClass(callback);
-        jmethodID onNewStringMethod = env->GetMethodID(callbackClass, "onNewString", "(Ljava/lang/String;)V");
+        App::TokenSink sink = ToTokenSink(env, ring_buffer, ring);
+        std::string user_input = ToString(env, user_question);
 
-        std::string user_input = env->GetStringUTFChars(user_question, 0);
+        App::GenerationLimits limits;
+        limits.max_tokens = max_tokens;
+        limits.time_budget_ms = time_budget_ms;
+        jsize num_stop_strings = env->GetArrayLength(stop_strings);
+        for (jsize i = 0; i < num_stop_strings; ++i)
+        {
+            auto stop_string = static_cast<jstring>(env->GetObjectArrayElement(stop_strings, i));
+            limits.stop_strings.push_back(ToString(env, stop_string));
+            env->DeleteLocalRef(stop_string);
+        }
 
         // Get response from Genie
         App::GenieWrapper* myClass = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
-        auto response = myClass->GetResponseForPrompt(user_input, env, callback, onNewStringMethod);
+        App::StopReason stop_reason = myClass->GetResponseForPrompt(user_input, limits, sink);
+        return static_cast<jint>(stop_reason);
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+    return static_cast<jint>(App::StopReason::Completed);
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_streamSyntheticTokens(JNIEnv* env,
+                                                                                              jclass /* clazz */,
+                                                                                              jint num_tokens,
+                                                                                              jobject ring_buffer,
+                                                                                              jobject ring)
+{
+    try
+    {
+        App::StreamSyntheticTokens(num_tokens, ToTokenSink(env, ring_buffer, ring));
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_applySampler(JNIEnv* env,
+                                                                                     jclass /* clazz */,
+                                                                                     jlong genie_wrapper_handle,
+                                                                                     jint seed,
+                                                                                     jfloat temperature,
+                                                                                     jint top_k,
+                                                                                     jfloat top_p)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        genie_wrapper->SetSampler(seed, temperature, top_k, top_p);
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_cancel(JNIEnv* env,
+                                                                               jclass /* clazz */,
+                                                                               jlong genie_wrapper_handle)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        genie_wrapper->Cancel();
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_reset(JNIEnv* env,
+                                                                              jclass /* clazz */,
+                                                                              jlong genie_wrapper_handle)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        genie_wrapper->Reset();
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_prefillSystemPrompt(JNIEnv* env,
+                                                                                            jclass /* clazz */,
+                                                                                            jlong genie_wrapper_handle)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        genie_wrapper->PrefillSystemPrompt();
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_saveDialog(JNIEnv* env,
+                                                                                   jclass /* clazz */,
+                                                                                   jlong genie_wrapper_handle,
+                                                                                   jstring dir_path)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        genie_wrapper->SaveDialog(ToString(env, dir_path));
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+}
+
+extern "C" JNIEXPORT jboolean JNICALL Java_com_quicinc_chatapp_GenieWrapper_restoreDialog(JNIEnv* env,
+                                                                                         jclass /* clazz */,
+                                                                                         jlong genie_wrapper_handle,
+                                                                                         jstring dir_path)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        return genie_wrapper->RestoreDialog(ToString(env, dir_path)) ? JNI_TRUE : JNI_FALSE;
+    }
+    catch (std::exception& e)
+    {
+        jclass exception_cls = env->FindClass("java/lang/RuntimeException");
+        env->ThrowNew(exception_cls, e.what());
+    }
+    return JNI_FALSE;
+}
+
+extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_appendTurn(JNIEnv* env,
+                                                                                   jclass /* clazz */,
+                                                                                   jlong genie_wrapper_handle,
+                                                                                   jstring user_prompt,
+                                                                                   jstring response)
+{
+    try
+    {
+        App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+        genie_wrapper->AppendTurn(ToString(env, user_prompt), ToString(env, response));
     }
     catch (std::exception& e)
     {
@@ -58,8 +266,52 @@ extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_getRespo
     }
 }
 
+extern "C" JNIEXPORT jint JNICALL Java_com_quicinc_chatapp_GenieWrapper_getContextTokens(JNIEnv* /* env */,
+                                                                                         jclass /* clazz */,
+                                                                                         jlong genie_wrapper_handle)
+{
+    if (genie_wrapper_handle == 0)
+    {
+        return 0;
+    }
+    App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+    return genie_wrapper->GetContextTokens();
+}
+
+extern "C" JNIEXPORT jint JNICALL Java_com_quicinc_chatapp_GenieWrapper_getContextSize(JNIEnv* /* env */,
+                                                                                       jclass /* clazz */,
+                                                                                       jlong genie_wrapper_handle)
+{
+    if (genie_wrapper_handle == 0)
+    {
+        return 0;
+    }
+    App::GenieWrapper* genie_wrapper = reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle);
+    return genie_wrapper->GetContextSize();
+}
+
+extern "C" JNIEXPORT jlongArray JNICALL Java_com_quicinc_chatapp_GenieWrapper_getLastQueryTimestamps(
+    JNIEnv* env,
+    jclass /* clazz */,
+    jlong genie_wrapper_handle)
+{
+    // Without a model, reports an empty query: start and end only.
+    static const std::vector<int64_t> no_query_timestamps(2, 0);
+    const std::vector<int64_t>& timestamps =
+        genie_wrapper_handle == 0
+            ? no_query_timestamps
+            : reinterpret_cast<App::GenieWrapper*>(genie_wrapper_handle)->GetLastQueryTimestamps();
+    jlongArray result = env->NewLongArray(static_cast<jsize>(timestamps.size()));
+    if (result != nullptr)
+    {
+        env->SetLongArrayRegion(result, 0, static_cast<jsize>(timestamps.size()),
+                                reinterpret_cast<const jlong*>(timestamps.data()));
+    }
+    return result;
+}
+
 extern "C" JNIEXPORT void JNICALL Java_com_quicinc_chatapp_GenieWrapper_freeModel(JNIEnv* env,
-                                                                                  jobject /* this */,
+                                                                                  jclass /* clazz */,
                                                                                   jlong genie_wrapper_handle)
 {
     try
@@ -4,14 +4,21 @@
 // ---------------------------------------------------------------------
 
 #include <android/log.h>
+#include <chrono>
+#include <condition_variable>
+#include <cstring>
 #include <filesystem>
 #include <fstream>
 #include <iostream>
 #include <jni.h>
-#include <regex>
+#include <functional>
+#include <mutex>
+#include <sstream>
+#include <thread>
 
 #include "GenieCommon.h"
 #include "GenieDialog.h"
+#include "GenieSampler.h"
 #include "GenieWrapper.hpp"
 #include "PromptHandler.hpp"
 
@@ -22,26 +29,96 @@ namespace
 
 /**
  * user_data_and_callback: Hold data required for callback into java methods
- *  - JNIEnv, jobject, jmethodID required for callback
- *  - data to capture response string from Genie
+ *  - token sink the response is forwarded to, and its write position
+ *  - response text not forwarded yet
+ *  - generation limits and the wrapper to stop once a limit is hit
  */
 struct user_data_and_callback
 {
-    // to creates string for
-    JNIEnv* env;
-    jobject callback;
-    jmethodID on_new_string_method;
-    std::string data;
+    const TokenSink* sink;
+    // Next write position in the sink's ring
+    size_t ring_position;
+    // Response text not forwarded to java yet; held back while it may be the start of a stop string
+    std::string pending;
+    // Bytes of response received, forwarded or not
+    size_t response_bytes;
+    int num_tokens;
+    // Arrival time of each generated token
+    std::vector<int64_t>* token_times_ns;
+    const GenerationLimits* limits;
+    // Stopped once a limit is hit; null when streaming synthetic tokens, which sets no limits
+    GenieWrapper* wrapper;
+    std::atomic<StopReason>* stop_reason;
 };
 
-//
-// GenieCallBack - Callback to handle response from Genie
-//   - Captures response from Genie into user_data
-//   - Print response to stdout
-//   - Add ChatSplit upon sentence completion
-//
+// Cycle of synthetic tokens streamed by StreamSyntheticTokens, "Token ü😀 漢字\n" in total; the emoji is split across
+// two tokens. Must match GenieWrapper.cSyntheticTokenCycle (Java).
+constexpr const char* c_synthetic_tokens[] = {
+    "Token ", "\xC3\xBC", "\xF0\x9F", "\x98\x80", " \xE6\xBC\xA2\xE5\xAD\x97", "\n",
+};
+// Never generated, but "Token " may start it, so it is held back until the next token.
+constexpr const char* c_synthetic_stop_string = "Token stop";
+// Conversation position saved next to the Genie state by SaveDialog
+constexpr const char* c_dialog_position_file_name = "position.txt";
+
+/**
+ * NowNanos: Returns steady clock time in nanoseconds
+ */
+int64_t NowNanos()
+{
+    return std::chrono::duration_cast<std::chrono::nanoseconds>(std::chrono::steady_clock::now().time_since_epoch())
+        .count();
+}
+
+/**
+ * ForwardResponse: Writes pending[0, length) into the token ring and notifies java of the written ranges
+ *  - Only ints cross JNI, so no local reference is created however long the response is.
+ *  - A write that does not fit before the end of the ring is split, and continues from its start.
+ *
+ * @param user_data callback data
+ * @param length length of pending text to forward
+ */
+void ForwardResponse(user_data_and_callback& user_data, size_t length)
+{
+    const TokenSink& sink = *user_data.sink;
+    size_t forwarded = 0;
+    // Once java has thrown, no further calls may be made until the JNI method returns.
+    while (forwarded < length && !sink.env->ExceptionCheck())
+    {
+        if (user_data.ring_position == sink.capacity)
+        {
+            user_data.ring_position = 0;
+        }
+        size_t chunk = std::min(length - forwarded, sink.capacity - user_data.ring_position);
+        std::memcpy(sink.data + user_data.ring_position, user_data.pending.data() + forwarded, chunk);
+        sink.env->CallVoidMethod(sink.ring, sink.on_bytes_method, static_cast<jint>(user_data.ring_position),
+                                 static_cast<jint>(chunk));
+        user_data.ring_position += chunk;
+        forwarded += chunk;
+    }
+    user_data.pending.erase(0, length);
+}
+
+/**
+ * StopResponse: Stops generation for provided reason, if a wrapper is generating
+ */
+void StopResponse(user_data_and_callback& user_data, StopReason reason)
+{
+    if (user_data.wrapper != nullptr)
+    {
+        user_data.wrapper->Stop(reason);
+    }
+    else
+    {
+        *user_data.stop_reason = reason;
+    }
+}
+
 /**
  * GenieCallBack: Callback to handle response from Genie
+ *  - Appends the token to the pending response text in user_data
+ *  - Forwards response to java, holding back text that may be the start of a stop string
+ *  - Stops generation once max tokens or a stop string is reached, or java threw
  *
  * @param response_back char pointer to response token
  * @param sentence_code hint referring to response_back type
@@ -50,28 +127,165 @@ struct user_data_and_callback
 void GenieCallBack(const char* response_back, const GenieDialog_SentenceCode_t sentence_code, const void* user_data)
 {
     auto user_data_struct = static_cast<struct user_data_and_callback*>(const_cast<void*>(user_data));
-    user_data_struct->data.append(response_back);
-    user_data_struct->env->CallVoidMethod(user_data_struct->callback, user_data_struct->on_new_string_method,
-                                          user_data_struct->env->NewStringUTF(response_back));
+    if (*user_data_struct->stop_reason != StopReason::Completed)
+    {
+        // Genie may deliver a few more tokens before the abort takes effect; drop them.
+        return;
+    }
+    if (user_data_struct->sink->env->ExceptionCheck())
+    {
+        // The java callback threw; it is rethrown once the query returns.
+        StopResponse(*user_data_struct, StopReason::Cancelled);
+        return;
+    }
+    user_data_struct->token_times_ns->push_back(NowNanos());
+    std::string& data = user_data_struct->pending;
+    size_t token_length = std::strlen(response_back);
+    data.append(response_back, token_length);
+    user_data_struct->response_bytes += token_length;
+    user_data_struct->num_tokens++;
+
+    // A stop string can only start in the pending text, since any text that could start one is held back.
+    size_t stop_position = std::string::npos;
+    size_t safe_end = data.size();
+    for (const std::string& stop_string : user_data_struct->limits->stop_strings)
+    {
+        if (stop_string.empty())
+        {
+            continue;
+        }
+        size_t position = data.find(stop_string);
+        if (position != std::string::npos)
+        {
+            stop_position = std::min(stop_position, position);
+            continue;
+        }
+        // Hold back the longest suffix that is a prefix of the stop string
+        size_t max_overlap = std::min(stop_string.size() - 1, data.size());
+        for (size_t overlap = max_overlap; overlap > 0; --overlap)
+        {
+            if (data.compare(data.size() - overlap, overlap, stop_string, 0, overlap) == 0)
+            {
+                safe_end = std::min(safe_end, data.size() - overlap);
+                break;
+            }
+        }
+    }
+
+    if (stop_position != std::string::npos)
+    {
+        data.resize(stop_position);
+        ForwardResponse(*user_data_struct, data.size());
+        StopResponse(*user_data_struct, StopReason::StopString);
+        return;
+    }
+
+    int max_tokens = user_data_struct->limits->max_tokens;
+    if (max_tokens > 0 && user_data_struct->num_tokens >= max_tokens)
+    {
+        ForwardResponse(*user_data_struct, data.size());
+        StopResponse(*user_data_struct, StopReason::MaxTokens);
+        return;
+    }
+    ForwardResponse(*user_data_struct, safe_end);
+}
+
+/**
+ * TimeBudgetWatchdog: Stops the running query once its time budget elapses
+ *  - Runs on its own thread so prefill, which produces no tokens, is covered too
+ */
+class TimeBudgetWatchdog
+{
+  private:
+    std::mutex m_mutex;
+    std::condition_variable m_done_cv;
+    bool m_done = false;
+    std::thread m_thread;
+
+  public:
+    TimeBudgetWatchdog(GenieWrapper* wrapper, long time_budget_ms)
+    {
+        if (time_budget_ms <= 0)
+        {
+            return;
+        }
+        auto deadline = std::chrono::steady_clock::now() + std::chrono::milliseconds(time_budget_ms);
+        m_thread = std::thread([this, wrapper, deadline]() {
+            std::unique_lock<std::mutex> lock(m_mutex);
+            if (!m_done_cv.wait_until(lock, deadline, [this]() { return m_done; }))
+            {
+                wrapper->Stop(StopReason::TimeBudget);
+            }
+        });
+    }
+
+    ~TimeBudgetWatchdog()
+    {
+        if (!m_thread.joinable())
+        {
+            return;
+        }
+        {
+            std::lock_guard<std::mutex> lock(m_mutex);
+            m_done = true;
+        }
+        m_done_cv.notify_one();
+        m_thread.join();
+    }
+};
+
+/**
+ * IgnoreResponse: Callback for queries that only prefill a prompt
+ */
+void IgnoreResponse(const char* /* response_back */,
+                    const GenieDialog_SentenceCode_t /* sentence_code */,
+                    const void* /* user_data */)
+{
+}
+
+/**
+ * EstimateTokens: Over-estimates the number of tokens of text
+ *  - Genie does not expose the tokenizer here, so assume 3 bytes per token; BPE vocabularies average more
+ *    for English text, and tags such as <|eot_id|> are a single token
+ */
+int EstimateTokens(const std::string& text)
+{
+    return static_cast<int>((text.size() + 2) / 3);
+}
+
+/**
+ * GetModelKey: Identifies the loaded model for the prefix cache
+ *  - Covers the resolved config and name, size and modification time of every file in the model directory
+ *    (including draft model binaries in subdirectories), so updated context binaries never restore a stale prefix
+ *
+ * @param config resolved Genie config
+ * @param models_path directory containing model context binaries
+ * @return key string
+ */
+std::string GetModelKey(const std::string& config, const std::string& models_path)
+{
+    std::ostringstream key;
+    key << config;
+    std::error_code error;
+    for (const auto& entry : std::filesystem::recursive_directory_iterator(models_path, error))
+    {
+        if (entry.is_regular_file(error))
+        {
+            key << '\n'
+                << entry.path().lexically_relative(models_path).string() << ' ' << entry.file_size(error) << ' '
+                << entry.last_write_time(error).time_since_epoch().count();
+        }
+    }
+    return key.str();
 }
 
-//
-// LoadModelConfig - Loads model config file
-//  - Loads config file in memory
-//  - Replaces placeholders with user provided values
-//
 /**
- * LoadModelConfig: Loads genie config and loads
- * @param model_config_path
- * @param models_path
- * @param htp_model_config_path
- * @param tokenizer_path
- * @return
+ * LoadModelConfig: Reads Genie config into memory
+ *
+ * @param model_config_path config rendered by GenieConfigBuilder; placeholders are already resolved
+ * @return config
  */
-std::string LoadModelConfig(const std::string& model_config_path,
-                            const std::string& models_path,
-                            const std::string& htp_model_config_path,
-                            const std::string& tokenizer_path)
+std::string LoadModelConfig(const std::string& model_config_path)
 {
     std::string config;
     if (!std::filesystem::exists(model_config_path))
@@ -80,13 +294,7 @@ std::string LoadModelConfig(const std::string& model_config_path,
         throw std::runtime_error("Genie config file not found.");
     }
 
-    // Read config file into memory
     std::getline(std::ifstream(model_config_path), config, '\0');
-
-    // Replace place-holders in config file with user provided paths
-    config = std::regex_replace(config, std::regex("<models_path>"), models_path);
-    config = std::regex_replace(config, std::regex("<htp_backend_ext_path>"), htp_model_config_path);
-    config = std::regex_replace(config, std::regex("<tokenizer_path>"), tokenizer_path);
     return config;
 }
 
@@ -94,11 +302,11 @@ std::string LoadModelConfig(const std::string& model_config_path,
 
 GenieWrapper::GenieWrapper(const std::string& model_config_path,
                            const std::string& models_path,
-                           const std::string& htp_config_path,
-                           const std::string& tokenizer_path)
+                           int context_size,
+                           const std::string& prefix_cache_path)
 {
     // Load model config in-memory
-    std::string config = LoadModelConfig(model_config_path, models_path, htp_config_path, tokenizer_path);
+    std::string config = LoadModelConfig(model_config_path);
 
     // Create Genie config
     if (GENIE_STATUS_SUCCESS != GenieDialogConfig_createFromJson(config.c_str(), &m_config_handle))
@@ -113,6 +321,114 @@ GenieWrapper::GenieWrapper(const std::string& model_config_path,
         __android_log_print(ANDROID_LOG_ERROR, "ChatApp", "Failed to create Genie dialog.");
         throw std::runtime_error("Failed to create the Genie Dialog.");
     }
+    m_context_size = context_size;
+
+    // Saved prefixes are keyed by model and system prompt. The system prompt is prefilled by PrefillSystemPrompt,
+    // or with the first prompt.
+    if (!prefix_cache_path.empty())
+    {
+        std::ostringstream key;
+        key << std::hex
+            << std::hash<std::string>{}(GetModelKey(config, models_path) + '\0' + prompt_handler.GetSystemPrompt());
+        m_prefix_cache_path = (std::filesystem::path(prefix_cache_path) / key.str()).string();
+    }
+}
+
+void GenieWrapper::PrefillSystemPrompt()
+{
+    if (prompt_handler.IsSystemPromptSent())
+    {
+        // Already part of the dialog, e.g. restored on reset or sent with an earlier prompt
+        return;
+    }
+    std::string system_prompt = prompt_handler.GetSystemPrompt();
+    std::filesystem::path prefix_path(m_prefix_cache_path);
+
+    std::error_code error;
+    if (!m_prefix_cache_path.empty() && std::filesystem::exists(prefix_path, error))
+    {
+        if (GENIE_STATUS_SUCCESS == GenieDialog_restore(m_dialog_handle, m_prefix_cache_path.c_str()))
+        {
+            __android_log_print(ANDROID_LOG_INFO, "ChatApp", "Restored saved system prompt prefix.");
+            m_prefix_saved = true;
+            m_system_prompt_open = true;
+            m_context_tokens = EstimateTokens(system_prompt);
+            prompt_handler.MarkSystemPromptSent();
+            return;
+        }
+        __android_log_print(ANDROID_LOG_WARN, "ChatApp", "Failed to restore saved system prompt prefix. Prefilling.");
+        std::filesystem::remove_all(prefix_path, error);
+        if (GENIE_STATUS_SUCCESS != GenieDialog_reset(m_dialog_handle))
+        {
+            throw std::runtime_error("Failed to reset Genie Dialog.");
+        }
+    }
+
+    // Prefill the system prompt as the beginning of a sentence; no response is generated until the sentence ends
+    if (GENIE_STATUS_SUCCESS != GenieDialog_query(m_dialog_handle, system_prompt.c_str(),
+                                                  GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_BEGIN,
+                                                  IgnoreResponse, nullptr))
+    {
+        __android_log_print(ANDROID_LOG_WARN, "ChatApp", "Failed to prefill system prompt. Sending it with the first prompt.");
+        if (GENIE_STATUS_SUCCESS != GenieDialog_reset(m_dialog_handle))
+        {
+            throw std::runtime_error("Failed to reset Genie Dialog.");
+        }
+        return;
+    }
+    m_system_prompt_open = true;
+    m_context_tokens = EstimateTokens(system_prompt);
+    prompt_handler.MarkSystemPromptSent();
+    if (m_prefix_cache_path.empty())
+    {
+        return;
+    }
+
+    // Replace prefixes saved for previous models or prompts, then save to a temporary directory and rename,
+    // so an interrupted save is never restored
+    std::filesystem::path cache_dir = prefix_path.parent_path();
+    std::filesystem::remove_all(cache_dir, error);
+    std::filesystem::path temp_path = cache_dir / (prefix_path.filename().string() + ".tmp");
+    std::filesystem::create_directories(temp_path, error);
+    if (GENIE_STATUS_SUCCESS != GenieDialog_save(m_dialog_handle, temp_path.string().c_str()))
+    {
+        __android_log_print(ANDROID_LOG_WARN, "ChatApp", "Failed to save system prompt prefix.");
+        std::filesystem::remove_all(temp_path, error);
+        return;
+    }
+    std::filesystem::rename(temp_path, prefix_path, error);
+    m_prefix_saved = !error;
+    __android_log_print(ANDROID_LOG_INFO, "ChatApp", "Saved system prompt prefix.");
+}
+
+void GenieWrapper::ResetToSystemPrompt()
+{
+    if (GENIE_STATUS_SUCCESS != GenieDialog_reset(m_dialog_handle))
+    {
+        __android_log_print(ANDROID_LOG_ERROR, "ChatApp", "Failed to reset GenieDialog.");
+        throw std::runtime_error("Failed to reset Genie Dialog.");
+    }
+    prompt_handler.Reset();
+    m_system_prompt_open = false;
+    m_context_tokens = 0;
+
+    if (m_prefix_saved)
+    {
+        if (GENIE_STATUS_SUCCESS == GenieDialog_restore(m_dialog_handle, m_prefix_cache_path.c_str()))
+        {
+            m_system_prompt_open = true;
+            m_context_tokens = EstimateTokens(prompt_handler.GetSystemPrompt());
+            prompt_handler.MarkSystemPromptSent();
+            return;
+        }
+        // Fall back to sending the system prompt with the next user prompt
+        __android_log_print(ANDROID_LOG_WARN, "ChatApp", "Failed to restore system prompt prefix after reset.");
+        m_prefix_saved = false;
+        if (GENIE_STATUS_SUCCESS != GenieDialog_reset(m_dialog_handle))
+        {
+            throw std::runtime_error("Failed to reset Genie Dialog.");
+        }
+    }
 }
 
 GenieWrapper::~GenieWrapper()
@@ -136,45 +452,222 @@ GenieWrapper::~GenieWrapper()
     }
 }
 
-std::string GenieWrapper::GetResponseForPrompt(const std::string& user_prompt,
-                                               JNIEnv* env,
-                                               jobject callback,
-                                               jmethodID onNewStringMethod)
+void App::StreamSyntheticTokens(int num_tokens, const TokenSink& sink)
 {
+    GenerationLimits limits;
+    limits.stop_strings.push_back(c_synthetic_stop_string);
+    std::vector<int64_t> token_times_ns;
+    token_times_ns.reserve(num_tokens);
+    std::atomic<StopReason> stop_reason{StopReason::Completed};
+    struct user_data_and_callback user_data
+    {
+        .sink = &sink, .ring_position = 0, .pending = std::string(), .response_bytes = 0, .num_tokens = 0,
+        .token_times_ns = &token_times_ns, .limits = &limits, .wrapper = nullptr, .stop_reason = &stop_reason
+    };
 
-    std::string model_response;
+    constexpr int num_synthetic_tokens = sizeof(c_synthetic_tokens) / sizeof(c_synthetic_tokens[0]);
+    for (int i = 0; i < num_tokens && stop_reason == StopReason::Completed; ++i)
+    {
+        GenieCallBack(c_synthetic_tokens[i % num_synthetic_tokens],
+                      GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_CONTINUE, &user_data);
+    }
+    ForwardResponse(user_data, user_data.pending.size());
+}
+
+StopReason GenieWrapper::GetResponseForPrompt(const std::string& user_prompt,
+                                              const GenerationLimits& limits,
+                                              const TokenSink& sink)
+{
+
+    // Timestamps: query start, query end (filled in below), then one per token
+    m_last_query_timestamps_ns.assign({NowNanos(), 0});
     struct user_data_and_callback user_data
     {
-        .env = env, .callback = callback, .on_new_string_method = onNewStringMethod, .data = model_response
+        .sink = &sink, .ring_position = 0, .pending = std::string(), .response_bytes = 0, .num_tokens = 0,
+        .token_times_ns = &m_last_query_timestamps_ns, .limits = &limits, .wrapper = this,
+        .stop_reason = &m_stop_reason
     };
 
+    m_stop_reason = StopReason::Completed;
     std::string tagged_prompt = prompt_handler.GetPromptWithTag(user_prompt);
-    // Get response from Genie
-    if (GENIE_STATUS_SUCCESS != GenieDialog_query(m_dialog_handle, tagged_prompt.c_str(),
-                                                  GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_COMPLETE,
-                                                  GenieCallBack, &user_data))
+    // A prefilled system prompt is an open sentence; the user prompt ends it
+    auto sentence_code = m_system_prompt_open ? GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_END
+                                              : GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_COMPLETE;
+    m_system_prompt_open = false;
+    Genie_Status_t status;
+    {
+        TimeBudgetWatchdog watchdog(this, limits.time_budget_ms);
+        // Get response from Genie
+        status = GenieDialog_query(m_dialog_handle, tagged_prompt.c_str(), sentence_code, GenieCallBack, &user_data);
+    }
+    m_last_query_timestamps_ns[1] = NowNanos();
+    m_context_tokens += EstimateTokens(tagged_prompt) + user_data.num_tokens;
+    StopReason stop_reason = m_stop_reason;
+    if (stop_reason != StopReason::Completed)
+    {
+        // Stopped early; a partial (or empty) response is expected.
+        __android_log_print(ANDROID_LOG_INFO, "ChatApp", "Response generation stopped early (reason %d) after %d tokens.",
+                            static_cast<int>(stop_reason), user_data.num_tokens);
+        ForwardResponse(user_data, user_data.pending.size());
+        return stop_reason;
+    }
+    if (GENIE_STATUS_SUCCESS != status)
     {
         __android_log_print(ANDROID_LOG_ERROR, "ChatApp", "Failed to get response from bot.");
     }
 
-    if (user_data.data.empty())
+    if (user_data.response_bytes == 0)
     {
         // If model response is empty, reset dialog to re-initiate dialog.
         // During local testing, we found that in certain cases,
         // model response bails out after few iterations during chat.
         // If that happens, just reset Dialog handle to continue the chat.
-        if (GENIE_STATUS_SUCCESS != GenieDialog_reset(m_dialog_handle))
-        {
-            __android_log_print(ANDROID_LOG_ERROR, "ChatApp", "Failed to reset GenieDialog.");
-            throw std::runtime_error("Failed to reset Genie Dialog.");
-        }
-        if (GENIE_STATUS_SUCCESS != GenieDialog_query(m_dialog_handle, user_prompt.c_str(),
-                                                      GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_COMPLETE,
-                                                      GenieCallBack, &user_data))
+        // The saved system prompt prefix is restored, so the retry only prefills the user prompt.
+        ResetToSystemPrompt();
+        tagged_prompt = prompt_handler.GetPromptWithTag(user_prompt);
+        sentence_code = m_system_prompt_open ? GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_END
+                                             : GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_COMPLETE;
+        m_system_prompt_open = false;
+        int num_tokens_before_retry = user_data.num_tokens;
+        if (GENIE_STATUS_SUCCESS !=
+            GenieDialog_query(m_dialog_handle, tagged_prompt.c_str(), sentence_code, GenieCallBack, &user_data))
         {
             __android_log_print(ANDROID_LOG_INFO, "ChatApp", "Error getting response from Genie.");
             throw std::runtime_error("Failed to get response from GenieDialog. Please restart Chat.");
         }
+        m_context_tokens += EstimateTokens(tagged_prompt) + user_data.num_tokens - num_tokens_before_retry;
+        m_last_query_timestamps_ns[1] = NowNanos();
+    }
+    // Flush text held back as a possible stop string prefix
+    ForwardResponse(user_data, user_data.pending.size());
+    return m_stop_reason;
+}
+
+void GenieWrapper::AppendTurn(const std::string& user_prompt, const std::string& response)
+{
+    std::string tagged_turn = prompt_handler.GetTurnWithTag(user_prompt, response);
+    // Keep the sentence open, so nothing is generated until the next user prompt ends it
+    auto sentence_code = m_system_prompt_open ? GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_CONTINUE
+                                              : GenieDialog_SentenceCode_t::GENIE_DIALOG_SENTENCE_BEGIN;
+    if (GENIE_STATUS_SUCCESS !=
+        GenieDialog_query(m_dialog_handle, tagged_turn.c_str(), sentence_code, IgnoreResponse, nullptr))
+    {
+        __android_log_print(ANDROID_LOG_ERROR, "ChatApp", "Failed to prefill earlier turn.");
+        throw std::runtime_error("Failed to prefill earlier turn into Genie Dialog.");
+    }
+    m_system_prompt_open = true;
+    m_context_tokens += EstimateTokens(tagged_turn);
+}
+
+int GenieWrapper::GetContextTokens() const
+{
+    return m_context_tokens;
+}
+
+int GenieWrapper::GetContextSize() const
+{
+    return m_context_size;
+}
+
+const std::vector<int64_t>& GenieWrapper::GetLastQueryTimestamps() const
+{
+    return m_last_query_timestamps_ns;
+}
+
+void GenieWrapper::SetSampler(int seed, float temperature, int top_k, float top_p)
+{
+    std::ostringstream sampler;
+    sampler << R"({"sampler": {"version": 1, "seed": )" << seed << R"(, "temp": )" << temperature << R"(, "top-k": )"
+            << top_k << R"(, "top-p": )" << top_p << "}}";
+
+    GenieSampler_Handle_t sampler_handle = nullptr;
+    if (GENIE_STATUS_SUCCESS != GenieDialog_getSampler(m_dialog_handle, &sampler_handle))
+    {
+        throw std::runtime_error("Failed to get the Genie sampler.");
+    }
+    GenieSamplerConfig_Handle_t sampler_config = nullptr;
+    if (GENIE_STATUS_SUCCESS != GenieSamplerConfig_createFromJson(sampler.str().c_str(), &sampler_config))
+    {
+        throw std::runtime_error("Failed to create the Genie sampler config.");
+    }
+    Genie_Status_t status = GenieSampler_applyConfig(sampler_handle, sampler_config);
+    GenieSamplerConfig_free(sampler_config);
+    if (GENIE_STATUS_SUCCESS != status)
+    {
+        throw std::runtime_error("Failed to apply the Genie sampler config.");
+    }
+}
+
+void GenieWrapper::Reset()
+{
+    ResetToSystemPrompt();
+}
+
+void GenieWrapper::SaveDialog(const std::string& path)
+{
+    std::error_code error;
+    std::filesystem::remove_all(path, error);
+    std::filesystem::create_directories(path, error);
+    if (GENIE_STATUS_SUCCESS != GenieDialog_save(m_dialog_handle, path.c_str()))
+    {
+        __android_log_print(ANDROID_LOG_ERROR, "ChatApp", "Failed to save Genie dialog.");
+        throw std::runtime_error("Failed to save Genie Dialog.");
+    }
+    // Written last, so a directory without it holds no complete state
+    std::ofstream position(std::filesystem::path(path) / c_dialog_position_file_name);
+    position << m_context_tokens << ' ' << m_system_prompt_open << ' ' << prompt_handler.IsSystemPromptSent();
+    if (!position)
+    {
+        throw std::runtime_error("Failed to save dialog position.");
+    }
+}
+
+bool GenieWrapper::RestoreDialog(const std::string& path)
+{
+    int context_tokens = 0;
+    bool system_prompt_open = false;
+    bool system_prompt_sent = false;
+    std::ifstream position(std::filesystem::path(path) / c_dialog_position_file_name);
+    if (!(position >> context_tokens >> system_prompt_open >> system_prompt_sent))
+    {
+        ResetToSystemPrompt();
+        return false;
+    }
+    if (GENIE_STATUS_SUCCESS != GenieDialog_restore(m_dialog_handle, path.c_str()))
+    {
+        __android_log_print(ANDROID_LOG_WARN, "ChatApp", "Failed to restore saved dialog.");
+        ResetToSystemPrompt();
+        return false;
+    }
+    m_context_tokens = context_tokens;
+    m_system_prompt_open = system_prompt_open;
+    if (system_prompt_sent)
+    {
+        prompt_handler.MarkSystemPromptSent();
+    }
+    else
+    {
+        prompt_handler.Reset();
+    }
+    return true;
+}
+
+void GenieWrapper::Cancel()
+{
+    Stop(StopReason::Cancelled);
+}
+
+void GenieWrapper::Stop(StopReason reason)
+{
+    StopReason running = StopReason::Completed;
+    if (!m_stop_reason.compare_exchange_strong(running, reason))
+    {
+        // Already stopping for another reason.
+        return;
+    }
+    if (GENIE_STATUS_SUCCESS != GenieDialog_signal(m_dialog_handle, GENIE_DIALOG_ACTION_ABORT))
+    {
+        // Genie rejects the signal if no query is running (e.g., it finished just before the stop arrived).
+        __android_log_print(ANDROID_LOG_WARN, "ChatApp", "Failed to signal abort to Genie dialog.");
     }
-    return user_data.data;
 }
@@ -4,8 +4,11 @@
 // ---------------------------------------------------------------------
 #pragma once
 
+#include <atomic>
+#include <cstdint>
 #include <jni.h>
 #include <string>
+#include <vector>
 
 #include "GenieCommon.h"
 #include "GenieDialog.h"
@@ -16,32 +19,111 @@ namespace App
 constexpr const char* c_exit_prompt = "exit";
 constexpr const char* c_bot_name = "Qbot";
 
+/**
+ * StopReason: Why a query stopped generating. Values are mirrored by Java StopReason.
+ */
+enum class StopReason : int
+{
+    // Model finished the response on its own.
+    Completed = 0,
+    // Cancel() was called.
+    Cancelled = 1,
+    // GenerationLimits::max_tokens tokens were generated.
+    MaxTokens = 2,
+    // One of GenerationLimits::stop_strings was generated. The stop string is not part of the response.
+    StopString = 3,
+    // GenerationLimits::time_budget_ms elapsed.
+    TimeBudget = 4,
+};
+
+/**
+ * GenerationLimits: Limits enforced while a query runs. Once a limit is hit, Genie is signalled to abort
+ * so no further tokens are decoded.
+ */
+struct GenerationLimits
+{
+    // Maximum number of generated tokens. 0 for no limit.
+    int max_tokens = 0;
+    // Maximum wall-clock time of the query (including prefill), in milliseconds. 0 for no limit.
+    long time_budget_ms = 0;
+    // Generation stops as soon as any of these strings is generated.
+    std::vector<std::string> stop_strings;
+};
+
+/**
+ * TokenSink: Java TokenRing that receives response text as UTF-8 bytes written into a direct ByteBuffer
+ *    - Bytes are written at the ring's write position, wrapping around to the start; Java is notified with the
+ *      written range only, so no Java string or JNI local reference is created per token.
+ */
+struct TokenSink
+{
+    JNIEnv* env;
+    // Java TokenRing; onBytes(offset, length) is called with every range written.
+    jobject ring;
+    jmethodID on_bytes_method;
+    // Direct buffer shared with the TokenRing
+    uint8_t* data;
+    size_t capacity;
+};
+
+/**
+ * StreamSyntheticTokens: Streams synthetic tokens to sink through the same path as model responses, in one native call
+ *    - Tokens cycle through text that splits a UTF-8 character across two tokens and may start a stop string, to
+ *      stress ring wrap-around, UTF-8 decoding and local reference use without a model.
+ *
+ * @param num_tokens: number of tokens to stream
+ * @param sink: receives the tokens
+ */
+void StreamSyntheticTokens(int num_tokens, const TokenSink& sink);
+
 class GenieWrapper
 {
   private:
     GenieDialogConfig_Handle_t m_config_handle = nullptr;
     GenieDialog_Handle_t m_dialog_handle = nullptr;
     std::string m_user_name;
+    // Directory holding the saved dialog state after the system prompt prefill (keyed by model and system prompt);
+    // empty if prefix caching is disabled.
+    std::string m_prefix_cache_path;
+    // True if m_prefix_cache_path holds a state that can be restored
+    bool m_prefix_saved = false;
+    // True while the system prompt or earlier turns are prefilled as an open sentence that the next user prompt completes
+    bool m_system_prompt_open = false;
+    // Context size from Genie config, in tokens
+    int m_context_size = 0;
+    // Estimated tokens held by the dialog; read from other threads
+    std::atomic<int> m_context_tokens{0};
+    // Timestamps of the last query (steady clock, ns): query start, query end, then the arrival of each token
+    std::vector<int64_t> m_last_query_timestamps_ns;
+    // Set once the running query is stopped early; reset when the next query starts.
+    std::atomic<StopReason> m_stop_reason{StopReason::Completed};
     AppUtils::PromptHandler prompt_handler;
 
+    /**
+     * ResetToSystemPrompt: Resets the dialog, then restores the saved system prompt prefix if there is one
+     *
+     * @throws on failure to reset Genie dialog
+     */
+    void ResetToSystemPrompt();
+
   public:
     /**
      * GenieWrapper: Initializes GenieWrapper
-     *    - Loads Model config with provided model path, htp config and tokenizer
+     *    - Loads Model config rendered by GenieConfigBuilder (Java), with every path resolved
      *    - Creates handle for Genie
      *
      * @param model_config_path: local path to model Genie config file
      * @param models_path: local path to directory that contains model context binaries (e.g., downloaded from AI Hub)
-     * @param htp_config_path: local path to backend htp configuration
-     * @param tokenizer_path: local path to tokenizer to use
+     * @param context_size: context size of the dialog in tokens, 0 if unknown
+     * @param prefix_cache_path: local path to directory to save system prompt prefix state in; empty to disable
      *
      * @thows on failure to create handle for Genie config, dialog
      *
      */
     GenieWrapper(const std::string& model_config_path,
                  const std::string& models_path,
-                 const std::string& htp_config_path,
-                 const std::string& tokenizer_path);
+                 int context_size,
+                 const std::string& prefix_cache_path);
     GenieWrapper() = delete;
     GenieWrapper(const GenieWrapper&) = delete;
     GenieWrapper(GenieWrapper&&) = delete;
@@ -49,18 +131,109 @@ class GenieWrapper
     GenieWrapper& operator=(GenieWrapper&&) = delete;
     ~GenieWrapper();
 
+    /**
+     * PrefillSystemPrompt: Restores the saved system prompt prefix, or prefills it and saves it for next time
+     *    - Does nothing if the dialog already holds the system prompt
+     *    - Without it, the system prompt is prefilled along with the first prompt
+     *
+     * @throws on failure to reset Genie dialog after a failed prefill
+     */
+    void PrefillSystemPrompt();
+
     /**
      * GetResponseForPrompt: Gets response from Genie for provided user prompt and callback
      *
      * @param user_prompt: User prompt provided by user
-     * @param env: JNIEnv required to create intermediate output to pass via callback
-     * @param callback: callback object
-     * @param onNewStringMethod callback method to tunnel intermediate output string
+     * @param limits: limits to stop generation early
+     * @param sink: receives the response as it is generated
      *
+     * @return reason generation stopped
      * @throws on failure to query model response during chat
      *
      */
-    std::string
-    GetResponseForPrompt(const std::string& user_prompt, JNIEnv* env, jobject callback, jmethodID onNewStringMethod);
+    StopReason GetResponseForPrompt(const std::string& user_prompt,
+                                    const GenerationLimits& limits,
+                                    const TokenSink& sink);
+
+    /**
+     * AppendTurn: Prefills a complete earlier exchange into the dialog without generating a response
+     *    - Used to rebuild a conversation after Reset()
+     *
+     * @param user_prompt: user prompt of the exchange
+     * @param response: bot response of the exchange
+     *
+     * @throws on failure to prefill the exchange
+     */
+    void AppendTurn(const std::string& user_prompt, const std::string& response);
+
+    /**
+     * GetContextTokens: Returns the estimated number of tokens held by the dialog. May be called from any thread.
+     *    - Generated tokens are counted exactly; prompt tokens are over-estimated from their length.
+     */
+    int GetContextTokens() const;
+
+    /**
+     * GetContextSize: Returns the context size of the model, in tokens
+     */
+    int GetContextSize() const;
+
+    /**
+     * GetLastQueryTimestamps: Returns timestamps of the last GetResponseForPrompt call
+     *
+     * @return steady clock nanoseconds: query start, query end, then the arrival of each generated token
+     */
+    const std::vector<int64_t>& GetLastQueryTimestamps() const;
+
+    /**
+     * SetSampler: Replaces the sampler of the dialog, without reloading the model
+     *    - top_k 1 is greedy decoding; the sampler then takes the most likely token without softmax or top-p
+     *
+     * @param seed: random seed
+     * @param temperature: sampling temperature
+     * @param top_k: number of most likely tokens to sample from, 0 for no limit
+     * @param top_p: cumulative probability of the most likely tokens to sample from
+     *
+     * @throws on failure to apply the sampler config
+     */
+    void SetSampler(int seed, float temperature, int top_k, float top_p);
+
+    /**
+     * Reset: Clears the conversation so the next prompt starts a new dialog
+     *    - Restores the saved system prompt prefix, so the next prompt skips its prefill
+     *
+     * @throws on failure to reset Genie dialog
+     */
+    void Reset();
+
+    /**
+     * SaveDialog: Saves the conversation held by the dialog to provided directory, replacing its contents
+     *    - Genie state (KV cache) plus the conversation position Genie does not track (estimated tokens, open sentence)
+     *
+     * @param path: directory to save to
+     * @throws on failure to save Genie dialog
+     */
+    void SaveDialog(const std::string& path);
+
+    /**
+     * RestoreDialog: Replaces the conversation held by the dialog with one saved by SaveDialog
+     *    - On failure the dialog is reset instead, as by Reset()
+     *
+     * @param path: directory saved to by SaveDialog
+     * @return true if the conversation was restored
+     * @throws on failure to reset Genie dialog
+     */
+    bool RestoreDialog(const std::string& path);
+
+    /**
+     * Cancel: Signals Genie to stop the running query. May be called from any thread.
+     */
+    void Cancel();
+
+    /**
+     * Stop: Stops the running query with provided reason, unless it is already stopping. May be called from any thread.
+     *
+     * @param reason: reason reported by GetResponseForPrompt
+     */
+    void Stop(StopReason reason);
 };
 } // namespace App
@@ -22,14 +22,43 @@ PromptHandler::PromptHandler()
 {
 }
 
+std::string PromptHandler::GetSystemPrompt() const
+{
+    // Ref: https://www.llama.com/docs/model-cards-and-prompt-formats/meta-llama-3/
+    return std::string(c_first_prompt_prefix_part_1) + c_bot_name.data() + c_first_prompt_prefix_part_2.data();
+}
+
 std::string PromptHandler::GetPromptWithTag(const std::string& user_prompt)
 {
     // Ref: https://www.llama.com/docs/model-cards-and-prompt-formats/meta-llama-3/
     if (m_is_first_prompt)
     {
         m_is_first_prompt = false;
-        return std::string(c_first_prompt_prefix_part_1) + c_bot_name.data() + c_first_prompt_prefix_part_2.data() +
-               c_prompt_prefix.data() + user_prompt + c_end_of_prompt.data() + c_assistant_header.data();
+        return GetSystemPrompt() + c_prompt_prefix.data() + user_prompt + c_end_of_prompt.data() +
+               c_assistant_header.data();
     }
     return std::string(c_prompt_prefix) + user_prompt.data() + c_end_of_prompt.data() + c_assistant_header.data();
 }
+
+std::string PromptHandler::GetTurnWithTag(const std::string& user_prompt, const std::string& response)
+{
+    // Complete exchange, used to re-insert earlier turns into the dialog
+    return GetPromptWithTag(user_prompt) + response + c_end_of_prompt.data();
+}
+
+void PromptHandler::MarkSystemPromptSent()
+{
+    // System prompt is already part of the dialog (e.g., restored from a saved prefix)
+    m_is_first_prompt = false;
+}
+
+bool PromptHandler::IsSystemPromptSent() const
+{
+    return !m_is_first_prompt;
+}
+
+void PromptHandler::Reset()
+{
+    // Next prompt starts a new conversation and needs the system prompt again
+    m_is_first_prompt = true;
+}
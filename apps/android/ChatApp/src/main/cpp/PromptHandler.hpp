@@ -20,7 +20,12 @@ class PromptHandler
 
   public:
     PromptHandler();
+    std::string GetSystemPrompt() const;
     std::string GetPromptWithTag(const std::string& user_prompt);
+    std::string GetTurnWithTag(const std::string& user_prompt, const std::string& response);
+    void MarkSystemPromptSent();
+    bool IsSystemPromptSent() const;
+    void Reset();
 };
 
 } // namespace AppUtils
@@ -0,0 +1,364 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AssetCopier: Copies asset directories (model binaries, configs) to app storage in the background.
+ *
+ *  - Files are copied in parallel, through FileChannel (no Java heap buffers).
+ *  - Each file is written to a ".part" file, verified (size + MD5 of source and copy), synced and atomically renamed.
+ *  - An ".info" file next to each copy records the app version, size and MD5 of the copy.
+ *    Files with a matching ".info" file are skipped, so finished copies are never redone.
+ *  - If the app is killed mid-copy, the next run continues from the end of each ".part" file.
+ */
+public class AssetCopier {
+
+    /**
+     * Receives copy progress. Callbacks are invoked on background threads.
+     */
+    public interface ProgressListener {
+        void onProgress(long copiedBytes, long totalBytes);
+
+        void onComplete();
+
+        void onError(Exception e);
+    }
+
+    private static final String TAG = "ChatApp";
+    private static final String PART_SUFFIX = ".part";
+    private static final String INFO_SUFFIX = ".info";
+    private static final String INFO_SOURCE_VERSION = "sourceVersion";
+    private static final String INFO_SIZE = "size";
+    private static final String INFO_MD5 = "md5";
+    // Bytes copied (and hashed) per step. Progress is reported after every step.
+    private static final long COPY_CHUNK_SIZE = 32L * 1024 * 1024;
+    // Output file path -> lock. Keeps two copiers (eg. before and after an activity restart) off the same file.
+    private static final ConcurrentHashMap<String, Object> sFileLocks = new ConcurrentHashMap<>();
+
+    private final AssetManager mAssets;
+    private final File mOutputDir;
+    private final long mSourceVersion;
+    private final ExecutorService mCopyExecutor;
+    private final ExecutorService mCoordinatorExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * @param assets        Android app asset manager.
+     * @param outputDir     Directory to copy assets into. Asset paths are preserved.
+     * @param sourceVersion Version of the assets (eg. app update time). Copies made from a different version are redone.
+     * @param numThreads    Number of files copied in parallel.
+     */
+    public AssetCopier(AssetManager assets, File outputDir, long sourceVersion, int numThreads) {
+        mAssets = assets;
+        mOutputDir = outputDir;
+        mSourceVersion = sourceVersion;
+        mCopyExecutor = Executors.newFixedThreadPool(numThreads);
+    }
+
+    /**
+     * Start copying the given asset directories (or files) in the background.
+     *
+     * @param assetPaths Asset paths, relative to the asset root.
+     * @param listener   Receives progress, completion and errors.
+     */
+    public void start(List<String> assetPaths, ProgressListener listener) {
+        mCoordinatorExecutor.execute(() -> {
+            try {
+                List<String> files = new ArrayList<>();
+                for (String assetPath : assetPaths) {
+                    listAssetFiles(assetPath, files);
+                }
+
+                long totalBytes = 0;
+                for (String file : files) {
+                    totalBytes += getAssetLength(file);
+                }
+
+                AtomicLong copiedBytes = new AtomicLong();
+                final long total = totalBytes;
+                List<Future<?>> copies = new ArrayList<>();
+                for (String file : files) {
+                    copies.add(mCopyExecutor.submit(() -> {
+                        copyFile(file, bytes -> listener.onProgress(copiedBytes.addAndGet(bytes), total));
+                        return null;
+                    }));
+                }
+                for (Future<?> copy : copies) {
+                    copy.get();
+                }
+                listener.onComplete();
+            } catch (ExecutionException e) {
+                listener.onError(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (Exception e) {
+                listener.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Stop copying. Partially copied files are kept and resumed by the next copier.
+     */
+    public void cancel() {
+        mCoordinatorExecutor.shutdownNow();
+        mCopyExecutor.shutdownNow();
+    }
+
+    private void listAssetFiles(String assetPath, List<String> files) throws IOException {
+        String[] subAssetList = mAssets.list(assetPath);
+        if (subAssetList == null || subAssetList.length == 0) {
+            files.add(assetPath);
+            return;
+        }
+        for (String subAssetName : subAssetList) {
+            listAssetFiles(Paths.get(assetPath, subAssetName).toString(), files);
+        }
+    }
+
+    /**
+     * @return Size of the asset in bytes. Compressed assets have to be read to find their size.
+     */
+    private long getAssetLength(String assetPath) throws IOException {
+        try (AssetFileDescriptor fd = mAssets.openFd(assetPath)) {
+            return fd.getLength();
+        } catch (FileNotFoundException e) {
+            // Compressed asset
+            try (InputStream in = mAssets.open(assetPath, AssetManager.ACCESS_STREAMING)) {
+                byte[] buffer = new byte[64 * 1024];
+                long length = 0;
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    length += read;
+                }
+                return length;
+            }
+        }
+    }
+
+    private interface ByteCounter {
+        void add(long bytes);
+    }
+
+    /**
+     * Copy a single asset file, skipping it if a verified copy already exists and resuming a partial copy if there is one.
+     */
+    private void copyFile(String assetPath, ByteCounter progress) throws IOException, NoSuchAlgorithmException {
+        File outputFile = new File(mOutputDir, assetPath);
+        File infoFile = new File(outputFile.getPath() + INFO_SUFFIX);
+        File partFile = new File(outputFile.getPath() + "." + mSourceVersion + PART_SUFFIX);
+
+        synchronized (sFileLocks.computeIfAbsent(outputFile.getAbsolutePath(), k -> new Object())) {
+            if (isValidCopy(outputFile, infoFile)) {
+                progress.add(outputFile.length());
+                return;
+            }
+
+            File parentDir = outputFile.getParentFile();
+            if (parentDir != null && !parentDir.isDirectory() && !parentDir.mkdirs()) {
+                throw new IOException("Unable to create directory " + parentDir);
+            }
+            infoFile.delete();
+            outputFile.delete();
+            deleteStalePartFiles(outputFile, partFile);
+
+            MessageDigest sourceDigest = MessageDigest.getInstance("MD5");
+            long size = copyToPartFile(assetPath, partFile, sourceDigest, progress);
+
+            // Verify what landed on disk against what was read from the APK.
+            String sourceMd5 = toHex(sourceDigest.digest());
+            String copyMd5 = computeMD5(partFile);
+            if (partFile.length() != size || !sourceMd5.equals(copyMd5)) {
+                partFile.delete();
+                throw new IOException("Verification failed for " + assetPath + ": expected " + size + " bytes / " + sourceMd5
+                        + ", got " + partFile.length() + " bytes / " + copyMd5);
+            }
+
+            Files.move(partFile.toPath(), outputFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            writeInfo(infoFile, size, copyMd5);
+            Log.i(TAG, "Copied " + assetPath + " (" + size + " bytes)");
+        }
+    }
+
+    /**
+     * Copy an asset into the part file, continuing from the end of the part file.
+     * The source digest is updated with every byte of the asset, including the part that was already copied.
+     *
+     * @return Size of the asset in bytes.
+     */
+    private long copyToPartFile(String assetPath, File partFile, MessageDigest sourceDigest, ByteCounter progress) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(partFile, "rw")) {
+            FileChannel outChannel = out.getChannel();
+            long position = outChannel.size();
+
+            AssetFileDescriptor fileDescriptor = null;
+            try {
+                fileDescriptor = mAssets.openFd(assetPath);
+            } catch (FileNotFoundException e) {
+                // openFd fails for compressed assets. Fall back to streaming below.
+            }
+
+            long size;
+            if (fileDescriptor != null) {
+                // Uncompressed asset: map the asset straight from the APK and write the mapped pages to the copy.
+                try (AssetFileDescriptor fd = fileDescriptor;
+                     FileInputStream in = new FileInputStream(fd.getFileDescriptor())) {
+                    FileChannel inChannel = in.getChannel();
+                    long startOffset = fd.getStartOffset();
+                    size = fd.getLength();
+                    if (position > size) {
+                        outChannel.truncate(0);
+                        position = 0;
+                    }
+                    if (position > 0) {
+                        Log.i(TAG, "Resuming copy of " + assetPath + " at byte " + position + " of " + size);
+                        progress.add(position);
+                    }
+
+                    for (long offset = 0; offset < size; offset += COPY_CHUNK_SIZE) {
+                        long chunkSize = Math.min(COPY_CHUNK_SIZE, size - offset);
+                        MappedByteBuffer chunk = inChannel.map(FileChannel.MapMode.READ_ONLY, startOffset + offset, chunkSize);
+                        sourceDigest.update(chunk.duplicate());
+                        if (offset + chunkSize <= position) {
+                            // Already copied by a previous run.
+                            continue;
+                        }
+                        long chunkStart = position;
+                        chunk.position((int) (position - offset));
+                        while (chunk.hasRemaining()) {
+                            position += outChannel.write(chunk, position);
+                        }
+                        progress.add(position - chunkStart);
+                    }
+                }
+            } else {
+                // Compressed asset: re-read (and hash) the already copied prefix, then stream the rest.
+                try (DigestInputStream in = new DigestInputStream(mAssets.open(assetPath, AssetManager.ACCESS_STREAMING), sourceDigest)) {
+                    byte[] skipBuffer = new byte[64 * 1024];
+                    long skipped = 0;
+                    int read;
+                    while (skipped < position && (read = in.read(skipBuffer, 0, (int) Math.min(skipBuffer.length, position - skipped))) > 0) {
+                        skipped += read;
+                    }
+                    if (skipped < position) {
+                        throw new IOException("Partial copy of " + assetPath + " is larger than the asset. Delete " + partFile + " and retry.");
+                    }
+                    if (position > 0) {
+                        Log.i(TAG, "Resuming copy of " + assetPath + " at byte " + position);
+                        progress.add(position);
+                    }
+
+                    ReadableByteChannel inChannel = Channels.newChannel(in);
+                    long transferred;
+                    while ((transferred = outChannel.transferFrom(inChannel, position, COPY_CHUNK_SIZE)) > 0) {
+                        position += transferred;
+                        progress.add(transferred);
+                    }
+                    size = position;
+                }
+            }
+
+            outChannel.force(true);
+            return size;
+        }
+    }
+
+    private boolean isValidCopy(File outputFile, File infoFile) {
+        if (!outputFile.isFile() || !infoFile.isFile()) {
+            return false;
+        }
+
+        Properties info = new Properties();
+        try (FileInputStream in = new FileInputStream(infoFile)) {
+            info.load(in);
+            return Long.parseLong(info.getProperty(INFO_SOURCE_VERSION, "-1")) == mSourceVersion
+                    && Long.parseLong(info.getProperty(INFO_SIZE, "-1")) == outputFile.length();
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Unable to read " + infoFile + " | " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeInfo(File infoFile, long size, String md5) throws IOException {
+        Properties info = new Properties();
+        info.setProperty(INFO_SOURCE_VERSION, Long.toString(mSourceVersion));
+        info.setProperty(INFO_SIZE, Long.toString(size));
+        info.setProperty(INFO_MD5, md5);
+
+        File tmpFile = new File(infoFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            info.store(out, null);
+            out.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), infoFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Delete partial copies of this file left behind by other source versions.
+     */
+    private static void deleteStalePartFiles(File outputFile, File currentPartFile) {
+        File[] files = outputFile.getParentFile() == null ? null : outputFile.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(outputFile.getName() + ".") && name.endsWith(PART_SUFFIX) && !file.equals(currentPartFile)) {
+                file.delete();
+            }
+        }
+    }
+
+    private static String computeMD5(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,58 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import java.util.Locale;
+
+/**
+ * BindTimeStats: Time spent binding message rows, bucketed by message length
+ *
+ * Full binds set the whole text; append binds only add the text that streamed in since the previous bind.
+ * Bind time includes the text layout update TextView does on setText / append.
+ */
+public class BindTimeStats {
+    // Upper bounds (exclusive) of the length buckets, in chars; the last bucket is unbounded.
+    private static final int[] cBucketLimits = {256, 1024, 4096, 16384};
+
+    private final long[][] mCount = new long[2][cBucketLimits.length + 1];
+    private final long[][] mTotalNanos = new long[2][cBucketLimits.length + 1];
+    private final long[][] mMaxNanos = new long[2][cBucketLimits.length + 1];
+
+    /**
+     * record: Records one bind. Must be called on the UI thread.
+     *
+     * @param append true for an append bind, false for a full bind
+     * @param length message length after the bind, in chars
+     * @param nanos  time spent binding
+     */
+    public void record(boolean append, int length, long nanos) {
+        int kind = append ? 1 : 0;
+        int bucket = 0;
+        while (bucket < cBucketLimits.length && length >= cBucketLimits[bucket]) {
+            bucket++;
+        }
+        mCount[kind][bucket]++;
+        mTotalNanos[kind][bucket] += nanos;
+        mMaxNanos[kind][bucket] = Math.max(mMaxNanos[kind][bucket], nanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("Bind time by message length (mean / max us):");
+        for (int kind = 0; kind < 2; ++kind) {
+            summary.append(kind == 0 ? "\n  full:  " : "\n  append:");
+            for (int bucket = 0; bucket <= cBucketLimits.length; ++bucket) {
+                String range = bucket < cBucketLimits.length
+                        ? "<" + cBucketLimits[bucket]
+                        : ">=" + cBucketLimits[cBucketLimits.length - 1];
+                long count = mCount[kind][bucket];
+                summary.append(String.format(Locale.ROOT, " %s: %s", range, count == 0 ? "-"
+                        : String.format(Locale.ROOT, "%.0f / %.0f (%d)", mTotalNanos[kind][bucket] / 1e3 / count,
+                        mMaxNanos[kind][bucket] / 1e3, count)));
+            }
+        }
+        return summary.toString();
+    }
+}
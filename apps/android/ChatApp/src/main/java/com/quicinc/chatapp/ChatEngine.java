@@ -0,0 +1,99 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+/**
+ * ChatEngine: Backend that generates chat responses
+ *
+ * Implemented by GenieWrapper (Genie on device) and SyntheticChatEngine (deterministic tokens with a configurable
+ * latency profile). Has no Android dependencies, so the chat pipeline built on it (InferenceQueue,
+ * ContextWindowManager, LlmBenchmark) can run and be load-tested on a JVM.
+ *
+ * Queries run one at a time: concurrent getResponseForPrompt calls are serialized.
+ */
+public interface ChatEngine {
+    /**
+     * load: Loads the model. Must be called before any other method; does nothing if already loaded.
+     * The system prompt is prefilled by prefillSystemPrompt, or along with the first prompt.
+     *
+     * @throws RuntimeException if the model could not be loaded
+     */
+    void load();
+
+    /**
+     * prefillSystemPrompt: Prefills the system prompt if the dialog does not hold it yet, so the next prompt only
+     * prefills itself. Run it while the user types the first prompt. Waits for a running query to finish.
+     */
+    void prefillSystemPrompt();
+
+    /**
+     * getResponseForPrompt: Generates response for provided user input, stopping early once a limit is hit
+     *
+     * @param userInput user input to generate response for
+     * @param limits    limits enforced while generating
+     * @param sink      callback to tunnel each generated token to. Called on the calling thread.
+     * @return reason generation stopped, with timings of the response
+     */
+    GenerationStats getResponseForPrompt(String userInput, GenerationLimits limits, StringCallback sink);
+
+    /**
+     * cancel: Stops the response currently being generated. Safe to call from any thread.
+     * getResponseForPrompt returns with StopReason.CANCELLED once generation has stopped.
+     */
+    void cancel();
+
+    /**
+     * setSampler: Sets how following responses pick tokens. Applied when the next query starts, without reloading
+     * the model; a running query keeps its sampler.
+     *
+     * @param sampler sampler to use, or null for the one of the model's config
+     */
+    void setSampler(SamplerConfig sampler);
+
+    /**
+     * reset: Clears the conversation so the next prompt starts a new dialog. Waits for a running query to finish.
+     */
+    void reset();
+
+    /**
+     * saveDialog: Saves the conversation held by the dialog (KV cache and position) to provided directory, replacing
+     * its contents. Waits for a running query to finish.
+     *
+     * @throws RuntimeException if the dialog could not be saved
+     */
+    void saveDialog(String dirPath);
+
+    /**
+     * restoreDialog: Replaces the conversation held by the dialog with one saved by saveDialog on the same model.
+     * Waits for a running query to finish.
+     *
+     * @return true if restored; false if nothing could be restored, in which case the dialog is reset
+     */
+    boolean restoreDialog(String dirPath);
+
+    /**
+     * appendTurn: Prefills a complete earlier exchange into the dialog without generating a response.
+     * Used to rebuild a conversation after reset().
+     *
+     * @param userPrompt user prompt of the exchange
+     * @param response   bot response of the exchange
+     */
+    void appendTurn(String userPrompt, String response);
+
+    /**
+     * getLastStats: Returns timings of the last response, or null if nothing was generated yet
+     */
+    GenerationStats getLastStats();
+
+    /**
+     * getContextTokens: Returns the estimated number of tokens held by the dialog. Safe to call from any thread.
+     */
+    int getContextTokens();
+
+    /**
+     * getContextSize: Returns the context size of the model in tokens, or 0 if unknown
+     */
+    int getContextSize();
+}
@@ -0,0 +1,79 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+
+/**
+ * ChatEngineLoader: Loads a chat engine on a background thread, so the UI stays responsive while context binaries load
+ *
+ *  - getState() tells whether the engine is still loading, ready to be queried, or failed to load.
+ *  - The listener is called exactly once, on the loader thread, when loading ends.
+ *  - Loading cannot be interrupted; an engine loaded after its listener is no longer interested stays with whoever
+ *    owns it (e.g. ModelManager), so it can be reused.
+ */
+public class ChatEngineLoader {
+
+    public enum State {
+        // Engine is loading; it cannot be queried yet.
+        LOADING,
+        // Engine is loaded and can be queried.
+        READY,
+        // Engine failed to load.
+        FAILED,
+    }
+
+    /**
+     * Listener: Receives the result of loading. Invoked on the loader thread.
+     */
+    public interface Listener {
+        /**
+         * @param state  READY or FAILED
+         * @param engine loaded engine, or null if loading failed
+         */
+        void onLoadComplete(State state, ChatEngine engine);
+    }
+
+    private static final String TAG = "ChatApp";
+
+    private volatile State mState = State.LOADING;
+    private volatile long mLoadNanos;
+
+    /**
+     * ChatEngineLoader: Starts loading
+     *
+     * @param loader   creates and loads the engine; runs on the loader thread
+     * @param listener receives the loaded engine
+     */
+    public ChatEngineLoader(Callable<ChatEngine> loader, Listener listener) {
+        new Thread(() -> load(loader, listener), "ChatEngineLoader").start();
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * getLoadNanos: Returns how long loading took, or 0 while loading
+     */
+    public long getLoadNanos() {
+        return mLoadNanos;
+    }
+
+    private void load(Callable<ChatEngine> loader, Listener listener) {
+        long start = System.nanoTime();
+        ChatEngine engine = null;
+        try {
+            engine = loader.call();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load chat engine: " + e.toString());
+        }
+        mLoadNanos = System.nanoTime() - start;
+        mState = engine != null ? State.READY : State.FAILED;
+        listener.onLoadComplete(mState, engine);
+    }
+}
@@ -0,0 +1,261 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChatHistoryStore: Chat messages persisted to an append-only log, paged into memory in fixed-size windows
+ *
+ *  - messages.log holds one record per message; messages.idx holds the 8-byte log offset of every record.
+ *  - Messages still being written (the tail of the conversation, e.g. a streaming response) are kept in memory
+ *    until they and every message before them are complete, then appended to the log.
+ *  - Persisted messages are read back a page at a time; at most cMaxCachedPages pages are kept, so memory stays
+ *    constant however long the conversation gets.
+ *  - Opening a store only reads the index size, so long conversations restore instantly; a record torn by a crash
+ *    is dropped.
+ *
+ * Not thread-safe; use from the UI thread.
+ */
+public class ChatHistoryStore implements AutoCloseable {
+    private static final String cLogName = "messages.log";
+    private static final String cIndexName = "messages.idx";
+    private static final int cPageSize = 64;
+    private static final int cMaxCachedPages = 8;
+    // Record header: text bytes, stats bytes (-1 for none), continuation separator bytes (-1 for none), sender.
+    private static final int cRecordHeaderBytes = 4 + 4 + 4 + 1;
+
+    private final File mDir;
+    private final FileChannel mLog;
+    private final FileChannel mIndex;
+    private int mNumPersisted;
+    private long mLogEnd;
+    private final List<ChatMessage> mTail = new ArrayList<>();
+    private final Map<Integer, ChatMessage[]> mPages = new LinkedHashMap<Integer, ChatMessage[]>(cMaxCachedPages, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ChatMessage[]> eldest) {
+            return size() > cMaxCachedPages;
+        }
+    };
+
+    private ChatHistoryStore(File dir) throws IOException {
+        mDir = dir;
+        mLog = FileChannel.open(new File(dir, cLogName).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mIndex = FileChannel.open(new File(dir, cIndexName).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * open: Opens the history stored in provided directory, creating an empty one if there is none
+     */
+    public static ChatHistoryStore open(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        return new ChatHistoryStore(dir);
+    }
+
+    /**
+     * delete: Deletes the history stored in provided directory. The store must be closed.
+     */
+    public static void delete(File dir) {
+        new File(dir, cLogName).delete();
+        new File(dir, cIndexName).delete();
+    }
+
+    public File getDir() {
+        return mDir;
+    }
+
+    public int size() {
+        return mNumPersisted + mTail.size();
+    }
+
+    /**
+     * get: Returns the message at provided position. Persisted messages are read from disk if their page is not cached.
+     */
+    public ChatMessage get(int position) {
+        if (position >= mNumPersisted) {
+            return mTail.get(position - mNumPersisted);
+        }
+        int page = position / cPageSize;
+        ChatMessage[] messages = mPages.get(page);
+        if (messages == null) {
+            try {
+                messages = readPage(page);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            mPages.put(page, messages);
+        }
+        return messages[position % cPageSize];
+    }
+
+    /**
+     * add: Appends a message to the conversation
+     */
+    public void add(ChatMessage message) {
+        mTail.add(message);
+    }
+
+    /**
+     * add: Inserts a message at provided position, which must be after every persisted message
+     */
+    public void add(int position, ChatMessage message) {
+        if (position < mNumPersisted) {
+            throw new IllegalArgumentException("Cannot insert before persisted message " + mNumPersisted);
+        }
+        mTail.add(position - mNumPersisted, message);
+    }
+
+    /**
+     * commitCompleted: Persists complete messages from the start of the in-memory tail
+     */
+    public void commitCompleted() {
+        try {
+            while (!mTail.isEmpty() && mTail.get(0).isComplete()) {
+                append(mTail.get(0));
+                mTail.remove(0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mLog.close();
+        mIndex.close();
+    }
+
+    private void append(ChatMessage message) throws IOException {
+        byte[] text = message.getMessage().toString().getBytes(StandardCharsets.UTF_8);
+        byte[] stats = message.getStats() == null ? null : message.getStats().getBytes(StandardCharsets.UTF_8);
+        byte[] separator = message.isContinuation()
+                ? message.getContinuationSeparator().getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer record = ByteBuffer.allocate(cRecordHeaderBytes + text.length + (stats == null ? 0 : stats.length)
+                + (separator == null ? 0 : separator.length));
+        record.putInt(text.length).putInt(stats == null ? -1 : stats.length)
+                .putInt(separator == null ? -1 : separator.length).put((byte) message.mSender.ordinal());
+        record.put(text);
+        if (stats != null) {
+            record.put(stats);
+        }
+        if (separator != null) {
+            record.put(separator);
+        }
+        record.flip();
+        writeFully(mLog, record, mLogEnd);
+
+        // The index entry goes last: a record is only part of the history once it is indexed.
+        ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, mLogEnd);
+        writeFully(mIndex, offset, (long) mNumPersisted * 8);
+        mLogEnd += record.limit();
+
+        // Keep a cached page of this message current.
+        ChatMessage[] page = mPages.get(mNumPersisted / cPageSize);
+        if (page != null) {
+            page[mNumPersisted % cPageSize] = message;
+        }
+        mNumPersisted++;
+    }
+
+    private ChatMessage[] readPage(int page) throws IOException {
+        int first = page * cPageSize;
+        int count = Math.min(cPageSize, mNumPersisted - first);
+        ByteBuffer offsets = ByteBuffer.allocate(count * 8);
+        readFully(mIndex, offsets, (long) first * 8);
+        long start = offsets.getLong(0);
+        long end = first + count < mNumPersisted ? readOffset(first + count) : mLogEnd;
+
+        ByteBuffer records = ByteBuffer.allocate((int) (end - start));
+        readFully(mLog, records, start);
+        ChatMessage[] messages = new ChatMessage[cPageSize];
+        for (int i = 0; i < count; ++i) {
+            records.position((int) (offsets.getLong(i * 8) - start));
+            messages[i] = readRecord(records);
+        }
+        return messages;
+    }
+
+    private static ChatMessage readRecord(ByteBuffer records) {
+        int textBytes = records.getInt();
+        int statsBytes = records.getInt();
+        int separatorBytes = records.getInt();
+        MessageSender sender = MessageSender.values()[records.get()];
+        String text = readString(records, textBytes);
+        String stats = statsBytes >= 0 ? readString(records, statsBytes) : null;
+        String separator = separatorBytes >= 0 ? readString(records, separatorBytes) : null;
+        ChatMessage message = new ChatMessage(text, sender, true, separator);
+        message.setStats(stats);
+        return message;
+    }
+
+    private static String readString(ByteBuffer records, int bytes) {
+        String string = new String(records.array(), records.position(), bytes, StandardCharsets.UTF_8);
+        records.position(records.position() + bytes);
+        return string;
+    }
+
+    private long readOffset(int position) throws IOException {
+        ByteBuffer offset = ByteBuffer.allocate(8);
+        readFully(mIndex, offset, (long) position * 8);
+        return offset.getLong(0);
+    }
+
+    /**
+     * recover: Finds the persisted messages, dropping a torn index entry or record left by a crash
+     */
+    private void recover() throws IOException {
+        mNumPersisted = (int) (mIndex.size() / 8);
+        mLogEnd = 0;
+        while (mNumPersisted > 0) {
+            long start = readOffset(mNumPersisted - 1);
+            ByteBuffer header = ByteBuffer.allocate(cRecordHeaderBytes);
+            if (start + cRecordHeaderBytes <= mLog.size()) {
+                readFully(mLog, header, start);
+                long end = start + cRecordHeaderBytes + header.getInt(0) + Math.max(header.getInt(4), 0)
+                        + Math.max(header.getInt(8), 0);
+                if (end <= mLog.size()) {
+                    mLogEnd = end;
+                    break;
+                }
+            }
+            mNumPersisted--;
+        }
+        mIndex.truncate((long) mNumPersisted * 8);
+        mLog.truncate(mLogEnd);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.rewind();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of chat history");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
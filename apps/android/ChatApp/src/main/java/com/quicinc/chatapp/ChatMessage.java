@@ -9,21 +9,74 @@ package com.quicinc.chatapp;
  */
 public class ChatMessage {
 
-    public String mMessage;
-    public int mLength;
+    // Appended to in place while a response streams in, instead of re-building a String per token.
+    private final StringBuilder mMessage;
     public MessageSender mSender;
+    // Generation stats shown under a bot message; null if not shown.
+    private String mStats;
+    // False while the message is still streaming in; complete messages are persisted by ChatHistoryStore.
+    private boolean mComplete;
+    // Whitespace dropped where a long message was split before this row; null if this row starts a message.
+    private final String mContinuationSeparator;
 
     public ChatMessage(String msg, MessageSender sender) {
-        mMessage = msg;
-        mLength = msg.length();
+        this(msg, sender, true);
+    }
+
+    public ChatMessage(String msg, MessageSender sender, boolean complete) {
+        this(msg, sender, complete, null);
+    }
+
+    /**
+     * ChatMessage: Creates a message row
+     *
+     * @param continuationSeparator if this row continues the message in the previous row, the text the message was
+     *                              split at; null otherwise
+     */
+    public ChatMessage(String msg, MessageSender sender, boolean complete, String continuationSeparator) {
+        mMessage = new StringBuilder(msg);
         mSender = sender;
+        mComplete = complete;
+        mContinuationSeparator = continuationSeparator;
     }
 
     public boolean isMessageFromUser() {
         return mSender == MessageSender.USER;
     }
 
-    public String getMessage() {
+    public CharSequence getMessage() {
         return mMessage;
     }
+
+    public int length() {
+        return mMessage.length();
+    }
+
+    public void appendMessage(CharSequence text) {
+        mMessage.append(text);
+    }
+
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    public void setComplete() {
+        mComplete = true;
+    }
+
+    public boolean isContinuation() {
+        return mContinuationSeparator != null;
+    }
+
+    public String getContinuationSeparator() {
+        return mContinuationSeparator;
+    }
+
+    public String getStats() {
+        return mStats;
+    }
+
+    public void setStats(String stats) {
+        mStats = stats;
+    }
 }
@@ -0,0 +1,63 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import java.io.File;
+
+/**
+ * ChatSession: One conversation of the chat screen, sharing the loaded model with the others
+ *
+ *  - Messages are kept in the session's ChatHistoryStore.
+ *  - While another session holds the model's dialog, this session's dialog state (KV cache) is saved in its dialog
+ *    directory; see ChatSessionManager.
+ */
+public class ChatSession {
+    private final int mId;
+    private final ChatHistoryStore mHistory;
+    private final File mDialogDir;
+    // Turns held by this session's dialog; created once the engine is loaded, used on the inference thread only.
+    private ContextWindowManager mContextWindowManager;
+    // True once the dialog was saved to mDialogDir; inference thread only.
+    private boolean mDialogSaved = false;
+
+    ChatSession(int id, ChatHistoryStore history, File dialogDir) {
+        mId = id;
+        mHistory = history;
+        mDialogDir = dialogDir;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public ChatHistoryStore getHistory() {
+        return mHistory;
+    }
+
+    File getDialogDir() {
+        return mDialogDir;
+    }
+
+    ContextWindowManager getContextWindowManager() {
+        return mContextWindowManager;
+    }
+
+    void setContextWindowManager(ContextWindowManager contextWindowManager) {
+        mContextWindowManager = contextWindowManager;
+    }
+
+    boolean isDialogSaved() {
+        return mDialogSaved;
+    }
+
+    void setDialogSaved(boolean dialogSaved) {
+        mDialogSaved = dialogSaved;
+    }
+
+    @Override
+    public String toString() {
+        return "Chat " + mId;
+    }
+}
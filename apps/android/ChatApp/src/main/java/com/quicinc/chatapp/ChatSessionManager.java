@@ -0,0 +1,236 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ChatSessionManager: Keeps several conversations on one loaded model
+ *
+ *  - The model's dialog holds one session at a time, the active one. Switching saves the active session's dialog
+ *    state (KV cache and position) to its dialog directory and restores the target's, which takes far less than
+ *    loading the model or prefilling the conversation again.
+ *  - A restored state is deleted: the dialog moves on from it. The active session's dialog is saved again when
+ *    switching away, or by saveActive before the activity is re-created.
+ *  - If a session's dialog cannot be restored, its newest turns are prefilled again, e.g. after the engine was reset.
+ *  - Switches run as tasks of the InferenceQueue, in order with prompts: prompts submitted after switchTo are
+ *    answered in the target session.
+ *  - Sessions are created, selected and closed on the UI thread.
+ */
+public class ChatSessionManager {
+
+    private static final String TAG = "ChatApp";
+
+    private final File mHistoryRoot;
+    private final File mDialogRoot;
+    private final List<ChatSession> mSessions = new ArrayList<>();
+    private int mNextId = 0;
+    // Set by attach.
+    private ChatEngine mEngine;
+    private int mResponseReserveTokens;
+    private boolean mSummarize;
+    // Session shown in the UI.
+    private ChatSession mSelected;
+    // Session held by the dialog; inference thread only, once attached.
+    private ChatSession mActive;
+
+    /**
+     * ChatSessionManager: Opens the sessions stored in provided directories, or none
+     *
+     * @param historyRoot parent of every session's message history
+     * @param dialogRoot  parent of every session's saved dialog state
+     * @param restore     if true, keeps sessions persisted before the activity was re-created; otherwise deletes them
+     */
+    public ChatSessionManager(File historyRoot, File dialogRoot, boolean restore) throws IOException {
+        mHistoryRoot = historyRoot;
+        mDialogRoot = dialogRoot;
+        if (!restore) {
+            deleteRecursively(historyRoot);
+            deleteRecursively(dialogRoot);
+            return;
+        }
+        List<Integer> ids = new ArrayList<>();
+        File[] dirs = historyRoot.listFiles(File::isDirectory);
+        for (File dir : dirs == null ? new File[0] : dirs) {
+            try {
+                ids.add(Integer.parseInt(dir.getName()));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring unexpected chat history directory " + dir);
+            }
+        }
+        Collections.sort(ids);
+        for (int id : ids) {
+            open(id);
+        }
+    }
+
+    /**
+     * createSession: Creates an empty session; it must be selected to be shown
+     */
+    public ChatSession createSession() throws IOException {
+        ChatSession session = open(mNextId);
+        if (mEngine != null) {
+            session.setContextWindowManager(
+                    new ContextWindowManager(mEngine, mResponseReserveTokens, mSummarize));
+        }
+        return session;
+    }
+
+    public List<ChatSession> getSessions() {
+        return Collections.unmodifiableList(mSessions);
+    }
+
+    /**
+     * getSession: Returns the session with provided id, or null if there is none
+     */
+    public ChatSession getSession(int id) {
+        for (ChatSession session : mSessions) {
+            if (session.getId() == id) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    public ChatSession getSelected() {
+        return mSelected;
+    }
+
+    /**
+     * select: Shows provided session before the engine is loaded. Once attached, use switchTo.
+     */
+    public void select(ChatSession session) {
+        mSelected = session;
+    }
+
+    /**
+     * attach: Creates every session's context window manager on the loaded engine, which was reset, with the turns of
+     * the session's history. The dialog holds no session until switchTo restores or rebuilds the selected one.
+     *
+     * @param engine                loaded engine
+     * @param responseReserveTokens see ContextWindowManager
+     * @param summarize             see ContextWindowManager
+     */
+    public void attach(ChatEngine engine, int responseReserveTokens, boolean summarize) {
+        mEngine = engine;
+        mResponseReserveTokens = responseReserveTokens;
+        mSummarize = summarize;
+        for (ChatSession session : mSessions) {
+            ContextWindowManager contextWindowManager =
+                    new ContextWindowManager(engine, responseReserveTokens, summarize);
+            contextWindowManager.restoreTurns(session.getHistory());
+            session.setContextWindowManager(contextWindowManager);
+        }
+        mActive = null;
+    }
+
+    /**
+     * switchTo: Selects provided session and queues the switch of the dialog to it
+     *
+     * @param session session to switch to
+     * @param queue   queue that runs every query of the attached engine
+     */
+    public void switchTo(ChatSession session, InferenceQueue queue) {
+        mSelected = session;
+        ChatEngine engine = mEngine;
+        queue.execute(() -> {
+            if (mActive == session) {
+                return;
+            }
+            long start = System.nanoTime();
+            boolean restored = false;
+            saveActiveDialog(engine);
+            mActive = session;
+            if (session.isDialogSaved()) {
+                restored = engine.restoreDialog(session.getDialogDir().getPath());
+                // The dialog moves on from the restored state, so it must not be restored again.
+                deleteRecursively(session.getDialogDir());
+                session.setDialogSaved(false);
+            }
+            if (!restored) {
+                // A new session starts a new dialog; otherwise its newest turns are prefilled again.
+                session.getContextWindowManager().rebuildDialog();
+            }
+            queue.setContextWindowManager(session.getContextWindowManager());
+            long nanos = System.nanoTime() - start;
+            Log.i(TAG, String.format("Switched to %s in %.1f ms (%s).", session, nanos / 1e6,
+                    restored ? "restored" : "rebuilt"));
+        });
+    }
+
+    /**
+     * saveActive: Queues a save of the active session's dialog, so it can be restored after the activity is re-created
+     *
+     * @param queue queue that runs every query of the attached engine
+     */
+    public void saveActive(InferenceQueue queue) {
+        ChatEngine engine = mEngine;
+        queue.execute(() -> saveActiveDialog(engine));
+    }
+
+    /**
+     * close: Closes every session's history, and deletes every session if the conversations ended
+     *
+     * @param delete if true, deletes every session's history and dialog state
+     */
+    public void close(boolean delete) {
+        for (ChatSession session : mSessions) {
+            try {
+                session.getHistory().close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close chat history of " + session + ": " + e.getMessage());
+            }
+        }
+        if (delete) {
+            deleteRecursively(mHistoryRoot);
+            deleteRecursively(mDialogRoot);
+        }
+    }
+
+    /**
+     * saveActiveDialog: Saves the active session's dialog, if any, to its dialog directory. Inference thread only.
+     */
+    private void saveActiveDialog(ChatEngine engine) {
+        if (mActive == null) {
+            return;
+        }
+        try {
+            engine.saveDialog(mActive.getDialogDir().getPath());
+            mActive.setDialogSaved(true);
+        } catch (RuntimeException e) {
+            // The active session is rebuilt from its turns when it is switched back to.
+            Log.w(TAG, "Failed to save dialog of " + mActive + ": " + e.getMessage());
+            deleteRecursively(mActive.getDialogDir());
+            mActive.setDialogSaved(false);
+        }
+    }
+
+    private ChatSession open(int id) throws IOException {
+        ChatHistoryStore history = ChatHistoryStore.open(new File(mHistoryRoot, Integer.toString(id)));
+        File dialogDir = new File(mDialogRoot, Integer.toString(id));
+        ChatSession session = new ChatSession(id, history, dialogDir);
+        // A dialog saved before the activity was re-created is still valid for the same model.
+        session.setDialogSaved(dialogDir.isDirectory());
+        mSessions.add(session);
+        mNextId = Math.max(mNextId, id + 1);
+        return session;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,229 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ContextWindowManager: Keeps a conversation within the model's context window
+ *
+ * Tracks the turns held by the dialog. Before a prompt would overflow the context, the oldest turns are evicted:
+ * the dialog is reset (restoring the saved system prompt prefix) and only the most recent turns are prefilled again.
+ * Retained turns are capped at half the context, so a rebuild never prefills more than that.
+ *
+ * Optionally, evicted turns are first summarized by the model, and the summary is kept as the oldest turn.
+ *
+ * Must only be used from the thread that queries the model.
+ */
+public class ContextWindowManager {
+
+    /**
+     * Turn: One exchange held by the dialog
+     */
+    private static class Turn {
+        final String mPrompt;
+        final String mResponse;
+        final int mTokens;
+
+        Turn(String prompt, String response, int tokens) {
+            mPrompt = prompt;
+            mResponse = response;
+            mTokens = tokens;
+        }
+    }
+
+    private static final String TAG = "ChatApp";
+    // Template tokens added around every user prompt (headers and end-of-turn tags).
+    private static final int cPromptTemplateTokens = 16;
+    private static final String cSummaryRequest =
+            "Summarize our conversation so far in a few sentences. Keep names, facts and decisions.";
+    private static final String cSummaryPrefix = "Summary of our earlier conversation: ";
+    private static final String cSummaryAcknowledgement = "Understood.";
+    private static final int cMaxSummaryTokens = 128;
+
+    private final ChatEngine mEngine;
+    private final int mContextSize;
+    private final int mResponseReserveTokens;
+    private final boolean mSummarize;
+    private final ArrayDeque<Turn> mTurns = new ArrayDeque<>();
+
+    /**
+     * ContextWindowManager
+     *
+     * @param engine                loaded engine
+     * @param responseReserveTokens tokens kept free for every response; responses should be limited to this many tokens
+     * @param summarize             if true, evicted turns are replaced by a model-generated summary
+     */
+    public ContextWindowManager(ChatEngine engine, int responseReserveTokens, boolean summarize) {
+        mEngine = engine;
+        mContextSize = engine.getContextSize();
+        mResponseReserveTokens = responseReserveTokens;
+        mSummarize = summarize;
+        if (mContextSize == 0) {
+            Log.w(TAG, "Engine does not report a context size; context window is not managed.");
+        }
+    }
+
+    /**
+     * estimatePromptTokens: Over-estimates the tokens a user prompt adds to the dialog, matching the native estimate
+     */
+    static int estimatePromptTokens(String prompt) {
+        return (prompt.getBytes(StandardCharsets.UTF_8).length + 2) / 3 + cPromptTemplateTokens;
+    }
+
+    /**
+     * prepareForPrompt: Evicts old turns if the prompt and its response would not fit in the context
+     *
+     * @param prompt prompt about to be sent
+     */
+    public void prepareForPrompt(String prompt) {
+        if (mContextSize == 0) {
+            return;
+        }
+        int contextTokens = mEngine.getContextTokens();
+        int promptTokens = estimatePromptTokens(prompt);
+        if (contextTokens + promptTokens + mResponseReserveTokens <= mContextSize) {
+            return;
+        }
+
+        // Keep the newest turns that fit in half the context, next to the prompt.
+        List<Turn> retained = getNewestTurns(mContextSize / 2 - promptTokens);
+        int numEvicted = mTurns.size() - retained.size();
+        Log.i(TAG, String.format("Context at %d / %d tokens. Evicting %d of %d turns.",
+                contextTokens, mContextSize, numEvicted, mTurns.size()));
+
+        String summary = null;
+        if (mSummarize && numEvicted > 0
+                && contextTokens + estimatePromptTokens(cSummaryRequest) + cMaxSummaryTokens <= mContextSize) {
+            summary = summarize();
+        }
+        rebuild(summary, retained);
+    }
+
+    /**
+     * onTurnComplete: Records an exchange the dialog now holds
+     *
+     * @param prompt                prompt that was sent
+     * @param response              response the model generated (possibly stopped early)
+     * @param contextTokensBefore   getContextTokens() before the prompt was sent
+     */
+    public void onTurnComplete(String prompt, String response, int contextTokensBefore) {
+        int contextTokensAfter = mEngine.getContextTokens();
+        if (contextTokensAfter < contextTokensBefore) {
+            // The dialog was reset while answering (e.g., after an empty response); earlier turns are gone.
+            mTurns.clear();
+            contextTokensBefore = 0;
+        }
+        mTurns.add(new Turn(prompt, response, Math.max(contextTokensAfter - contextTokensBefore, 0)));
+    }
+
+    /**
+     * restoreTurns: Records the newest turns of a stored conversation, up to half the context, in place of the tracked
+     * turns. Used when this manager is created for a conversation the dialog holds from a restored state, or is about
+     * to prefill with rebuildDialog.
+     *
+     * @param history messages of the conversation, oldest first. The prompts before a response are its turn's prompt,
+     *                as InferenceQueue coalesces them. Responses split across rows are joined again.
+     */
+    public void restoreTurns(ChatHistoryStore history) {
+        mTurns.clear();
+        int budgetTokens = mContextSize == 0 ? Integer.MAX_VALUE : mContextSize / 2;
+        int tokens = 0;
+        String response = null;
+        // Rows after the first row of the response being read, joined with the separators they were split at.
+        String continuation = "";
+        List<String> prompts = new ArrayList<>();
+        // Newest first; the start of the conversation (position -1) ends the oldest turn like a response would.
+        for (int position = history.size() - 1; position >= -1; --position) {
+            ChatMessage message = position >= 0 ? history.get(position) : null;
+            if (message != null && message.isMessageFromUser()) {
+                prompts.add(0, message.getMessage().toString());
+                continue;
+            }
+            if (message != null && message.isContinuation()) {
+                continuation = message.getContinuationSeparator() + message.getMessage() + continuation;
+                continue;
+            }
+            if (response != null && !prompts.isEmpty()) {
+                String prompt = String.join(InferenceQueue.cCoalescedPromptSeparator, prompts);
+                int turnTokens = estimatePromptTokens(prompt) + estimatePromptTokens(response);
+                if (tokens + turnTokens > budgetTokens) {
+                    break;
+                }
+                mTurns.addFirst(new Turn(prompt, response, turnTokens));
+                tokens += turnTokens;
+            }
+            response = message != null ? message.getMessage() + continuation : null;
+            continuation = "";
+            prompts.clear();
+        }
+    }
+
+    /**
+     * rebuildDialog: Resets the dialog and prefills the newest turns again, up to half the context.
+     * Used when the dialog lost the conversation, e.g. its saved state could not be restored.
+     */
+    public void rebuildDialog() {
+        rebuild(null, getNewestTurns(mContextSize == 0 ? Integer.MAX_VALUE : mContextSize / 2));
+    }
+
+    /**
+     * getNewestTurns: Returns the newest turns that fit in provided tokens, oldest first
+     */
+    private List<Turn> getNewestTurns(int budgetTokens) {
+        List<Turn> turns = new ArrayList<>();
+        int tokens = 0;
+        for (Iterator<Turn> it = mTurns.descendingIterator(); it.hasNext(); ) {
+            Turn turn = it.next();
+            if (tokens + turn.mTokens > budgetTokens) {
+                break;
+            }
+            turns.add(0, turn);
+            tokens += turn.mTokens;
+        }
+        return turns;
+    }
+
+    private String summarize() {
+        StringBuilder summary = new StringBuilder();
+        try {
+            mEngine.getResponseForPrompt(cSummaryRequest, new GenerationLimits(cMaxSummaryTokens, 0), summary::append);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to summarize evicted turns: " + e.getMessage());
+            return null;
+        }
+        return summary.length() == 0 ? null : summary.toString().trim();
+    }
+
+    private void rebuild(String summary, List<Turn> retained) {
+        mEngine.reset();
+        mTurns.clear();
+        try {
+            if (summary != null) {
+                appendTurn(cSummaryPrefix + summary, cSummaryAcknowledgement);
+            }
+            for (Turn turn : retained) {
+                appendTurn(turn.mPrompt, turn.mResponse);
+            }
+        } catch (RuntimeException e) {
+            // Continue from whatever was prefilled; the next prompt still fits.
+            Log.e(TAG, "Failed to rebuild conversation: " + e.getMessage());
+        }
+        Log.i(TAG, String.format("Rebuilt conversation with %d turns, %d tokens.",
+                mTurns.size(), mEngine.getContextTokens()));
+    }
+
+    private void appendTurn(String prompt, String response) {
+        int contextTokensBefore = mEngine.getContextTokens();
+        mEngine.appendTurn(prompt, response);
+        mTurns.add(new Turn(prompt, response, mEngine.getContextTokens() - contextTokensBefore));
+    }
+}
@@ -8,7 +8,10 @@ import android.os.Bundle;
 import android.system.Os;
 import android.util.Log;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.ImageButton;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -17,29 +20,144 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.SimpleItemAnimator;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 
 public class Conversation extends AppCompatActivity {
 
-    ArrayList<ChatMessage> messages = new ArrayList<ChatMessage>(1000);
-
     private static final String cWelcomeMessage = "Hi! How can I help you?";
     public static final String cConversationActivityKeyHtpConfig = "htp_config_path";
     public static final String cConversationActivityKeyModelName = "model_dir_name";
+    public static final String cConversationActivityKeyShowStats = "show_generation_stats";
+    public static final String cConversationActivityKeySyntheticEngine = "synthetic_engine";
+    public static final String cConversationActivityKeyDialogType = "dialog_type";
+    // DeviceProfile.toJson of the device; its engine settings are rendered into the Genie config.
+    public static final String cConversationActivityKeyDeviceProfile = "device_profile";
+    // MemoryProfile name; its memory settings are rendered into the Genie config.
+    public static final String cConversationActivityKeyMemoryProfile = "memory_profile";
+    // Every response's stats are appended here (app-specific external files dir), to compare configs across devices.
+    private static final String cGenerationStatsLogName = "generation_stats.jsonl";
+    // Maximum tokens per response; also kept free in the context window for every response.
+    private static final int cMaxResponseTokens = 512;
+    // Replace turns evicted from the context window with a model-generated summary.
+    private static final boolean cSummarizeEvictedTurns = false;
+    // Context size of the synthetic engine, in tokens.
+    private static final int cSyntheticContextSize = 4096;
+    // Messages of every open conversation (app-specific files dir); kept while the activity is re-created.
+    private static final String cChatHistoryDirName = "chat_history";
+    // Saved dialog state of every conversation not held by the model (app-specific cache dir).
+    private static final String cChatSessionDirName = "chat_sessions";
+    // Conversations open at once; each keeps a saved dialog state on disk.
+    private static final int cMaxSessions = 4;
+    // Instance state key of the shown conversation.
+    private static final String cSelectedSessionKey = "selected_session";
+    // Longest the UI thread waits for the shown conversation's dialog to be saved before the activity is re-created.
+    private static final long cSaveDialogTimeoutMillis = 2000;
+    // Let the QnnHtp backend initialize context binaries concurrently, which shortens model loading.
+    private static final boolean cAllowAsyncInit = true;
+
+    private RecyclerView recyclerView;
+    private ImageButton sendUserMsgButton;
+    private TextView userMsg;
+    private Spinner sessionSpinner;
+    private ArrayAdapter<ChatSession> sessionAdapter;
+    private ChatSessionManager sessions;
+    private Message_RecyclerViewAdapter adapter;
+    private ChatEngineLoader engineLoader;
+    private InferenceQueue inferenceQueue;
+    private GenerationStatsLog generationStatsLog;
+    private boolean showGenerationStats = false;
+    // Draft tokens per step with speculative decoding, 0 otherwise.
+    private int draftLength = 0;
+
+    /**
+     * BotResponse: Streams one bot response into the conversation
+     *  - Tokens are batched and published at most once per frame.
+     *  - The bot message is only added once the first text arrives, so coalesced prompts share one bot message.
+     *  - The response goes to the conversation it was prompted in, even if another one is shown meanwhile.
+     */
+    private class BotResponse implements InferenceQueue.ResponseListener {
+        private final TokenStreamSink mTokenSink = new TokenStreamSink(this::publish);
+        private final Message_RecyclerViewAdapter mAdapter = adapter;
+        private int mMessageIndex = -1;
+
+        private void publish(CharSequence text) {
+            if (isDestroyed()) {
+                // Frames can still run after onDestroy closed the chat histories.
+                return;
+            }
+            if (mMessageIndex < 0) {
+                mAdapter.addMessage(new ChatMessage("", MessageSender.BOT, false));
+                mMessageIndex = mAdapter.getItemCount() - 1;
+                mAdapter.notifyItemInserted(mMessageIndex);
+            }
+            // Long responses continue in new rows; stats go under the last one.
+            mMessageIndex = mAdapter.appendToMessage(mMessageIndex, text);
+            if (mAdapter != adapter) {
+                return;
+            }
+
+            RecyclerView.LayoutManager lm = recyclerView.getLayoutManager();
+            if (lm instanceof LinearLayoutManager) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) lm;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+
+                if (lastVisible >= adapter.getItemCount() - 2) {
+                    recyclerView.scrollToPosition(adapter.getItemCount() - 1);
+                }
+            }
+        }
+
+        @Override
+        public void onNewString(String token) {
+            mTokenSink.onNewString(token);
+        }
+
+        @Override
+        public void onComplete(InferenceQueue.Status status, GenerationStats stats) {
+            if (stats != null && generationStatsLog != null) {
+                generationStatsLog.append(stats);
+            }
+            boolean responded = status == InferenceQueue.Status.COMPLETED || status == InferenceQueue.Status.CANCELLED;
+            mTokenSink.finish(() -> {
+                if (mMessageIndex < 0 || isDestroyed()) {
+                    return;
+                }
+                if (responded && showGenerationStats && stats != null) {
+                    mAdapter.setMessageStats(mMessageIndex, draftLength == 0 ? stats.toString()
+                            : String.format("%s | %.1f tok/step, %.0f%% accepted", stats,
+                            stats.getTokensPerStep(), stats.getAcceptanceRate(draftLength) * 100));
+                }
+                // The response can now be persisted, along with prompts sent while it was streaming.
+                mAdapter.completeMessage(mMessageIndex);
+            });
+            if (status == InferenceQueue.Status.FAILED) {
+                runOnUiThread(() -> Toast.makeText(Conversation.this, "Failed to generate response.", Toast.LENGTH_SHORT).show());
+            }
+        }
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         setContentView(R.layout.chat);
-        RecyclerView recyclerView = findViewById(R.id.chat_recycler_view);
-        Message_RecyclerViewAdapter adapter = new Message_RecyclerViewAdapter(this, messages);
-        recyclerView.setAdapter(adapter);
+        recyclerView = findViewById(R.id.chat_recycler_view);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        try {
+            sessions = openChatSessions(savedInstanceState);
+        } catch (IOException e) {
+            Log.e("ChatApp", "Error opening chat history: " + e.toString());
+            Toast.makeText(this, "Unexpected error observed. Exiting app.", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
 
         // Disable change animations
         RecyclerView.ItemAnimator animator = recyclerView.getItemAnimator();
@@ -47,8 +165,10 @@ public class Conversation extends AppCompatActivity {
             ((SimpleItemAnimator) animator).setSupportsChangeAnimations(false);
         }
 
-        ImageButton sendUserMsgButton = (ImageButton) findViewById(R.id.send_button);
-        TextView userMsg = (TextView) findViewById(R.id.user_input);
+        sendUserMsgButton = (ImageButton) findViewById(R.id.send_button);
+        userMsg = (TextView) findViewById(R.id.user_input);
+        initSessionBar();
+        showSession(sessions.getSelected());
 
         try {
             // Make QNN libraries discoverable
@@ -68,62 +188,68 @@ public class Conversation extends AppCompatActivity {
 
             String htpExtensionsDir = bundle.getString(cConversationActivityKeyHtpConfig);
             String modelName = bundle.getString(cConversationActivityKeyModelName);
+            showGenerationStats = bundle.getBoolean(cConversationActivityKeyShowStats, false);
+            DialogType dialogType = DialogType.valueOf(
+                    bundle.getString(cConversationActivityKeyDialogType, DialogType.BASIC.name()));
+            DeviceProfile deviceProfile = DeviceProfile.fromJson(bundle.getString(cConversationActivityKeyDeviceProfile));
+            MemoryProfile memoryProfile = MemoryProfile.valueOf(
+                    bundle.getString(cConversationActivityKeyMemoryProfile, MemoryProfile.DEFAULT.name()));
+            generationStatsLog = createGenerationStatsLog(modelName, dialogType, htpExtensionsDir, deviceProfile,
+                    memoryProfile);
             String externalCacheDir = this.getExternalCacheDir().getAbsolutePath().toString();
             String modelDir = Paths.get(externalCacheDir, "models", modelName).toString();
+            String prefixCacheDir = Paths.get(getCacheDir().getAbsolutePath(), "prompt_prefix", modelName).toString();
 
-            // Load Model
-            GenieWrapper genieWrapper = new GenieWrapper(modelDir, htpExtensionsDir);
-            Log.i("ChatApp", modelName + " Loaded.");
+            boolean synthetic = bundle.getBoolean(cConversationActivityKeySyntheticEngine, false);
 
-            messages.add(new ChatMessage(cWelcomeMessage, MessageSender.BOT));
+            // Load in the background; prompts can be sent once the engine is ready.
+            setModelLoading(true);
+            engineLoader = new ChatEngineLoader(() -> {
+                if (synthetic) {
+                    // Stand-in for the model, to exercise and measure the streaming UI
+                    ChatEngine engine = new SyntheticChatEngine(SyntheticChatEngine.LatencyProfile.NPU,
+                            cMaxResponseTokens, cSyntheticContextSize, 0);
+                    engine.load();
+                    Log.i("ChatApp", "Using synthetic engine.");
+                    return engine;
+                }
+                // Load Model, or re-use it if it is still loaded from a previous conversation
+                GenieConfigBuilder config = GenieConfigBuilder.forModelBundle(modelDir, dialogType, htpExtensionsDir)
+                        .setAllowAsyncInit(cAllowAsyncInit);
+                deviceProfile.applyTo(config);
+                memoryProfile.applyTo(config);
+                String configPath = config.build(new File(getCacheDir(), GenieConfigBuilder.cRenderedConfigDirName))
+                        .getPath();
+                GenieWrapper genieWrapper = ModelManager.getInstance().acquire(modelDir, dialogType, configPath,
+                        prefixCacheDir);
+                Log.i("ChatApp", modelName + " Loaded (" + dialogType + ", " + memoryProfile + "): "
+                        + ModelManager.getInstance().getLoadStats());
+                return genieWrapper;
+            }, (state, engine) -> runOnUiThread(() -> onEngineLoaded(state, engine)));
 
             // Get response from Bot once user message is sent
             sendUserMsgButton.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
 
-                    if (userMsg.getTextSize() != 0) {
-                        String userInputMsg = userMsg.getText().toString();
-                        // Reset user message box
-                        userMsg.setText("");
-
-                        // Insert user message in the conversation
-                        int start = adapter.getItemCount();
-                        adapter.addMessage(new ChatMessage(userInputMsg, MessageSender.USER));
-                        adapter.addMessage(new ChatMessage("", MessageSender.BOT));
-                        adapter.notifyItemRangeInserted(start, 2);
-
-                        int botResponseMsgIndex = adapter.getItemCount() - 1;
-                        recyclerView.smoothScrollToPosition(botResponseMsgIndex);
-
-                        ExecutorService service = Executors.newSingleThreadExecutor();
-                        service.execute(new Runnable() {
-                            @Override
-                            public void run() {
-                                genieWrapper.getResponseForPrompt(userInputMsg, new StringCallback() {
-                                    @Override
-                                    public void onNewString(String response) {
-                                        runOnUiThread(() -> {
-                                            // Update the last item in the adapter
-                                            adapter.updateBotMessage(response);
-                                            adapter.notifyItemChanged(botResponseMsgIndex);
-
-                                            RecyclerView.LayoutManager lm = recyclerView.getLayoutManager();
-                                            if (lm instanceof LinearLayoutManager) {
-                                                LinearLayoutManager layoutManager = (LinearLayoutManager) lm;
-                                                int lastVisible = layoutManager.findLastVisibleItemPosition();
-
-                                                if (lastVisible == messages.size() - 1) {
-                                                    recyclerView.scrollToPosition(messages.size() - 1);
-                                                }
-                                            }
-                                        });
-                                    }
-                                });
-                            }
-                        });
-
+                    String userInputMsg = userMsg.getText().toString();
+                    if (userInputMsg.isEmpty()) {
+                        // Sending an empty message while the bot is responding stops the response.
+                        if (inferenceQueue.isBusy()) {
+                            inferenceQueue.cancelAll();
+                        }
+                        return;
                     }
+                    // Reset user message box
+                    userMsg.setText("");
+
+                    // Insert user message in the conversation
+                    adapter.addMessage(new ChatMessage(userInputMsg, MessageSender.USER));
+                    adapter.notifyItemInserted(adapter.getItemCount() - 1);
+                    recyclerView.smoothScrollToPosition(adapter.getItemCount() - 1);
+
+                    // Queue the prompt. The bot message is added once the response starts streaming.
+                    inferenceQueue.submit(userInputMsg, new BotResponse());
                 }
             });
 
@@ -133,4 +259,192 @@ public class Conversation extends AppCompatActivity {
             finish();
         }
     }
+
+    /**
+     * onEngineLoaded: Starts the inference queue on the loaded engine and enables sending, or exits if loading failed
+     */
+    private void onEngineLoaded(ChatEngineLoader.State state, ChatEngine engine) {
+        if (isDestroyed()) {
+            // A loaded model stays with ModelManager, for the next conversation.
+            return;
+        }
+        if (state != ChatEngineLoader.State.READY) {
+            Toast.makeText(this, "Failed to load model. Exiting app.", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        Log.i("ChatApp", "Chat engine ready after " + engineLoader.getLoadNanos() / 1_000_000L + " ms.");
+        draftLength = engine instanceof GenieWrapper ? ((GenieWrapper) engine).getDraftLength() : 0;
+
+        // All prompts run in order on the queue's inference thread, which first prefills the system prompt.
+        // Responses are capped so the context window manager can always keep room for them.
+        sessions.attach(engine, cMaxResponseTokens, cSummarizeEvictedTurns);
+        inferenceQueue = new InferenceQueue(engine, new GenerationLimits(cMaxResponseTokens, 0),
+                sessions.getSelected().getContextWindowManager());
+        // The reset dialog holds no conversation: restores the shown one's saved dialog, or prefills its turns again.
+        sessions.switchTo(sessions.getSelected(), inferenceQueue);
+        setModelLoading(false);
+    }
+
+    /**
+     * initSessionBar: Lists open conversations, and lets the user start new ones up to cMaxSessions
+     */
+    private void initSessionBar() {
+        sessionSpinner = findViewById(R.id.session_spinner);
+        sessionAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item,
+                new ArrayList<>(sessions.getSessions()));
+        sessionAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        sessionSpinner.setAdapter(sessionAdapter);
+        sessionSpinner.setSelection(sessionAdapter.getPosition(sessions.getSelected()));
+        sessionSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                ChatSession session = sessionAdapter.getItem(position);
+                if (session != sessions.getSelected()) {
+                    selectSession(session);
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+
+        findViewById(R.id.new_chat_button).setOnClickListener(view -> {
+            if (sessions.getSessions().size() >= cMaxSessions) {
+                Toast.makeText(this, "Up to " + cMaxSessions + " chats can be open.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            ChatSession session;
+            try {
+                session = sessions.createSession();
+            } catch (IOException e) {
+                Log.e("ChatApp", "Error creating chat session: " + e.toString());
+                Toast.makeText(this, "Failed to create a new chat.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            sessionAdapter.add(session);
+            // Selecting it switches to it.
+            sessionSpinner.setSelection(sessionAdapter.getPosition(session));
+        });
+    }
+
+    /**
+     * selectSession: Shows provided conversation and switches the model's dialog to it.
+     * Prompts of the previous conversation that are still waiting or generating are cancelled.
+     */
+    private void selectSession(ChatSession session) {
+        if (inferenceQueue == null) {
+            // The dialog is switched once the model is loaded.
+            sessions.select(session);
+        } else {
+            inferenceQueue.cancelAll();
+            sessions.switchTo(session, inferenceQueue);
+        }
+        showSession(session);
+    }
+
+    /**
+     * showSession: Shows the messages of provided conversation
+     */
+    private void showSession(ChatSession session) {
+        if (adapter != null) {
+            Log.i("ChatApp", adapter.getBindTimeStats().toString());
+        }
+        adapter = new Message_RecyclerViewAdapter(this, session.getHistory());
+        recyclerView.setAdapter(adapter);
+        // The welcome message shows while the model loads; once loaded, the system prompt is prefilled while the
+        // user types the first prompt.
+        if (adapter.getItemCount() == 0) {
+            adapter.addMessage(new ChatMessage(cWelcomeMessage, MessageSender.BOT));
+        } else {
+            recyclerView.scrollToPosition(adapter.getItemCount() - 1);
+        }
+    }
+
+    /**
+     * setModelLoading: Shows the loading indicator and blocks sending while the model loads
+     */
+    private void setModelLoading(boolean loading) {
+        findViewById(R.id.model_loading_progress).setVisibility(loading ? View.VISIBLE : View.GONE);
+        sendUserMsgButton.setEnabled(!loading);
+        userMsg.setHint(loading ? R.string.loading_model : R.string.user_hint_msg);
+    }
+
+    /**
+     * openChatSessions: Opens the open conversations and selects the one to show
+     *
+     * @param savedInstanceState if not null, keeps conversations persisted before the activity was re-created;
+     *                           otherwise starts with one empty conversation
+     */
+    private ChatSessionManager openChatSessions(Bundle savedInstanceState) throws IOException {
+        ChatSessionManager manager = new ChatSessionManager(new File(getFilesDir(), cChatHistoryDirName),
+                new File(getCacheDir(), cChatSessionDirName), savedInstanceState != null);
+        ChatSession selected = savedInstanceState == null ? null
+                : manager.getSession(savedInstanceState.getInt(cSelectedSessionKey, -1));
+        if (selected == null) {
+            selected = manager.getSessions().isEmpty() ? manager.createSession() : manager.getSessions().get(0);
+        }
+        manager.select(selected);
+        for (ChatSession session : manager.getSessions()) {
+            if (session.getHistory().size() > 0) {
+                Log.i("ChatApp", "Restored " + session.getHistory().size() + " messages of " + session + ".");
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * createGenerationStatsLog: Creates the stats log, tagging every line with device, model, dialog type, HTP config,
+     * device profile and memory profile
+     */
+    private GenerationStatsLog createGenerationStatsLog(String modelName, DialogType dialogType, String htpConfigPath,
+                                                        DeviceProfile deviceProfile, MemoryProfile memoryProfile) {
+        JSONObject metadata = new JSONObject();
+        try {
+            metadata.put("socModel", android.os.Build.SOC_MODEL);
+            metadata.put("model", modelName);
+            metadata.put("dialogType", dialogType.name());
+            metadata.put("htpConfig", new File(htpConfigPath).getName());
+            metadata.put("deviceProfile", deviceProfile.toJson());
+            metadata.put("memoryProfile", memoryProfile.name());
+        } catch (JSONException e) {
+            Log.w("ChatApp", "Failed to create generation stats metadata: " + e.getMessage());
+        }
+        return new GenerationStatsLog(new File(getExternalFilesDir(null), cGenerationStatsLogName), metadata);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (sessions != null) {
+            outState.putInt(cSelectedSessionKey, sessions.getSelected().getId());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (inferenceQueue != null) {
+            if (!isFinishing()) {
+                // Keep the dialog for the re-created activity; it must be saved before the model is reset again.
+                sessions.saveActive(inferenceQueue);
+            }
+            inferenceQueue.shutdown();
+            try {
+                if (!isFinishing() && !inferenceQueue.awaitTermination(cSaveDialogTimeoutMillis)) {
+                    Log.w("ChatApp", "Timed out saving the dialog of " + sessions.getSelected() + ".");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (adapter != null) {
+            Log.i("ChatApp", adapter.getBindTimeStats().toString());
+        }
+        if (sessions != null) {
+            // Conversations end when the user leaves them; they are only kept while the activity is re-created.
+            sessions.close(isFinishing());
+        }
+        super.onDestroy();
+    }
 }
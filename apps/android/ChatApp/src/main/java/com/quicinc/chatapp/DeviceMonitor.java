@@ -0,0 +1,73 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * DeviceMonitor: LlmBenchmark.Monitor backed by procfs and PowerManager
+ *
+ *  - Peak memory is the process resident set high-water mark (VmHWM in /proc/self/status).
+ *    Writing 5 to /proc/self/clear_refs resets it; kernels that do not allow this keep a process-lifetime peak.
+ *  - Thermal status and headroom come from PowerManager.
+ */
+public class DeviceMonitor implements LlmBenchmark.Monitor {
+    private static final String TAG = "ChatApp";
+    private static final String cProcStatus = "/proc/self/status";
+    private static final String cProcClearRefs = "/proc/self/clear_refs";
+    // Forecast horizon for thermal headroom.
+    private static final int cThermalHeadroomForecastSeconds = 10;
+
+    private final PowerManager mPowerManager;
+
+    public DeviceMonitor(Context context) {
+        mPowerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    @Override
+    public boolean resetPeakMemory() {
+        try (Writer writer = new FileWriter(cProcClearRefs)) {
+            writer.write("5");
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to reset peak memory: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public long getPeakMemoryBytes() {
+        try (BufferedReader reader = new BufferedReader(new FileReader(cProcStatus))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // e.g. "VmHWM:   123456 kB"
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Failed to read peak memory: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    @Override
+    public int getThermalStatus() {
+        return mPowerManager.getCurrentThermalStatus();
+    }
+
+    @Override
+    public float getThermalHeadroom() {
+        return mPowerManager.getThermalHeadroom(cThermalHeadroomForecastSeconds);
+    }
+}
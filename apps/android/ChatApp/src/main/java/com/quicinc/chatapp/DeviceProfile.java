@@ -0,0 +1,268 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * DeviceProfile: HTP extension config and Genie engine CPU settings for the device
+ *
+ *  - Known SoC families use the settings the bundled configs were tuned with.
+ *  - Other SoCs get the generic HTP config (no SoC model or DSP arch, so QNN detects them) and settings derived from
+ *    the CPU topology in /sys/devices/system/cpu: threads pinned to the fastest cores, without polling.
+ *  - applyTo sets the profile's settings on the Genie config rendered by GenieConfigBuilder.
+ */
+public class DeviceProfile {
+
+    /**
+     * SocFamily: Tuned settings for SoCs whose model starts with the provided prefix
+     */
+    private static class SocFamily {
+        final String mSocModelPrefix;
+        final String mHtpConfigName;
+        final int mNumThreads;
+        final long mCpuMask;
+        final boolean mPoll;
+
+        SocFamily(String socModelPrefix, String htpConfigName, int numThreads, long cpuMask, boolean poll) {
+            mSocModelPrefix = socModelPrefix;
+            mHtpConfigName = htpConfigName;
+            mNumThreads = numThreads;
+            mCpuMask = cpuMask;
+            mPoll = poll;
+        }
+    }
+
+    public static final String cGenericHtpConfigName = "generic.json";
+    public static final File cCpuSysDir = new File("/sys/devices/system/cpu");
+    private static final SocFamily[] cSocFamilies = {
+            new SocFamily("SM8750", "qualcomm-snapdragon-8-elite.json", 3, 0xe0, true),
+            new SocFamily("SM8650", "qualcomm-snapdragon-8-gen3.json", 3, 0xe0, true),
+            new SocFamily("QCS8550", "qualcomm-snapdragon-8-gen2.json", 3, 0xe0, true),
+    };
+    // Genie engine threads mostly feed the NPU; more rarely help.
+    private static final int cMaxThreads = 3;
+
+    private final String mName;
+    private final String mSocModel;
+    private final String mHtpConfigName;
+    private final int mNumThreads;
+    private final long mCpuMask;
+    private final boolean mPoll;
+    private final boolean mGeneric;
+    // Max frequency of every core in kHz, 0 if unknown.
+    private final long[] mCoreMaxFrequencies;
+
+    private DeviceProfile(String name, String socModel, String htpConfigName, int numThreads, long cpuMask,
+                          boolean poll, boolean generic, long[] coreMaxFrequencies) {
+        mName = name;
+        mSocModel = socModel;
+        mHtpConfigName = htpConfigName;
+        mNumThreads = numThreads;
+        mCpuMask = cpuMask;
+        mPoll = poll;
+        mGeneric = generic;
+        mCoreMaxFrequencies = coreMaxFrequencies;
+    }
+
+    /**
+     * resolve: Returns the profile for provided SoC, falling back to a generic profile fitted to the CPU topology
+     *
+     * @param socModel  SoC model, e.g. Build.SOC_MODEL
+     * @param cpuSysDir CPU sysfs directory, normally cCpuSysDir
+     */
+    public static DeviceProfile resolve(String socModel, File cpuSysDir) {
+        long[] frequencies = readCoreMaxFrequencies(cpuSysDir);
+        for (SocFamily family : cSocFamilies) {
+            if (socModel.startsWith(family.mSocModelPrefix)) {
+                return new DeviceProfile("tuned", socModel, family.mHtpConfigName, family.mNumThreads,
+                        family.mCpuMask, family.mPoll, false, frequencies);
+            }
+        }
+        int numThreads = Math.min(cMaxThreads, countPerformanceCores(frequencies));
+        return new DeviceProfile("topology", socModel, cGenericHtpConfigName, numThreads,
+                getFastestCoresMask(frequencies, numThreads), false, true, frequencies);
+    }
+
+    /**
+     * fromJson: Reads a profile written by toJson
+     */
+    public static DeviceProfile fromJson(String json) throws JSONException {
+        JSONObject object = new JSONObject(json);
+        JSONArray frequencies = object.getJSONArray("coreMaxFrequencies");
+        long[] coreMaxFrequencies = new long[frequencies.length()];
+        for (int i = 0; i < coreMaxFrequencies.length; ++i) {
+            coreMaxFrequencies[i] = frequencies.getLong(i);
+        }
+        return new DeviceProfile(object.getString("name"), object.getString("socModel"),
+                object.getString("htpConfig"), object.getInt("nThreads"),
+                Long.decode(object.getString("cpuMask")), object.getBoolean("poll"), object.getBoolean("generic"),
+                coreMaxFrequencies);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getHtpConfigName() {
+        return mHtpConfigName;
+    }
+
+    public int getNumThreads() {
+        return mNumThreads;
+    }
+
+    public long getCpuMask() {
+        return mCpuMask;
+    }
+
+    public boolean isPoll() {
+        return mPoll;
+    }
+
+    /**
+     * isGeneric: Returns true if the SoC is not a known family, so settings are derived from the CPU topology
+     */
+    public boolean isGeneric() {
+        return mGeneric;
+    }
+
+    /**
+     * getTuningCandidates: Returns this profile followed by variations of its engine settings, to benchmark on device
+     *  - polling toggled
+     *  - threads pinned to the fastest cores, if that differs from this profile's mask
+     *  - one thread fewer and one more, pinned to the fastest cores
+     */
+    public List<DeviceProfile> getTuningCandidates() {
+        List<DeviceProfile> candidates = new ArrayList<>();
+        candidates.add(this);
+        candidates.add(withSettings(mPoll ? "poll off" : "poll on", mNumThreads, mCpuMask, !mPoll));
+        long topologyMask = getFastestCoresMask(mCoreMaxFrequencies, mNumThreads);
+        if (topologyMask != mCpuMask) {
+            candidates.add(withSettings("topology", mNumThreads, topologyMask, mPoll));
+        }
+        if (mNumThreads > 1) {
+            candidates.add(withSettings("threads " + (mNumThreads - 1), mNumThreads - 1,
+                    getFastestCoresMask(mCoreMaxFrequencies, mNumThreads - 1), mPoll));
+        }
+        if (mNumThreads < mCoreMaxFrequencies.length) {
+            candidates.add(withSettings("threads " + (mNumThreads + 1), mNumThreads + 1,
+                    getFastestCoresMask(mCoreMaxFrequencies, mNumThreads + 1), mPoll));
+        }
+        return candidates;
+    }
+
+    /**
+     * applyTo: Sets this profile's engine threads, CPU mask and polling on provided config builder
+     */
+    public GenieConfigBuilder applyTo(GenieConfigBuilder config) {
+        return config.setNumThreads(mNumThreads).setCpuMask(mCpuMask).setPoll(mPoll);
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("name", mName);
+        json.put("socModel", mSocModel);
+        json.put("htpConfig", mHtpConfigName);
+        json.put("nThreads", mNumThreads);
+        json.put("cpuMask", GenieConfigBuilder.formatCpuMask(mCpuMask));
+        json.put("poll", mPoll);
+        json.put("generic", mGeneric);
+        JSONArray frequencies = new JSONArray();
+        for (long frequency : mCoreMaxFrequencies) {
+            frequencies.put(frequency);
+        }
+        json.put("coreMaxFrequencies", frequencies);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %s: htp %s, %d threads, cpu mask %s, poll %b", mSocModel, mName,
+                mHtpConfigName, mNumThreads, GenieConfigBuilder.formatCpuMask(mCpuMask), mPoll);
+    }
+
+    private DeviceProfile withSettings(String name, int numThreads, long cpuMask, boolean poll) {
+        return new DeviceProfile(name, mSocModel, mHtpConfigName, numThreads, cpuMask, poll, mGeneric,
+                mCoreMaxFrequencies);
+    }
+
+    /**
+     * readCoreMaxFrequencies: Reads the max frequency of every core, indexed by core number
+     *  - Cores whose cpufreq is not readable get 0; if no core is listed, every available processor gets 0
+     */
+    static long[] readCoreMaxFrequencies(File cpuSysDir) {
+        String[] names = cpuSysDir.list((dir, name) -> name.matches("cpu\\d+"));
+        int numCores = 0;
+        if (names != null) {
+            for (String name : names) {
+                numCores = Math.max(numCores, Integer.parseInt(name.substring(3)) + 1);
+            }
+        }
+        if (numCores == 0) {
+            return new long[Runtime.getRuntime().availableProcessors()];
+        }
+        long[] frequencies = new long[numCores];
+        for (int core = 0; core < numCores; ++core) {
+            File maxFrequency = new File(cpuSysDir, "cpu" + core + "/cpufreq/cpuinfo_max_freq");
+            try {
+                frequencies[core] = Long.parseLong(
+                        new String(Files.readAllBytes(maxFrequency.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                frequencies[core] = 0;
+            }
+        }
+        return frequencies;
+    }
+
+    /**
+     * countPerformanceCores: Counts cores faster than the slowest cluster, or half the cores with only one cluster
+     */
+    static int countPerformanceCores(long[] frequencies) {
+        long slowest = Long.MAX_VALUE;
+        for (long frequency : frequencies) {
+            if (frequency > 0) {
+                slowest = Math.min(slowest, frequency);
+            }
+        }
+        int count = 0;
+        for (long frequency : frequencies) {
+            if (frequency > slowest) {
+                count++;
+            }
+        }
+        return count > 0 ? count : Math.max(1, frequencies.length / 2);
+    }
+
+    /**
+     * getFastestCoresMask: Returns the affinity mask of the provided number of fastest cores
+     *  - Ties go to the higher-numbered core, as Android numbers performance cores last
+     */
+    static long getFastestCoresMask(long[] frequencies, int numCores) {
+        Integer[] cores = new Integer[frequencies.length];
+        for (int i = 0; i < cores.length; ++i) {
+            cores[i] = i;
+        }
+        Arrays.sort(cores, Comparator.<Integer>comparingLong(core -> frequencies[core])
+                .thenComparingInt(core -> core).reversed());
+        long mask = 0;
+        for (int i = 0; i < Math.min(numCores, cores.length); ++i) {
+            mask |= 1L << cores[i];
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,32 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+/**
+ * DialogType: Genie dialog configurations a model bundle can provide
+ */
+public enum DialogType {
+    // Target model only.
+    BASIC("genie_config.json"),
+    // Speculative decoding: a small draft model proposes tokens that the target model verifies in one step.
+    // Draft model binaries go in the "draft" subdirectory of the model bundle.
+    SPECULATIVE("genie_config_spd.json");
+
+    // Subdirectory of the model bundle holding draft model binaries.
+    public static final String cDraftModelDirName = "draft";
+
+    private final String mConfigName;
+
+    DialogType(String configName) {
+        mConfigName = configName;
+    }
+
+    /**
+     * @return Genie config file of this dialog type, in the model bundle
+     */
+    public String getConfigName() {
+        return mConfigName;
+    }
+}
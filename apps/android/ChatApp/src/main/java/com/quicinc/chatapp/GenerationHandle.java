@@ -0,0 +1,122 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * GenerationHandle: Handle to a response generating asynchronously (see GenieWrapper.generate)
+ *
+ * Tokens stream to the callback passed to generate; the handle cancels generation and waits for it to stop.
+ */
+public class GenerationHandle {
+    private final ChatEngine mEngine;
+    private final StringCallback mCallback;
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private volatile boolean mCancelled = false;
+    private volatile boolean mRunning = false;
+    private volatile StopReason mStopReason;
+    private volatile GenerationStats mStats;
+    private volatile RuntimeException mError;
+
+    GenerationHandle(ChatEngine engine, StringCallback callback) {
+        mEngine = engine;
+        mCallback = callback;
+    }
+
+    /**
+     * run: Generates the response on the calling thread
+     */
+    void run(String prompt, GenerationLimits limits) {
+        // Publish mRunning before checking for cancellation, so a concurrent cancel() either
+        // sees it and cancels natively, or is seen here.
+        mRunning = true;
+        try {
+            if (mCancelled) {
+                mStopReason = StopReason.CANCELLED;
+                return;
+            }
+            mStats = mEngine.getResponseForPrompt(prompt, limits, token -> {
+                if (mCancelled) {
+                    // Cancelled in the window before the native query started; cancel again now that it is running.
+                    mEngine.cancel();
+                    return;
+                }
+                mCallback.onNewString(token);
+            });
+            mStopReason = mStats.getStopReason();
+            if (mCancelled) {
+                mStopReason = StopReason.CANCELLED;
+            }
+        } catch (RuntimeException e) {
+            mError = e;
+        } finally {
+            mRunning = false;
+            mDone.countDown();
+        }
+    }
+
+    /**
+     * cancel: Stops generation. No further tokens are delivered to the callback once generation has stopped.
+     */
+    public void cancel() {
+        mCancelled = true;
+        if (mRunning) {
+            mEngine.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * isDone: Returns true once generation has stopped, for any reason
+     */
+    public boolean isDone() {
+        return mDone.getCount() == 0;
+    }
+
+    /**
+     * await: Waits for generation to stop
+     *
+     * @return reason generation stopped
+     * @throws RuntimeException if generation failed
+     */
+    public StopReason await() throws InterruptedException {
+        mDone.await();
+        return getResult();
+    }
+
+    /**
+     * await: Waits up to the provided time for generation to stop
+     *
+     * @return reason generation stopped
+     * @throws TimeoutException if generation is still running
+     * @throws RuntimeException if generation failed
+     */
+    public StopReason await(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException("Response is still generating.");
+        }
+        return getResult();
+    }
+
+    /**
+     * getStats: Returns timings of the response, or null if generation has not finished or never started
+     */
+    public GenerationStats getStats() {
+        return mStats;
+    }
+
+    private StopReason getResult() {
+        if (mError != null) {
+            throw mError;
+        }
+        return mStopReason;
+    }
+}
@@ -0,0 +1,47 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+/**
+ * GenerationLimits: Limits that stop response generation early
+ *
+ * Limits are enforced natively: once one is hit Genie is signalled to abort, so no further tokens are decoded.
+ */
+public class GenerationLimits {
+    // No limits; generation runs until the model stops.
+    public static final GenerationLimits NONE = new GenerationLimits(0, 0);
+
+    private final int mMaxTokens;
+    private final long mTimeBudgetMillis;
+    private final String[] mStopStrings;
+
+    /**
+     * GenerationLimits
+     *
+     * @param maxTokens        maximum number of generated tokens. 0 for no limit.
+     * @param timeBudgetMillis maximum time of a query, including prefill, in milliseconds. 0 for no limit.
+     * @param stopStrings      generation stops as soon as any of these is generated. The stop string is not returned.
+     */
+    public GenerationLimits(int maxTokens, long timeBudgetMillis, String... stopStrings) {
+        if (maxTokens < 0 || timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Generation limits must not be negative.");
+        }
+        mMaxTokens = maxTokens;
+        mTimeBudgetMillis = timeBudgetMillis;
+        mStopStrings = stopStrings.clone();
+    }
+
+    public int getMaxTokens() {
+        return mMaxTokens;
+    }
+
+    public long getTimeBudgetMillis() {
+        return mTimeBudgetMillis;
+    }
+
+    public String[] getStopStrings() {
+        return mStopStrings.clone();
+    }
+}
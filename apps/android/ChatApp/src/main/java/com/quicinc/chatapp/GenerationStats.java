@@ -0,0 +1,159 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * GenerationStats: Performance of one generated response, from native timestamps
+ *
+ *  - prefill: query start to first token (time to first token)
+ *  - decode: first token to last token
+ *  - inter-token gap: time between consecutive tokens
+ *  - decode step: one model step; a gap below cStepGapNanos means the token came from the same step as the previous
+ *    one. With speculative decoding a step yields every accepted draft token plus one target token.
+ */
+public class GenerationStats {
+    // Tokens of one decode step are delivered back-to-back; a model step takes well over this.
+    static final long cStepGapNanos = 1_000_000L;
+
+    private final StopReason mStopReason;
+    private final int mNumTokens;
+    private final long mTotalNanos;
+    private final long mPrefillNanos;
+    private final long mDecodeNanos;
+    // Sorted ascending
+    private final long[] mInterTokenGapsNanos;
+    private final int mNumSteps;
+
+    private GenerationStats(StopReason stopReason, int numTokens, long totalNanos, long prefillNanos,
+                            long decodeNanos, long[] interTokenGapsNanos) {
+        mStopReason = stopReason;
+        mNumTokens = numTokens;
+        mTotalNanos = totalNanos;
+        mPrefillNanos = prefillNanos;
+        mDecodeNanos = decodeNanos;
+        mInterTokenGapsNanos = interTokenGapsNanos;
+        int numSteps = numTokens == 0 ? 0 : 1;
+        for (long gap : interTokenGapsNanos) {
+            if (gap >= cStepGapNanos) {
+                numSteps++;
+            }
+        }
+        mNumSteps = numSteps;
+    }
+
+    /**
+     * fromTimestamps: Computes stats from native query timestamps
+     *
+     * @param stopReason reason generation stopped
+     * @param timestampsNanos query start, query end, then the arrival of each generated token
+     * @return stats of the query
+     */
+    static GenerationStats fromTimestamps(StopReason stopReason, long[] timestampsNanos) {
+        long start = timestampsNanos[0];
+        long end = timestampsNanos[1];
+        int numTokens = timestampsNanos.length - 2;
+        if (numTokens == 0) {
+            return new GenerationStats(stopReason, 0, end - start, end - start, 0, new long[0]);
+        }
+
+        long firstToken = timestampsNanos[2];
+        long lastToken = timestampsNanos[timestampsNanos.length - 1];
+        long[] gaps = new long[numTokens - 1];
+        for (int i = 0; i < gaps.length; ++i) {
+            gaps[i] = timestampsNanos[i + 3] - timestampsNanos[i + 2];
+        }
+        Arrays.sort(gaps);
+        return new GenerationStats(stopReason, numTokens, end - start, firstToken - start, lastToken - firstToken, gaps);
+    }
+
+    public StopReason getStopReason() {
+        return mStopReason;
+    }
+
+    public int getNumTokens() {
+        return mNumTokens;
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos;
+    }
+
+    /**
+     * @return time to first token; the whole query if no token was generated
+     */
+    public long getPrefillNanos() {
+        return mPrefillNanos;
+    }
+
+    /**
+     * @return tokens per second after the first token, or 0 with fewer than two tokens
+     */
+    public double getDecodeTokensPerSecond() {
+        return mDecodeNanos == 0 ? 0 : (mNumTokens - 1) * 1e9 / mDecodeNanos;
+    }
+
+    /**
+     * getTokensPerStep: Returns the mean number of tokens generated per model step. 1 without speculative decoding;
+     * with it, the ratio by which speculation cuts the number of target model steps.
+     *
+     * @return tokens per step, or 0 if no token was generated
+     */
+    public double getTokensPerStep() {
+        return mNumSteps == 0 ? 0 : (double) mNumTokens / mNumSteps;
+    }
+
+    /**
+     * getAcceptanceRate: Estimates the fraction of draft tokens the target model accepted
+     *
+     * @param draftLength tokens the draft model proposes per step (see GenieWrapper.getDraftLength)
+     * @return acceptance rate in range [0, 1], or 0 without speculative decoding
+     */
+    public double getAcceptanceRate(int draftLength) {
+        if (draftLength <= 0 || mNumSteps == 0) {
+            return 0;
+        }
+        return Math.min(1.0, Math.max(0.0, (getTokensPerStep() - 1) / draftLength));
+    }
+
+    /**
+     * getInterTokenGapNanos: Returns the nearest-rank percentile of the time between consecutive tokens
+     *
+     * @param percentile Percentile in range [0, 100].
+     * @return gap in nanoseconds, or 0 with fewer than two tokens
+     */
+    public long getInterTokenGapNanos(double percentile) {
+        if (mInterTokenGapsNanos.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * mInterTokenGapsNanos.length);
+        return mInterTokenGapsNanos[Math.max(rank, 1) - 1];
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("stopReason", mStopReason.name());
+        json.put("numTokens", mNumTokens);
+        json.put("totalNs", mTotalNanos);
+        json.put("prefillNs", mPrefillNanos);
+        json.put("decodeNs", mDecodeNanos);
+        json.put("decodeTokensPerSecond", getDecodeTokensPerSecond());
+        json.put("interTokenGapP50Ns", getInterTokenGapNanos(50));
+        json.put("interTokenGapP99Ns", getInterTokenGapNanos(99));
+        json.put("tokensPerStep", getTokensPerStep());
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TTFT %.0f ms | %.1f tok/s | gap p50 %.0f ms, p99 %.0f ms | %d tokens",
+                mPrefillNanos / 1e6, getDecodeTokensPerSecond(),
+                getInterTokenGapNanos(50) / 1e6, getInterTokenGapNanos(99) / 1e6, mNumTokens);
+    }
+}
@@ -0,0 +1,62 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+/**
+ * GenerationStatsLog: Appends GenerationStats to a JSON lines file, one response per line
+ *
+ * Every line carries the same metadata (e.g. SoC model and HTP config), so logs from different devices
+ * and configs can be concatenated and compared.
+ */
+public class GenerationStatsLog {
+    private static final String TAG = "ChatApp";
+
+    private final File mFile;
+    private final JSONObject mMetadata;
+
+    /**
+     * GenerationStatsLog
+     *
+     * @param file     file to append to; created if missing
+     * @param metadata fields added to every line
+     */
+    public GenerationStatsLog(File file, JSONObject metadata) {
+        mFile = file;
+        mMetadata = metadata;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * append: Appends one line for provided stats. Errors are logged, not thrown.
+     */
+    public synchronized void append(GenerationStats stats) {
+        try (Writer writer = new FileWriter(mFile, true)) {
+            JSONObject line = stats.toJson();
+            line.put("timestampMs", System.currentTimeMillis());
+            for (Iterator<String> keys = mMetadata.keys(); keys.hasNext(); ) {
+                String key = keys.next();
+                line.put(key, mMetadata.get(key));
+            }
+            writer.write(line.toString());
+            writer.write('\n');
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to write generation stats: " + e.getMessage());
+        }
+    }
+}
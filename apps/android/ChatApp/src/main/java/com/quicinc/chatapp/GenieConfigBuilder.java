@@ -0,0 +1,360 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * GenieConfigBuilder: Renders the Genie config loaded by GenieWrapper from a template in the model bundle
+ *
+ *  - Placeholders in string values (<models_path>, <htp_backend_ext_path>, <tokenizer_path>) are resolved in one
+ *    walk over the parsed config.
+ *  - Structured overrides replace template values: sampler, context size, and engine threads, CPU mask, polling,
+ *    mmap use and budget, spill-fill buffer size and async init. Engine overrides apply to every engine of the
+ *    dialog, e.g. target and draft. Unset overrides keep the template's value.
+ *  - build() caches the rendered config by template content and parameters, so loading the same parameters again
+ *    reuses it, and runs can tune engine parameters without editing assets.
+ */
+public class GenieConfigBuilder {
+    // Directory of rendered Genie configs, in the app cache dir.
+    public static final String cRenderedConfigDirName = "genie_config";
+    public static final String cTokenizerFileName = "tokenizer.json";
+
+    private final File mTemplate;
+    // Placeholder name (without angle brackets) to value.
+    private final Map<String, String> mPlaceholders = new TreeMap<>();
+    private Integer mContextSize;
+    private Integer mSamplerSeed;
+    private Double mSamplerTemperature;
+    private Integer mSamplerTopK;
+    private Double mSamplerTopP;
+    private Integer mNumThreads;
+    private Long mCpuMask;
+    private Boolean mPoll;
+    private Boolean mUseMmap;
+    private Long mMmapBudget;
+    private Long mSpillFillBufferSize;
+    private Boolean mAllowAsyncInit;
+
+    /**
+     * GenieConfigBuilder
+     *
+     * @param template Genie config with placeholders, e.g. genie_config.json of the model bundle
+     */
+    public GenieConfigBuilder(File template) {
+        mTemplate = template;
+    }
+
+    /**
+     * forModelBundle: Returns a builder for the config of provided dialog type, with every path placeholder resolved
+     *
+     * @param modelDirPath  directory with Genie configs, tokenizer and model binaries
+     * @param dialogType    dialog configuration of the bundle to render
+     * @param htpConfigPath HTP backend extension config to use
+     */
+    public static GenieConfigBuilder forModelBundle(String modelDirPath, DialogType dialogType, String htpConfigPath) {
+        return new GenieConfigBuilder(new File(modelDirPath, dialogType.getConfigName()))
+                .setPlaceholder("models_path", modelDirPath)
+                .setPlaceholder("htp_backend_ext_path", htpConfigPath)
+                .setPlaceholder("tokenizer_path", Paths.get(modelDirPath, cTokenizerFileName).toString());
+    }
+
+    /**
+     * setPlaceholder: Replaces <name> in every string value of the config with provided value
+     */
+    public GenieConfigBuilder setPlaceholder(String name, String value) {
+        mPlaceholders.put(name, value);
+        return this;
+    }
+
+    public GenieConfigBuilder setContextSize(int contextSize) {
+        mContextSize = contextSize;
+        return this;
+    }
+
+    /**
+     * setSampler: Sets every sampler value of the config
+     */
+    public GenieConfigBuilder setSampler(SamplerConfig sampler) {
+        return setSamplerSeed(sampler.getSeed()).setSamplerTemperature(sampler.getTemperature())
+                .setSamplerTopK(sampler.getTopK()).setSamplerTopP(sampler.getTopP());
+    }
+
+    public GenieConfigBuilder setSamplerSeed(int seed) {
+        mSamplerSeed = seed;
+        return this;
+    }
+
+    public GenieConfigBuilder setSamplerTemperature(double temperature) {
+        mSamplerTemperature = temperature;
+        return this;
+    }
+
+    public GenieConfigBuilder setSamplerTopK(int topK) {
+        mSamplerTopK = topK;
+        return this;
+    }
+
+    public GenieConfigBuilder setSamplerTopP(double topP) {
+        mSamplerTopP = topP;
+        return this;
+    }
+
+    public GenieConfigBuilder setNumThreads(int numThreads) {
+        mNumThreads = numThreads;
+        return this;
+    }
+
+    /**
+     * setCpuMask: Sets the affinity mask of the engine threads, bit n for core n
+     */
+    public GenieConfigBuilder setCpuMask(long cpuMask) {
+        mCpuMask = cpuMask;
+        return this;
+    }
+
+    /**
+     * setPoll: Sets whether engine threads busy-wait for the NPU instead of sleeping
+     */
+    public GenieConfigBuilder setPoll(boolean poll) {
+        mPoll = poll;
+        return this;
+    }
+
+    /**
+     * setUseMmap: Sets whether the QnnHtp backend memory-maps context binaries instead of reading them into memory
+     */
+    public GenieConfigBuilder setUseMmap(boolean useMmap) {
+        mUseMmap = useMmap;
+        return this;
+    }
+
+    /**
+     * setMmapBudget: Sets the memory-mapped context binary budget of the QnnHtp backend in MB, 0 for no limit
+     */
+    public GenieConfigBuilder setMmapBudget(long mmapBudgetMb) {
+        mMmapBudget = mmapBudgetMb;
+        return this;
+    }
+
+    /**
+     * setSpillFillBufferSize: Sets the spill-fill buffer of the QnnHtp backend shared by all graphs in bytes, 0 for
+     * one buffer per graph
+     */
+    public GenieConfigBuilder setSpillFillBufferSize(long spillFillBufferBytes) {
+        mSpillFillBufferSize = spillFillBufferBytes;
+        return this;
+    }
+
+    /**
+     * setAllowAsyncInit: Sets whether the QnnHtp backend may initialize context binaries in parallel while loading
+     */
+    public GenieConfigBuilder setAllowAsyncInit(boolean allowAsyncInit) {
+        mAllowAsyncInit = allowAsyncInit;
+        return this;
+    }
+
+    /**
+     * build: Returns the rendered config, rendering it if it is not cached yet
+     *  - Older renders of the same template are deleted, so the cache holds one config per template
+     *
+     * @param cacheDir directory to keep rendered configs in
+     * @return rendered config file
+     */
+    public File build(File cacheDir) throws IOException, JSONException {
+        byte[] template = Files.readAllBytes(mTemplate.toPath());
+        String baseName = mTemplate.getName().replaceFirst("\\.json$", "");
+        File rendered = new File(cacheDir, baseName + "-" + hash(template, getParametersKey()) + ".json");
+        if (rendered.isFile()) {
+            return rendered;
+        }
+
+        String config = render(new String(template, StandardCharsets.UTF_8));
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("Failed to create " + cacheDir);
+        }
+        File[] stale = cacheDir.listFiles((dir, name) -> name.startsWith(baseName + "-") && name.endsWith(".json"));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        File temp = new File(cacheDir, rendered.getName() + ".tmp");
+        Files.write(temp.toPath(), config.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), rendered.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rendered;
+    }
+
+    /**
+     * render: Returns provided template with placeholders resolved and overrides applied
+     */
+    String render(String template) throws JSONException {
+        JSONObject config = new JSONObject(template);
+        resolvePlaceholders(config);
+
+        JSONObject dialog = config.getJSONObject("dialog");
+        if (mContextSize != null) {
+            dialog.getJSONObject("context").put("size", mContextSize.intValue());
+        }
+        if (mSamplerSeed != null || mSamplerTemperature != null || mSamplerTopK != null || mSamplerTopP != null) {
+            JSONObject sampler = dialog.optJSONObject("sampler");
+            if (sampler == null) {
+                sampler = new JSONObject().put("version", 1);
+                dialog.put("sampler", sampler);
+            }
+            if (mSamplerSeed != null) {
+                sampler.put("seed", mSamplerSeed.intValue());
+            }
+            if (mSamplerTemperature != null) {
+                sampler.put("temp", mSamplerTemperature.doubleValue());
+            }
+            if (mSamplerTopK != null) {
+                sampler.put("top-k", mSamplerTopK.intValue());
+            }
+            if (mSamplerTopP != null) {
+                sampler.put("top-p", mSamplerTopP.doubleValue());
+            }
+        }
+
+        Object engines = dialog.get("engine");
+        if (engines instanceof JSONArray) {
+            for (int i = 0; i < ((JSONArray) engines).length(); ++i) {
+                applyEngineOverrides(((JSONArray) engines).getJSONObject(i));
+            }
+        } else {
+            applyEngineOverrides((JSONObject) engines);
+        }
+        return config.toString(4);
+    }
+
+    private void applyEngineOverrides(JSONObject engine) throws JSONException {
+        if (mNumThreads != null) {
+            engine.put("n-threads", mNumThreads.intValue());
+        }
+        JSONObject htp = engine.getJSONObject("backend").optJSONObject("QnnHtp");
+        if (htp == null) {
+            return;
+        }
+        if (mPoll != null) {
+            htp.put("poll", mPoll.booleanValue());
+        }
+        if (mCpuMask != null) {
+            htp.put("cpu-mask", formatCpuMask(mCpuMask));
+        }
+        if (mUseMmap != null) {
+            htp.put("use-mmap", mUseMmap.booleanValue());
+        }
+        if (mMmapBudget != null) {
+            htp.put("mmap-budget", mMmapBudget.longValue());
+        }
+        if (mSpillFillBufferSize != null) {
+            htp.put("spill-fill-bufsize", mSpillFillBufferSize.longValue());
+        }
+        if (mAllowAsyncInit != null) {
+            htp.put("allow-async-init", mAllowAsyncInit.booleanValue());
+        }
+    }
+
+    /**
+     * resolvePlaceholders: Replaces placeholders in every string value of provided object or array
+     */
+    private void resolvePlaceholders(Object node) throws JSONException {
+        if (node instanceof JSONObject) {
+            JSONObject object = (JSONObject) node;
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = object.get(key);
+                if (value instanceof String) {
+                    object.put(key, resolvePlaceholders((String) value));
+                } else {
+                    resolvePlaceholders(value);
+                }
+            }
+        } else if (node instanceof JSONArray) {
+            JSONArray array = (JSONArray) node;
+            for (int i = 0; i < array.length(); ++i) {
+                Object value = array.get(i);
+                if (value instanceof String) {
+                    array.put(i, resolvePlaceholders((String) value));
+                } else {
+                    resolvePlaceholders(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * resolvePlaceholders: Replaces known <name> placeholders in provided string in one scan; others are kept
+     */
+    String resolvePlaceholders(String value) {
+        int open = value.indexOf('<');
+        if (open < 0) {
+            return value;
+        }
+        StringBuilder resolved = new StringBuilder(value.length());
+        int copied = 0;
+        while (open >= 0) {
+            int close = value.indexOf('>', open + 1);
+            if (close < 0) {
+                break;
+            }
+            String replacement = mPlaceholders.get(value.substring(open + 1, close));
+            if (replacement != null) {
+                resolved.append(value, copied, open).append(replacement);
+                copied = close + 1;
+                open = value.indexOf('<', copied);
+            } else {
+                open = value.indexOf('<', open + 1);
+            }
+        }
+        return resolved.append(value, copied, value.length()).toString();
+    }
+
+    /**
+     * getParametersKey: Identifies placeholders and overrides, to cache renders by
+     */
+    private String getParametersKey() {
+        return String.format(Locale.ROOT, "%s %s %s %s %s %s %s %s %s %s %s %s %s", mPlaceholders, mContextSize,
+                mSamplerSeed, mSamplerTemperature, mSamplerTopK, mSamplerTopP, mNumThreads,
+                mCpuMask == null ? null : formatCpuMask(mCpuMask), mPoll, mUseMmap, mMmapBudget, mSpillFillBufferSize,
+                mAllowAsyncInit);
+    }
+
+    static String formatCpuMask(long cpuMask) {
+        return "0x" + Long.toHexString(cpuMask);
+    }
+
+    private static String hash(byte[] template, String parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(template);
+            digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : Arrays.copyOf(digest.digest(), 8)) {
+                hex.append(String.format(Locale.ROOT, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
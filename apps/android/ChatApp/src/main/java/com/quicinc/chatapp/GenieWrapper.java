@@ -4,20 +4,155 @@
 // ---------------------------------------------------------------------
 package com.quicinc.chatapp;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * GenieWrapper: Class to connect JNI GenieWrapper and Java code
+ *
+ * Genie runs one query at a time: concurrent getResponseForPrompt / generate calls are serialized.
+ * The model is loaded by load() and freed by close(). If a GenieWrapper is never closed, it is freed once it becomes unreachable.
+ * Use ModelManager to share one loaded model across the app.
  */
-public class GenieWrapper {
-    long genieWrapperNativeHandle;
+public class GenieWrapper implements ChatEngine, AutoCloseable {
+
+    /**
+     * NativeModel: Owns the native handle. Must not reference GenieWrapper, so it can free the model once GenieWrapper is unreachable.
+     */
+    private static class NativeModel implements Runnable {
+        private long mHandle = 0;
+
+        synchronized boolean isLoaded() {
+            return mHandle != 0;
+        }
+
+        synchronized void set(long handle) {
+            mHandle = handle;
+        }
+
+        synchronized long get() {
+            if (mHandle == 0) {
+                throw new IllegalStateException("GenieWrapper is not loaded, or closed.");
+            }
+            return mHandle;
+        }
+
+        synchronized void cancel() {
+            if (mHandle != 0) {
+                GenieWrapper.cancel(mHandle);
+            }
+        }
+
+        /**
+         * getContextTokens: Holds the lock, so the model cannot be freed meanwhile; returns 0 if it is not loaded
+         */
+        synchronized int getContextTokens() {
+            return mHandle != 0 ? GenieWrapper.getContextTokens(mHandle) : 0;
+        }
+
+        synchronized int getContextSize() {
+            return mHandle != 0 ? GenieWrapper.getContextSize(mHandle) : 0;
+        }
+
+        /**
+         * run: Frees the model
+         */
+        @Override
+        public synchronized void run() {
+            if (mHandle != 0) {
+                freeModel(mHandle);
+                mHandle = 0;
+            }
+        }
+    }
+
+    // Bytes of response text shared with native code per query; see TokenRing.
+    private static final int cTokenRingCapacity = 4096;
+    // Text of one cycle of the tokens streamed by streamSyntheticTokens.
+    // Must match c_synthetic_tokens in GenieWrapper.cpp.
+    static final String cSyntheticTokenCycle = "Token \u00fc\ud83d\ude00 \u6f22\u5b57\n";
+    static final int cSyntheticTokensPerCycle = 6;
+
+    private final String mModelDirPath;
+    private final DialogType mDialogType;
+    private final String mConfigPath;
+    private final String mPrefixCacheDirPath;
+    private final NativeModel mNativeModel = new NativeModel();
+    private final NativeCleaner.Cleanable mCleanable;
+    private final Object mQueryLock = new Object();
+    // Receives response text of every query; only used while holding mQueryLock.
+    private final TokenRing mTokenRing = new TokenRing(cTokenRingCapacity);
+    private volatile GenerationStats mLastStats;
+    // Sampler requested by setSampler; null for the config's.
+    private volatile SamplerConfig mSampler;
+    // Sampler of the config and sampler the native dialog currently uses; null if the config does not set one.
+    private SamplerConfig mConfigSampler;
+    private SamplerConfig mAppliedSampler;
+    private int mDraftLength = 0;
+    // Runs responses requested via generate; created on first use.
+    private ExecutorService mGenerateExecutor;
+    private boolean mClosed = false;
 
     /**
-     * GenieWrapper: Loads model at provided path with provided htp config
+     * GenieWrapper: Creates a wrapper for the model at provided path with provided htp config. Call load() to load it.
      *
      * @param modelDirPath directory path on system pointing to model bundle
-     * @param htpConfigPath HTP config file to use
+     * @param dialogType dialog configuration of the bundle to load
+     * @param configPath Genie config of the dialog type with every placeholder resolved, rendered by GenieConfigBuilder
+     * @param prefixCacheDirPath directory to save the system prompt prefill in. Empty to disable.
+     *                           Every dialog type saves to its own subdirectory.
+     */
+    GenieWrapper(String modelDirPath, DialogType dialogType, String configPath, String prefixCacheDirPath) {
+        mModelDirPath = modelDirPath;
+        mDialogType = dialogType;
+        mConfigPath = configPath;
+        mPrefixCacheDirPath = prefixCacheDirPath.isEmpty() ? ""
+                : Paths.get(prefixCacheDirPath, dialogType.name().toLowerCase(Locale.ROOT)).toString();
+        mCleanable = NativeCleaner.register(this, mNativeModel);
+    }
+
+    /**
+     * load: Loads the model. The system prompt is prefilled by prefillSystemPrompt, or along with the first prompt.
+     */
+    @Override
+    public void load() {
+        synchronized (mQueryLock) {
+            synchronized (this) {
+                if (mClosed) {
+                    throw new IllegalStateException("GenieWrapper is closed.");
+                }
+            }
+            if (!mNativeModel.isLoaded()) {
+                JSONObject dialog = readDialogConfig();
+                mNativeModel.set(loadModel(mModelDirPath, mConfigPath, dialog.getJSONObject("context").optInt("size", 0),
+                        mPrefixCacheDirPath));
+                mDraftLength = mDialogType == DialogType.SPECULATIVE
+                        ? dialog.getJSONObject("spd").getInt("draft-len") : 0;
+                JSONObject sampler = dialog.optJSONObject("sampler");
+                mConfigSampler = sampler == null ? null : SamplerConfig.fromJson(sampler);
+                mAppliedSampler = mConfigSampler;
+            }
+        }
+    }
+
+    /**
+     * prefillSystemPrompt: Prefills the system prompt, or restores it from the prefix cache dir if it was saved for
+     * this model before. Does nothing if the dialog already holds it.
      */
-    GenieWrapper(String modelDirPath, String htpConfigPath) {
-        genieWrapperNativeHandle = loadModel(modelDirPath, htpConfigPath);
+    @Override
+    public void prefillSystemPrompt() {
+        synchronized (mQueryLock) {
+            prefillSystemPrompt(mNativeModel.get());
+        }
     }
 
     /**
@@ -27,39 +162,354 @@ public class GenieWrapper {
      * @param callback callback to tunnel each generated token to
      */
     public void getResponseForPrompt(String userInput, StringCallback callback) {
-        getResponseForPrompt(genieWrapperNativeHandle, userInput, callback);
+        getResponseForPrompt(userInput, GenerationLimits.NONE, callback);
+    }
+
+    /**
+     * getResponseForPrompt: Generates response for provided user input, stopping early once a limit is hit
+     *
+     * @param userInput user input to generate response for
+     * @param limits limits enforced natively while generating
+     * @param callback callback to tunnel each generated token to
+     * @return reason generation stopped, with timings of the response
+     */
+    @Override
+    public GenerationStats getResponseForPrompt(String userInput, GenerationLimits limits, StringCallback callback) {
+        synchronized (mQueryLock) {
+            long nativeHandle = mNativeModel.get();
+            applyRequestedSampler(nativeHandle);
+            mTokenRing.begin(callback);
+            StopReason stopReason;
+            try {
+                stopReason = StopReason.fromNative(getResponseForPrompt(nativeHandle, userInput,
+                        limits.getMaxTokens(), limits.getTimeBudgetMillis(), limits.getStopStrings(),
+                        mTokenRing.getBuffer(), mTokenRing));
+            } finally {
+                // Passes on text decoded before a failure, and releases the callback.
+                mTokenRing.finish();
+            }
+            mLastStats = GenerationStats.fromTimestamps(stopReason, getLastQueryTimestamps(nativeHandle));
+            return mLastStats;
+        }
+    }
+
+    /**
+     * streamSyntheticTokens: Streams tokens repeating cSyntheticTokenCycle through the native token transport, in
+     * one native call and without a model. Stresses ring wrap-around, UTF-8 characters split across tokens, holding
+     * back a possible stop string, and native local references over responses longer than any context.
+     *
+     * @param numTokens number of tokens to stream; cSyntheticTokensPerCycle tokens make up one cycle
+     * @param callback  receives the decoded text on the calling thread
+     */
+    static void streamSyntheticTokens(int numTokens, StringCallback callback) {
+        TokenRing ring = new TokenRing(cTokenRingCapacity);
+        ring.begin(callback);
+        try {
+            streamSyntheticTokens(numTokens, ring.getBuffer(), ring);
+        } finally {
+            ring.finish();
+        }
+    }
+
+    /**
+     * generate: Generates response for provided user input on a background thread
+     *
+     * @param userInput user input to generate response for
+     * @param limits limits enforced natively while generating
+     * @param callback callback to tunnel each generated token to. Called on the background thread.
+     * @return handle to cancel generation or wait for it to stop
+     */
+    public GenerationHandle generate(String userInput, GenerationLimits limits, StringCallback callback) {
+        GenerationHandle handle = new GenerationHandle(this, callback);
+        synchronized (this) {
+            if (mClosed) {
+                throw new IllegalStateException("GenieWrapper is closed.");
+            }
+            if (mGenerateExecutor == null) {
+                mGenerateExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "GenieWrapper"));
+            }
+            mGenerateExecutor.execute(() -> handle.run(userInput, limits));
+        }
+        return handle;
+    }
+
+    /**
+     * cancel: Stops the response currently being generated. Safe to call from any thread.
+     * getResponseForPrompt returns with StopReason.CANCELLED once the model has stopped.
+     */
+    @Override
+    public void cancel() {
+        mNativeModel.cancel();
+    }
+
+    /**
+     * saveDialog: Saves the conversation held by the dialog (KV cache and position) to provided directory, replacing
+     * its contents. Waits for a running query to finish.
+     */
+    @Override
+    public void saveDialog(String dirPath) {
+        synchronized (mQueryLock) {
+            saveDialog(mNativeModel.get(), dirPath);
+        }
+    }
+
+    /**
+     * restoreDialog: Replaces the conversation held by the dialog with one saved by saveDialog on the same model.
+     * Waits for a running query to finish.
+     *
+     * @return true if restored; false if nothing could be restored, in which case the dialog is reset
+     */
+    @Override
+    public boolean restoreDialog(String dirPath) {
+        synchronized (mQueryLock) {
+            return restoreDialog(mNativeModel.get(), dirPath);
+        }
+    }
+
+    /**
+     * appendTurn: Prefills a complete earlier exchange into the dialog without generating a response.
+     * Used to rebuild a conversation after reset().
+     *
+     * @param userPrompt user prompt of the exchange
+     * @param response bot response of the exchange
+     */
+    @Override
+    public void appendTurn(String userPrompt, String response) {
+        synchronized (mQueryLock) {
+            appendTurn(mNativeModel.get(), userPrompt, response);
+        }
+    }
+
+    /**
+     * getContextTokens: Returns the estimated number of tokens held by the dialog, or 0 if the model is not loaded or
+     * closed. Safe to call from any thread. Generated tokens are counted exactly; prompt tokens are over-estimated from
+     * their length.
+     */
+    @Override
+    public int getContextTokens() {
+        return mNativeModel.getContextTokens();
+    }
+
+    /**
+     * getContextSize: Returns the context size of the model in tokens, or 0 if the Genie config does not set it or
+     * the model is not loaded or closed. Safe to call from any thread.
+     */
+    @Override
+    public int getContextSize() {
+        return mNativeModel.getContextSize();
+    }
+
+    @Override
+    public void setSampler(SamplerConfig sampler) {
+        mSampler = sampler;
     }
 
     /**
-     * finalize: Free previously loaded model
+     * getSampler: Returns the sampler of following responses, or null if neither setSampler nor the config set one
+     */
+    public SamplerConfig getSampler() {
+        SamplerConfig sampler = mSampler;
+        if (sampler != null) {
+            return sampler;
+        }
+        synchronized (mQueryLock) {
+            return mConfigSampler;
+        }
+    }
+
+    @Override
+    public GenerationStats getLastStats() {
+        return mLastStats;
+    }
+
+    public DialogType getDialogType() {
+        return mDialogType;
+    }
+
+    /**
+     * getDraftLength: Returns the number of tokens the draft model proposes per step, or 0 without speculative decoding.
+     * Pass to GenerationStats.getAcceptanceRate.
+     */
+    public int getDraftLength() {
+        synchronized (mQueryLock) {
+            return mDraftLength;
+        }
+    }
+
+    /**
+     * reset: Clears the conversation so the next prompt starts a new dialog. Waits for a running query to finish.
+     * The saved system prompt prefill is restored, so the next prompt only prefills the user prompt.
+     */
+    @Override
+    public void reset() {
+        synchronized (mQueryLock) {
+            reset(mNativeModel.get());
+        }
+    }
+
+    /**
+     * close: Cancels the running query and frees the model once it has stopped. Safe to call more than once.
      */
     @Override
-    protected void finalize() {
-        freeModel(genieWrapperNativeHandle);
+    public void close() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            if (mGenerateExecutor != null) {
+                mGenerateExecutor.shutdown();
+            }
+        }
+        cancel();
+        synchronized (mQueryLock) {
+            mCleanable.clean();
+        }
+    }
+
+    /**
+     * applyRequestedSampler: Applies the requested sampler to the native dialog, if it is not applied yet.
+     * Must hold mQueryLock.
+     */
+    private void applyRequestedSampler(long nativeHandle) {
+        SamplerConfig sampler = mSampler != null ? mSampler : mConfigSampler;
+        if (sampler != null && !sampler.equals(mAppliedSampler)) {
+            applySampler(nativeHandle, sampler.getSeed(), (float) sampler.getTemperature(), sampler.getTopK(),
+                    (float) sampler.getTopP());
+            mAppliedSampler = sampler;
+        }
+    }
+
+    private JSONObject readDialogConfig() {
+        try {
+            String config = new String(Files.readAllBytes(Paths.get(mConfigPath)), StandardCharsets.UTF_8);
+            return new JSONObject(config).getJSONObject("dialog");
+        } catch (IOException | JSONException e) {
+            throw new IllegalArgumentException("Failed to read Genie config " + mConfigPath + ": " + e.getMessage(), e);
+        }
     }
 
     /**
      * loadModel: JNI method to load model using Genie C++ APIs
      *
      * @param modelDirPath directory path on system pointing to model bundle
-     * @param htpConfigPath HTP config file to use
+     * @param configPath Genie config file to load, with every placeholder resolved
+     * @param contextSize context size of the dialog in tokens, 0 if unknown
+     * @param prefixCacheDirPath directory to save the system prompt prefill in
      * @return pointer to Genie C++ Wrapper to generate future responses
      */
-    private native long loadModel(String modelDirPath, String htpConfigPath);
+    private static native long loadModel(String modelDirPath, String configPath, int contextSize,
+                                         String prefixCacheDirPath);
 
     /**
      * getResponseForPrompt: JNI method to generate response for provided user input
      *
      * @param nativeHandle native handle captured before with LoadModel
      * @param userInput user input to generate response for
-     * @param callback callback to tunnel each generated token to
+     * @param maxTokens maximum number of generated tokens, 0 for no limit
+     * @param timeBudgetMillis maximum query time in milliseconds, 0 for no limit
+     * @param stopStrings strings that stop generation
+     * @param ringBuffer direct buffer of ring, written with the response's UTF-8 bytes
+     * @param ring notified of every written range of ringBuffer
+     * @return native StopReason value
+     */
+    private static native int getResponseForPrompt(long nativeHandle, String userInput, int maxTokens,
+                                                   long timeBudgetMillis, String[] stopStrings, ByteBuffer ringBuffer,
+                                                   TokenRing ring);
+
+    /**
+     * streamSyntheticTokens: JNI method to stream synthetic tokens through the token transport
+     *
+     * @param numTokens number of tokens to stream
+     * @param ringBuffer direct buffer of ring
+     * @param ring notified of every written range of ringBuffer
+     */
+    private static native void streamSyntheticTokens(int numTokens, ByteBuffer ringBuffer, TokenRing ring);
+
+    /**
+     * applySampler: JNI method to replace the sampler of the dialog
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     * @param seed random seed
+     * @param temperature sampling temperature
+     * @param topK number of most likely tokens to sample from, 0 for no limit
+     * @param topP cumulative probability of the most likely tokens to sample from
+     */
+    private static native void applySampler(long nativeHandle, int seed, float temperature, int topK, float topP);
+
+    /**
+     * cancel: JNI method to cancel the response currently being generated
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     */
+    private static native void cancel(long nativeHandle);
+
+    /**
+     * reset: JNI method to reset the dialog
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     */
+    private static native void reset(long nativeHandle);
+
+    /**
+     * prefillSystemPrompt: JNI method to prefill the system prompt, or restore its saved prefill
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     */
+    private static native void prefillSystemPrompt(long nativeHandle);
+
+    /**
+     * saveDialog: JNI method to save the conversation held by the dialog
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     * @param dirPath directory to save to
+     */
+    private static native void saveDialog(long nativeHandle, String dirPath);
+
+    /**
+     * restoreDialog: JNI method to restore a conversation saved by saveDialog
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     * @param dirPath directory saved to by saveDialog
+     * @return true if restored; otherwise the dialog is reset
+     */
+    private static native boolean restoreDialog(long nativeHandle, String dirPath);
+
+    /**
+     * appendTurn: JNI method to prefill an earlier exchange
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     * @param userPrompt user prompt of the exchange
+     * @param response bot response of the exchange
+     */
+    private static native void appendTurn(long nativeHandle, String userPrompt, String response);
+
+    /**
+     * getContextTokens: JNI method to get the estimated number of tokens held by the dialog
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     */
+    private static native int getContextTokens(long nativeHandle);
+
+    /**
+     * getContextSize: JNI method to get the context size of the model
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     */
+    private static native int getContextSize(long nativeHandle);
+
+    /**
+     * getLastQueryTimestamps: JNI method to get timestamps of the last getResponseForPrompt call
+     *
+     * @param nativeHandle native handle captured before with LoadModel
+     * @return steady clock nanoseconds: query start, query end, then the arrival of each generated token
      */
-    private native void getResponseForPrompt(long nativeHandle, String userInput, StringCallback callback);
+    private static native long[] getLastQueryTimestamps(long nativeHandle);
 
     /**
      * FreeModel: JNI method to free previously loaded model
      *
      * @param nativeHandle native handle captured before with LoadModel
      */
-    private native void freeModel(long nativeHandle);
+    private static native void freeModel(long nativeHandle);
 }
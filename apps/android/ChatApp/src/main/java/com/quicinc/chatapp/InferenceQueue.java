@@ -0,0 +1,283 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * InferenceQueue: Runs every prompt of a conversation on one long-lived inference thread
+ *
+ *  - Prompts are answered strictly in the order they were submitted; only one query runs on the native dialog at a time.
+ *  - A request can be cancelled while queued, or while generating (generation is cancelled natively).
+ *  - Every response is generated with the queue's GenerationLimits.
+ *  - Old turns are evicted by a ContextWindowManager before a prompt would overflow the context.
+ *  - Prompts that pile up while a response is generating are coalesced into a single user turn,
+ *    so their prefill runs once and the bot answers them together.
+ *  - Tasks run on the inference thread in order with prompts, e.g. to switch the dialog to another conversation.
+ *  - The inference thread first prefills the system prompt, while the user types the first prompt, so the first
+ *    prompt only prefills itself.
+ */
+public class InferenceQueue {
+
+    public enum Status {
+        // Response generated until the model stopped, or until a generation limit was hit.
+        COMPLETED,
+        // Request was cancelled before or during generation.
+        CANCELLED,
+        // Prompt was merged into an earlier queued request, whose listener receives the response.
+        COALESCED,
+        // Generation failed.
+        FAILED,
+    }
+
+    /**
+     * ResponseListener: Receives response tokens, then exactly one onComplete call. Invoked on the inference thread.
+     */
+    public interface ResponseListener extends StringCallback {
+        /**
+         * @param status how the request ended
+         * @param stats  timings of the response, or null if no response was generated
+         */
+        void onComplete(Status status, GenerationStats stats);
+    }
+
+    /**
+     * Request: Handle to a submitted prompt
+     */
+    public class Request {
+        private final String mPrompt;
+        private final ResponseListener mListener;
+        // Set for tasks submitted with execute; then there is no prompt or listener.
+        private final Runnable mTask;
+        private volatile boolean mCancelled = false;
+
+        private Request(String prompt, ResponseListener listener, Runnable task) {
+            mPrompt = prompt;
+            mListener = listener;
+            mTask = task;
+        }
+
+        /**
+         * cancel: Drops this request if it is still queued, or cancels generation if it is running
+         */
+        public void cancel() {
+            mCancelled = true;
+            if (mRunningRequest == this) {
+                mEngine.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+    }
+
+    private static final String TAG = "ChatApp";
+    // Separates coalesced prompts within a single user turn.
+    static final String cCoalescedPromptSeparator = "\n\n";
+
+    private final ChatEngine mEngine;
+    private final GenerationLimits mLimits;
+    // Replaced by tasks when the dialog switches to another conversation; only used on the inference thread.
+    private ContextWindowManager mContextWindowManager;
+    private final LinkedBlockingQueue<Request> mQueue = new LinkedBlockingQueue<>();
+    private final Thread mInferenceThread;
+    private volatile Request mRunningRequest = null;
+    // Set by the last task queued by shutdown; only used on the inference thread.
+    private boolean mStopped = false;
+
+    /**
+     * InferenceQueue: Starts the inference thread, which prefills the system prompt before answering prompts
+     *
+     * @param engine loaded engine; must only be queried through this queue from now on
+     * @param limits limits applied to every response
+     * @param contextWindowManager keeps the conversation within the context; only used on the inference thread
+     */
+    public InferenceQueue(ChatEngine engine, GenerationLimits limits, ContextWindowManager contextWindowManager) {
+        mEngine = engine;
+        mLimits = limits;
+        mContextWindowManager = contextWindowManager;
+        mInferenceThread = new Thread(this::runInferenceLoop, "InferenceQueue");
+        mInferenceThread.start();
+    }
+
+    /**
+     * submit: Queues a prompt
+     *
+     * @param prompt   user prompt
+     * @param listener receives the response
+     * @return handle that can be used to cancel the request
+     */
+    public Request submit(String prompt, ResponseListener listener) {
+        Request request = new Request(prompt, listener, null);
+        mQueue.add(request);
+        return request;
+    }
+
+    /**
+     * execute: Runs a task on the inference thread, after every prompt submitted before it. Prompts are not coalesced
+     * across a task. Tasks are not cancelled by cancelAll.
+     */
+    public void execute(Runnable task) {
+        mQueue.add(new Request(null, null, task));
+    }
+
+    /**
+     * setContextWindowManager: Manages the context of following prompts with provided manager, e.g. after the dialog
+     * switched to another conversation. Must be called on the inference thread, i.e. from a task.
+     */
+    public void setContextWindowManager(ContextWindowManager contextWindowManager) {
+        mContextWindowManager = contextWindowManager;
+    }
+
+    /**
+     * cancelAll: Cancels every queued request and aborts the running one
+     */
+    public void cancelAll() {
+        for (Request request : mQueue) {
+            if (request.mTask == null) {
+                request.cancel();
+            }
+        }
+        Request running = mRunningRequest;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * isBusy: Returns true if a response is generating or prompts are waiting
+     */
+    public boolean isBusy() {
+        return mRunningRequest != null || !mQueue.isEmpty();
+    }
+
+    /**
+     * shutdown: Cancels all requests and stops the inference thread once the running query returns and the queued
+     * tasks (e.g. saving the dialog) have run
+     */
+    public void shutdown() {
+        cancelAll();
+        execute(() -> mStopped = true);
+    }
+
+    /**
+     * awaitTermination: Waits for the inference thread to stop after shutdown
+     *
+     * @param timeoutMillis longest time to wait
+     * @return true if the thread stopped
+     */
+    public boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        mInferenceThread.join(timeoutMillis);
+        return !mInferenceThread.isAlive();
+    }
+
+    private void runInferenceLoop() {
+        try {
+            mEngine.prefillSystemPrompt();
+        } catch (RuntimeException e) {
+            // The system prompt is then prefilled along with the first prompt.
+            Log.w(TAG, "Failed to prefill system prompt: " + e.getMessage());
+        }
+        while (!mStopped) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                batch.add(mQueue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (batch.get(0).mTask != null) {
+                runTask(batch.get(0).mTask);
+                continue;
+            }
+            // Every prompt queued behind the first request, up to the next task, is answered in the same turn.
+            Request next;
+            while ((next = mQueue.peek()) != null && next.mTask == null) {
+                batch.add(mQueue.poll());
+            }
+
+            Request primary = null;
+            StringBuilder prompt = new StringBuilder();
+            for (Request request : batch) {
+                if (request.mCancelled) {
+                    request.mListener.onComplete(Status.CANCELLED, null);
+                    continue;
+                }
+                if (primary == null) {
+                    primary = request;
+                } else {
+                    prompt.append(cCoalescedPromptSeparator);
+                    request.mListener.onComplete(Status.COALESCED, null);
+                }
+                prompt.append(request.mPrompt);
+            }
+            if (primary == null) {
+                continue;
+            }
+            if (batch.size() > 1) {
+                Log.i(TAG, "Coalesced " + batch.size() + " queued prompts into one turn.");
+            }
+
+            runRequest(primary, prompt.toString());
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error while running inference thread task: " + e.getMessage());
+        }
+    }
+
+    private void runRequest(Request request, String prompt) {
+        Status status;
+        GenerationStats stats = null;
+        // Publish the running request before checking for cancellation, so a concurrent cancel() either
+        // sees it and cancels natively, or is seen here.
+        mRunningRequest = request;
+        try {
+            status = Status.CANCELLED;
+            if (!request.mCancelled) {
+                stats = generate(request, prompt);
+                if (!request.mCancelled && stats.getStopReason() != StopReason.CANCELLED) {
+                    status = Status.COMPLETED;
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error while generating response: " + e.getMessage());
+            status = Status.FAILED;
+        } finally {
+            mRunningRequest = null;
+        }
+        request.mListener.onComplete(status, stats);
+    }
+
+    private GenerationStats generate(Request request, String prompt) {
+        mContextWindowManager.prepareForPrompt(prompt);
+        int contextTokensBefore = mEngine.getContextTokens();
+        StringBuilder response = new StringBuilder();
+        GenerationStats stats = mEngine.getResponseForPrompt(prompt, mLimits, token -> {
+            if (request.mCancelled) {
+                // Cancelled in the window before the native query started; cancel again now that it is running.
+                mEngine.cancel();
+                return;
+            }
+            response.append(token);
+            request.mListener.onNewString(token);
+        });
+        // Partial responses stay in the dialog too.
+        mContextWindowManager.onTurnComplete(prompt, response.toString(), contextTokensBefore);
+        if (stats.getStopReason() != StopReason.COMPLETED) {
+            Log.i(TAG, "Response stopped early: " + stats.getStopReason());
+        }
+        Log.i(TAG, "Generation stats: " + stats);
+        return stats;
+    }
+}
@@ -0,0 +1,192 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LlmBenchmark: Replays a prompt set against a loaded ChatEngine and collects per-prompt results
+ *
+ *  - The dialog is reset before every prompt (unless disabled), so each prompt starts from the same state
+ *    and runs with the fixed sampler seed from the Genie config.
+ *  - Peak memory and thermal state are sampled around every prompt through a Monitor.
+ *
+ * Has no Android dependencies; runs on a JVM against a fake engine and monitor.
+ */
+public class LlmBenchmark {
+
+    /**
+     * Prompt: One benchmark prompt
+     */
+    public static class Prompt {
+        final String mId;
+        final String mText;
+        final int mMaxTokens;
+
+        /**
+         * @param id        name of the prompt in the report
+         * @param text      prompt sent to the model
+         * @param maxTokens maximum response tokens, 0 for no limit
+         */
+        public Prompt(String id, String text, int maxTokens) {
+            mId = id;
+            mText = text;
+            mMaxTokens = maxTokens;
+        }
+    }
+
+    /**
+     * Monitor: Samples process memory and device thermal state
+     */
+    public interface Monitor {
+        /**
+         * resetPeakMemory: Starts a new peak memory window
+         *
+         * @return false if the peak cannot be reset, in which case peaks are process-lifetime peaks
+         */
+        boolean resetPeakMemory();
+
+        /**
+         * @return peak resident memory since the last reset, in bytes
+         */
+        long getPeakMemoryBytes();
+
+        /**
+         * @return thermal status, 0 (none) to 6 (shutdown), as android.os.PowerManager THERMAL_STATUS_*
+         */
+        int getThermalStatus();
+
+        /**
+         * @return thermal headroom forecast (1.0 = throttling threshold), or NaN if unsupported
+         */
+        float getThermalHeadroom();
+    }
+
+    /**
+     * PromptResult: Measurements of one prompt
+     */
+    public static class PromptResult {
+        final String mId;
+        final GenerationStats mStats;
+        final int mResponseLength;
+        final long mPeakMemoryBytes;
+        final int mThermalStatusBefore;
+        final int mThermalStatusAfter;
+        final float mThermalHeadroomAfter;
+
+        PromptResult(String id, GenerationStats stats, int responseLength, long peakMemoryBytes,
+                     int thermalStatusBefore, int thermalStatusAfter, float thermalHeadroomAfter) {
+            mId = id;
+            mStats = stats;
+            mResponseLength = responseLength;
+            mPeakMemoryBytes = peakMemoryBytes;
+            mThermalStatusBefore = thermalStatusBefore;
+            mThermalStatusAfter = thermalStatusAfter;
+            mThermalHeadroomAfter = thermalHeadroomAfter;
+        }
+
+        public String getId() {
+            return mId;
+        }
+
+        public GenerationStats getStats() {
+            return mStats;
+        }
+
+        public long getPeakMemoryBytes() {
+            return mPeakMemoryBytes;
+        }
+
+        public int getThermalStatusAfter() {
+            return mThermalStatusAfter;
+        }
+    }
+
+    private final ChatEngine mEngine;
+    private final Monitor mMonitor;
+    private final boolean mResetBetweenPrompts;
+
+    /**
+     * LlmBenchmark
+     *
+     * @param engine              loaded engine
+     * @param monitor             samples memory and thermal state
+     * @param resetBetweenPrompts reset the dialog before every prompt
+     */
+    public LlmBenchmark(ChatEngine engine, Monitor monitor, boolean resetBetweenPrompts) {
+        mEngine = engine;
+        mMonitor = monitor;
+        mResetBetweenPrompts = resetBetweenPrompts;
+    }
+
+    /**
+     * readPrompts: Reads a prompt set in JSON lines format, one prompt per line
+     *
+     * e.g. {"id": "recipe", "prompt": "Give me a recipe for pancakes.", "maxTokens": 256}
+     * "id" defaults to the line number and "maxTokens" to defaultMaxTokens. Blank lines are skipped.
+     *
+     * @param reader           prompt set to read
+     * @param defaultMaxTokens maximum response tokens of prompts that do not set one
+     * @return prompts in file order
+     */
+    public static List<Prompt> readPrompts(Reader reader, int defaultMaxTokens) throws IOException, JSONException {
+        List<Prompt> prompts = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            JSONObject json = new JSONObject(line);
+            prompts.add(new Prompt(json.optString("id", String.valueOf(lineNumber)), json.getString("prompt"),
+                    json.optInt("maxTokens", defaultMaxTokens)));
+        }
+        return prompts;
+    }
+
+    /**
+     * run: Runs warm-up prompts (discarded), then every prompt once
+     *
+     * @param prompts       prompts to measure, in order
+     * @param warmUpPrompts number of prompts from the start of the set to run and discard first
+     * @return report of the measured prompts
+     */
+    public LlmBenchmarkReport run(List<Prompt> prompts, int warmUpPrompts) {
+        // Prompts are measured on top of the system prompt, as in a conversation.
+        mEngine.prefillSystemPrompt();
+        for (int i = 0; i < Math.min(warmUpPrompts, prompts.size()); ++i) {
+            runPrompt(prompts.get(i));
+        }
+
+        List<PromptResult> results = new ArrayList<>(prompts.size());
+        boolean peakMemoryResettable = true;
+        for (Prompt prompt : prompts) {
+            peakMemoryResettable &= mMonitor.resetPeakMemory();
+            results.add(runPrompt(prompt));
+        }
+        return new LlmBenchmarkReport(results, peakMemoryResettable);
+    }
+
+    private PromptResult runPrompt(Prompt prompt) {
+        if (mResetBetweenPrompts) {
+            mEngine.reset();
+        }
+        int thermalStatusBefore = mMonitor.getThermalStatus();
+        int[] responseLength = {0};
+        GenerationStats stats = mEngine.getResponseForPrompt(prompt.mText, new GenerationLimits(prompt.mMaxTokens, 0),
+                token -> responseLength[0] += token.length());
+        return new PromptResult(prompt.mId, stats, responseLength[0], mMonitor.getPeakMemoryBytes(),
+                thermalStatusBefore, mMonitor.getThermalStatus(), mMonitor.getThermalHeadroom());
+    }
+}
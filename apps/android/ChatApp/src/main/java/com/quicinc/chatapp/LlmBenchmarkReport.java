@@ -0,0 +1,263 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LlmBenchmarkReport: Per-prompt results of an LlmBenchmark run, and aggregates across prompts
+ *
+ * Thermal throttling shows up as a thermal status of MODERATE (2) or worse, and as decode throughput
+ * dropping between the first and the last quarter of the run.
+ */
+public class LlmBenchmarkReport {
+    // android.os.PowerManager.THERMAL_STATUS_MODERATE
+    static final int cThermalStatusThrottling = 2;
+
+    private final List<LlmBenchmark.PromptResult> mResults;
+    private final boolean mPeakMemoryPerPrompt;
+
+    LlmBenchmarkReport(List<LlmBenchmark.PromptResult> results, boolean peakMemoryPerPrompt) {
+        mResults = Collections.unmodifiableList(results);
+        mPeakMemoryPerPrompt = peakMemoryPerPrompt;
+    }
+
+    public List<LlmBenchmark.PromptResult> getResults() {
+        return mResults;
+    }
+
+    public int getTotalTokens() {
+        int total = 0;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            total += result.mStats.getNumTokens();
+        }
+        return total;
+    }
+
+    /**
+     * getTimeToFirstTokenNanos: Returns the nearest-rank percentile of time to first token across prompts
+     *
+     * @param percentile Percentile in range [0, 100].
+     */
+    public long getTimeToFirstTokenNanos(double percentile) {
+        long[] values = new long[mResults.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = mResults.get(i).mStats.getPrefillNanos();
+        }
+        return percentile(values, percentile);
+    }
+
+    /**
+     * @return mean decode throughput across prompts that generated at least two tokens
+     */
+    public double getMeanDecodeTokensPerSecond() {
+        return meanDecodeTokensPerSecond(0, mResults.size());
+    }
+
+    /**
+     * @return lowest decode throughput of any prompt that generated at least two tokens
+     */
+    public double getMinDecodeTokensPerSecond() {
+        double min = Double.NaN;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            double tokensPerSecond = result.mStats.getDecodeTokensPerSecond();
+            if (tokensPerSecond > 0 && !(tokensPerSecond >= min)) {
+                min = tokensPerSecond;
+            }
+        }
+        return Double.isNaN(min) ? 0 : min;
+    }
+
+    /**
+     * getDecodeSlowdown: Throughput of the last quarter of prompts relative to the first quarter.
+     * Values well below 1 indicate thermal throttling during the run.
+     *
+     * @return ratio, or 1 with fewer than four prompts
+     */
+    public double getDecodeSlowdown() {
+        int quarter = mResults.size() / 4;
+        if (quarter == 0) {
+            return 1;
+        }
+        double first = meanDecodeTokensPerSecond(0, quarter);
+        double last = meanDecodeTokensPerSecond(mResults.size() - quarter, mResults.size());
+        return first == 0 ? 1 : last / first;
+    }
+
+    /**
+     * @return mean tokens per model step across prompts; above 1 with speculative decoding
+     */
+    public double getMeanTokensPerStep() {
+        double sum = 0;
+        int count = 0;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            if (result.mStats.getNumTokens() > 0) {
+                sum += result.mStats.getTokensPerStep();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * getMeanAcceptanceRate: Estimates the fraction of draft tokens accepted, from the mean tokens per step
+     *
+     * @param draftLength tokens the draft model proposes per step
+     */
+    public double getMeanAcceptanceRate(int draftLength) {
+        return draftLength <= 0 ? 0 : Math.min(1.0, Math.max(0.0, (getMeanTokensPerStep() - 1) / draftLength));
+    }
+
+    /**
+     * getSpeedupOver: Compares this run with a baseline run of the same prompts, e.g. speculative against basic decoding
+     *
+     * @param baseline report of the same prompt set
+     * @return per-prompt and mean ratios of decode throughput, TTFT and total time (baseline / this for times)
+     */
+    public JSONObject getSpeedupOver(LlmBenchmarkReport baseline) throws JSONException {
+        JSONArray prompts = new JSONArray();
+        double decodeSum = 0;
+        double totalSum = 0;
+        int count = 0;
+        for (int i = 0; i < Math.min(mResults.size(), baseline.mResults.size()); ++i) {
+            GenerationStats stats = mResults.get(i).mStats;
+            GenerationStats baselineStats = baseline.mResults.get(i).mStats;
+            if (stats.getDecodeTokensPerSecond() == 0 || baselineStats.getDecodeTokensPerSecond() == 0) {
+                continue;
+            }
+            double decode = stats.getDecodeTokensPerSecond() / baselineStats.getDecodeTokensPerSecond();
+            double total = (double) baselineStats.getTotalNanos() / stats.getTotalNanos();
+            JSONObject prompt = new JSONObject();
+            prompt.put("id", mResults.get(i).mId);
+            prompt.put("decode", decode);
+            prompt.put("ttft", (double) baselineStats.getPrefillNanos() / Math.max(stats.getPrefillNanos(), 1));
+            prompt.put("total", total);
+            prompts.put(prompt);
+            decodeSum += decode;
+            totalSum += total;
+            count++;
+        }
+
+        JSONObject speedup = new JSONObject();
+        speedup.put("meanDecode", count == 0 ? 0 : decodeSum / count);
+        speedup.put("meanTotal", count == 0 ? 0 : totalSum / count);
+        speedup.put("prompts", prompts);
+        return speedup;
+    }
+
+    /**
+     * @return worst inter-token gap p99 of any prompt
+     */
+    public long getMaxInterTokenGapP99Nanos() {
+        long max = 0;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            max = Math.max(max, result.mStats.getInterTokenGapNanos(99));
+        }
+        return max;
+    }
+
+    public long getPeakMemoryBytes() {
+        long max = 0;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            max = Math.max(max, result.mPeakMemoryBytes);
+        }
+        return max;
+    }
+
+    public int getMaxThermalStatus() {
+        int max = 0;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            max = Math.max(max, Math.max(result.mThermalStatusBefore, result.mThermalStatusAfter));
+        }
+        return max;
+    }
+
+    /**
+     * @return number of prompts that ended at thermal status MODERATE or worse
+     */
+    public int getNumThrottledPrompts() {
+        int count = 0;
+        for (LlmBenchmark.PromptResult result : mResults) {
+            if (result.mThermalStatusAfter >= cThermalStatusThrottling) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONArray prompts = new JSONArray();
+        for (LlmBenchmark.PromptResult result : mResults) {
+            JSONObject prompt = result.mStats.toJson();
+            prompt.put("id", result.mId);
+            prompt.put("responseLength", result.mResponseLength);
+            prompt.put("peakMemoryBytes", result.mPeakMemoryBytes);
+            prompt.put("thermalStatusBefore", result.mThermalStatusBefore);
+            prompt.put("thermalStatusAfter", result.mThermalStatusAfter);
+            if (!Float.isNaN(result.mThermalHeadroomAfter)) {
+                prompt.put("thermalHeadroomAfter", result.mThermalHeadroomAfter);
+            }
+            prompts.put(prompt);
+        }
+
+        JSONObject aggregate = new JSONObject();
+        aggregate.put("numPrompts", mResults.size());
+        aggregate.put("totalTokens", getTotalTokens());
+        aggregate.put("ttftP50Ns", getTimeToFirstTokenNanos(50));
+        aggregate.put("ttftP90Ns", getTimeToFirstTokenNanos(90));
+        aggregate.put("ttftMaxNs", getTimeToFirstTokenNanos(100));
+        aggregate.put("meanDecodeTokensPerSecond", getMeanDecodeTokensPerSecond());
+        aggregate.put("minDecodeTokensPerSecond", getMinDecodeTokensPerSecond());
+        aggregate.put("decodeSlowdown", getDecodeSlowdown());
+        aggregate.put("maxInterTokenGapP99Ns", getMaxInterTokenGapP99Nanos());
+        aggregate.put("meanTokensPerStep", getMeanTokensPerStep());
+        aggregate.put("peakMemoryBytes", getPeakMemoryBytes());
+        aggregate.put("peakMemoryPerPrompt", mPeakMemoryPerPrompt);
+        aggregate.put("maxThermalStatus", getMaxThermalStatus());
+        aggregate.put("numThrottledPrompts", getNumThrottledPrompts());
+
+        JSONObject json = new JSONObject();
+        json.put("aggregate", aggregate);
+        json.put("prompts", prompts);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d prompts, %d tokens | TTFT p50 %.0f ms, p90 %.0f ms | decode %.1f tok/s (min %.1f, slowdown %.2f) | peak memory %d MB | max thermal status %d",
+                mResults.size(), getTotalTokens(), getTimeToFirstTokenNanos(50) / 1e6, getTimeToFirstTokenNanos(90) / 1e6,
+                getMeanDecodeTokensPerSecond(), getMinDecodeTokensPerSecond(), getDecodeSlowdown(),
+                getPeakMemoryBytes() / (1024 * 1024), getMaxThermalStatus());
+    }
+
+    private double meanDecodeTokensPerSecond(int from, int to) {
+        double sum = 0;
+        int count = 0;
+        for (LlmBenchmark.PromptResult result : mResults.subList(from, to)) {
+            double tokensPerSecond = result.mStats.getDecodeTokensPerSecond();
+            if (tokensPerSecond > 0) {
+                sum += tokensPerSecond;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    private static long percentile(long[] values, double percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
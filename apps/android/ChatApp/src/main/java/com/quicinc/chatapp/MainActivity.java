@@ -6,78 +6,78 @@ package com.quicinc.chatapp;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import android.app.ActivityManager;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.system.Os;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.ProgressBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
 
+    // Runs the LLM benchmark without UI, then exits. Pass "" to use the bundled prompt set:
+    //   adb shell am start -n com.quicinc.chatapp/.MainActivity --es benchmarkPrompts ""
+    // or the path of a JSON lines prompt file readable by the app (see LlmBenchmark.readPrompts).
+    // The report is written to <external files dir>/llm_benchmark.json.
+    private static final String BENCHMARK_PROMPTS_EXTRA = "benchmarkPrompts";
+    // Number of prompts run first and discarded, default 1.
+    private static final String BENCHMARK_WARMUP_EXTRA = "benchmarkWarmUp";
+    // Also runs the prompts with speculative decoding and reports its speedup over basic decoding:
+    //   adb shell am start -n com.quicinc.chatapp/.MainActivity --es benchmarkPrompts "" --ez benchmarkSpeculative true
+    private static final String BENCHMARK_SPECULATIVE_EXTRA = "benchmarkSpeculative";
+    // Also runs the prompts with variations of the device profile's engine settings (threads, CPU mask, polling):
+    //   adb shell am start -n com.quicinc.chatapp/.MainActivity --es benchmarkPrompts "" --ez benchmarkDeviceProfiles true
+    private static final String BENCHMARK_DEVICE_PROFILES_EXTRA = "benchmarkDeviceProfiles";
+    // Runs every prompt with greedy decoding instead of the config's sampler; deterministic, and cheaper per token:
+    //   adb shell am start -n com.quicinc.chatapp/.MainActivity --es benchmarkPrompts "" --ez benchmarkGreedy true
+    private static final String BENCHMARK_GREEDY_EXTRA = "benchmarkGreedy";
+    // Also runs the prompts with every memory profile and reports resident memory against decode speed:
+    //   adb shell am start -n com.quicinc.chatapp/.MainActivity --es benchmarkPrompts "" --ez benchmarkMemoryProfiles true
+    private static final String BENCHMARK_MEMORY_PROFILES_EXTRA = "benchmarkMemoryProfiles";
+    private static final String cBenchmarkPromptsAsset = "benchmark/prompts.jsonl";
+    private static final String cBenchmarkReportName = "llm_benchmark.json";
+    private static final int cBenchmarkDefaultMaxTokens = 256;
+    // Chats with SyntheticChatEngine instead of the model, e.g. to measure streaming UI cost:
+    //   adb shell am start -n com.quicinc.chatapp/.MainActivity --ez syntheticEngine true
+    private static final String SYNTHETIC_ENGINE_EXTRA = "syntheticEngine";
+
     static {
         System.loadLibrary("chatapp");
     }
 
-    /**
-     * copyAssetsDir: Copies provided assets to output path
-     *
-     * @param inputAssetRelPath relative path to asset from asset root
-     * @param outputPath        output path to copy assets to
-     * @throws IOException
-     * @throws NullPointerException
-     */
-    void copyAssetsDir(String inputAssetRelPath, String outputPath) throws IOException, NullPointerException {
-        File outputAssetPath = new File(Paths.get(outputPath, inputAssetRelPath).toString());
-
-        String[] subAssetList = this.getAssets().list(inputAssetRelPath);
-        if (subAssetList.length == 0) {
-            // If file already present, skip copy.
-            if (!outputAssetPath.exists()) {
-                copyFile(inputAssetRelPath, outputAssetPath);
-            }
-            return;
-        }
-
-        // Input asset is a directory, create directory if not present already.
-        if (!outputAssetPath.exists()) {
-            outputAssetPath.mkdirs();
-        }
-        for (String subAssetName : subAssetList) {
-            // Copy content of sub-directory
-            String input_sub_asset_path = Paths.get(inputAssetRelPath, subAssetName).toString();
-            // NOTE: Not to modify output path, relative asset path is being updated.
-            copyAssetsDir(input_sub_asset_path, outputPath);
-        }
-    }
+    private AssetCopier assetCopier;
 
     /**
-     * copyFile: Copies provided input file asset into output asset file
-     *
-     * @param inputFilePath   relative file path from asset root directory
-     * @param outputAssetFile output file to copy input asset file into
-     * @throws IOException
+     * getAssetVersion: Returns the version of the bundled assets, used to detect stale copies after an app update
      */
-    void copyFile(String inputFilePath, File outputAssetFile) throws IOException {
-        InputStream in = this.getAssets().open(inputFilePath);
-        OutputStream out = new FileOutputStream(outputAssetFile);
-
-        byte[] buffer = new byte[1024 * 1024];
-        int read;
-        while ((read = in.read(buffer)) != -1) {
-            out.write(buffer, 0, read);
+    private long getAssetVersion() {
+        try {
+            return getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
         }
     }
 
@@ -86,50 +86,105 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
 
         try {
-            // Get SoC model from build properties
-            // As of now, only Snapdragon Gen 3 and 8 Elite is supported.
-            HashMap<String, String> supportedSocModel = new HashMap<>();
-            supportedSocModel.putIfAbsent("SM8750", "qualcomm-snapdragon-8-elite.json");
-            supportedSocModel.putIfAbsent("SM8650", "qualcomm-snapdragon-8-gen3.json");
-            supportedSocModel.putIfAbsent("QCS8550", "qualcomm-snapdragon-8-gen2.json");
-
-            String socModel = android.os.Build.SOC_MODEL;
-            if (!supportedSocModel.containsKey(socModel)) {
-                String errorMsg = "Unsupported device. Please ensure you have one of the following device to run the ChatApp: " + supportedSocModel.toString();
-                Log.e("ChatApp", errorMsg);
-                Toast.makeText(this, errorMsg, Toast.LENGTH_LONG).show();
-                finish();
+            // Pick HTP config and engine CPU settings from SoC model (build properties) and CPU topology.
+            // Snapdragon 8 Gen 2, Gen 3 and 8 Elite have tuned settings; other SoCs fall back to generic ones.
+            DeviceProfile deviceProfile = DeviceProfile.resolve(android.os.Build.SOC_MODEL, DeviceProfile.cCpuSysDir);
+            Log.i("ChatApp", "Device profile: " + deviceProfile);
+            if (deviceProfile.isGeneric()) {
+                String warningMsg = "No tuned settings for " + android.os.Build.SOC_MODEL
+                        + ", using generic ones. The model may fail to load or run slower.";
+                Log.w("ChatApp", warningMsg);
+                Toast.makeText(this, warningMsg, Toast.LENGTH_LONG).show();
             }
+            String deviceProfileJson = deviceProfile.toJson().toString();
+            // Devices with little memory default to the low memory profile, so the model fits next to other apps.
+            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+            ((ActivityManager) getSystemService(ACTIVITY_SERVICE)).getMemoryInfo(memoryInfo);
+            MemoryProfile defaultMemoryProfile = MemoryProfile.forDevice(memoryInfo.totalMem);
 
             // Copy assets to External cache
             //  - <assets>/models
             //      - has list of models with tokenizer.json, genie_config.json and model binaries
             //  - <assets>/htp_config/
-            //      - has SM8750.json and SM8650.json and picked up according to device SOC Model at runtime.
+            //      - has one config per tuned SoC and generic.json, picked up according to the device profile at runtime.
+            // Model binaries are several GB, so they are copied in the background.
+            // Copies that completed on a previous run are skipped, and interrupted copies are resumed.
             String externalDir = getExternalCacheDir().getAbsolutePath();
-            try {
-                // Copy assets to External cache if not already present
-                copyAssetsDir("models", externalDir.toString());
-                copyAssetsDir("htp_config", externalDir.toString());
-            } catch (IOException e) {
-                String errorMsg = "Error during copying model asset to external storage: " + e.toString();
-                Log.e("ChatApp", errorMsg);
-                Toast.makeText(this, errorMsg, Toast.LENGTH_SHORT).show();
-                finish();
-            }
-            Path htpExtConfigPath = Paths.get(externalDir, "htp_config", supportedSocModel.get(socModel));
+            Path htpExtConfigPath = Paths.get(externalDir, "htp_config", deviceProfile.getHtpConfigName());
+            String benchmarkPrompts = getIntent().getStringExtra(BENCHMARK_PROMPTS_EXTRA);
 
             setContentView(R.layout.activity_main);
             Button llm = (Button) findViewById(R.id.llm);
+            ProgressBar copyProgress = (ProgressBar) findViewById(R.id.copy_progress);
+            TextView copyStatus = (TextView) findViewById(R.id.copy_status);
+            CheckBox showStats = (CheckBox) findViewById(R.id.show_stats);
+            CheckBox speculative = (CheckBox) findViewById(R.id.speculative);
+            CheckBox lowMemory = (CheckBox) findViewById(R.id.low_memory);
+            lowMemory.setChecked(defaultMemoryProfile == MemoryProfile.LOW_MEMORY);
+            String modelDir = Paths.get(externalDir, "models", "llm").toString();
+            llm.setEnabled(false);
             llm.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
                     Intent intent = new Intent(MainActivity.this, Conversation.class);
                     intent.putExtra(Conversation.cConversationActivityKeyHtpConfig, htpExtConfigPath.toString());
+                    intent.putExtra(Conversation.cConversationActivityKeyDeviceProfile, deviceProfileJson);
+                    intent.putExtra(Conversation.cConversationActivityKeyMemoryProfile,
+                            (lowMemory.isChecked() ? MemoryProfile.LOW_MEMORY : MemoryProfile.DEFAULT).name());
                     intent.putExtra(Conversation.cConversationActivityKeyModelName, "llm");
+                    intent.putExtra(Conversation.cConversationActivityKeyShowStats, showStats.isChecked());
+                    intent.putExtra(Conversation.cConversationActivityKeyDialogType,
+                            (speculative.isChecked() ? DialogType.SPECULATIVE : DialogType.BASIC).name());
+                    intent.putExtra(Conversation.cConversationActivityKeySyntheticEngine,
+                            getIntent().getBooleanExtra(SYNTHETIC_ENGINE_EXTRA, false));
                     startActivity(intent);
                 }
             });
+
+            int numCopyThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            assetCopier = new AssetCopier(getAssets(), new File(externalDir), getAssetVersion(), numCopyThreads);
+            assetCopier.start(Arrays.asList("models", "htp_config"), new AssetCopier.ProgressListener() {
+                @Override
+                public void onProgress(long copiedBytes, long totalBytes) {
+                    int percent = totalBytes == 0 ? 100 : (int) (copiedBytes * 100 / totalBytes);
+                    runOnUiThread(() -> {
+                        copyProgress.setProgress(percent);
+                        copyStatus.setText(getString(R.string.copying_model_assets, percent));
+                    });
+                }
+
+                @Override
+                public void onComplete() {
+                    if (benchmarkPrompts != null) {
+                        new Thread(() -> {
+                            runLlmBenchmark(benchmarkPrompts, modelDir, htpExtConfigPath.toString(), deviceProfile,
+                                    defaultMemoryProfile);
+                            runOnUiThread(MainActivity.this::finish);
+                        }, "LlmBenchmark").start();
+                        return;
+                    }
+                    boolean speculativeAvailable = isSpeculativeAvailable(modelDir);
+                    runOnUiThread(() -> {
+                        copyProgress.setVisibility(View.GONE);
+                        copyStatus.setVisibility(View.GONE);
+                        speculative.setVisibility(speculativeAvailable ? View.VISIBLE : View.GONE);
+                        llm.setEnabled(true);
+                    });
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    String errorMsg = "Error during copying model asset to external storage: " + e.toString();
+                    Log.e("ChatApp", errorMsg);
+                    runOnUiThread(() -> {
+                        if (isFinishing()) {
+                            return;
+                        }
+                        Toast.makeText(MainActivity.this, errorMsg, Toast.LENGTH_SHORT).show();
+                        finish();
+                    });
+                }
+            });
         } catch (Exception e) {
             String errorMsg = "Unexpected error occurred while running ChatApp:" + e.toString();
             Log.e("ChatApp", errorMsg);
@@ -137,4 +192,215 @@ public class MainActivity extends AppCompatActivity {
             finish();
         }
     }
+
+    /**
+     * isSpeculativeAvailable: Returns true if the model bundle has a speculative decoding config and draft model binaries
+     */
+    private static boolean isSpeculativeAvailable(String modelDir) {
+        String[] draftFiles = new File(modelDir, DialogType.cDraftModelDirName).list();
+        return new File(modelDir, DialogType.SPECULATIVE.getConfigName()).isFile()
+                && draftFiles != null && draftFiles.length > 0;
+    }
+
+    /**
+     * runLlmBenchmark: Loads the model once, replays the prompt set and writes the report. Errors are logged.
+     * Comparison runs, warm-up and sampler are read from the intent's benchmark extras.
+     *
+     * @param promptsPath   JSON lines prompt file, or empty for the bundled prompt set
+     * @param modelDir      directory with genie_config.json, tokenizer and model binaries
+     * @param htpConfigPath HTP backend extension config for this SoC
+     * @param deviceProfile engine settings to render into the Genie config
+     * @param memoryProfile backend memory settings to render into the Genie config
+     */
+    private void runLlmBenchmark(String promptsPath, String modelDir, String htpConfigPath,
+                                 DeviceProfile deviceProfile, MemoryProfile memoryProfile) {
+        try {
+            // Make QNN libraries discoverable
+            String nativeLibPath = getApplicationContext().getApplicationInfo().nativeLibraryDir;
+            Os.setenv("ADSP_LIBRARY_PATH", nativeLibPath, true);
+            Os.setenv("LD_LIBRARY_PATH", nativeLibPath, true);
+
+            int warmUpPrompts = getIntent().getIntExtra(BENCHMARK_WARMUP_EXTRA, 1);
+            SamplerConfig sampler = getIntent().getBooleanExtra(BENCHMARK_GREEDY_EXTRA, false)
+                    ? SamplerConfig.GREEDY : null;
+            List<LlmBenchmark.Prompt> prompts;
+            try (Reader reader = promptsPath.isEmpty()
+                    ? new InputStreamReader(getAssets().open(cBenchmarkPromptsAsset), StandardCharsets.UTF_8)
+                    : new FileReader(promptsPath)) {
+                prompts = LlmBenchmark.readPrompts(reader, cBenchmarkDefaultMaxTokens);
+            }
+
+            String prefixCacheDir = Paths.get(getCacheDir().getAbsolutePath(), "prompt_prefix", "llm").toString();
+            String configPath = renderConfig(modelDir, DialogType.BASIC, htpConfigPath, deviceProfile, memoryProfile);
+            GenieWrapper genieWrapper = ModelManager.getInstance().acquire(modelDir, DialogType.BASIC, configPath,
+                    prefixCacheDir);
+            ModelLoadStats loadStats = ModelManager.getInstance().getLoadStats();
+            // Every prompt starts from the system prompt, so with a fixed sampler seed (or greedy) runs are repeatable.
+            genieWrapper.setSampler(sampler);
+            SamplerConfig runSampler = genieWrapper.getSampler();
+
+            LlmBenchmarkReport report = new LlmBenchmark(genieWrapper, new DeviceMonitor(this), true)
+                    .run(prompts, warmUpPrompts);
+            Log.i("ChatApp", "LLM benchmark: " + report);
+
+            JSONObject json = report.toJson();
+            if (getIntent().getBooleanExtra(BENCHMARK_SPECULATIVE_EXTRA, false)) {
+                // Same prompts on the speculative dialog; the basic dialog is released first.
+                String speculativeConfigPath = renderConfig(modelDir, DialogType.SPECULATIVE, htpConfigPath,
+                        deviceProfile, memoryProfile);
+                GenieWrapper speculative = ModelManager.getInstance().acquire(modelDir, DialogType.SPECULATIVE,
+                        speculativeConfigPath, prefixCacheDir);
+                speculative.setSampler(sampler);
+                LlmBenchmarkReport speculativeReport = new LlmBenchmark(speculative, new DeviceMonitor(this), true)
+                        .run(prompts, warmUpPrompts);
+                Log.i("ChatApp", "LLM benchmark (speculative): " + speculativeReport);
+
+                JSONObject speculativeJson = speculativeReport.toJson();
+                speculativeJson.getJSONObject("aggregate")
+                        .put("draftLength", speculative.getDraftLength())
+                        .put("acceptanceRate", speculativeReport.getMeanAcceptanceRate(speculative.getDraftLength()));
+                json.put("speculative", speculativeJson);
+                json.put("speedup", speculativeReport.getSpeedupOver(report));
+            }
+            if (getIntent().getBooleanExtra(BENCHMARK_DEVICE_PROFILES_EXTRA, false)) {
+                json.put("deviceProfiles", benchmarkDeviceProfiles(deviceProfile, memoryProfile, report, prompts,
+                        warmUpPrompts, modelDir, htpConfigPath, prefixCacheDir, sampler));
+            }
+            if (getIntent().getBooleanExtra(BENCHMARK_MEMORY_PROFILES_EXTRA, false)) {
+                json.put("memoryProfiles", benchmarkMemoryProfiles(deviceProfile, memoryProfile, report, loadStats,
+                        prompts, warmUpPrompts, modelDir, htpConfigPath, prefixCacheDir, sampler));
+            }
+            json.put("socModel", android.os.Build.SOC_MODEL);
+            json.put("htpConfig", new File(htpConfigPath).getName());
+            json.put("deviceProfile", deviceProfile.toJson());
+            json.put("memoryProfile", memoryProfile.name());
+            json.put("modelLoad", loadStats.toJson());
+            json.put("warmUpPrompts", warmUpPrompts);
+            if (runSampler != null) {
+                json.put("sampler", runSampler.toJson());
+            }
+            File reportFile = new File(getExternalFilesDir(null), cBenchmarkReportName);
+            try (Writer writer = new FileWriter(reportFile)) {
+                writer.write(json.toString(2));
+            }
+            Log.i("ChatApp", "LLM benchmark report written to " + reportFile);
+        } catch (Exception e) {
+            Log.e("ChatApp", "LLM benchmark failed: " + e.toString());
+        }
+    }
+
+    /**
+     * renderConfig: Renders the Genie config of provided dialog type with device and memory settings
+     *
+     * @return path of the rendered config
+     */
+    private String renderConfig(String modelDir, DialogType dialogType, String htpConfigPath,
+                                DeviceProfile deviceProfile, MemoryProfile memoryProfile)
+            throws IOException, JSONException {
+        GenieConfigBuilder config = GenieConfigBuilder.forModelBundle(modelDir, dialogType, htpConfigPath);
+        deviceProfile.applyTo(config);
+        memoryProfile.applyTo(config);
+        return config.build(new File(getCacheDir(), GenieConfigBuilder.cRenderedConfigDirName)).getPath();
+    }
+
+    /**
+     * benchmarkDeviceProfiles: Runs the prompt set on the basic dialog with every tuning candidate of the device profile
+     *  - The first candidate is the profile itself, already measured by provided report
+     *  - Every other candidate reloads the model with its rendered config
+     *
+     * @return settings and aggregate of every candidate, and the name of the one with the fastest mean decode
+     */
+    private JSONObject benchmarkDeviceProfiles(DeviceProfile deviceProfile, MemoryProfile memoryProfile,
+                                               LlmBenchmarkReport report, List<LlmBenchmark.Prompt> prompts,
+                                               int warmUpPrompts, String modelDir, String htpConfigPath,
+                                               String prefixCacheDir, SamplerConfig sampler)
+            throws IOException, JSONException {
+        JSONArray candidates = new JSONArray();
+        DeviceProfile fastest = null;
+        double fastestDecode = 0;
+        for (DeviceProfile candidate : deviceProfile.getTuningCandidates()) {
+            LlmBenchmarkReport candidateReport = report;
+            if (candidate != deviceProfile) {
+                String configPath = renderConfig(modelDir, DialogType.BASIC, htpConfigPath, candidate, memoryProfile);
+                GenieWrapper genieWrapper = ModelManager.getInstance().acquire(modelDir, DialogType.BASIC,
+                        configPath, prefixCacheDir);
+                genieWrapper.setSampler(sampler);
+                candidateReport = new LlmBenchmark(genieWrapper, new DeviceMonitor(this), true)
+                        .run(prompts, warmUpPrompts);
+            }
+            Log.i("ChatApp", "LLM benchmark (" + candidate + "): " + candidateReport);
+            candidates.put(new JSONObject()
+                    .put("profile", candidate.toJson())
+                    .put("aggregate", candidateReport.toJson().getJSONObject("aggregate")));
+            if (fastest == null || candidateReport.getMeanDecodeTokensPerSecond() > fastestDecode) {
+                fastest = candidate;
+                fastestDecode = candidateReport.getMeanDecodeTokensPerSecond();
+            }
+        }
+        return new JSONObject()
+                .put("candidates", candidates)
+                .put("fastest", fastest.getName());
+    }
+
+    /**
+     * benchmarkMemoryProfiles: Runs the prompt set on the basic dialog with every memory profile
+     *  - The profile in use is already measured by provided report and load stats; every other one reloads the model
+     *  - The trade-off compares LOW_MEMORY with DEFAULT: memory saved after load, load time and decode speedup
+     *
+     * @return load stats and aggregate of every profile, and the trade-off
+     */
+    private JSONObject benchmarkMemoryProfiles(DeviceProfile deviceProfile, MemoryProfile memoryProfile,
+                                               LlmBenchmarkReport report, ModelLoadStats loadStats,
+                                               List<LlmBenchmark.Prompt> prompts, int warmUpPrompts, String modelDir,
+                                               String htpConfigPath, String prefixCacheDir, SamplerConfig sampler)
+            throws IOException, JSONException {
+        JSONArray profiles = new JSONArray();
+        LlmBenchmarkReport[] reports = new LlmBenchmarkReport[MemoryProfile.values().length];
+        ModelLoadStats[] loads = new ModelLoadStats[MemoryProfile.values().length];
+        for (MemoryProfile profile : MemoryProfile.values()) {
+            LlmBenchmarkReport profileReport = report;
+            ModelLoadStats profileLoad = loadStats;
+            if (profile != memoryProfile) {
+                String configPath = renderConfig(modelDir, DialogType.BASIC, htpConfigPath, deviceProfile, profile);
+                GenieWrapper genieWrapper = ModelManager.getInstance().acquire(modelDir, DialogType.BASIC,
+                        configPath, prefixCacheDir);
+                genieWrapper.setSampler(sampler);
+                profileLoad = ModelManager.getInstance().getLoadStats();
+                profileReport = new LlmBenchmark(genieWrapper, new DeviceMonitor(this), true)
+                        .run(prompts, warmUpPrompts);
+            }
+            Log.i("ChatApp", "LLM benchmark (" + profile + ", " + profileLoad + "): " + profileReport);
+            profiles.put(new JSONObject()
+                    .put("memoryProfile", profile.name())
+                    .put("modelLoad", profileLoad.toJson())
+                    .put("aggregate", profileReport.toJson().getJSONObject("aggregate")));
+            reports[profile.ordinal()] = profileReport;
+            loads[profile.ordinal()] = profileLoad;
+        }
+
+        ModelLoadStats defaultLoad = loads[MemoryProfile.DEFAULT.ordinal()];
+        ModelLoadStats lowMemoryLoad = loads[MemoryProfile.LOW_MEMORY.ordinal()];
+        JSONObject tradeOff = new JSONObject()
+                .put("rssSavedBytes", defaultLoad.getAfter().getRssBytes() - lowMemoryLoad.getAfter().getRssBytes())
+                .put("pssSavedBytes", defaultLoad.getAfter().getPssBytes() - lowMemoryLoad.getAfter().getPssBytes())
+                .put("loadTimeRatio", (double) lowMemoryLoad.getLoadNanos() / Math.max(1, defaultLoad.getLoadNanos()))
+                .put("speedup", reports[MemoryProfile.LOW_MEMORY.ordinal()]
+                        .getSpeedupOver(reports[MemoryProfile.DEFAULT.ordinal()]));
+        return new JSONObject()
+                .put("profiles", profiles)
+                .put("lowMemoryTradeOff", tradeOff);
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Partially copied files are resumed the next time the app starts.
+        if (assetCopier != null) {
+            assetCopier.cancel();
+        }
+        // Conversations keep the model loaded for re-entry; free it once the user leaves the app.
+        if (isFinishing()) {
+            ModelManager.getInstance().release();
+        }
+        super.onDestroy();
+    }
 }
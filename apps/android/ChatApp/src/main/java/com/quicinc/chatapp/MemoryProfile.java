@@ -0,0 +1,52 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+/**
+ * MemoryProfile: QnnHtp backend memory settings, rendered into the Genie config by GenieConfigBuilder
+ *
+ *  - use-mmap: context binaries are memory-mapped instead of read into process memory.
+ *  - mmap-budget: MB of context binaries mapped at a time while loading, 0 for all at once. A budget unmaps
+ *    binaries once they are loaded, so their pages stop counting towards the app's resident memory, at the cost of
+ *    slower loading.
+ *  - spill-fill-bufsize: bytes of the spill-fill buffer shared by all graphs, 0 for one buffer per graph. Sharing
+ *    needs the size of the largest graph's buffer, so it depends on the model; 0 keeps the backend default.
+ *
+ * Compare profiles on device with the benchmarkMemoryProfiles benchmark (see MainActivity), which reports resident
+ * memory after load against decode speed.
+ */
+public enum MemoryProfile {
+    // Settings of the bundled configs.
+    DEFAULT(true, 0, 0),
+    // Smaller resident footprint, for devices where the model and other large apps do not fit in memory together.
+    LOW_MEMORY(true, 25, 0);
+
+    // Devices with less memory than this default to LOW_MEMORY. 8 GB devices report about 7.5 GB.
+    private static final long cLowMemoryDeviceBytes = 10L * 1024 * 1024 * 1024;
+
+    private final boolean mUseMmap;
+    private final long mMmapBudgetMb;
+    private final long mSpillFillBufferBytes;
+
+    MemoryProfile(boolean useMmap, long mmapBudgetMb, long spillFillBufferBytes) {
+        mUseMmap = useMmap;
+        mMmapBudgetMb = mmapBudgetMb;
+        mSpillFillBufferBytes = spillFillBufferBytes;
+    }
+
+    /**
+     * forDevice: Returns the default profile for a device with provided total memory, e.g. ActivityManager.MemoryInfo.totalMem
+     */
+    public static MemoryProfile forDevice(long totalMemoryBytes) {
+        return totalMemoryBytes < cLowMemoryDeviceBytes ? LOW_MEMORY : DEFAULT;
+    }
+
+    /**
+     * applyTo: Sets this profile's memory settings on provided config builder
+     */
+    public GenieConfigBuilder applyTo(GenieConfigBuilder config) {
+        return config.setUseMmap(mUseMmap).setMmapBudget(mMmapBudgetMb).setSpillFillBufferSize(mSpillFillBufferBytes);
+    }
+}
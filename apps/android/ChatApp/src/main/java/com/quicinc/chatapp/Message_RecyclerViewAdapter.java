@@ -14,14 +14,33 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
-
+import java.util.List;
+
+/**
+ * Message_RecyclerViewAdapter: Shows the conversation, one row per message
+ *
+ *  - Messages are read from a ChatHistoryStore, which pages persisted messages in from disk as rows are bound.
+ *  - Streaming bot messages are updated with payloads: a bound row appends only the new text to its editable
+ *    buffer, so TextView re-flows the changed paragraph instead of re-setting and re-measuring the whole message.
+ *  - Long bot messages are split into several rows (chunks), so binding or measuring a row stays cheap and
+ *    off-screen chunks are recycled.
+ */
 public class Message_RecyclerViewAdapter extends RecyclerView.Adapter<Message_RecyclerViewAdapter.MyViewHolder> {
 
+    // Payload: text was appended to the message.
+    private static final Object PAYLOAD_APPEND = new Object();
+    // Payload: stats of the message changed.
+    private static final Object PAYLOAD_STATS = new Object();
+    // A message longer than this continues in a new row at the next line break.
+    private static final int cSoftChunkLength = 1024;
+    // A message longer than this continues in a new row at the next space, even mid-paragraph.
+    private static final int cHardChunkLength = 4096;
+
     Context context;
-    ArrayList<ChatMessage> messages = new ArrayList<ChatMessage>(1000);
+    ChatHistoryStore messages;
+    private final BindTimeStats mBindTimeStats = new BindTimeStats();
 
-    public Message_RecyclerViewAdapter(Context context, ArrayList<ChatMessage> messages) {
+    public Message_RecyclerViewAdapter(Context context, ChatHistoryStore messages) {
         this.context = context;
         this.messages = messages;
     }
@@ -37,16 +56,41 @@ public class Message_RecyclerViewAdapter extends RecyclerView.Adapter<Message_Re
 
     @Override
     public void onBindViewHolder(@NonNull Message_RecyclerViewAdapter.MyViewHolder holder, int position) {
+        long start = System.nanoTime();
         ChatMessage msg = messages.get(position);
         if (msg.isMessageFromUser()) {
             holder.mUserMessage.setText(msg.getMessage());
             holder.mLeftChatLayout.setVisibility(View.GONE);
             holder.mRightChatLayout.setVisibility(View.VISIBLE);
         } else {
-            holder.mBotMessage.setText(msg.getMessage());
+            // Editable, so streamed text can be appended in place.
+            holder.mBotMessage.setText(msg.getMessage(), TextView.BufferType.EDITABLE);
+            bindStats(holder, msg);
             holder.mLeftChatLayout.setVisibility(View.VISIBLE);
             holder.mRightChatLayout.setVisibility(View.GONE);
         }
+        holder.mBoundMessage = msg;
+        holder.mBoundLength = msg.length();
+        mBindTimeStats.record(false, msg.length(), System.nanoTime() - start);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MyViewHolder holder, int position, @NonNull List<Object> payloads) {
+        ChatMessage msg = messages.get(position);
+        if (payloads.isEmpty() || holder.mBoundMessage != msg || msg.isMessageFromUser()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        long start = System.nanoTime();
+        if (payloads.contains(PAYLOAD_APPEND) && holder.mBoundLength < msg.length()) {
+            holder.mBotMessage.append(msg.getMessage(), holder.mBoundLength, msg.length());
+            holder.mBoundLength = msg.length();
+        }
+        if (payloads.contains(PAYLOAD_STATS)) {
+            bindStats(holder, msg);
+        }
+        mBindTimeStats.record(true, msg.length(), System.nanoTime() - start);
     }
 
     @Override
@@ -54,48 +98,125 @@ public class Message_RecyclerViewAdapter extends RecyclerView.Adapter<Message_Re
         return messages.size();
     }
 
+    /**
+     * addMessage: adds a message at the end of the conversation. Complete messages are persisted once every
+     * message before them is complete.
+     */
     public void addMessage(ChatMessage msg) {
         messages.add(msg);
+        messages.commitCompleted();
+    }
+
+    /**
+     * completeMessage: marks a streamed message as complete, so it can be persisted
+     *
+     * @param position adapter position of the message
+     */
+    public void completeMessage(int position) {
+        messages.get(position).setComplete();
+        messages.commitCompleted();
     }
 
     /**
-     * updateBotMessage: updates / inserts message on behalf of Bot
+     * appendToMessage: appends streamed text to an existing bot message. Bound rows append only the new text.
+     * Once the message is long, the text continues in a new message inserted right after it.
      *
-     * @param bot_message message to update or insert
-     * @return newly added message
+     * @param position adapter position of the message to append to
+     * @param text     text to append
+     * @return adapter position of the message now holding the end of the text
      */
-    public String updateBotMessage(String bot_message) {
-        boolean lastMessageFromBot = false;
-        ChatMessage lastMessage;
-
-        if (messages.size() > 1) {
-            lastMessage = messages.get(messages.size() - 1);
-            if (lastMessage.mSender == MessageSender.BOT) {
-                lastMessageFromBot = true;
+    public int appendToMessage(int position, CharSequence text) {
+        ChatMessage msg = messages.get(position);
+        int split = findChunkSplit(msg.length(), text);
+        while (split >= 0) {
+            msg.appendMessage(text.subSequence(0, split));
+            notifyItemChanged(position, PAYLOAD_APPEND);
+
+            // The line breaks or spaces the message is split at are shown by the row break. The new row keeps
+            // them, so the whole message can be joined again.
+            int next = split;
+            while (next < text.length() && Character.isWhitespace(text.charAt(next))) {
+                next++;
             }
-        } else {
-            addMessage(new ChatMessage(bot_message, MessageSender.BOT));
+            String separator = text.subSequence(split, next).toString();
+            text = text.subSequence(next, text.length());
+            msg.setComplete();
+            msg = new ChatMessage("", msg.mSender, false, separator);
+            messages.add(++position, msg);
+            notifyItemInserted(position);
+            messages.commitCompleted();
+            split = findChunkSplit(0, text);
+        }
+        if (text.length() > 0) {
+            msg.appendMessage(text);
+            notifyItemChanged(position, PAYLOAD_APPEND);
         }
+        return position;
+    }
 
-        if (lastMessageFromBot) {
-            messages.get(messages.size() - 1).mMessage = messages.get(messages.size() - 1).mMessage + bot_message;
-        } else {
-            addMessage(new ChatMessage(bot_message, MessageSender.BOT));
+    /**
+     * setMessageStats: shows generation stats under a bot message
+     *
+     * @param position adapter position of the message
+     * @param stats    stats to show
+     */
+    public void setMessageStats(int position, String stats) {
+        messages.get(position).setStats(stats);
+        notifyItemChanged(position, PAYLOAD_STATS);
+    }
+
+    public BindTimeStats getBindTimeStats() {
+        return mBindTimeStats;
+    }
+
+    /**
+     * findChunkSplit: Returns where appended text should start a new row, or -1 to keep it in the current row
+     *
+     * @param length current length of the message
+     * @param text   text about to be appended
+     */
+    private static int findChunkSplit(int length, CharSequence text) {
+        if (length + text.length() <= cSoftChunkLength) {
+            return -1;
+        }
+        for (int i = Math.max(0, cSoftChunkLength - length); i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        if (length + text.length() <= cHardChunkLength) {
+            return -1;
         }
-        return messages.get(messages.size() - 1).mMessage;
+        int hardSplit = Math.max(0, cHardChunkLength - length);
+        for (int i = Math.min(hardSplit, text.length() - 1); i > 0; --i) {
+            if (text.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return hardSplit;
+    }
+
+    private static void bindStats(MyViewHolder holder, ChatMessage msg) {
+        holder.mBotStats.setText(msg.getStats());
+        holder.mBotStats.setVisibility(msg.getStats() == null ? View.GONE : View.VISIBLE);
     }
 
     public static class MyViewHolder extends RecyclerView.ViewHolder {
 
         TextView mUserMessage;
         TextView mBotMessage;
+        TextView mBotStats;
         LinearLayout mLeftChatLayout;
         LinearLayout mRightChatLayout;
+        // Message bound to this row, and how much of its text the row shows.
+        ChatMessage mBoundMessage;
+        int mBoundLength;
 
         public MyViewHolder(@NonNull View itemView) {
             super(itemView);
 
             mBotMessage = itemView.findViewById(R.id.bot_message);
+            mBotStats = itemView.findViewById(R.id.bot_stats);
             mUserMessage = itemView.findViewById(R.id.user_message);
             mLeftChatLayout = itemView.findViewById(R.id.left_chat_layout);
             mRightChatLayout = itemView.findViewById(R.id.right_chat_layout);
@@ -0,0 +1,129 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.os.Debug;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * ModelLoadStats: Load time of a model, and the process memory before and after loading it
+ *
+ *  - RSS (resident set size) counts every page mapped into the process, including shared and file-backed pages
+ *    such as memory-mapped context binaries.
+ *  - PSS (proportional set size) splits shared pages between the processes sharing them; it is what the low memory
+ *    killer ranks apps by.
+ */
+public class ModelLoadStats {
+
+    /**
+     * MemorySnapshot: Process memory at one point in time
+     */
+    public static class MemorySnapshot {
+        private static final String cProcStatus = "/proc/self/status";
+
+        final long mRssBytes;
+        final long mPssBytes;
+
+        MemorySnapshot(long rssBytes, long pssBytes) {
+            mRssBytes = rssBytes;
+            mPssBytes = pssBytes;
+        }
+
+        /**
+         * capture: Measures process memory. PSS walks every mapping of the process, so only capture around rare
+         * events such as model loads.
+         */
+        public static MemorySnapshot capture() {
+            Debug.MemoryInfo memoryInfo = new Debug.MemoryInfo();
+            Debug.getMemoryInfo(memoryInfo);
+            return new MemorySnapshot(readRssBytes(), memoryInfo.getTotalPss() * 1024L);
+        }
+
+        public long getRssBytes() {
+            return mRssBytes;
+        }
+
+        public long getPssBytes() {
+            return mPssBytes;
+        }
+
+        private static long readRssBytes() {
+            try (BufferedReader reader = new BufferedReader(new FileReader(cProcStatus))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // e.g. "VmRSS:   123456 kB"
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                Log.w("ChatApp", "Failed to read resident memory: " + e.getMessage());
+            }
+            return 0;
+        }
+    }
+
+    private final MemorySnapshot mBefore;
+    private final MemorySnapshot mAfter;
+    private final long mLoadNanos;
+
+    public ModelLoadStats(MemorySnapshot before, MemorySnapshot after, long loadNanos) {
+        mBefore = before;
+        mAfter = after;
+        mLoadNanos = loadNanos;
+    }
+
+    public MemorySnapshot getBefore() {
+        return mBefore;
+    }
+
+    public MemorySnapshot getAfter() {
+        return mAfter;
+    }
+
+    public long getLoadNanos() {
+        return mLoadNanos;
+    }
+
+    /**
+     * getRssIncreaseBytes: Returns the resident memory added by loading the model
+     */
+    public long getRssIncreaseBytes() {
+        return mAfter.mRssBytes - mBefore.mRssBytes;
+    }
+
+    /**
+     * getPssIncreaseBytes: Returns the proportional memory added by loading the model
+     */
+    public long getPssIncreaseBytes() {
+        return mAfter.mPssBytes - mBefore.mPssBytes;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("loadMs", mLoadNanos / 1_000_000L);
+        json.put("rssBeforeBytes", mBefore.mRssBytes);
+        json.put("rssAfterBytes", mAfter.mRssBytes);
+        json.put("pssBeforeBytes", mBefore.mPssBytes);
+        json.put("pssAfterBytes", mAfter.mPssBytes);
+        json.put("rssIncreaseBytes", getRssIncreaseBytes());
+        json.put("pssIncreaseBytes", getPssIncreaseBytes());
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "load %d ms, RSS %d -> %d MB, PSS %d -> %d MB", mLoadNanos / 1_000_000L,
+                mBefore.mRssBytes >> 20, mAfter.mRssBytes >> 20, mBefore.mPssBytes >> 20, mAfter.mPssBytes >> 20);
+    }
+}
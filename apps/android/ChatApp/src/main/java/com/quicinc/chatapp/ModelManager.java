@@ -0,0 +1,91 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+/**
+ * ModelManager: Process-scoped owner of the loaded model
+ *
+ *  - Keeps the model loaded across Conversation activities, so re-entering a chat does not reload context binaries.
+ *  - Holds at most one model; acquiring a different model closes the previous one first.
+ */
+public class ModelManager {
+    private static final String TAG = "ChatApp";
+    private static final ModelManager sInstance = new ModelManager();
+
+    private GenieWrapper mGenieWrapper;
+    private String mModelDirPath;
+    private DialogType mDialogType;
+    private String mConfigPath;
+    private ModelLoadStats mLoadStats;
+
+    private ModelManager() {
+    }
+
+    public static ModelManager getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * acquire: Returns the model at provided path, loading it if it is not loaded yet
+     *
+     * A re-used model is reset, so every caller starts a new conversation with the sampler of the config.
+     *
+     * @param modelDirPath directory path on system pointing to model bundle
+     * @param dialogType dialog configuration of the bundle to load
+     * @param configPath Genie config of the dialog type, rendered by GenieConfigBuilder
+     * @param prefixCacheDirPath directory to save the system prompt prefill in
+     * @return loaded model. Owned by the manager; callers must not close it.
+     */
+    public synchronized GenieWrapper acquire(String modelDirPath, DialogType dialogType, String configPath,
+                                             String prefixCacheDirPath) {
+        if (mGenieWrapper != null
+                && mModelDirPath.equals(modelDirPath)
+                && mDialogType == dialogType
+                && mConfigPath.equals(configPath)) {
+            Log.i(TAG, "Re-using loaded model.");
+            mGenieWrapper.reset();
+            mGenieWrapper.setSampler(null);
+            return mGenieWrapper;
+        }
+
+        release();
+        GenieWrapper genieWrapper = new GenieWrapper(modelDirPath, dialogType, configPath, prefixCacheDirPath);
+        ModelLoadStats.MemorySnapshot before = ModelLoadStats.MemorySnapshot.capture();
+        long loadStart = System.nanoTime();
+        genieWrapper.load();
+        mLoadStats = new ModelLoadStats(before, ModelLoadStats.MemorySnapshot.capture(), System.nanoTime() - loadStart);
+        Log.i(TAG, "Model loaded: " + mLoadStats);
+        mGenieWrapper = genieWrapper;
+        mModelDirPath = modelDirPath;
+        mDialogType = dialogType;
+        mConfigPath = configPath;
+        return mGenieWrapper;
+    }
+
+    /**
+     * getLoadStats: Returns load time and process memory before and after loading the loaded model, or null if no
+     * model is loaded. Memory settings are part of the Genie config; see MemoryProfile.
+     */
+    public synchronized ModelLoadStats getLoadStats() {
+        return mLoadStats;
+    }
+
+    /**
+     * release: Frees the loaded model, if any
+     */
+    public synchronized void release() {
+        if (mGenieWrapper != null) {
+            Log.i(TAG, "Releasing loaded model.");
+            mGenieWrapper.close();
+            mGenieWrapper = null;
+            mModelDirPath = null;
+            mDialogType = null;
+            mConfigPath = null;
+            mLoadStats = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NativeCleaner: Runs a cleanup action once its owner becomes unreachable, or earlier when cleaned explicitly
+ *
+ * Minimal equivalent of java.lang.ref.Cleaner, which needs API 33 (ChatApp supports API 31+).
+ * Use it as a fallback for objects that own native memory and should be closed explicitly.
+ */
+class NativeCleaner {
+
+    /**
+     * Cleanable: Handle to a registered cleanup action
+     */
+    static class Cleanable extends PhantomReference<Object> {
+        private final Runnable mAction;
+        private boolean mCleaned = false;
+
+        private Cleanable(Object owner, Runnable action) {
+            super(owner, sQueue);
+            mAction = action;
+        }
+
+        /**
+         * clean: Runs the cleanup action if it has not run yet, and unregisters it
+         */
+        void clean() {
+            synchronized (this) {
+                if (mCleaned) {
+                    return;
+                }
+                mCleaned = true;
+            }
+            sCleanables.remove(this);
+            mAction.run();
+        }
+    }
+
+    private static final String TAG = "ChatApp";
+    private static final ReferenceQueue<Object> sQueue = new ReferenceQueue<>();
+    // Keeps registered references reachable until they are enqueued.
+    private static final Set<Cleanable> sCleanables = ConcurrentHashMap.newKeySet();
+    private static Thread sCleanerThread;
+
+    private NativeCleaner() {
+    }
+
+    /**
+     * register: Registers action to run once owner becomes unreachable
+     *
+     * @param owner  object to track
+     * @param action cleanup action. Must not reference owner, otherwise owner never becomes unreachable.
+     * @return handle to run the action explicitly
+     */
+    static Cleanable register(Object owner, Runnable action) {
+        Cleanable cleanable = new Cleanable(owner, action);
+        sCleanables.add(cleanable);
+        synchronized (NativeCleaner.class) {
+            if (sCleanerThread == null) {
+                sCleanerThread = new Thread(NativeCleaner::runCleanupLoop, "NativeCleaner");
+                sCleanerThread.setDaemon(true);
+                sCleanerThread.start();
+            }
+        }
+        return cleanable;
+    }
+
+    private static void runCleanupLoop() {
+        while (true) {
+            try {
+                Cleanable cleanable = (Cleanable) sQueue.remove();
+                Log.w(TAG, "Native resource was not closed explicitly; cleaning up.");
+                cleanable.clean();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to clean up native resource: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * SamplerConfig: How the next token is picked from the model's output
+ *
+ *  - Applied to the loaded model before a query, without reloading it; see ChatEngine.setSampler.
+ *  - GREEDY always picks the most likely token: responses are deterministic, and top-k 1 lets the sampler take the
+ *    argmax without computing softmax or top-p.
+ */
+public class SamplerConfig {
+    // Most likely token only.
+    public static final SamplerConfig GREEDY = new SamplerConfig(0, 1.0, 1, 1.0);
+
+    private final int mSeed;
+    private final double mTemperature;
+    private final int mTopK;
+    private final double mTopP;
+
+    /**
+     * SamplerConfig
+     *
+     * @param seed        random seed; a fixed seed makes sampling repeatable
+     * @param temperature divides logits before sampling; lower is more deterministic. Must be positive.
+     * @param topK        samples from the topK most likely tokens only, 1 for greedy. 0 for no limit.
+     * @param topP        samples from the most likely tokens whose probabilities add up to topP. In (0, 1].
+     */
+    public SamplerConfig(int seed, double temperature, int topK, double topP) {
+        if (!(temperature > 0) || topK < 0 || !(topP > 0 && topP <= 1)) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Invalid sampler: temp %s, top-k %d, top-p %s", temperature, topK, topP));
+        }
+        mSeed = seed;
+        mTemperature = temperature;
+        mTopK = topK;
+        mTopP = topP;
+    }
+
+    /**
+     * fromJson: Reads the "sampler" object of a Genie config. Missing values use Genie's defaults.
+     */
+    public static SamplerConfig fromJson(JSONObject sampler) {
+        return new SamplerConfig(sampler.optInt("seed", 0), sampler.optDouble("temp", 1.0),
+                sampler.optInt("top-k", 0), sampler.optDouble("top-p", 1.0));
+    }
+
+    public int getSeed() {
+        return mSeed;
+    }
+
+    public double getTemperature() {
+        return mTemperature;
+    }
+
+    public int getTopK() {
+        return mTopK;
+    }
+
+    public double getTopP() {
+        return mTopP;
+    }
+
+    public boolean isGreedy() {
+        return mTopK == 1;
+    }
+
+    /**
+     * toJson: Returns the sampler in Genie config format
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("version", 1);
+        json.put("seed", mSeed);
+        json.put("temp", mTemperature);
+        json.put("top-k", mTopK);
+        json.put("top-p", mTopP);
+        return json;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SamplerConfig)) {
+            return false;
+        }
+        SamplerConfig other = (SamplerConfig) o;
+        return mSeed == other.mSeed && mTemperature == other.mTemperature && mTopK == other.mTopK
+                && mTopP == other.mTopP;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mSeed, mTemperature, mTopK, mTopP);
+    }
+
+    @Override
+    public String toString() {
+        return isGreedy() ? "greedy" : String.format(Locale.ROOT, "seed %d, temp %.2f, top-k %d, top-p %.2f",
+                mSeed, mTemperature, mTopK, mTopP);
+    }
+}
@@ -0,0 +1,25 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+/**
+ * StopReason: Why response generation stopped. Ordinals mirror native App::StopReason.
+ */
+public enum StopReason {
+    // Model finished the response on its own.
+    COMPLETED,
+    // Generation was cancelled.
+    CANCELLED,
+    // GenerationLimits max tokens were generated.
+    MAX_TOKENS,
+    // A GenerationLimits stop string was generated. The stop string is not part of the response.
+    STOP_STRING,
+    // GenerationLimits time budget elapsed.
+    TIME_BUDGET;
+
+    static StopReason fromNative(int value) {
+        return values()[value];
+    }
+}
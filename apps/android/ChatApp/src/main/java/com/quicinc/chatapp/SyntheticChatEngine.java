@@ -0,0 +1,277 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * SyntheticChatEngine: ChatEngine that streams deterministic tokens with a configurable latency profile
+ *
+ * Stands in for the model to test and load-test the chat pipeline off-device:
+ *  - The response to a prompt only depends on the prompt and the seed, and is generated at the profile's speed.
+ *  - Generation limits, stop strings and cancellation behave like GenieWrapper.
+ *  - Context tokens are counted with the same estimate as the native side.
+ */
+public class SyntheticChatEngine implements ChatEngine {
+
+    /**
+     * LatencyProfile: Simulated model speed
+     */
+    public static class LatencyProfile {
+        // No delays; measures pipeline overhead only.
+        public static final LatencyProfile INSTANT = new LatencyProfile(0, 0, 0, 0);
+        // Roughly a 3B model on a recent Snapdragon NPU.
+        public static final LatencyProfile NPU = new LatencyProfile(50_000_000L, 1_000_000L, 50_000_000L, 0.1);
+        // Roughly a 3B model on CPU.
+        public static final LatencyProfile CPU = new LatencyProfile(200_000_000L, 10_000_000L, 200_000_000L, 0.3);
+
+        final long mPrefillBaseNanos;
+        final long mPrefillNanosPerToken;
+        final long mDecodeNanosPerToken;
+        final double mJitter;
+
+        /**
+         * @param prefillBaseNanos     fixed time to first token
+         * @param prefillNanosPerToken added time to first token per prompt token
+         * @param decodeNanosPerToken  mean time between generated tokens
+         * @param jitter               relative spread of every delay, e.g. 0.1 for +-10%
+         */
+        public LatencyProfile(long prefillBaseNanos, long prefillNanosPerToken, long decodeNanosPerToken, double jitter) {
+            mPrefillBaseNanos = prefillBaseNanos;
+            mPrefillNanosPerToken = prefillNanosPerToken;
+            mDecodeNanosPerToken = decodeNanosPerToken;
+            mJitter = jitter;
+        }
+    }
+
+    private static final String[] cWords = {
+            "the", "model", "token", "answer", "is", "a", "quick", "response", "to", "your", "question", "and",
+            "it", "runs", "on", "device", "with", "low", "latency", "so", "that", "every", "word", "streams",
+    };
+    // Tokens per paragraph of generated text.
+    private static final int cParagraphTokens = 64;
+    // Template tokens added around every user prompt, as estimated natively.
+    private static final int cPromptTemplateTokens = 16;
+    // Holds the context tokens of a saved dialog.
+    private static final String cDialogFileName = "context_tokens.txt";
+
+    private final LatencyProfile mProfile;
+    private final int mResponseTokens;
+    private final int mContextSize;
+    private final long mSeed;
+    private final Object mQueryLock = new Object();
+    private volatile boolean mLoaded = false;
+    private volatile boolean mCancelled = false;
+    private volatile int mContextTokens = 0;
+    private volatile GenerationStats mLastStats;
+
+    /**
+     * SyntheticChatEngine
+     *
+     * @param profile        simulated model speed
+     * @param responseTokens tokens generated per response, unless a limit stops generation first
+     * @param contextSize    simulated context size in tokens, 0 for unlimited
+     * @param seed           seed of the generated text
+     */
+    public SyntheticChatEngine(LatencyProfile profile, int responseTokens, int contextSize, long seed) {
+        mProfile = profile;
+        mResponseTokens = responseTokens;
+        mContextSize = contextSize;
+        mSeed = seed;
+    }
+
+    @Override
+    public void load() {
+        mLoaded = true;
+    }
+
+    @Override
+    public GenerationStats getResponseForPrompt(String userInput, GenerationLimits limits, StringCallback sink) {
+        synchronized (mQueryLock) {
+            checkLoaded();
+            mCancelled = false;
+            int promptTokens = estimateTokens(userInput) + cPromptTemplateTokens;
+            mContextTokens += promptTokens;
+
+            Random random = new Random(mSeed ^ userInput.hashCode());
+            long start = System.nanoTime();
+            long deadline = limits.getTimeBudgetMillis() > 0 ? start + limits.getTimeBudgetMillis() * 1_000_000L : Long.MAX_VALUE;
+            int maxTokens = limits.getMaxTokens() > 0 ? Math.min(limits.getMaxTokens(), mResponseTokens) : mResponseTokens;
+            long[] timestamps = new long[2 + maxTokens];
+            int numTokens = 0;
+            StringBuilder response = new StringBuilder();
+            StopReason stopReason = StopReason.COMPLETED;
+
+            long next = start + jitter(mProfile.mPrefillBaseNanos + promptTokens * mProfile.mPrefillNanosPerToken, random);
+            while (numTokens < maxTokens) {
+                if (mContextSize > 0 && mContextTokens >= mContextSize) {
+                    break;
+                }
+                if (!sleepUntil(next, deadline)) {
+                    stopReason = mCancelled ? StopReason.CANCELLED : StopReason.TIME_BUDGET;
+                    break;
+                }
+                String separator = numTokens == 0 ? "" : numTokens % cParagraphTokens == 0 ? "\n\n" : " ";
+                String token = separator + cWords[random.nextInt(cWords.length)];
+                timestamps[2 + numTokens++] = System.nanoTime();
+                mContextTokens++;
+
+                response.append(token);
+                int stop = indexOfStopString(response, limits.getStopStrings());
+                if (stop >= 0) {
+                    // Emit the text before the stop string only.
+                    int emitted = response.length() - token.length();
+                    if (stop > emitted) {
+                        sink.onNewString(response.substring(emitted, stop));
+                    }
+                    stopReason = StopReason.STOP_STRING;
+                    break;
+                }
+                sink.onNewString(token);
+                next = System.nanoTime() + jitter(mProfile.mDecodeNanosPerToken, random);
+            }
+            if (stopReason == StopReason.COMPLETED && numTokens == maxTokens && limits.getMaxTokens() > 0
+                    && maxTokens < mResponseTokens) {
+                stopReason = StopReason.MAX_TOKENS;
+            }
+
+            long[] queryTimestamps = new long[2 + numTokens];
+            queryTimestamps[0] = start;
+            queryTimestamps[1] = System.nanoTime();
+            System.arraycopy(timestamps, 2, queryTimestamps, 2, numTokens);
+            mLastStats = GenerationStats.fromTimestamps(stopReason, queryTimestamps);
+            return mLastStats;
+        }
+    }
+
+    @Override
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    @Override
+    public void prefillSystemPrompt() {
+        // There is no system prompt; prompt latency only depends on the prompt.
+    }
+
+    @Override
+    public void setSampler(SamplerConfig sampler) {
+        // Generated text only depends on the prompt and the seed.
+    }
+
+    @Override
+    public void reset() {
+        synchronized (mQueryLock) {
+            checkLoaded();
+            mContextTokens = 0;
+        }
+    }
+
+    /**
+     * saveDialog: Saves the context tokens; there is no other state
+     */
+    @Override
+    public void saveDialog(String dirPath) {
+        synchronized (mQueryLock) {
+            checkLoaded();
+            try {
+                Files.createDirectories(Paths.get(dirPath));
+                Files.write(Paths.get(dirPath, cDialogFileName),
+                        String.valueOf(mContextTokens).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to save dialog: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public boolean restoreDialog(String dirPath) {
+        synchronized (mQueryLock) {
+            checkLoaded();
+            Path path = Paths.get(dirPath, cDialogFileName);
+            try {
+                mContextTokens = Integer.parseInt(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+                return true;
+            } catch (IOException | NumberFormatException e) {
+                mContextTokens = 0;
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void appendTurn(String userPrompt, String response) {
+        synchronized (mQueryLock) {
+            checkLoaded();
+            mContextTokens += estimateTokens(userPrompt) + cPromptTemplateTokens + estimateTokens(response);
+        }
+    }
+
+    @Override
+    public GenerationStats getLastStats() {
+        return mLastStats;
+    }
+
+    @Override
+    public int getContextTokens() {
+        return mContextTokens;
+    }
+
+    @Override
+    public int getContextSize() {
+        return mContextSize;
+    }
+
+    private void checkLoaded() {
+        if (!mLoaded) {
+            throw new IllegalStateException("SyntheticChatEngine is not loaded.");
+        }
+    }
+
+    /**
+     * sleepUntil: Waits until the provided time, returning false if cancelled or the deadline passes first
+     */
+    private boolean sleepUntil(long wakeNanos, long deadlineNanos) {
+        long now;
+        while ((now = System.nanoTime()) < wakeNanos) {
+            if (mCancelled || now >= deadlineNanos) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(wakeNanos, deadlineNanos) - now);
+        }
+        return !mCancelled && now < deadlineNanos;
+    }
+
+    private long jitter(long nanos, Random random) {
+        if (mProfile.mJitter == 0) {
+            return nanos;
+        }
+        return Math.max(0, (long) (nanos * (1 + mProfile.mJitter * (2 * random.nextDouble() - 1))));
+    }
+
+    private static int indexOfStopString(CharSequence response, String[] stopStrings) {
+        int first = -1;
+        for (String stopString : stopStrings) {
+            int index = response.toString().indexOf(stopString);
+            if (index >= 0 && (first < 0 || index < first)) {
+                first = index;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * estimateTokens: Over-estimates the tokens of provided text, matching the native estimate
+     */
+    private static int estimateTokens(String text) {
+        return (text.getBytes(StandardCharsets.UTF_8).length + 2) / 3;
+    }
+}
@@ -0,0 +1,99 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TokenRing: Receives response text from native code as UTF-8 bytes in a direct ByteBuffer shared with it
+ *
+ *  - Native code writes each token's bytes at its write position, wrapping around to the start of the buffer, and
+ *    calls onBytes with the written range only: no Java string or JNI local reference is created natively per token.
+ *  - Bytes are decoded as UTF-8 and passed on to a StringCallback. A character split across tokens is passed on once
+ *    all its bytes arrived; malformed bytes become U+FFFD.
+ *  - Serves one query at a time: begin() before the native call, finish() after it returns.
+ */
+class TokenRing {
+    // Bytes of an incomplete UTF-8 character carried over to the next range, at most.
+    private static final int cMaxCarriedBytes = 3;
+
+    private final ByteBuffer mBuffer;
+    // Carried bytes followed by the range being decoded.
+    private final ByteBuffer mInput;
+    private final CharBuffer mOutput;
+    private final CharsetDecoder mDecoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private StringCallback mCallback;
+
+    /**
+     * TokenRing
+     *
+     * @param capacity size of the shared buffer in bytes; longer tokens are written in several ranges
+     */
+    TokenRing(int capacity) {
+        mBuffer = ByteBuffer.allocateDirect(capacity);
+        mInput = ByteBuffer.allocate(capacity + cMaxCarriedBytes);
+        mOutput = CharBuffer.allocate(capacity + cMaxCarriedBytes);
+    }
+
+    /**
+     * getBuffer: Returns the direct buffer native code writes to
+     */
+    ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * begin: Starts a query whose text is passed on to provided callback
+     */
+    void begin(StringCallback callback) {
+        mCallback = callback;
+        mDecoder.reset();
+        mInput.clear();
+        mOutput.clear();
+    }
+
+    /**
+     * onBytes: Called by native code with the range of the buffer it just wrote, on the query's thread
+     */
+    void onBytes(int offset, int length) {
+        ByteBuffer range = mBuffer.duplicate();
+        range.limit(offset + length);
+        range.position(offset);
+        mInput.put(range);
+        mInput.flip();
+        mDecoder.decode(mInput, mOutput, false);
+        // Keep the bytes of a character that continues in the next range.
+        mInput.compact();
+        publish();
+    }
+
+    /**
+     * finish: Passes on bytes left of an incomplete character as U+FFFD, then ends the query
+     */
+    void finish() {
+        mInput.flip();
+        mDecoder.decode(mInput, mOutput, true);
+        mDecoder.flush(mOutput);
+        mInput.clear();
+        publish();
+        mCallback = null;
+    }
+
+    private void publish() {
+        if (mOutput.position() == 0) {
+            return;
+        }
+        mOutput.flip();
+        String text = mOutput.toString();
+        mOutput.clear();
+        mCallback.onNewString(text);
+    }
+}
@@ -0,0 +1,195 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * TokenStreamSink: Batches streamed tokens and publishes them to the UI at most once per frame
+ *
+ * Tokens arrive on the inference thread and are appended to a pending buffer.
+ * The first token after a publish schedules a Choreographer frame callback; every token that arrives
+ * before that frame is published together, so the UI thread does one update per vsync regardless of token rate.
+ *
+ * Also tracks generation speed (tokens / sec) and UI lag (time from a token's arrival to the frame that displays it).
+ */
+public class TokenStreamSink implements StringCallback, Choreographer.FrameCallback {
+
+    /**
+     * Publisher: Receives batched text on the UI thread
+     */
+    public interface Publisher {
+        /**
+         * @param text text that arrived since the previous publish. Only valid for the duration of the call.
+         */
+        void publish(CharSequence text);
+    }
+
+    /**
+     * FrameScheduler: Runs a callback on the UI thread at the next frame. Choreographer on device; tests drive
+     * frames themselves.
+     */
+    interface FrameScheduler {
+        void postFrameCallback(Choreographer.FrameCallback callback);
+    }
+
+    private static final String TAG = "ChatApp";
+
+    private final FrameScheduler mScheduler;
+    private final Publisher mPublisher;
+    private final Object mLock = new Object();
+
+    // Double-buffered: the inference thread appends to mPending while the UI thread publishes mPublishing.
+    private StringBuilder mPending = new StringBuilder();
+    private StringBuilder mPublishing = new StringBuilder();
+    private boolean mFrameScheduled = false;
+    private long mOldestPendingTokenNanos;
+
+    private final long mStartNanos;
+    private int mTokenCount = 0;
+    private long mFirstTokenNanos;
+    private long mLastTokenNanos;
+    private int mPublishCount = 0;
+    private long mTotalUiLagNanos = 0;
+    private long mMaxUiLagNanos = 0;
+
+    /**
+     * TokenStreamSink: Must be created on the UI thread
+     *
+     * @param publisher receives batched text on the UI thread
+     */
+    public TokenStreamSink(Publisher publisher) {
+        this(publisher, Choreographer.getInstance()::postFrameCallback);
+    }
+
+    TokenStreamSink(Publisher publisher, FrameScheduler scheduler) {
+        mScheduler = scheduler;
+        mPublisher = publisher;
+        mStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void onNewString(String token) {
+        long now = System.nanoTime();
+        synchronized (mLock) {
+            if (mTokenCount == 0) {
+                mFirstTokenNanos = now;
+            }
+            mTokenCount++;
+            mLastTokenNanos = now;
+
+            if (mPending.length() == 0) {
+                mOldestPendingTokenNanos = now;
+            }
+            mPending.append(token);
+
+            if (mFrameScheduled) {
+                return;
+            }
+            mFrameScheduled = true;
+        }
+        // Choreographer is safe to post to from any thread; the callback runs on the UI thread.
+        mScheduler.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        StringBuilder ready;
+        synchronized (mLock) {
+            mFrameScheduled = false;
+            if (mPending.length() == 0) {
+                return;
+            }
+            ready = mPending;
+            mPending = mPublishing;
+            mPublishing = ready;
+
+            long lag = System.nanoTime() - mOldestPendingTokenNanos;
+            mPublishCount++;
+            mTotalUiLagNanos += lag;
+            mMaxUiLagNanos = Math.max(mMaxUiLagNanos, lag);
+        }
+
+        mPublisher.publish(ready);
+        ready.setLength(0);
+    }
+
+    /**
+     * finish: Call once generation is done. Publishes any remaining text, then logs streaming metrics, on the UI thread.
+     */
+    public void finish() {
+        finish(null);
+    }
+
+    /**
+     * finish: Call once generation is done. Publishes any remaining text, logs streaming metrics,
+     * then runs onFinished, on the UI thread.
+     *
+     * @param onFinished runs after the last publish; may be null
+     */
+    public void finish(Runnable onFinished) {
+        mScheduler.postFrameCallback(frameTimeNanos -> {
+            doFrame(frameTimeNanos);
+            logSummary();
+            if (onFinished != null) {
+                onFinished.run();
+            }
+        });
+    }
+
+    public int getTokenCount() {
+        synchronized (mLock) {
+            return mTokenCount;
+        }
+    }
+
+    /**
+     * @return time from sink creation to the first token, in milliseconds
+     */
+    public double getTimeToFirstTokenMillis() {
+        synchronized (mLock) {
+            return mTokenCount == 0 ? 0 : (mFirstTokenNanos - mStartNanos) / 1e6;
+        }
+    }
+
+    /**
+     * @return generation speed after the first token, in tokens per second
+     */
+    public double getTokensPerSecond() {
+        synchronized (mLock) {
+            long duration = mLastTokenNanos - mFirstTokenNanos;
+            return mTokenCount < 2 || duration == 0 ? 0 : (mTokenCount - 1) * 1e9 / duration;
+        }
+    }
+
+    /**
+     * @return mean time from a token's arrival to the frame that published it, in milliseconds
+     */
+    public double getMeanUiLagMillis() {
+        synchronized (mLock) {
+            return mPublishCount == 0 ? 0 : mTotalUiLagNanos / 1e6 / mPublishCount;
+        }
+    }
+
+    /**
+     * @return worst time from a token's arrival to the frame that published it, in milliseconds
+     */
+    public double getMaxUiLagMillis() {
+        synchronized (mLock) {
+            return mMaxUiLagNanos / 1e6;
+        }
+    }
+
+    /**
+     * logSummary: Logs streaming metrics for this response
+     */
+    public void logSummary() {
+        synchronized (mLock) {
+            Log.i(TAG, String.format("Streamed %d tokens in %d UI updates | TTFT %.0f ms | %.1f tok/s | UI lag mean %.1f ms, max %.1f ms",
+                    mTokenCount, mPublishCount, getTimeToFirstTokenMillis(), getTokensPerSecond(), getMeanUiLagMillis(), getMaxUiLagMillis()));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChatSessionManagerTest: Switches SyntheticChatEngine's dialog between sessions, and keeps it across a re-created
+ * activity, the way Conversation does
+ */
+public class ChatSessionManagerTest {
+    private static final long cTimeoutSeconds = 10;
+    private static final int cContextSize = 1024;
+    private static final int cResponseTokens = 32;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mHistoryRoot;
+    private File mDialogRoot;
+    private SyntheticChatEngine mEngine;
+    private ChatSessionManager mSessions;
+    private InferenceQueue mQueue;
+
+    @Before
+    public void setUp() throws Exception {
+        mHistoryRoot = mFolder.newFolder("history");
+        mDialogRoot = mFolder.newFolder("dialogs");
+        mEngine = new SyntheticChatEngine(SyntheticChatEngine.LatencyProfile.INSTANT, cResponseTokens, cContextSize, 0);
+        mEngine.load();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mQueue != null) {
+            mQueue.shutdown();
+            assertTrue(mQueue.awaitTermination(cTimeoutSeconds * 1000));
+        }
+        if (mSessions != null) {
+            mSessions.close(false);
+        }
+    }
+
+    /**
+     * start: Opens the sessions on disk and attaches them like Conversation.onEngineLoaded, selecting the session with
+     * provided id, or a new session if there is none
+     */
+    private void start(int selectedId) throws Exception {
+        mSessions = new ChatSessionManager(mHistoryRoot, mDialogRoot, true);
+        ChatSession selected = mSessions.getSession(selectedId);
+        mSessions.select(selected != null ? selected : mSessions.createSession());
+        mSessions.attach(mEngine, cResponseTokens, false);
+        mQueue = new InferenceQueue(mEngine, new GenerationLimits(cResponseTokens, 0),
+                mSessions.getSelected().getContextWindowManager());
+        mSessions.switchTo(mSessions.getSelected(), mQueue);
+    }
+
+    /**
+     * recreate: Destroys the activity like Conversation.onDestroy when it is re-created, and resets the model like
+     * ModelManager.acquire, then starts again on the session that was shown
+     */
+    private void recreate(boolean saveActive) throws Exception {
+        int selectedId = mSessions.getSelected().getId();
+        if (saveActive) {
+            mSessions.saveActive(mQueue);
+        }
+        mQueue.shutdown();
+        assertTrue(mQueue.awaitTermination(cTimeoutSeconds * 1000));
+        mSessions.close(false);
+        mEngine.reset();
+        start(selectedId);
+    }
+
+    /**
+     * send: Adds a prompt to the selected session's history, answers it on the queue and adds the response
+     */
+    private void send(String prompt) throws Exception {
+        ChatHistoryStore history = mSessions.getSelected().getHistory();
+        history.add(new ChatMessage(prompt, MessageSender.USER));
+        StringBuilder response = new StringBuilder();
+        CountDownLatch done = new CountDownLatch(1);
+        mQueue.submit(prompt, new InferenceQueue.ResponseListener() {
+            @Override
+            public void onNewString(String token) {
+                response.append(token);
+            }
+
+            @Override
+            public void onComplete(InferenceQueue.Status status, GenerationStats stats) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(cTimeoutSeconds, TimeUnit.SECONDS));
+        history.add(new ChatMessage(response.toString(), MessageSender.BOT));
+        history.commitCompleted();
+    }
+
+    /**
+     * contextTokens: Returns the context tokens once every queued switch has run
+     */
+    private int contextTokens() throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        mQueue.execute(drained::countDown);
+        assertTrue(drained.await(cTimeoutSeconds, TimeUnit.SECONDS));
+        return mEngine.getContextTokens();
+    }
+
+    @Test
+    public void switchingSavesTheActiveDialogAndRestoresTheTarget() throws Exception {
+        start(0);
+        ChatSession first = mSessions.getSelected();
+        send("First session, first prompt");
+        send("First session, second prompt");
+        int firstTokens = contextTokens();
+
+        ChatSession second = mSessions.createSession();
+        mSessions.switchTo(second, mQueue);
+        assertEquals(0, contextTokens());
+        assertTrue(first.getDialogDir().isDirectory());
+        send("Second session prompt");
+        int secondTokens = contextTokens();
+
+        mSessions.switchTo(first, mQueue);
+        assertEquals(firstTokens, contextTokens());
+        mSessions.switchTo(second, mQueue);
+        assertEquals(secondTokens, contextTokens());
+    }
+
+    @Test
+    public void restoredDialogStateIsDeleted() throws Exception {
+        start(0);
+        ChatSession first = mSessions.getSelected();
+        send("Prompt");
+        ChatSession second = mSessions.createSession();
+        mSessions.switchTo(second, mQueue);
+        mSessions.switchTo(first, mQueue);
+        contextTokens();
+
+        assertFalse(first.getDialogDir().exists());
+        assertFalse(first.isDialogSaved());
+        // A later answer moves the dialog on; switching away saves the new state.
+        send("Another prompt");
+        int tokens = contextTokens();
+        mSessions.switchTo(second, mQueue);
+        mSessions.switchTo(first, mQueue);
+        assertEquals(tokens, contextTokens());
+    }
+
+    @Test
+    public void savedActiveDialogIsRestoredAfterTheActivityIsRecreated() throws Exception {
+        start(0);
+        send("First prompt");
+        send("Second prompt");
+        int tokens = contextTokens();
+
+        recreate(true);
+
+        assertEquals(tokens, contextTokens());
+        assertFalse(mSessions.getSelected().getDialogDir().exists());
+    }
+
+    @Test
+    public void unsavedDialogIsRebuiltFromHistoryAfterTheEngineIsReset() throws Exception {
+        start(0);
+        send("First prompt");
+        send("Second prompt");
+
+        recreate(false);
+
+        assertTrue(contextTokens() > 0);
+    }
+
+    @Test
+    public void shutdownRunsTheQueuedSaveBeforeStopping() throws Exception {
+        start(0);
+        send("Prompt");
+        ChatSession session = mSessions.getSelected();
+        mSessions.saveActive(mQueue);
+        mQueue.shutdown();
+
+        assertTrue(mQueue.awaitTermination(cTimeoutSeconds * 1000));
+        assertTrue(session.getDialogDir().isDirectory());
+        mQueue = null;
+    }
+}
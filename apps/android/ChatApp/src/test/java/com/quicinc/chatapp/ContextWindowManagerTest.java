@@ -0,0 +1,207 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ContextWindowManagerTest: Holds long conversations in SyntheticChatEngine's simulated context
+ */
+public class ContextWindowManagerTest {
+    private static final int cContextSize = 1024;
+    private static final int cResponseTokens = 64;
+
+    /**
+     * RecordingEngine: Records the turns prefilled by appendTurn
+     */
+    private static class RecordingEngine extends SyntheticChatEngine {
+        final List<String> mAppendedTurns = new ArrayList<>();
+
+        RecordingEngine() {
+            super(SyntheticChatEngine.LatencyProfile.INSTANT, cResponseTokens, cContextSize, 0);
+        }
+
+        @Override
+        public void appendTurn(String userPrompt, String response) {
+            mAppendedTurns.add(userPrompt + " -> " + response);
+            super.appendTurn(userPrompt, response);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private RecordingEngine mEngine;
+    private ContextWindowManager mManager;
+
+    @Before
+    public void setUp() {
+        mEngine = new RecordingEngine();
+        mEngine.load();
+        mManager = new ContextWindowManager(mEngine, cResponseTokens, false);
+    }
+
+    /**
+     * send: Sends a prompt the way InferenceQueue does
+     */
+    private String send(String prompt) {
+        mManager.prepareForPrompt(prompt);
+        int contextTokensBefore = mEngine.getContextTokens();
+        StringBuilder response = new StringBuilder();
+        mEngine.getResponseForPrompt(prompt, new GenerationLimits(cResponseTokens, 0), response::append);
+        mManager.onTurnComplete(prompt, response.toString(), contextTokensBefore);
+        return response.toString();
+    }
+
+    @Test
+    public void longConversationsStayWithinTheContext() {
+        for (int i = 0; i < 100; ++i) {
+            send("Tell me more about topic number " + i + ".");
+            assertTrue("Context overflowed at turn " + i, mEngine.getContextTokens() <= cContextSize);
+            // Every response has room to complete.
+            assertEquals(cResponseTokens, mEngine.getLastStats().getNumTokens());
+        }
+    }
+
+    @Test
+    public void evictionLeavesRoomForThePromptAndItsResponse() {
+        int previous = 0;
+        boolean evicted = false;
+        for (int i = 0; i < 100 && !evicted; ++i) {
+            String prompt = "Prompt " + i;
+            mManager.prepareForPrompt(prompt);
+            int contextTokens = mEngine.getContextTokens();
+            if (contextTokens < previous) {
+                evicted = true;
+                assertTrue(contextTokens > 0);
+            }
+            assertTrue(contextTokens + ContextWindowManager.estimatePromptTokens(prompt) + cResponseTokens
+                    <= cContextSize);
+            int contextTokensBefore = mEngine.getContextTokens();
+            StringBuilder response = new StringBuilder();
+            mEngine.getResponseForPrompt(prompt, new GenerationLimits(cResponseTokens, 0), response::append);
+            mManager.onTurnComplete(prompt, response.toString(), contextTokensBefore);
+            previous = mEngine.getContextTokens();
+        }
+        assertTrue("No turn was evicted", evicted);
+    }
+
+    @Test
+    public void rebuildDialogPrefillsTheNewestTurnsAfterAReset() {
+        for (int i = 0; i < 3; ++i) {
+            send("Prompt " + i);
+        }
+        int contextTokens = mEngine.getContextTokens();
+        mEngine.reset();
+        assertEquals(0, mEngine.getContextTokens());
+
+        mManager.rebuildDialog();
+        // Appended responses are estimated from their text, so the rebuilt dialog may hold somewhat more tokens.
+        assertTrue(mEngine.getContextTokens() > 0);
+        assertTrue(mEngine.getContextTokens() <= contextTokens + 3 * cResponseTokens);
+    }
+
+    @Test
+    public void rebuildDialogOfANewConversationLeavesTheDialogEmpty() {
+        mManager.rebuildDialog();
+        assertEquals(0, mEngine.getContextTokens());
+    }
+
+    @Test
+    public void turnsAreForgottenWhenTheDialogWasResetWhileAnswering() {
+        send("Prompt 0");
+        send("Prompt 1");
+        // The dialog loses its turns (e.g. the engine reset after an empty response); only the next turn remains.
+        int contextTokensBefore = mEngine.getContextTokens();
+        mEngine.reset();
+        StringBuilder response = new StringBuilder();
+        mEngine.getResponseForPrompt("Prompt 2", new GenerationLimits(cResponseTokens, 0), response::append);
+        mManager.onTurnComplete("Prompt 2", response.toString(), contextTokensBefore);
+        int oneTurnTokens = mEngine.getContextTokens();
+
+        mEngine.reset();
+        mManager.rebuildDialog();
+        assertTrue(mEngine.getContextTokens() <= oneTurnTokens + cResponseTokens);
+    }
+
+    @Test
+    public void restoreTurnsCoalescesThePromptsBeforeEachResponse() throws Exception {
+        try (ChatHistoryStore history = ChatHistoryStore.open(mFolder.newFolder("history"))) {
+            history.add(new ChatMessage("Welcome", MessageSender.BOT));
+            history.add(new ChatMessage("First", MessageSender.USER));
+            history.add(new ChatMessage("Answer 1", MessageSender.BOT));
+            history.add(new ChatMessage("Second", MessageSender.USER));
+            history.add(new ChatMessage("Third", MessageSender.USER));
+            history.add(new ChatMessage("Answer 2", MessageSender.BOT));
+            history.add(new ChatMessage("Unanswered", MessageSender.USER));
+            history.commitCompleted();
+
+            mManager.restoreTurns(history);
+        }
+        mManager.rebuildDialog();
+
+        String coalescedPrompt = "Second" + InferenceQueue.cCoalescedPromptSeparator + "Third";
+        assertEquals(List.of("First -> Answer 1", coalescedPrompt + " -> Answer 2"), mEngine.mAppendedTurns);
+    }
+
+    @Test
+    public void restoreTurnsJoinsAResponseSplitAcrossRows() throws Exception {
+        // Rows as Message_RecyclerViewAdapter.appendToMessage splits a response longer than 1024 characters.
+        String firstRow = "The first paragraph of a long answer.".repeat(28);
+        String response = firstRow + "\n\n" + "The second paragraph" + " " + "ends after a hard split.";
+        assertTrue(response.length() > 1024);
+        File dir = mFolder.newFolder("history");
+        try (ChatHistoryStore history = ChatHistoryStore.open(dir)) {
+            history.add(new ChatMessage("Long question", MessageSender.USER));
+            history.add(new ChatMessage(firstRow, MessageSender.BOT));
+            history.add(new ChatMessage("The second paragraph", MessageSender.BOT, true, "\n\n"));
+            history.add(new ChatMessage("ends after a hard split.", MessageSender.BOT, true, " "));
+            history.add(new ChatMessage("Short question", MessageSender.USER));
+            history.add(new ChatMessage("Short answer", MessageSender.BOT));
+            history.commitCompleted();
+        }
+        // Reopened, so the rows are read back from the log.
+        try (ChatHistoryStore history = ChatHistoryStore.open(dir)) {
+            assertTrue(history.get(2).isContinuation());
+            assertFalse(history.get(1).isContinuation());
+            mManager.restoreTurns(history);
+        }
+        mManager.rebuildDialog();
+
+        assertEquals(List.of("Long question -> " + response, "Short question -> Short answer"),
+                mEngine.mAppendedTurns);
+    }
+
+    @Test
+    public void restoreTurnsKeepsTheNewestTurnsThatFitInHalfTheContext() throws Exception {
+        String response = "A response of about forty tokens. ".repeat(4);
+        try (ChatHistoryStore history = ChatHistoryStore.open(mFolder.newFolder("history"))) {
+            for (int i = 0; i < 100; ++i) {
+                history.add(new ChatMessage("Prompt " + i, MessageSender.USER));
+                history.add(new ChatMessage(response, MessageSender.BOT));
+            }
+            history.commitCompleted();
+
+            mManager.restoreTurns(history);
+        }
+        mManager.rebuildDialog();
+
+        int numTurns = mEngine.mAppendedTurns.size();
+        assertTrue(numTurns > 0 && numTurns < 100);
+        assertEquals("Prompt 99 -> " + response, mEngine.mAppendedTurns.get(numTurns - 1));
+        assertTrue(mEngine.getContextTokens() <= cContextSize / 2);
+    }
+}
@@ -0,0 +1,240 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InferenceQueueTest: Runs the inference queue on SyntheticChatEngine
+ */
+public class InferenceQueueTest {
+    private static final long cTimeoutSeconds = 10;
+
+    /**
+     * Response: Records what a listener received
+     */
+    private static class Response implements InferenceQueue.ResponseListener {
+        final StringBuilder mText = new StringBuilder();
+        final CountDownLatch mDone = new CountDownLatch(1);
+        final CountDownLatch mFirstToken = new CountDownLatch(1);
+        volatile InferenceQueue.Status mStatus;
+        volatile GenerationStats mStats;
+
+        @Override
+        public void onNewString(String token) {
+            mText.append(token);
+            mFirstToken.countDown();
+        }
+
+        @Override
+        public void onComplete(InferenceQueue.Status status, GenerationStats stats) {
+            mStatus = status;
+            mStats = stats;
+            mDone.countDown();
+        }
+
+        InferenceQueue.Status await() throws InterruptedException {
+            assertTrue("Response did not complete", mDone.await(cTimeoutSeconds, TimeUnit.SECONDS));
+            return mStatus;
+        }
+    }
+
+    private InferenceQueue mQueue;
+
+    @After
+    public void tearDown() {
+        if (mQueue != null) {
+            mQueue.shutdown();
+        }
+    }
+
+    private InferenceQueue start(ChatEngine engine, int maxTokens) {
+        mQueue = new InferenceQueue(engine, new GenerationLimits(maxTokens, 0),
+                new ContextWindowManager(engine, maxTokens, false));
+        return mQueue;
+    }
+
+    private static SyntheticChatEngine newEngine(SyntheticChatEngine.LatencyProfile profile, int responseTokens) {
+        SyntheticChatEngine engine = new SyntheticChatEngine(profile, responseTokens, 0, 0);
+        engine.load();
+        return engine;
+    }
+
+    /**
+     * blockInferenceThread: Holds the inference thread in a task until the returned latch is released
+     */
+    private static CountDownLatch blockInferenceThread(InferenceQueue queue) throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(running.await(cTimeoutSeconds, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    public void promptsAreAnsweredInOrderWithLimits() throws Exception {
+        InferenceQueue queue = start(newEngine(SyntheticChatEngine.LatencyProfile.INSTANT, 64), 8);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Response> responses = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            int index = i;
+            Response response = new Response() {
+                @Override
+                public void onComplete(InferenceQueue.Status status, GenerationStats stats) {
+                    order.add(index);
+                    super.onComplete(status, stats);
+                }
+            };
+            responses.add(response);
+            queue.submit("Prompt " + i, response);
+            // Wait, so the prompts are not coalesced.
+            response.await();
+        }
+
+        assertEquals(List.of(0, 1, 2), order);
+        for (Response response : responses) {
+            assertEquals(InferenceQueue.Status.COMPLETED, response.mStatus);
+            assertEquals(8, response.mStats.getNumTokens());
+            assertFalse(response.mText.toString().isEmpty());
+        }
+    }
+
+    @Test
+    public void promptsQueuedWhileBusyAreCoalesced() throws Exception {
+        InferenceQueue queue = start(newEngine(SyntheticChatEngine.LatencyProfile.INSTANT, 8), 8);
+        CountDownLatch release = blockInferenceThread(queue);
+        Response first = new Response();
+        Response second = new Response();
+        Response third = new Response();
+        queue.submit("First", first);
+        queue.submit("Second", second);
+        queue.submit("Third", third);
+        assertTrue(queue.isBusy());
+        release.countDown();
+
+        assertEquals(InferenceQueue.Status.COMPLETED, first.await());
+        assertEquals(InferenceQueue.Status.COALESCED, second.await());
+        assertEquals(InferenceQueue.Status.COALESCED, third.await());
+        assertNull(second.mStats);
+        assertEquals(0, second.mText.length());
+        assertFalse(first.mText.toString().isEmpty());
+    }
+
+    @Test
+    public void promptsAreNotCoalescedAcrossTasks() throws Exception {
+        InferenceQueue queue = start(newEngine(SyntheticChatEngine.LatencyProfile.INSTANT, 8), 8);
+        CountDownLatch release = blockInferenceThread(queue);
+        Response before = new Response();
+        Response after = new Response();
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        queue.submit("Before", before);
+        queue.execute(() -> events.add("task"));
+        queue.submit("After", after);
+        release.countDown();
+
+        assertEquals(InferenceQueue.Status.COMPLETED, before.await());
+        assertEquals(InferenceQueue.Status.COMPLETED, after.await());
+        assertEquals(List.of("task"), events);
+    }
+
+    @Test
+    public void cancelAllCancelsPromptsButRunsTasks() throws Exception {
+        InferenceQueue queue = start(newEngine(SyntheticChatEngine.LatencyProfile.INSTANT, 8), 8);
+        CountDownLatch release = blockInferenceThread(queue);
+        Response queued = new Response();
+        CountDownLatch taskRan = new CountDownLatch(1);
+        queue.submit("Queued", queued);
+        queue.execute(taskRan::countDown);
+        queue.cancelAll();
+        release.countDown();
+
+        assertEquals(InferenceQueue.Status.CANCELLED, queued.await());
+        assertNull(queued.mStats);
+        assertTrue(taskRan.await(cTimeoutSeconds, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancellingTheRunningRequestStopsGeneration() throws Exception {
+        // 10 ms per token: far longer than the test takes to cancel.
+        SyntheticChatEngine.LatencyProfile slow = new SyntheticChatEngine.LatencyProfile(0, 0, 10_000_000L, 0);
+        InferenceQueue queue = start(newEngine(slow, 10_000), 10_000);
+        Response response = new Response();
+        InferenceQueue.Request request = queue.submit("Long", response);
+        assertTrue(response.mFirstToken.await(cTimeoutSeconds, TimeUnit.SECONDS));
+        request.cancel();
+
+        assertEquals(InferenceQueue.Status.CANCELLED, response.await());
+        assertNotNull(response.mStats);
+        assertEquals(StopReason.CANCELLED, response.mStats.getStopReason());
+        assertTrue(response.mStats.getNumTokens() < 10_000);
+    }
+
+    @Test
+    public void engineErrorsFailTheRequest() throws Exception {
+        // Not loaded: every query throws.
+        InferenceQueue queue = start(new SyntheticChatEngine(SyntheticChatEngine.LatencyProfile.INSTANT, 8, 0, 0), 8);
+        Response response = new Response();
+        queue.submit("Prompt", response);
+
+        assertEquals(InferenceQueue.Status.FAILED, response.await());
+    }
+
+    @Test
+    public void streamingPathDeliversTheWholeResponseToThePublisher() throws Exception {
+        // Inference thread -> InferenceQueue -> TokenStreamSink -> frames on a separate "UI" thread.
+        InferenceQueue queue = start(newEngine(SyntheticChatEngine.LatencyProfile.INSTANT, 4096), 4096);
+        ExecutorService uiThread = Executors.newSingleThreadExecutor();
+        try {
+            StringBuilder published = new StringBuilder();
+            CountDownLatch finished = new CountDownLatch(1);
+            TokenStreamSink.FrameScheduler frames =
+                    callback -> uiThread.execute(() -> callback.doFrame(System.nanoTime()));
+            TokenStreamSink sink = new TokenStreamSink(published::append, frames);
+            Response response = new Response() {
+                @Override
+                public void onNewString(String token) {
+                    super.onNewString(token);
+                    sink.onNewString(token);
+                }
+
+                @Override
+                public void onComplete(InferenceQueue.Status status, GenerationStats stats) {
+                    super.onComplete(status, stats);
+                    sink.finish(finished::countDown);
+                }
+            };
+            queue.submit("Stream", response);
+
+            assertEquals(InferenceQueue.Status.COMPLETED, response.await());
+            assertTrue(finished.await(cTimeoutSeconds, TimeUnit.SECONDS));
+            assertEquals(4096, sink.getTokenCount());
+            assertEquals(response.mText.toString(), published.toString());
+        } finally {
+            uiThread.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LlmBenchmarkReportTest: Checks the aggregates of a report against prompt results with known timings
+ */
+public class LlmBenchmarkReportTest {
+    private static final long cMillis = 1_000_000L;
+
+    /**
+     * result: Returns the result of a prompt with provided time to first token, then numTokens tokens gapMillis apart
+     */
+    private static LlmBenchmark.PromptResult result(String id, long ttftMillis, int numTokens, long gapMillis,
+                                                    int thermalStatusAfter) {
+        long[] timestamps = new long[2 + numTokens];
+        long time = ttftMillis * cMillis;
+        for (int i = 0; i < numTokens; ++i) {
+            timestamps[2 + i] = time;
+            time += gapMillis * cMillis;
+        }
+        timestamps[1] = time;
+        GenerationStats stats = GenerationStats.fromTimestamps(StopReason.COMPLETED, timestamps);
+        return new LlmBenchmark.PromptResult(id, stats, numTokens, 0, 0, thermalStatusAfter, Float.NaN);
+    }
+
+    @Test
+    public void timeToFirstTokenUsesNearestRankPercentiles() {
+        List<LlmBenchmark.PromptResult> results = new ArrayList<>();
+        // Out of order, to check the percentiles sort.
+        for (long ttft : new long[] {70, 10, 100, 40, 20, 90, 30, 60, 50, 80}) {
+            results.add(result("p" + ttft, ttft, 3, 10, 0));
+        }
+        LlmBenchmarkReport report = new LlmBenchmarkReport(results, true);
+
+        assertEquals(10 * cMillis, report.getTimeToFirstTokenNanos(0));
+        assertEquals(50 * cMillis, report.getTimeToFirstTokenNanos(50));
+        assertEquals(90 * cMillis, report.getTimeToFirstTokenNanos(90));
+        assertEquals(100 * cMillis, report.getTimeToFirstTokenNanos(91));
+        assertEquals(100 * cMillis, report.getTimeToFirstTokenNanos(100));
+    }
+
+    @Test
+    public void decodeSlowdownComparesLastQuarterWithFirstQuarter() {
+        List<LlmBenchmark.PromptResult> results = new ArrayList<>();
+        // 100 tok/s for the first quarter, 50 tok/s for the last quarter.
+        results.add(result("a", 10, 11, 10, 0));
+        results.add(result("b", 10, 11, 10, 0));
+        for (int i = 0; i < 4; ++i) {
+            results.add(result("m" + i, 10, 11, 5, 0));
+        }
+        results.add(result("y", 10, 11, 20, 0));
+        results.add(result("z", 10, 11, 20, 0));
+        LlmBenchmarkReport report = new LlmBenchmarkReport(results, true);
+
+        assertEquals(0.5, report.getDecodeSlowdown(), 1e-9);
+        assertEquals(50.0, report.getMinDecodeTokensPerSecond(), 1e-9);
+        assertEquals((2 * 100.0 + 4 * 200.0 + 2 * 50.0) / 8, report.getMeanDecodeTokensPerSecond(), 1e-9);
+    }
+
+    @Test
+    public void decodeSlowdownIsOneWithFewerThanFourPromptsOrNoDecode() {
+        List<LlmBenchmark.PromptResult> results = new ArrayList<>();
+        results.add(result("a", 10, 11, 10, 0));
+        results.add(result("b", 10, 11, 20, 0));
+        results.add(result("c", 10, 11, 40, 0));
+        assertEquals(1.0, new LlmBenchmarkReport(results, true).getDecodeSlowdown(), 0);
+
+        List<LlmBenchmark.PromptResult> single = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            single.add(result("s" + i, 10, 1, 10, 0));
+        }
+        LlmBenchmarkReport report = new LlmBenchmarkReport(single, true);
+        assertEquals(1.0, report.getDecodeSlowdown(), 0);
+        assertEquals(0.0, report.getMinDecodeTokensPerSecond(), 0);
+    }
+
+    @Test
+    public void throttledPromptsEndAtModerateThermalStatusOrWorse() {
+        List<LlmBenchmark.PromptResult> results = new ArrayList<>();
+        int[] statuses = {0, 1, LlmBenchmarkReport.cThermalStatusThrottling, 4, 1};
+        for (int i = 0; i < statuses.length; ++i) {
+            results.add(result("p" + i, 10, 2, 10, statuses[i]));
+        }
+        LlmBenchmarkReport report = new LlmBenchmarkReport(results, true);
+
+        assertEquals(2, report.getNumThrottledPrompts());
+        assertEquals(4, report.getMaxThermalStatus());
+    }
+
+    @Test
+    public void emptyReportHasZeroAggregates() {
+        LlmBenchmarkReport report = new LlmBenchmarkReport(Collections.emptyList(), true);
+
+        assertEquals(0, report.getTimeToFirstTokenNanos(50));
+        assertEquals(0, report.getTotalTokens());
+        assertEquals(1.0, report.getDecodeSlowdown(), 0);
+        assertEquals(0, report.getNumThrottledPrompts());
+    }
+}
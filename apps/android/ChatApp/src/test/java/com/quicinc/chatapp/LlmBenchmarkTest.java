@@ -0,0 +1,160 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LlmBenchmarkTest: Runs the benchmark driver against SyntheticChatEngine and a scripted Monitor
+ */
+public class LlmBenchmarkTest {
+
+    /**
+     * FakeMonitor: Reports scripted thermal states and the number of prompts run as peak memory
+     */
+    private static class FakeMonitor implements LlmBenchmark.Monitor {
+        final boolean mResettable;
+        final int[] mThermalStatuses;
+        int mNumResets = 0;
+        int mNumThermalReads = 0;
+
+        FakeMonitor(boolean resettable, int... thermalStatuses) {
+            mResettable = resettable;
+            mThermalStatuses = thermalStatuses;
+        }
+
+        @Override
+        public boolean resetPeakMemory() {
+            mNumResets++;
+            return mResettable;
+        }
+
+        @Override
+        public long getPeakMemoryBytes() {
+            return mNumResets * 1024L * 1024L;
+        }
+
+        @Override
+        public int getThermalStatus() {
+            return mThermalStatuses[Math.min(mNumThermalReads++, mThermalStatuses.length - 1)];
+        }
+
+        @Override
+        public float getThermalHeadroom() {
+            return Float.NaN;
+        }
+    }
+
+    private static final int cResponseTokens = 32;
+
+    private static SyntheticChatEngine newEngine() {
+        SyntheticChatEngine engine = new SyntheticChatEngine(SyntheticChatEngine.LatencyProfile.INSTANT,
+                cResponseTokens, 0, 0);
+        engine.load();
+        return engine;
+    }
+
+    private static List<LlmBenchmark.Prompt> prompts(int count, int maxTokens) {
+        List<LlmBenchmark.Prompt> prompts = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            prompts.add(new LlmBenchmark.Prompt("p" + i, "Prompt number " + i, maxTokens));
+        }
+        return prompts;
+    }
+
+    @Test
+    public void readPromptsAppliesDefaultsAndSkipsBlankLines() throws Exception {
+        String promptSet = "{\"id\": \"recipe\", \"prompt\": \"Pancakes?\", \"maxTokens\": 16}\n"
+                + "\n"
+                + "{\"prompt\": \"Hello\"}\n";
+        List<LlmBenchmark.Prompt> prompts = LlmBenchmark.readPrompts(new StringReader(promptSet), 64);
+
+        assertEquals(2, prompts.size());
+        assertEquals("recipe", prompts.get(0).mId);
+        assertEquals("Pancakes?", prompts.get(0).mText);
+        assertEquals(16, prompts.get(0).mMaxTokens);
+        assertEquals("3", prompts.get(1).mId);
+        assertEquals(64, prompts.get(1).mMaxTokens);
+    }
+
+    @Test
+    public void runDiscardsWarmUpPromptsAndAppliesLimits() {
+        FakeMonitor monitor = new FakeMonitor(true, 0);
+        LlmBenchmarkReport report = new LlmBenchmark(newEngine(), monitor, true).run(prompts(5, 8), 2);
+
+        assertEquals(5, report.getResults().size());
+        assertEquals("p0", report.getResults().get(0).getId());
+        for (LlmBenchmark.PromptResult result : report.getResults()) {
+            assertEquals(8, result.getStats().getNumTokens());
+            assertEquals(StopReason.MAX_TOKENS, result.getStats().getStopReason());
+        }
+        assertEquals(5 * 8, report.getTotalTokens());
+        // Peak memory is reset before every measured prompt only, not before warm-up prompts.
+        assertEquals(5, monitor.mNumResets);
+        assertEquals(1024L * 1024L, report.getResults().get(0).getPeakMemoryBytes());
+        assertEquals(5 * 1024L * 1024L, report.getPeakMemoryBytes());
+    }
+
+    @Test
+    public void runResetsTheDialogBetweenPrompts() {
+        SyntheticChatEngine engine = newEngine();
+        new LlmBenchmark(engine, new FakeMonitor(true, 0), true).run(prompts(3, 0), 0);
+        int oneTurnTokens = engine.getContextTokens();
+
+        SyntheticChatEngine accumulating = newEngine();
+        new LlmBenchmark(accumulating, new FakeMonitor(true, 0), false).run(prompts(3, 0), 0);
+        assertTrue(accumulating.getContextTokens() > 2 * oneTurnTokens);
+    }
+
+    @Test
+    public void runRecordsThrottlingFromThermalStatus() throws Exception {
+        // Two reads per prompt (before and after); the third prompt ends throttled and stays so.
+        FakeMonitor monitor = new FakeMonitor(true, 0, 0, 0, 1, 1, 2, 2, 3);
+        LlmBenchmarkReport report = new LlmBenchmark(newEngine(), monitor, true).run(prompts(4, 4), 0);
+
+        assertEquals(2, report.getNumThrottledPrompts());
+        assertEquals(3, report.getMaxThermalStatus());
+        JSONObject prompt = report.toJson().getJSONArray("prompts").getJSONObject(2);
+        assertEquals(1, prompt.getInt("thermalStatusBefore"));
+        assertEquals(2, prompt.getInt("thermalStatusAfter"));
+        assertFalse(prompt.has("thermalHeadroomAfter"));
+    }
+
+    @Test
+    public void peakMemoryIsPerPromptOnlyIfEveryResetSucceeded() throws Exception {
+        LlmBenchmarkReport resettable = new LlmBenchmark(newEngine(), new FakeMonitor(true, 0), true)
+                .run(prompts(2, 4), 0);
+        assertTrue(resettable.toJson().getJSONObject("aggregate").getBoolean("peakMemoryPerPrompt"));
+
+        LlmBenchmarkReport lifetime = new LlmBenchmark(newEngine(), new FakeMonitor(false, 0), true)
+                .run(prompts(2, 4), 0);
+        assertFalse(lifetime.toJson().getJSONObject("aggregate").getBoolean("peakMemoryPerPrompt"));
+    }
+
+    @Test
+    public void toJsonListsEveryPromptInOrder() throws Exception {
+        LlmBenchmarkReport report = new LlmBenchmark(newEngine(), new FakeMonitor(true, 0), true)
+                .run(prompts(3, 4), 1);
+        JSONObject json = report.toJson();
+
+        assertEquals(3, json.getJSONObject("aggregate").getInt("numPrompts"));
+        assertEquals(12, json.getJSONObject("aggregate").getInt("totalTokens"));
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < json.getJSONArray("prompts").length(); ++i) {
+            ids.add(json.getJSONArray("prompts").getJSONObject(i).getString("id"));
+        }
+        assertEquals(Arrays.asList("p0", "p1", "p2"), ids);
+    }
+}
@@ -0,0 +1,83 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.chatapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.view.Choreographer;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TokenStreamSinkTest: Drives frames by hand to check how tokens are batched into UI updates
+ */
+public class TokenStreamSinkTest {
+
+    /**
+     * ManualFrames: Holds posted frame callbacks until the test runs the next frame
+     */
+    private static class ManualFrames implements TokenStreamSink.FrameScheduler {
+        final ArrayDeque<Choreographer.FrameCallback> mCallbacks = new ArrayDeque<>();
+
+        @Override
+        public void postFrameCallback(Choreographer.FrameCallback callback) {
+            mCallbacks.add(callback);
+        }
+
+        void runFrame() {
+            List<Choreographer.FrameCallback> callbacks = new ArrayList<>(mCallbacks);
+            mCallbacks.clear();
+            for (Choreographer.FrameCallback callback : callbacks) {
+                callback.doFrame(System.nanoTime());
+            }
+        }
+    }
+
+    private final ManualFrames mFrames = new ManualFrames();
+    private final List<String> mPublished = new ArrayList<>();
+    private final TokenStreamSink mSink = new TokenStreamSink(text -> mPublished.add(text.toString()), mFrames);
+
+    @Test
+    public void tokensBeforeAFrameArePublishedTogether() {
+        mSink.onNewString("Hello");
+        mSink.onNewString(",");
+        mSink.onNewString(" world");
+        assertEquals(1, mFrames.mCallbacks.size());
+
+        mFrames.runFrame();
+        mSink.onNewString("!");
+        mFrames.runFrame();
+
+        assertEquals(List.of("Hello, world", "!"), mPublished);
+        assertEquals(4, mSink.getTokenCount());
+    }
+
+    @Test
+    public void framesWithoutNewTokensPublishNothing() {
+        mSink.onNewString("a");
+        mFrames.runFrame();
+        mFrames.runFrame();
+
+        assertEquals(List.of("a"), mPublished);
+        assertTrue(mFrames.mCallbacks.isEmpty());
+    }
+
+    @Test
+    public void finishPublishesRemainingTextBeforeOnFinished() {
+        List<String> events = new ArrayList<>();
+        TokenStreamSink sink = new TokenStreamSink(text -> events.add("publish " + text), mFrames);
+        sink.onNewString("a");
+        sink.onNewString("b");
+        sink.finish(() -> events.add("finished"));
+        mFrames.runFrame();
+
+        assertEquals(List.of("publish ab", "finished"), events);
+    }
+}
@@ -11,6 +11,10 @@ import android.util.Pair;
 
 import com.quicinc.ImageProcessing;
 import com.quicinc.tflite.AIHubDefaults;
+import com.quicinc.tflite.LatencyRecorder;
+import com.quicinc.tflite.LoadReport;
+import com.quicinc.tflite.ModelStore;
+import com.quicinc.tflite.PipelineTrace;
 import com.quicinc.tflite.TFLiteHelpers;
 
 import org.tensorflow.lite.DataType;
@@ -46,6 +50,8 @@ public class ImageClassification implements AutoCloseable {
     private final DataType outputType;
     private long preprocessingTime;
     private long postprocessingTime;
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private final LoadReport loadReport = new LoadReport();
     private static final int TOPK = 3;
     private final ImageProcessor imageProcessor;
 
@@ -85,18 +91,22 @@ public class ImageClassification implements AutoCloseable {
         }
 
         // Load TF Lite model
-        Pair<MappedByteBuffer, String> modelAndHash = TFLiteHelpers.loadModelFile(context.getAssets(), modelPath);
+        Pair<MappedByteBuffer, String> modelAndHash = new ModelStore(context).loadModelFile(modelPath, loadReport);
         Pair<Interpreter, Map<TFLiteHelpers.DelegateType, Delegate>> iResult = TFLiteHelpers.CreateInterpreterAndDelegatesFromOptions(
             modelAndHash.first,
             delegatePriorityOrder,
             AIHubDefaults.numCPUThreads,
             context.getApplicationInfo().nativeLibraryDir,
             context.getCacheDir().getAbsolutePath(),
-            modelAndHash.second
+            modelAndHash.second,
+            loadReport
         );
         tfLiteInterpreter = iResult.first;
         tfLiteDelegateStore = iResult.second;
 
+        // Absorb the first-inference spike (lazy delegate init, kernel compilation) while the model is loading.
+        TFLiteHelpers.WarmUpInterpreter(tfLiteInterpreter, AIHubDefaults.numWarmUpIterations, false, loadReport);
+
         // Validate TF Lite model fits requirements for this app
         assert tfLiteInterpreter.getInputTensorCount() == 1;
         Tensor inputTensor = tfLiteInterpreter.getInputTensor(0);
@@ -158,6 +168,19 @@ public class ImageClassification implements AutoCloseable {
         return postprocessingTime;
     }
 
+    /**
+     * @return latency distributions of every prediction made by this classifier.
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * @return cold-start breakdown of loading the model and creating the interpreter.
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
 
     /**
      * Preprocess using the provided image (resize, convert to model input data type).
@@ -169,24 +192,38 @@ public class ImageClassification implements AutoCloseable {
     private ByteBuffer[] preprocess(Bitmap image) {
         long prepStartTime = System.nanoTime();
         Bitmap resizedImg;
-
-        // Resize input image
-        if (image.getHeight() != inputShape[1] || image.getWidth() != inputShape[2]) {
-            resizedImg = ImageProcessing.resizeAndPadMaintainAspectRatio(image, inputShape[1], inputShape[2], 0);
-        } else {
-            resizedImg = image;
-        }
-
-        // Convert type and fill input buffer
         ByteBuffer inputBuffer;
-        TensorImage tImg = TensorImage.fromBitmap(resizedImg);
-        if (inputType == DataType.FLOAT32) {
-            inputBuffer = imageProcessor.process(tImg).getBuffer();
-        } else {
-            inputBuffer = tImg.getTensorBuffer().getBuffer();
-        }
+        PipelineTrace.begin("ImageClassification#preprocess");
+        try {
+            // Resize input image
+            PipelineTrace.begin("ImageClassification#resize");
+            try {
+                if (image.getHeight() != inputShape[1] || image.getWidth() != inputShape[2]) {
+                    resizedImg = ImageProcessing.resizeAndPadMaintainAspectRatio(image, inputShape[1], inputShape[2], 0);
+                } else {
+                    resizedImg = image;
+                }
+            } finally {
+                PipelineTrace.end();
+            }
 
+            // Convert type and fill input buffer
+            PipelineTrace.begin("ImageClassification#convertType");
+            try {
+                TensorImage tImg = TensorImage.fromBitmap(resizedImg);
+                if (inputType == DataType.FLOAT32) {
+                    inputBuffer = imageProcessor.process(tImg).getBuffer();
+                } else {
+                    inputBuffer = tImg.getTensorBuffer().getBuffer();
+                }
+            } finally {
+                PipelineTrace.end();
+            }
+        } finally {
+            PipelineTrace.end();
+        }
         preprocessingTime = System.nanoTime() - prepStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.PREPROCESSING, preprocessingTime);
         Log.d(TAG, "Preprocessing Time: " + preprocessingTime / 1000000 + " ms");
 
         return new ByteBuffer[] {inputBuffer};
@@ -200,17 +237,22 @@ public class ImageClassification implements AutoCloseable {
      */
     private ArrayList<String> postprocess() {
         long postStartTime = System.nanoTime();
-
-        List<Integer> indexList;
-        ByteBuffer outputBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
-        if (outputType == DataType.FLOAT32) {
-            indexList = findTopKFloatIndices(outputBuffer.asFloatBuffer(), TOPK);
-        } else {
-            indexList = findTopKByteIndices(outputBuffer, TOPK);
+        ArrayList<String> labels;
+        PipelineTrace.begin("ImageClassification#postprocess");
+        try {
+            List<Integer> indexList;
+            ByteBuffer outputBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
+            if (outputType == DataType.FLOAT32) {
+                indexList = findTopKFloatIndices(outputBuffer.asFloatBuffer(), TOPK);
+            } else {
+                indexList = findTopKByteIndices(outputBuffer, TOPK);
+            }
+            labels = indexList.stream().map(labelList::get).collect(Collectors.toCollection(ArrayList<String>::new));
+        } finally {
+            PipelineTrace.end();
         }
-        ArrayList<String> labels = indexList.stream().map(labelList::get).collect(Collectors.toCollection(ArrayList<String>::new));
-
         postprocessingTime = System.nanoTime() - postStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.POSTPROCESSING, postprocessingTime);
         Log.d(TAG, "Postprocessing Time: " + postprocessingTime / 1000000 + " ms");
 
         return labels;
@@ -223,14 +265,24 @@ public class ImageClassification implements AutoCloseable {
      * @return Predicted object class names, in order of confidence (highest confidence first).
      */
     public ArrayList<String> predictClassesFromImage(Bitmap image) {
+        long startTime = System.nanoTime();
+
         // Preprocessing: Resize, convert type
         ByteBuffer[] inputs = preprocess(image);
 
         // Inference
-        tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        PipelineTrace.begin("ImageClassification#runForMultipleInputsOutputs");
+        try {
+            tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        } finally {
+            PipelineTrace.end();
+        }
+        latencyRecorder.record(LatencyRecorder.Stage.INFERENCE, getLastInferenceTime());
 
         // Postprocessing: Compute top K indices and convert to labels
-        return postprocess();
+        ArrayList<String> labels = postprocess();
+        latencyRecorder.record(LatencyRecorder.Stage.END_TO_END, System.nanoTime() - startTime);
+        return labels;
     }
 
     /**
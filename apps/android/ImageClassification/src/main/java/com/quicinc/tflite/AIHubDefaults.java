@@ -19,6 +19,11 @@ public class AIHubDefaults {
     // https://app.aihub.qualcomm.com/docs/hub/api.html#profile-inference-options
     public static final int numCPUThreads = Runtime.getRuntime().availableProcessors() / 2;
 
+    // Number of inference runs on synthetic inputs executed right after a model is loaded.
+    // The first inference pays for lazy delegate initialization and kernel compilation; warming up
+    // moves that cost to the loading thread. Set to 0 to disable. See TFLiteHelpers::WarmUpInterpreter.
+    public static final int numWarmUpIterations = 1;
+
     // The default delegate registry order for AI Hub.
     // For more details, see the JavaDoc for TFLiteHelpers::CreateInterpreterAndDelegatesFromOptions.
     public static final TFLiteHelpers.DelegateType[][] delegatePriorityOrder = new TFLiteHelpers.DelegateType[][] {
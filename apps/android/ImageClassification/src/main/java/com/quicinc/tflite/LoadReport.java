@@ -0,0 +1,158 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cold-start breakdown of a model load.
+ *
+ * Filled in by TFLiteHelpers::loadModelFile, TFLiteHelpers::CreateInterpreterAndDelegatesFromOptions,
+ * and (if the model is warmed up) TFLiteHelpers::WarmUpInterpreter.
+ * Every timed phase is also emitted as a PipelineTrace section while it runs,
+ * so the same breakdown is visible in Perfetto / systrace captures.
+ */
+public class LoadReport {
+    public enum CacheStatus {
+        // Serialized delegate cache for this model was present before the delegate was created.
+        HIT,
+        // No serialized cache was present; the model was compiled from scratch.
+        MISS,
+    }
+
+    // Phase name -> accumulated duration in nanoseconds, in the order phases first ran.
+    private final Map<String, Long> phaseDurations = new LinkedHashMap<>();
+    // Attempted delegate set (or single delegate) -> reason the attempt failed.
+    private final Map<String, String> failedTiers = new LinkedHashMap<>();
+    private final Map<TFLiteHelpers.DelegateType, CacheStatus> cacheStatus = new EnumMap<>(TFLiteHelpers.DelegateType.class);
+    private String selectedTier;
+    private long modelBytesMapped;
+    private int warmUpIterations;
+
+    /**
+     * Start timing a phase. Must be paired with endPhase() on the same thread.
+     *
+     * @param name Phase name.
+     * @return Start timestamp to pass to endPhase().
+     */
+    public long beginPhase(String name) {
+        PipelineTrace.begin(name);
+        return System.nanoTime();
+    }
+
+    /**
+     * Stop timing a phase. If the phase ran more than once, durations are accumulated.
+     *
+     * @param name      Phase name passed to beginPhase().
+     * @param startTime Value returned by beginPhase().
+     */
+    public synchronized void endPhase(String name, long startTime) {
+        long duration = System.nanoTime() - startTime;
+        PipelineTrace.end();
+        phaseDurations.merge(name, duration, Long::sum);
+    }
+
+    public synchronized void setModelBytesMapped(long modelBytesMapped) {
+        this.modelBytesMapped = modelBytesMapped;
+    }
+
+    public synchronized void setWarmUpIterations(int warmUpIterations) {
+        this.warmUpIterations = warmUpIterations;
+    }
+
+    public synchronized void setSelectedTier(String selectedTier) {
+        this.selectedTier = selectedTier;
+    }
+
+    public synchronized void addFailedTier(String tier, String reason) {
+        failedTiers.put(tier, reason);
+    }
+
+    public synchronized void setCacheStatus(TFLiteHelpers.DelegateType delegateType, CacheStatus status) {
+        cacheStatus.put(delegateType, status);
+    }
+
+    public synchronized Map<String, Long> getPhaseDurations() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phaseDurations));
+    }
+
+    public synchronized Map<String, String> getFailedTiers() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failedTiers));
+    }
+
+    public synchronized Map<TFLiteHelpers.DelegateType, CacheStatus> getCacheStatus() {
+        return Collections.unmodifiableMap(new EnumMap<>(cacheStatus));
+    }
+
+    /**
+     * @return The delegates (in priority order) of the interpreter that was created, or null if none was.
+     */
+    public synchronized String getSelectedTier() {
+        return selectedTier;
+    }
+
+    public synchronized long getModelBytesMapped() {
+        return modelBytesMapped;
+    }
+
+    /**
+     * @return Number of warm-up runs executed after the interpreter was created, or 0 if it was not warmed up.
+     */
+    public synchronized int getWarmUpIterations() {
+        return warmUpIterations;
+    }
+
+    /**
+     * @return Sum of all phase durations, in nanoseconds.
+     */
+    public synchronized long getTotalNanos() {
+        return phaseDurations.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * @return This report, in JSON format. Durations are in nanoseconds.
+     */
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject phases = new JSONObject();
+        for (Map.Entry<String, Long> phase : phaseDurations.entrySet()) {
+            phases.put(phase.getKey(), phase.getValue());
+        }
+
+        JSONObject failures = new JSONObject();
+        for (Map.Entry<String, String> failure : failedTiers.entrySet()) {
+            failures.put(failure.getKey(), failure.getValue());
+        }
+
+        JSONObject caches = new JSONObject();
+        for (Map.Entry<TFLiteHelpers.DelegateType, CacheStatus> cache : cacheStatus.entrySet()) {
+            caches.put(cache.getKey().name(), cache.getValue().name());
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("totalNs", getTotalNanos());
+        json.put("modelBytesMapped", modelBytesMapped);
+        json.put("warmUpIterations", warmUpIterations);
+        json.put("selectedTier", selectedTier == null ? JSONObject.NULL : selectedTier);
+        json.put("phasesNs", phases);
+        json.put("failedTiers", failures);
+        json.put("delegateCaches", caches);
+        return json;
+    }
+
+    @Override
+    public synchronized String toString() {
+        try {
+            return toJson().toString();
+        } catch (JSONException e) {
+            return "LoadReport{" + phaseDurations + "}";
+        }
+    }
+}
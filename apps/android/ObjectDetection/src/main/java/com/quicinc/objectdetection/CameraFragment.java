@@ -12,6 +12,7 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.Matrix;
 import android.graphics.Bitmap;
+import android.util.Log;
 import android.util.Size;
 import android.util.SparseIntArray;
 import android.graphics.SurfaceTexture;
@@ -41,6 +42,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import org.opencv.android.OpenCVLoader;
 
+import com.quicinc.tflite.LatencyRecorder;
+import com.quicinc.tflite.PipelineTrace;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -51,6 +55,7 @@ import java.util.concurrent.TimeUnit;
 
 public class CameraFragment extends Fragment
 {
+    private static final String TAG = "CameraFragment";
     private long lastTic = 0;
 
     private FragmentRender mFragmentRender;
@@ -257,9 +262,25 @@ public class CameraFragment extends Fragment
     public void onPause() {
         closeCamera();
         stopBackgroundThread();
+        logLatencySummary();
         super.onPause();
     }
 
+    /**
+     * Log the per-stage latency distribution of every frame processed so far.
+     */
+    private void logLatencySummary() {
+        if (detector == null) {
+            return;
+        }
+        LatencyRecorder recorder = detector.getLatencyRecorder();
+        for (LatencyRecorder.Stage stage : LatencyRecorder.Stage.values()) {
+            if (recorder.getCount(stage) > 0) {
+                Log.i(TAG, recorder.summarize(stage));
+            }
+        }
+    }
+
     @Override
     public void onDestroy() {
         stopBackgroundThread();
@@ -585,43 +606,60 @@ public class CameraFragment extends Fragment
                 CaptureRequest request, @NonNull TotalCaptureResult result) {
 
             super.onCaptureCompleted(session, request, result);
-
-            if (lastTic == 0) {
-                lastTic = System.currentTimeMillis();
-            } else {
-                long newTic = System.currentTimeMillis();
-                if (lastTic != newTic) {
-                    fps = 1000.f / (float)(newTic - lastTic);
+            long frameArrivalTime = System.nanoTime();
+            PipelineTrace.begin("CameraFragment#onCaptureCompleted");
+            try {
+                if (lastTic == 0) {
+                    lastTic = System.currentTimeMillis();
+                } else {
+                    long newTic = System.currentTimeMillis();
+                    if (lastTic != newTic) {
+                        fps = 1000.f / (float)(newTic - lastTic);
+                    }
+                    lastTic = newTic;
                 }
-                lastTic = newTic;
-            }
 
-            if (detector != null) {
-                // Save camera feed to Bitmap at its native resolution
-                Bitmap mBitmap = mTextureView.getBitmap();
-                if (mBitmap == null) {
-                    return;
-                }
+                if (detector != null) {
+                    // Save camera feed to Bitmap at its native resolution
+                    Bitmap mBitmap;
+                    PipelineTrace.begin("CameraFragment#getBitmap");
+                    try {
+                        mBitmap = mTextureView.getBitmap();
+                    } finally {
+                        PipelineTrace.end();
+                    }
+                    if (mBitmap == null) {
+                        return;
+                    }
 
-                ArrayList<RectangleBox> BBlist = new ArrayList<>();
-
-                mDeviceOrientation = getResources().getConfiguration().orientation;
-                final Activity activity = getActivity();
-                int displayRotation = activity.getWindowManager().getDefaultDisplay().getRotation();
-
-                int orient = getOrientation(displayRotation);
-                mFinalRotation = orient;
-
-                detector.predict(mBitmap, orient, BBlist);
-                mFragmentRender.setCoordsList(BBlist);
-                mFragmentRender.render(
-                        mBitmap,
-                        mPreviewSize,
-                        fps,
-                        detector.getLastInferenceTime(),
-                        detector.getLastPreprocessingTime(),
-                        detector.getLastPostprocessingTime(),
-                        displayRotation);
+                    ArrayList<RectangleBox> BBlist = new ArrayList<>();
+
+                    mDeviceOrientation = getResources().getConfiguration().orientation;
+                    final Activity activity = getActivity();
+                    int displayRotation = activity.getWindowManager().getDefaultDisplay().getRotation();
+
+                    int orient = getOrientation(displayRotation);
+                    mFinalRotation = orient;
+
+                    detector.getLatencyRecorder().record(LatencyRecorder.Stage.QUEUEING, System.nanoTime() - frameArrivalTime);
+                    detector.predict(mBitmap, orient, BBlist);
+                    PipelineTrace.begin("CameraFragment#renderHandoff");
+                    try {
+                        mFragmentRender.setCoordsList(BBlist);
+                        mFragmentRender.render(
+                                mBitmap,
+                                mPreviewSize,
+                                fps,
+                                detector.getLastInferenceTime(),
+                                detector.getLastPreprocessingTime(),
+                                detector.getLastPostprocessingTime(),
+                                displayRotation);
+                    } finally {
+                        PipelineTrace.end();
+                    }
+                }
+            } finally {
+                PipelineTrace.end();
             }
         }
 
@@ -20,6 +20,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.util.AttributeSet;
 import android.view.View;
+
+import com.quicinc.tflite.PipelineTrace;
+
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.ArrayList;
 
@@ -119,126 +122,130 @@ public class FragmentRender extends View {
     @SuppressLint("DefaultLocale")
     @Override
     protected void onDraw(@NonNull Canvas canvas) {
+        PipelineTrace.begin("FragmentRender#onDraw");
         mLock.lock();
-
-        if (mBitmap != null && mCameraSize != null) {
-            int insetHeight, insetWidth;
-
-            float canvasRatio = (float) getWidth() / (float) getHeight();
-            float bitmapRatio = (float) mBitmap.getWidth() / mBitmap.getHeight();
-
-            if (canvasRatio > bitmapRatio) {
-                insetHeight = getHeight();
-                insetWidth = (int) ((float) getHeight() * bitmapRatio);
-            } else {
-                insetWidth = getWidth();
-                insetHeight = (int) ((float) getWidth() / bitmapRatio);
-            }
-
-            int offsetWidth = (getWidth() - insetWidth) / 2;
-            int offsetHeight = (getHeight() - insetHeight) / 2;
-
-            float scaleX;
-            float scaleY;
-            if (mDisplayRotation == 0 || mDisplayRotation == 2) {
-                scaleX = (float)mCameraSize.getHeight() / (float)getWidth();
-                scaleY = (float)mCameraSize.getWidth() / (float)getHeight();
-            } else {
-                scaleX = (float)mCameraSize.getWidth() / (float)getWidth();
-                scaleY = (float)mCameraSize.getHeight() / (float)getHeight();
-            }
-
-            if (scaleX < scaleY) {
-                scaleX /= scaleY;
-                scaleY = 1.0f;
-            } else {
-                scaleY /= scaleX;
-                scaleX = 1.0f;
-            }
-
-            float tx = (float)getWidth() / 2.0f;
-            float ty = (float)getHeight() / 2.0f;
-
-            mTransform.reset();
-            switch (mDisplayRotation) {
-                case 0:
-                    mTransform.preTranslate(tx, ty);
-                    mTransform.preScale(scaleX, scaleY);
-                    mTransform.preTranslate(-tx, -ty);
-                    break;
-                case 1:
-                    mTransform.preRotate(-90, tx, ty);
-                    mTransform.preTranslate(tx, ty);
-                    mTransform.preScale(
-                            scaleY * ty / tx,
-                            scaleX * tx / ty);
-                    mTransform.preTranslate(-tx, -ty);
-                    break;
-                case 3:
-                    mTransform.preRotate(90, tx, ty);
-                    mTransform.preTranslate(tx, ty);
-                    mTransform.preScale(
-                            scaleY * ty / tx,
-                            scaleX * tx / ty);
-                    mTransform.preTranslate(-tx, -ty);
-                    break;
-                default:
-                    break;
-            }
-
-            mTargetRect.left = offsetWidth;
-            mTargetRect.top = offsetHeight;
-            mTargetRect.right = offsetWidth + insetWidth;
-            mTargetRect.bottom = offsetHeight + insetHeight;
-
-            canvas.save();
-            canvas.concat(mTransform);
-            canvas.drawBitmap(mBitmap, null, mTargetRect, null);
-            canvas.restore();
-
-            // Useful for debugging
-            // canvas.drawText("FPS: " + String.format("%.0f", fps), 15, 50, mTextColor);
-            // canvas.drawText("Preprocess: " + String.format("%.0f", (float)preprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 2, mTextColor);
-            // canvas.drawText("Infer: " + String.format("%.0f", (float)inferTime / 1_000_000) + "ms", 15, 55 + 60 * 3, mTextColor);
-            // canvas.drawText("Postprocess: " + String.format("%.0f", (float)postprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 4, mTextColor);
-            for(int j=0;j<boxlist.size();j++) {
-
-                RectangleBox rbox = boxlist.get(j);
-
-                float[] p0 = new float[] {rbox.left, rbox.top};
-                float[] p1 = new float[] {rbox.right, rbox.bottom};
-                mTransform.mapPoints(p0);
-                mTransform.mapPoints(p1);
-
-                float left = Math.min(p0[0], p1[0]);
-                float upper = Math.min(p0[1], p1[1]);
-
-                int alpha = (int)(255 * rbox.confidence);
-                int color = labelColor(rbox.classIdx, alpha);
-
-                mFramePaint.setColor(color);
-                mFramePaint.setStyle(Paint.Style.STROKE);
-                mFramePaint.setStrokeWidth(6);
-
-                canvas.drawRect(p0[0], p0[1], p1[0], p1[1], mFramePaint);
-
-                int white = Color.argb(alpha, 255, 255, 255);
-                mTextPaint.setColor(white);
-                mTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
-                mTextPaint.setStyle(Paint.Style.FILL);
-                mTextPaint.setTextSize(30);
-
-                float buf = 2.0f;
-                float textWidth = mTextPaint.measureText(rbox.label);
-                float textHeight = mTextPaint.getFontMetrics().bottom - mTextPaint.getFontMetrics().top - 8.0f;
-
-                mLabelFramePaint.setColor(color);
-                mLabelFramePaint.setStyle(Paint.Style.FILL);
-
-                canvas.drawRect(left, upper, left+textWidth+2*buf, upper-textHeight-2*buf, mLabelFramePaint);
-                canvas.drawText(rbox.label, left+buf, upper+mTextPaint.getFontMetrics().top+buf+17.0f, mTextPaint);
+        try {
+            if (mBitmap != null && mCameraSize != null) {
+                int insetHeight, insetWidth;
+
+                float canvasRatio = (float) getWidth() / (float) getHeight();
+                float bitmapRatio = (float) mBitmap.getWidth() / mBitmap.getHeight();
+
+                if (canvasRatio > bitmapRatio) {
+                    insetHeight = getHeight();
+                    insetWidth = (int) ((float) getHeight() * bitmapRatio);
+                } else {
+                    insetWidth = getWidth();
+                    insetHeight = (int) ((float) getWidth() / bitmapRatio);
+                }
+
+                int offsetWidth = (getWidth() - insetWidth) / 2;
+                int offsetHeight = (getHeight() - insetHeight) / 2;
+
+                float scaleX;
+                float scaleY;
+                if (mDisplayRotation == 0 || mDisplayRotation == 2) {
+                    scaleX = (float)mCameraSize.getHeight() / (float)getWidth();
+                    scaleY = (float)mCameraSize.getWidth() / (float)getHeight();
+                } else {
+                    scaleX = (float)mCameraSize.getWidth() / (float)getWidth();
+                    scaleY = (float)mCameraSize.getHeight() / (float)getHeight();
+                }
+
+                if (scaleX < scaleY) {
+                    scaleX /= scaleY;
+                    scaleY = 1.0f;
+                } else {
+                    scaleY /= scaleX;
+                    scaleX = 1.0f;
+                }
+
+                float tx = (float)getWidth() / 2.0f;
+                float ty = (float)getHeight() / 2.0f;
+
+                mTransform.reset();
+                switch (mDisplayRotation) {
+                    case 0:
+                        mTransform.preTranslate(tx, ty);
+                        mTransform.preScale(scaleX, scaleY);
+                        mTransform.preTranslate(-tx, -ty);
+                        break;
+                    case 1:
+                        mTransform.preRotate(-90, tx, ty);
+                        mTransform.preTranslate(tx, ty);
+                        mTransform.preScale(
+                                scaleY * ty / tx,
+                                scaleX * tx / ty);
+                        mTransform.preTranslate(-tx, -ty);
+                        break;
+                    case 3:
+                        mTransform.preRotate(90, tx, ty);
+                        mTransform.preTranslate(tx, ty);
+                        mTransform.preScale(
+                                scaleY * ty / tx,
+                                scaleX * tx / ty);
+                        mTransform.preTranslate(-tx, -ty);
+                        break;
+                    default:
+                        break;
+                }
+
+                mTargetRect.left = offsetWidth;
+                mTargetRect.top = offsetHeight;
+                mTargetRect.right = offsetWidth + insetWidth;
+                mTargetRect.bottom = offsetHeight + insetHeight;
+
+                canvas.save();
+                canvas.concat(mTransform);
+                canvas.drawBitmap(mBitmap, null, mTargetRect, null);
+                canvas.restore();
+
+                // Useful for debugging
+                // canvas.drawText("FPS: " + String.format("%.0f", fps), 15, 50, mTextColor);
+                // canvas.drawText("Preprocess: " + String.format("%.0f", (float)preprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 2, mTextColor);
+                // canvas.drawText("Infer: " + String.format("%.0f", (float)inferTime / 1_000_000) + "ms", 15, 55 + 60 * 3, mTextColor);
+                // canvas.drawText("Postprocess: " + String.format("%.0f", (float)postprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 4, mTextColor);
+                for(int j=0;j<boxlist.size();j++) {
+
+                    RectangleBox rbox = boxlist.get(j);
+
+                    float[] p0 = new float[] {rbox.left, rbox.top};
+                    float[] p1 = new float[] {rbox.right, rbox.bottom};
+                    mTransform.mapPoints(p0);
+                    mTransform.mapPoints(p1);
+
+                    float left = Math.min(p0[0], p1[0]);
+                    float upper = Math.min(p0[1], p1[1]);
+
+                    int alpha = (int)(255 * rbox.confidence);
+                    int color = labelColor(rbox.classIdx, alpha);
+
+                    mFramePaint.setColor(color);
+                    mFramePaint.setStyle(Paint.Style.STROKE);
+                    mFramePaint.setStrokeWidth(6);
+
+                    canvas.drawRect(p0[0], p0[1], p1[0], p1[1], mFramePaint);
+
+                    int white = Color.argb(alpha, 255, 255, 255);
+                    mTextPaint.setColor(white);
+                    mTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
+                    mTextPaint.setStyle(Paint.Style.FILL);
+                    mTextPaint.setTextSize(30);
+
+                    float buf = 2.0f;
+                    float textWidth = mTextPaint.measureText(rbox.label);
+                    float textHeight = mTextPaint.getFontMetrics().bottom - mTextPaint.getFontMetrics().top - 8.0f;
+
+                    mLabelFramePaint.setColor(color);
+                    mLabelFramePaint.setStyle(Paint.Style.FILL);
+
+                    canvas.drawRect(left, upper, left+textWidth+2*buf, upper-textHeight-2*buf, mLabelFramePaint);
+                    canvas.drawText(rbox.label, left+buf, upper+mTextPaint.getFontMetrics().top+buf+17.0f, mTextPaint);
+                }
             }
+        } finally {
+            mLock.unlock();
+            PipelineTrace.end();
         }
-        mLock.unlock();
     }
 }
@@ -9,6 +9,10 @@ import android.graphics.Bitmap;
 import android.util.Pair;
 
 import com.quicinc.tflite.AIHubDefaults;
+import com.quicinc.tflite.LatencyRecorder;
+import com.quicinc.tflite.LoadReport;
+import com.quicinc.tflite.ModelStore;
+import com.quicinc.tflite.PipelineTrace;
 import com.quicinc.tflite.TFLiteHelpers;
 
 import org.opencv.android.Utils;
@@ -50,6 +54,8 @@ public class ObjectDetection  implements AutoCloseable {
     private long preprocessingTime;
     private long inferenceTime;
     private long postprocessingTime;
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private final LoadReport loadReport = new LoadReport();
     // Re-usable memory
     private final ByteBuffer inputByteBuffer;
     private final float[] inputFloatArray;
@@ -81,18 +87,22 @@ public class ObjectDetection  implements AutoCloseable {
         }
 
         // Load TF Lite model
-        Pair<MappedByteBuffer, String> modelAndHash = TFLiteHelpers.loadModelFile(context.getAssets(), modelPath);
+        Pair<MappedByteBuffer, String> modelAndHash = new ModelStore(context).loadModelFile(modelPath, loadReport);
         Pair<Interpreter, Map<TFLiteHelpers.DelegateType, Delegate>> iResult = TFLiteHelpers.CreateInterpreterAndDelegatesFromOptions(
                 modelAndHash.first,
                 delegatePriorityOrder,
                 AIHubDefaults.numCPUThreads,
                 context.getApplicationInfo().nativeLibraryDir,
                 context.getCacheDir().getAbsolutePath(),
-                modelAndHash.second
+                modelAndHash.second,
+                loadReport
         );
         tfLiteInterpreter = iResult.first;
         tfLiteDelegateStore = iResult.second;
 
+        // Absorb the first-inference spike (lazy delegate init, kernel compilation) while the model is loading.
+        TFLiteHelpers.WarmUpInterpreter(tfLiteInterpreter, AIHubDefaults.numWarmUpIterations, false, loadReport);
+
         // Validate TF Lite model fits requirements for this app
         assert tfLiteInterpreter.getInputTensorCount() == 1;
 
@@ -195,6 +205,20 @@ public class ObjectDetection  implements AutoCloseable {
         return postprocessingTime;
     }
 
+    /**
+     * @return latency distributions of every frame processed by this detector.
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * @return cold-start breakdown of loading the model and creating the interpreter.
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
     /**
      * Predicts and overlays
      * @param image Input image
@@ -214,56 +238,92 @@ public class ObjectDetection  implements AutoCloseable {
         // Preprocessing
         //
 
-        // Copy input image into OpenCV Mat
-        Utils.bitmapToMat(image, inputMatAbgr);
-
-        // OpenCV loads the image as BGR, but the network expects RGB
-        Imgproc.cvtColor(inputMatAbgr, inputMatRgb, Imgproc.COLOR_BGRA2RGB);
-
-        // Rotate if necessary
-        Mat correctRotInputImageRgb = new Mat();
-        switch (sensorOrientation) {
-            case 0:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_COUNTERCLOCKWISE);
-                break;
-            case 90:
-                correctRotInputImageRgb = inputMatRgb;
-                break;
-            case 180:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_CLOCKWISE);
-                break;
-            case 270:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_180);
-                break;
-            default:
-                break;
-        }
-
         int inputHeight = inputShape[1];
         int inputWidth = inputShape[2];
 
-        // Scale image to the network
-        Mat scaledImage = new Mat(inputHeight, inputWidth, CvType.CV_8UC3);
-        Imgproc.resize(correctRotInputImageRgb, scaledImage, scaledImage.size(), 0, 0, Imgproc.INTER_LINEAR);
-        scaledImage.convertTo(scaledImage, CvType.CV_32FC3, 1 / 255f);
+        PipelineTrace.begin("ObjectDetection#preprocess");
+        try {
+            // Copy input image into OpenCV Mat
+            PipelineTrace.begin("ObjectDetection#bitmapToMat");
+            try {
+                Utils.bitmapToMat(image, inputMatAbgr);
+            } finally {
+                PipelineTrace.end();
+            }
 
-        //
-        // TFLite inference
-        //
+            // OpenCV loads the image as BGR, but the network expects RGB
+            PipelineTrace.begin("ObjectDetection#cvtColor");
+            try {
+                Imgproc.cvtColor(inputMatAbgr, inputMatRgb, Imgproc.COLOR_BGRA2RGB);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            // Rotate if necessary
+            Mat correctRotInputImageRgb = new Mat();
+            PipelineTrace.begin("ObjectDetection#rotate");
+            try {
+                switch (sensorOrientation) {
+                    case 0:
+                        Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_COUNTERCLOCKWISE);
+                        break;
+                    case 90:
+                        correctRotInputImageRgb = inputMatRgb;
+                        break;
+                    case 180:
+                        Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_CLOCKWISE);
+                        break;
+                    case 270:
+                        Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_180);
+                        break;
+                    default:
+                        break;
+                }
+            } finally {
+                PipelineTrace.end();
+            }
 
-        // Convert from OpenCV to TFLite expected ByteBuffer
-        // To minimize IO overhead, we create a direct-allocated buffer in native order.
+            // Scale image to the network
+            Mat scaledImage = new Mat(inputHeight, inputWidth, CvType.CV_8UC3);
+            PipelineTrace.begin("ObjectDetection#resize");
+            try {
+                Imgproc.resize(correctRotInputImageRgb, scaledImage, scaledImage.size(), 0, 0, Imgproc.INTER_LINEAR);
+                scaledImage.convertTo(scaledImage, CvType.CV_32FC3, 1 / 255f);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            //
+            // TFLite inference
+            //
 
-        scaledImage.get(0, 0, inputFloatArray);
-        FloatBuffer inputFloatBuffer = inputByteBuffer.asFloatBuffer();
-        inputFloatBuffer.put(inputFloatArray);
+            // Convert from OpenCV to TFLite expected ByteBuffer
+            // To minimize IO overhead, we create a direct-allocated buffer in native order.
+
+            PipelineTrace.begin("ObjectDetection#copyInput");
+            try {
+                scaledImage.get(0, 0, inputFloatArray);
+                FloatBuffer inputFloatBuffer = inputByteBuffer.asFloatBuffer();
+                inputFloatBuffer.put(inputFloatArray);
+            } finally {
+                PipelineTrace.end();
+            }
+        } finally {
+            PipelineTrace.end();
+        }
 
         long inferenceStartTime = System.nanoTime();
         preprocessingTime = inferenceStartTime - preStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.PREPROCESSING, preprocessingTime);
 
         // Run inference
         ByteBuffer[] inputs = new ByteBuffer[]{inputByteBuffer};
-        tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        PipelineTrace.begin("ObjectDetection#runForMultipleInputsOutputs");
+        try {
+            tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        } finally {
+            PipelineTrace.end();
+        }
 
         //
         // Postprocessing
@@ -271,96 +331,123 @@ public class ObjectDetection  implements AutoCloseable {
 
         long postStartTime = System.nanoTime();
         inferenceTime = postStartTime - inferenceStartTime;
-
-        // Extract outputs
-        ByteBuffer outputBoxesBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
-        FloatBuffer floatBoxesBuf = outputBoxesBuffer.asFloatBuffer();
-        float[] bboxes = new float[floatBoxesBuf.remaining()];
-        floatBoxesBuf.get(bboxes);
-
-        ByteBuffer outputScoresBuffer = tfLiteInterpreter.getOutputTensor(1).asReadOnlyBuffer();
-        FloatBuffer floatScoresBuf = outputScoresBuffer.asFloatBuffer();
-        float[] scores = new float[floatScoresBuf.remaining()];
-        floatScoresBuf.get(scores);
-
-        ByteBuffer outputClassIdxBuffer = tfLiteInterpreter.getOutputTensor(2).asReadOnlyBuffer();
-        byte[] classIdxByte = new byte[outputClassIdxBuffer.remaining()];
-        int[] classIdx = new int[outputClassIdxShape[1]];
-        if (outputClassIs32bit) {
-            outputClassIdxBuffer.order(ByteOrder.nativeOrder());
-            IntBuffer intBuffer = outputClassIdxBuffer.asIntBuffer();
-            intBuffer.get(classIdx);
-        } else {
-            outputClassIdxBuffer.get(classIdxByte);
-            for (int i = 0; i < classIdxByte.length; ++i) {
-                classIdx[i] = (int) classIdxByte[i];
+        latencyRecorder.record(LatencyRecorder.Stage.INFERENCE, inferenceTime);
+
+        PipelineTrace.begin("ObjectDetection#postprocess");
+        try {
+            // Extract outputs
+            float[] bboxes;
+            float[] scores;
+            int[] classIdx = new int[outputClassIdxShape[1]];
+            PipelineTrace.begin("ObjectDetection#readOutputs");
+            try {
+                ByteBuffer outputBoxesBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
+                FloatBuffer floatBoxesBuf = outputBoxesBuffer.asFloatBuffer();
+                bboxes = new float[floatBoxesBuf.remaining()];
+                floatBoxesBuf.get(bboxes);
+
+                ByteBuffer outputScoresBuffer = tfLiteInterpreter.getOutputTensor(1).asReadOnlyBuffer();
+                FloatBuffer floatScoresBuf = outputScoresBuffer.asFloatBuffer();
+                scores = new float[floatScoresBuf.remaining()];
+                floatScoresBuf.get(scores);
+
+                ByteBuffer outputClassIdxBuffer = tfLiteInterpreter.getOutputTensor(2).asReadOnlyBuffer();
+                byte[] classIdxByte = new byte[outputClassIdxBuffer.remaining()];
+                if (outputClassIs32bit) {
+                    outputClassIdxBuffer.order(ByteOrder.nativeOrder());
+                    IntBuffer intBuffer = outputClassIdxBuffer.asIntBuffer();
+                    intBuffer.get(classIdx);
+                } else {
+                    outputClassIdxBuffer.get(classIdxByte);
+                    for (int i = 0; i < classIdxByte.length; ++i) {
+                        classIdx[i] = (int) classIdxByte[i];
+                    }
+                }
+            } finally {
+                PipelineTrace.end();
             }
-        }
-        float[][] updatedBoxes = new float[numBoxes][4];
-        for (int i = 0; i < numBoxes; i++) {
-            if (scores[i] >= 0.2) {
-                float x0 = (float) bboxes[i * 4];
-                float y0 = (float) bboxes[i * 4 + 1];
-                float x1 = (float) bboxes[i * 4 + 2];
-                float y1 = (float) bboxes[i * 4 + 3];
 
-                switch (sensorOrientation) {
-                    case 0:
-                        updatedBoxes[i][0] = inputHeight - y1;
-                        updatedBoxes[i][1] = x0;
-                        updatedBoxes[i][2] = inputHeight - y0;
-                        updatedBoxes[i][3] = x1;
-                        break;
-                    case 90:
-                        updatedBoxes[i][0] = x0;
-                        updatedBoxes[i][1] = y0;
-                        updatedBoxes[i][2] = x1;
-                        updatedBoxes[i][3] = y1;
-                        break;
-                    case 180:
-                        updatedBoxes[i][0] = y0;
-                        updatedBoxes[i][1] = inputWidth - x1;
-                        updatedBoxes[i][2] = y1;
-                        updatedBoxes[i][3] = inputWidth - x0;
-                        break;
-                    case 270:
-                        updatedBoxes[i][0] = inputWidth - x1;
-                        updatedBoxes[i][1] = inputHeight - y1;
-                        updatedBoxes[i][2] = inputWidth - x0;
-                        updatedBoxes[i][3] = inputHeight - y0;
-                        break;
-                    default:
-                        break;
+            float[][] updatedBoxes = new float[numBoxes][4];
+            PipelineTrace.begin("ObjectDetection#decodeBoxes");
+            try {
+                for (int i = 0; i < numBoxes; i++) {
+                    if (scores[i] >= 0.2) {
+                        float x0 = (float) bboxes[i * 4];
+                        float y0 = (float) bboxes[i * 4 + 1];
+                        float x1 = (float) bboxes[i * 4 + 2];
+                        float y1 = (float) bboxes[i * 4 + 3];
+
+                        switch (sensorOrientation) {
+                            case 0:
+                                updatedBoxes[i][0] = inputHeight - y1;
+                                updatedBoxes[i][1] = x0;
+                                updatedBoxes[i][2] = inputHeight - y0;
+                                updatedBoxes[i][3] = x1;
+                                break;
+                            case 90:
+                                updatedBoxes[i][0] = x0;
+                                updatedBoxes[i][1] = y0;
+                                updatedBoxes[i][2] = x1;
+                                updatedBoxes[i][3] = y1;
+                                break;
+                            case 180:
+                                updatedBoxes[i][0] = y0;
+                                updatedBoxes[i][1] = inputWidth - x1;
+                                updatedBoxes[i][2] = y1;
+                                updatedBoxes[i][3] = inputWidth - x0;
+                                break;
+                            case 270:
+                                updatedBoxes[i][0] = inputWidth - x1;
+                                updatedBoxes[i][1] = inputHeight - y1;
+                                updatedBoxes[i][2] = inputWidth - x0;
+                                updatedBoxes[i][3] = inputHeight - y0;
+                                break;
+                            default:
+                                break;
+                        }
+                    } else {
+                        scores[i] = INVALID_ANCHOR;
+                    }
                 }
-            } else {
-                scores[i] = INVALID_ANCHOR;
+            } finally {
+                PipelineTrace.end();
             }
-        }
 
-        NMS nms = new NMS();
-        int[] result_indices = nms.nmsScoreFilter(updatedBoxes, scores, 20, 0.2f);
+            int[] result_indices;
+            PipelineTrace.begin("ObjectDetection#nms");
+            try {
+                NMS nms = new NMS();
+                result_indices = nms.nmsScoreFilter(updatedBoxes, scores, 20, 0.2f);
+            } finally {
+                PipelineTrace.end();
+            }
 
-        float scaleHeight = (float) image.getHeight() / getInputHeight();
-        float scaleWidth = (float) image.getWidth() / getInputWidth();
+            float scaleHeight = (float) image.getHeight() / getInputHeight();
+            float scaleWidth = (float) image.getWidth() / getInputWidth();
 
-        for (int index : result_indices) {
-            if (index == 0) {
-                continue;
-            }
+            for (int index : result_indices) {
+                if (index == 0) {
+                    continue;
+                }
 
-            float[] temp_boxes = updatedBoxes[index];
-            RectangleBox tempbox = new RectangleBox();
-            tempbox.left = temp_boxes[0] * scaleWidth;
-            tempbox.bottom = temp_boxes[1] * scaleHeight;
-            tempbox.right = temp_boxes[2] * scaleWidth;
-            tempbox.top = temp_boxes[3] * scaleHeight;
-            tempbox.confidence = scores[index];
-            tempbox.classIdx = (int) classIdx[index];
-            tempbox.label = labelList.get((int)classIdx[index] % labelList.size());
-            BBlist.add(tempbox);
+                float[] temp_boxes = updatedBoxes[index];
+                RectangleBox tempbox = new RectangleBox();
+                tempbox.left = temp_boxes[0] * scaleWidth;
+                tempbox.bottom = temp_boxes[1] * scaleHeight;
+                tempbox.right = temp_boxes[2] * scaleWidth;
+                tempbox.top = temp_boxes[3] * scaleHeight;
+                tempbox.confidence = scores[index];
+                tempbox.classIdx = (int) classIdx[index];
+                tempbox.label = labelList.get((int)classIdx[index] % labelList.size());
+                BBlist.add(tempbox);
+            }
+        } finally {
+            PipelineTrace.end();
         }
         long endTime = System.nanoTime();
         postprocessingTime = endTime - postStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.POSTPROCESSING, postprocessingTime);
+        latencyRecorder.record(LatencyRecorder.Stage.END_TO_END, endTime - preStartTime);
     }
 
     public class NMS {
@@ -0,0 +1,161 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PipelineTrace.Tracer that records sections to a fixed-size in-memory ring buffer.
+ *
+ * Does not depend on the Android framework, so it can be used in JVM tests to assert
+ * the ordering and overlap of pipeline stages:
+ *
+ *   RingBufferTracer tracer = new RingBufferTracer(1024);
+ *   PipelineTrace.setTracer(tracer);
+ *   ... run the pipeline ...
+ *   List<RingBufferTracer.Span> spans = tracer.getSpans();
+ *
+ * Recording does not allocate. Once the buffer is full, the oldest events are overwritten.
+ */
+public class RingBufferTracer implements PipelineTrace.Tracer {
+    /**
+     * A completed section.
+     */
+    public static class Span {
+        public final String name;
+        public final long threadId;
+        public final long startNanos;
+        public final long endNanos;
+        // Number of enclosing sections on the same thread.
+        public final int depth;
+
+        Span(String name, long threadId, long startNanos, long endNanos, int depth) {
+            this.name = name;
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.depth = depth;
+        }
+
+        public long getDurationNanos() {
+            return endNanos - startNanos;
+        }
+
+        /**
+         * @return True if this span and the other span were running at the same time.
+         */
+        public boolean overlaps(Span other) {
+            return startNanos < other.endNanos && other.startNanos < endNanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[thread=" + threadId + ", start=" + startNanos + ", end=" + endNanos + ", depth=" + depth + "]";
+        }
+    }
+
+    private final int capacity;
+    private final String[] names;
+    private final long[] threadIds;
+    private final long[] timestamps;
+    // Sequence number of each slot's event, or -1 if the slot is empty. Orders events across wrap-around.
+    private final long[] sequences;
+    // Taken with the timestamp under the lock, so sequence order matches timestamp order.
+    private long nextSequence;
+
+    /**
+     * @param capacity Maximum number of begin / end events kept in memory.
+     */
+    public RingBufferTracer(int capacity) {
+        this.capacity = capacity;
+        names = new String[capacity];
+        threadIds = new long[capacity];
+        timestamps = new long[capacity];
+        sequences = new long[capacity];
+        clear();
+    }
+
+    @Override
+    public void beginSection(String name) {
+        record(name);
+    }
+
+    @Override
+    public void endSection() {
+        // A null name marks the end of a section.
+        record(null);
+    }
+
+    private synchronized void record(String name) {
+        long sequence = nextSequence++;
+        int slot = (int) (sequence % capacity);
+        names[slot] = name;
+        threadIds[slot] = Thread.currentThread().getId();
+        timestamps[slot] = System.nanoTime();
+        sequences[slot] = sequence;
+    }
+
+    /**
+     * Discard all recorded events.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < capacity; i++) {
+            sequences[i] = -1;
+            names[i] = null;
+        }
+        nextSequence = 0;
+    }
+
+    /**
+     * Pair recorded begin / end events into spans.
+     * Sections that have not ended yet, or whose begin event was overwritten, are omitted.
+     *
+     * @return Completed spans, ordered by start time.
+     */
+    public synchronized List<Span> getSpans() {
+        // Collect events in sequence order.
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            if (sequences[i] >= 0) {
+                slots.add(i);
+            }
+        }
+        slots.sort(Comparator.comparingLong(slot -> sequences[slot]));
+
+        Map<Long, Deque<Integer>> openSections = new HashMap<>();
+        List<Span> spans = new ArrayList<>();
+        for (int slot : slots) {
+            Deque<Integer> stack = openSections.computeIfAbsent(threadIds[slot], k -> new ArrayDeque<>());
+            if (names[slot] != null) {
+                stack.push(slot);
+            } else if (!stack.isEmpty()) {
+                int beginSlot = stack.pop();
+                spans.add(new Span(names[beginSlot], threadIds[slot], timestamps[beginSlot], timestamps[slot], stack.size()));
+            }
+        }
+        spans.sort(Comparator.comparingLong(span -> span.startNanos));
+        return spans;
+    }
+
+    /**
+     * @param name Section name.
+     * @return Completed spans with the given name, ordered by start time.
+     */
+    public List<Span> getSpans(String name) {
+        List<Span> result = new ArrayList<>();
+        for (Span span : getSpans()) {
+            if (span.name.equals(name)) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+}
@@ -11,13 +11,19 @@ import android.util.Pair;
 
 import com.qualcomm.qti.QnnDelegate;
 
+import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.Delegate;
 import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
 import org.tensorflow.lite.gpu.GpuDelegate;
 import org.tensorflow.lite.gpu.GpuDelegateFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.security.DigestInputStream;
@@ -30,6 +36,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -102,6 +109,33 @@ public class TFLiteHelpers {
             String nativeLibraryDir,
             String cacheDir,
             String modelIdentifier) {
+        return CreateInterpreterAndDelegatesFromOptions(
+                tfLiteModel,
+                delegatePriorityOrder,
+                numCPUThreads,
+                nativeLibraryDir,
+                cacheDir,
+                modelIdentifier,
+                new LoadReport());
+    }
+
+    /**
+     * Create a TFLite interpreter from the given model, and record a cold-start breakdown of the load.
+     * See the overload without a LoadReport for details on the other parameters.
+     *
+     * @param loadReport Filled with per-phase durations, the delegate tier that was selected,
+     *                   tiers that failed (and why), and whether serialized delegate caches were hit.
+     *
+     * @return A pair of the created interpreter and associated delegates.
+     */
+    public static Pair<Interpreter, Map<DelegateType, Delegate>> CreateInterpreterAndDelegatesFromOptions(
+            MappedByteBuffer tfLiteModel,
+            DelegateType[][] delegatePriorityOrder,
+            int numCPUThreads,
+            String nativeLibraryDir,
+            String cacheDir,
+            String modelIdentifier,
+            LoadReport loadReport) {
 
         // Delegate Storage
         Map<DelegateType, Delegate> delegates = new HashMap<>();
@@ -115,7 +149,14 @@ public class TFLiteHelpers {
             Arrays.stream(delegatesToRegister)
                     .filter(delegateType -> !attemptedDelegates.contains(delegateType))
                     .forEach(delegateType -> {
-                        Delegate delegate = CreateDelegate(delegateType, nativeLibraryDir, cacheDir, modelIdentifier);
+                        String phase = "CreateDelegate:" + delegateType.name();
+                        long startTime = loadReport.beginPhase(phase);
+                        Delegate delegate;
+                        try {
+                            delegate = CreateDelegate(delegateType, nativeLibraryDir, cacheDir, modelIdentifier, loadReport);
+                        } finally {
+                            loadReport.endPhase(phase, startTime);
+                        }
                         if (delegate != null) {
                             delegates.put(delegateType, delegate);
                         }
@@ -125,6 +166,7 @@ public class TFLiteHelpers {
             // If one or more delegates in this attempt could not be instantiated,
             // skip this attempt.
             if (Arrays.stream(delegatesToRegister).anyMatch(x -> !delegates.containsKey(x))) {
+                loadReport.addFailedTier(GetTierName(delegatesToRegister), "One or more delegates failed to initialize.");
                 continue;
             }
 
@@ -134,7 +176,8 @@ public class TFLiteHelpers {
                         delegateType -> new Pair<>(delegateType, delegates.get(delegateType))
                 ).toArray(Pair[]::new),
                 numCPUThreads,
-                tfLiteModel
+                tfLiteModel,
+                loadReport
             );
 
             // If the interpreter failed to be created, move on to the next attempt.
@@ -151,6 +194,8 @@ public class TFLiteHelpers {
                     });
 
             // Return interpreter & associated delegates.
+            loadReport.setSelectedTier(GetTierName(delegatesToRegister));
+            Log.i(TAG, "Interpreter created. Load report: " + loadReport);
             return new Pair<>(interpreter, delegates);
         }
 
@@ -170,6 +215,25 @@ public class TFLiteHelpers {
             final Pair<DelegateType, Delegate>[] delegates,
             int numCPUThreads,
             MappedByteBuffer tfLiteModel) {
+        return CreateInterpreterFromDelegates(delegates, numCPUThreads, tfLiteModel, new LoadReport());
+    }
+
+    /**
+     * Create an interpreter from the given delegates.
+     *
+     * @param delegates     Delegate instances to be registered in the interpreter.
+     *                      Delegates will be registered in the order of this array.
+     * @param numCPUThreads Number of CPU threads to use for layers on CPU.
+     * @param tfLiteModel   TFLiteModel to pass to the interpreter.
+     * @param loadReport    Records interpreter creation and tensor allocation time, and the failure reason if any.
+     * @return An Interpreter if creation is successful, and null otherwise.
+     */
+    public static Interpreter CreateInterpreterFromDelegates(
+            final Pair<DelegateType, Delegate>[] delegates,
+            int numCPUThreads,
+            MappedByteBuffer tfLiteModel,
+            LoadReport loadReport) {
+        String tierName = GetTierName(Arrays.stream(delegates).map(x -> x.first).toArray(DelegateType[]::new));
         Interpreter.Options tfLiteOptions = new Interpreter.Options();
         tfLiteOptions.setRuntime(Interpreter.Options.TfLiteRuntime.FROM_APPLICATION_ONLY);
         tfLiteOptions.setAllowBufferHandleOutput(true);
@@ -181,20 +245,109 @@ public class TFLiteHelpers {
         // registered will have "first pick" of which operators to run, and so on.
         Arrays.stream(delegates).forEach(x -> tfLiteOptions.addDelegate(x.second));
 
+        Interpreter i = null;
         try {
-            Interpreter i = new Interpreter(tfLiteModel, tfLiteOptions);
-            i.allocateTensors();
+            // Delegates compile (or load from cache) their part of the graph here.
+            String createPhase = "CreateInterpreter:" + tierName;
+            long startTime = loadReport.beginPhase(createPhase);
+            try {
+                i = new Interpreter(tfLiteModel, tfLiteOptions);
+            } finally {
+                loadReport.endPhase(createPhase, startTime);
+            }
+
+            String allocatePhase = "AllocateTensors:" + tierName;
+            startTime = loadReport.beginPhase(allocatePhase);
+            try {
+                i.allocateTensors();
+            } finally {
+                loadReport.endPhase(allocatePhase, startTime);
+            }
             return i;
         } catch (Exception e) {
-            List<String> enabledDelegates = Arrays.stream(delegates).map(x -> x.first.name()).collect(Collectors.toCollection(ArrayList<String>::new));
-            enabledDelegates.add("XNNPack");
-            Log.e(TAG, "Failed to Load Interpreter with delegates {" + String.join(", ", enabledDelegates) + "} | " + e.getMessage());
+            if (i != null) {
+                i.close();
+            }
+            Log.e(TAG, "Failed to Load Interpreter with delegates {" + tierName + "} | " + e.getMessage());
+            loadReport.addFailedTier(tierName, String.valueOf(e.getMessage()));
             return null;
         }
     }
 
+    /**
+     * Run the interpreter on synthetic inputs so that lazy delegate initialization, kernel compilation,
+     * and cache population happen on the loading thread instead of on the first real frame.
+     *
+     * Inputs are derived from the shape and data type of each input tensor.
+     * The first run and the remaining runs are recorded as separate phases of the load report,
+     * so the spike the warm-up absorbs can be compared to the steady-state cost per model.
+     *
+     * @param interpreter  Interpreter to warm up. Tensors must already be allocated.
+     * @param iterations   Number of warm-up runs. If 0, this method does nothing.
+     * @param randomInputs If true, inputs are filled with random values (floats in [0, 1), random bytes otherwise).
+     *                     If false, inputs are filled with zeros.
+     * @param loadReport   Records warm-up durations and the number of warm-up runs.
+     */
+    public static void WarmUpInterpreter(Interpreter interpreter, int iterations, boolean randomInputs, LoadReport loadReport) {
+        if (iterations <= 0) {
+            return;
+        }
+
+        Random random = new Random(0);
+        ByteBuffer[] inputs = new ByteBuffer[interpreter.getInputTensorCount()];
+        for (int i = 0; i < inputs.length; i++) {
+            Tensor inputTensor = interpreter.getInputTensor(i);
+            ByteBuffer input = ByteBuffer.allocateDirect(inputTensor.numBytes());
+            input.order(ByteOrder.nativeOrder());
+            if (randomInputs) {
+                if (inputTensor.dataType() == DataType.FLOAT32) {
+                    FloatBuffer floatInput = input.asFloatBuffer();
+                    while (floatInput.hasRemaining()) {
+                        floatInput.put(random.nextFloat());
+                    }
+                } else {
+                    byte[] bytes = new byte[input.capacity()];
+                    random.nextBytes(bytes);
+                    input.put(bytes);
+                    input.rewind();
+                }
+            }
+            inputs[i] = input;
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            String phase = i == 0 ? "WarmUp:first" : "WarmUp:steady";
+            long startTime = loadReport.beginPhase(phase);
+            try {
+                interpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+            } finally {
+                loadReport.endPhase(phase, startTime);
+            }
+            for (ByteBuffer input : inputs) {
+                input.rewind();
+            }
+        }
+        loadReport.setWarmUpIterations(iterations);
+
+        Map<String, Long> phases = loadReport.getPhaseDurations();
+        Log.i(TAG, "Warm-up done. First run: " + phases.get("WarmUp:first") / 1000000 + " ms" +
+                (iterations > 1 ? ", mean of remaining runs: " + phases.get("WarmUp:steady") / (iterations - 1) / 1000000 + " ms" : ""));
+    }
+
+    /**
+     * @param delegates Delegates registered to an interpreter, in priority order.
+     * @return Human readable name of the delegate set, including the XNNPack CPU fallback.
+     */
+    static String GetTierName(DelegateType[] delegates) {
+        List<String> enabledDelegates = Arrays.stream(delegates).map(DelegateType::name).collect(Collectors.toCollection(ArrayList<String>::new));
+        enabledDelegates.add("XNNPack");
+        return String.join(", ", enabledDelegates);
+    }
+
     /**
      * Load a TF Lite model from disk.
+     * Maps the asset directly from the APK, so the asset must be stored uncompressed.
+     * See ModelStore::loadModelFile to extract the model to a real file first.
      *
      * @param assets        Android app asset manager.
      * @param modelFilename File name of the resource to load.
@@ -203,6 +356,20 @@ public class TFLiteHelpers {
      */
     public static Pair<MappedByteBuffer, String> loadModelFile(AssetManager assets, String modelFilename)
             throws IOException, NoSuchAlgorithmException {
+        return loadModelFile(assets, modelFilename, new LoadReport());
+    }
+
+    /**
+     * Load a TF Lite model from disk, and record how long mapping and hashing it took.
+     *
+     * @param assets        Android app asset manager.
+     * @param modelFilename File name of the resource to load.
+     * @param loadReport    Records map / hash durations and the number of model bytes mapped.
+     * @return The loaded model in MappedByteBuffer format, and a unique model identifier hash string.
+     * @throws IOException If the model file does not exist or cannot be read.
+     */
+    public static Pair<MappedByteBuffer, String> loadModelFile(AssetManager assets, String modelFilename, LoadReport loadReport)
+            throws IOException, NoSuchAlgorithmException {
         AssetFileDescriptor fileDescriptor = assets.openFd(modelFilename);
         MappedByteBuffer buffer;
         String hash;
@@ -213,25 +380,36 @@ public class TFLiteHelpers {
             long declaredLength = fileDescriptor.getDeclaredLength();
 
             // Map the file to a buffer
-            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
-
-            // Compute the hash
-            MessageDigest hashDigest = MessageDigest.getInstance("MD5");
-            inputStream.skip(startOffset);
-            try (DigestInputStream dis = new DigestInputStream(inputStream, hashDigest)) {
-                byte[] data = new byte[8192];
-                int numRead = 0;
-                while (numRead < declaredLength) {
-                    numRead += dis.read(data, 0, Math.min(8192, (int)declaredLength - numRead));
-                }; // Computing MD5 hash
+            long startTime = loadReport.beginPhase("MapModel");
+            try {
+                buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, startOffset, declaredLength);
+            } finally {
+                loadReport.endPhase("MapModel", startTime);
             }
+            loadReport.setModelBytesMapped(declaredLength);
 
-            // Convert hash to string
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hashDigest.digest()) {
-                hex.append(String.format("%02x", b));
+            // Compute the hash
+            startTime = loadReport.beginPhase("HashModel");
+            try {
+                MessageDigest hashDigest = MessageDigest.getInstance("MD5");
+                inputStream.skip(startOffset);
+                try (DigestInputStream dis = new DigestInputStream(inputStream, hashDigest)) {
+                    byte[] data = new byte[8192];
+                    int numRead = 0;
+                    while (numRead < declaredLength) {
+                        numRead += dis.read(data, 0, Math.min(8192, (int)declaredLength - numRead));
+                    }; // Computing MD5 hash
+                }
+
+                // Convert hash to string
+                StringBuilder hex = new StringBuilder();
+                for (byte b : hashDigest.digest()) {
+                    hex.append(String.format("%02x", b));
+                }
+                hash = hex.toString();
+            } finally {
+                loadReport.endPhase("HashModel", startTime);
             }
-            hash = hex.toString();
         }
 
         return new Pair<>(buffer, hash);
@@ -241,24 +419,39 @@ public class TFLiteHelpers {
      * @param delegateType     The type of delegate to create.
      * @param nativeLibraryDir Native library directory for Android app.
      * @param cacheDir         Android app cache directory.
+     *                         Each delegate serializes compiled models to its own sub-directory,
+     *                         so cache hits / misses can be reported per delegate.
      * @param modelIdentifier  Unique identifier string for the model being loaded.
+     * @param loadReport       Records delegate cache status, or the reason the delegate failed to initialize.
      * @return The created delegate if successful, and null otherwise.
      */
-    static Delegate CreateDelegate(DelegateType delegateType, String nativeLibraryDir, String cacheDir, String modelIdentifier) {
-        if (delegateType == DelegateType.GPUv2) {
-            return CreateGPUv2Delegate(cacheDir, modelIdentifier);
-        }
-        if (delegateType == DelegateType.QNN_NPU) {
-            return CreateQNN_NPUDelegate(nativeLibraryDir, cacheDir, modelIdentifier);
+    static Delegate CreateDelegate(DelegateType delegateType, String nativeLibraryDir, String cacheDir, String modelIdentifier, LoadReport loadReport) {
+        File delegateCacheDir = new File(cacheDir, delegateType.name().toLowerCase());
+        if (!delegateCacheDir.exists() && !delegateCacheDir.mkdirs()) {
+            Log.w(TAG, "Unable to create delegate cache directory " + delegateCacheDir.getAbsolutePath());
         }
+        String[] cachedFiles = delegateCacheDir.list((dir, name) -> name.contains(modelIdentifier));
+        LoadReport.CacheStatus cacheStatus = cachedFiles != null && cachedFiles.length > 0 ? LoadReport.CacheStatus.HIT : LoadReport.CacheStatus.MISS;
 
-        // ------
-        //
-        // Additional delegates (eg. NNAPI, or something targeting non-Qualcomm hardware) could be created here.
-        //
-        // ------
+        Delegate delegate = null;
+        if (delegateType == DelegateType.GPUv2) {
+            delegate = CreateGPUv2Delegate(delegateCacheDir.getAbsolutePath(), modelIdentifier, loadReport);
+        } else if (delegateType == DelegateType.QNN_NPU) {
+            delegate = CreateQNN_NPUDelegate(nativeLibraryDir, delegateCacheDir.getAbsolutePath(), modelIdentifier, loadReport);
+        } else {
+            // ------
+            //
+            // Additional delegates (eg. NNAPI, or something targeting non-Qualcomm hardware) could be created here.
+            //
+            // ------
+
+            throw new RuntimeException("Delegate creation not implemented for type: " + delegateType.name());
+        }
 
-        throw new RuntimeException("Delegate creation not implemented for type: " + delegateType.name());
+        if (delegate != null) {
+            loadReport.setCacheStatus(delegateType, cacheStatus);
+        }
+        return delegate;
     }
 
     /**
@@ -268,9 +461,10 @@ public class TFLiteHelpers {
      * @param nativeLibraryDir Native library directory for Android app.
      * @param cacheDir         Android app cache directory.
      * @param modelIdentifier  Unique identifier string for the model being loaded.
+     * @param loadReport       Records the reason the delegate failed to initialize, if it does.
      * @return The created delegate if successful, and null otherwise.
      */
-    static Delegate CreateQNN_NPUDelegate(String nativeLibraryDir, String cacheDir, String modelIdentifier) {
+    static Delegate CreateQNN_NPUDelegate(String nativeLibraryDir, String cacheDir, String modelIdentifier, LoadReport loadReport) {
         QnnDelegate.Options qnnOptions = new QnnDelegate.Options();
         // Point the QNN Delegate to the QNN libraries to use.
         qnnOptions.setSkelLibraryDir(nativeLibraryDir);
@@ -312,6 +506,7 @@ public class TFLiteHelpers {
 
             if (!hasHTP_FP16 && !hasHTP_QUANT) {
                 Log.e(TAG, "QNN with NPU backend is not supported on this device.");
+                loadReport.addFailedTier(DelegateType.QNN_NPU.name(), "QNN with NPU backend is not supported on this device.");
                 return null;
             }
 
@@ -328,6 +523,7 @@ public class TFLiteHelpers {
             return new QnnDelegate(qnnOptions);
         } catch (Exception e) {
             Log.e(TAG, "QNN with NPU backend failed to initialize: " + e.getMessage());
+            loadReport.addFailedTier(DelegateType.QNN_NPU.name(), String.valueOf(e.getMessage()));
             return null;
         }
     }
@@ -339,9 +535,10 @@ public class TFLiteHelpers {
      *
      * @param cacheDir         Android app cache directory.
      * @param modelIdentifier  Unique identifier string for the model being loaded.
+     * @param loadReport       Records the reason the delegate failed to initialize, if it does.
      * @return A The created delegate if successful, and null otherwise.
      */
-    static Delegate CreateGPUv2Delegate(String cacheDir, String modelIdentifier) {
+    static Delegate CreateGPUv2Delegate(String cacheDir, String modelIdentifier, LoadReport loadReport) {
         GpuDelegateFactory.Options gpuOptions = new GpuDelegateFactory.Options();
 
         // -------------------------------
@@ -372,6 +569,7 @@ public class TFLiteHelpers {
             return new GpuDelegate(gpuOptions);
         } catch (Exception e) {
             Log.e(TAG, "GPUv2 delegate failed to initialize: " + e.getMessage());
+            loadReport.addFailedTier(DelegateType.GPUv2.name(), String.valueOf(e.getMessage()));
             return null;
         }
     }
@@ -0,0 +1,113 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairs the sections recorded through PipelineTrace into spans.
+ */
+public class RingBufferTracerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private RingBufferTracer tracer;
+
+    @Before
+    public void setUp() {
+        tracer = new RingBufferTracer(64);
+        PipelineTrace.setTracer(tracer);
+    }
+
+    @After
+    public void tearDown() {
+        PipelineTrace.setTracer(PipelineTrace.NO_OP_TRACER);
+    }
+
+    @Test
+    public void beginAndEndArePairedIntoOneSpan() {
+        PipelineTrace.begin("stage");
+        PipelineTrace.end();
+
+        List<RingBufferTracer.Span> spans = tracer.getSpans();
+        assertEquals(1, spans.size());
+        RingBufferTracer.Span span = spans.get(0);
+        assertEquals("stage", span.name);
+        assertEquals(Thread.currentThread().getId(), span.threadId);
+        assertEquals(0, span.depth);
+        assertTrue(span.getDurationNanos() >= 0);
+    }
+
+    @Test
+    public void nestedSectionIsInsideItsParent() {
+        PipelineTrace.begin("outer");
+        PipelineTrace.begin("inner");
+        PipelineTrace.end();
+        PipelineTrace.end();
+
+        RingBufferTracer.Span outer = tracer.getSpans("outer").get(0);
+        RingBufferTracer.Span inner = tracer.getSpans("inner").get(0);
+        assertEquals(0, outer.depth);
+        assertEquals(1, inner.depth);
+        assertTrue(outer.startNanos <= inner.startNanos);
+        assertTrue(inner.endNanos <= outer.endNanos);
+        assertEquals(2, tracer.getSpans().size());
+    }
+
+    @Test
+    public void sectionsOnDifferentThreadsOverlap() throws Exception {
+        CountDownLatch otherStarted = new CountDownLatch(1);
+        CountDownLatch mainStarted = new CountDownLatch(1);
+        Thread other = new Thread(() -> {
+            PipelineTrace.begin("other");
+            otherStarted.countDown();
+            try {
+                mainStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                PipelineTrace.end();
+            }
+        });
+        other.start();
+        assertTrue(otherStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        PipelineTrace.begin("main");
+        mainStarted.countDown();
+        other.join(TIMEOUT_SECONDS * 1000);
+        PipelineTrace.end();
+
+        RingBufferTracer.Span main = tracer.getSpans("main").get(0);
+        RingBufferTracer.Span otherSpan = tracer.getSpans("other").get(0);
+        assertNotEquals(main.threadId, otherSpan.threadId);
+        // Each thread's section is at the top level of its own thread.
+        assertEquals(0, main.depth);
+        assertEquals(0, otherSpan.depth);
+        assertTrue(main.overlaps(otherSpan));
+        assertTrue(otherSpan.overlaps(main));
+    }
+
+    @Test
+    public void sectionsWhoseBeginWasOverwrittenAreOmitted() {
+        RingBufferTracer small = new RingBufferTracer(3);
+        PipelineTrace.setTracer(small);
+        PipelineTrace.begin("overwritten");
+        PipelineTrace.begin("kept");
+        PipelineTrace.end();
+        PipelineTrace.end();
+
+        List<RingBufferTracer.Span> spans = small.getSpans();
+        assertEquals(1, spans.size());
+        assertEquals("kept", spans.get(0).name);
+    }
+}
@@ -11,6 +11,7 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
+import android.util.Log;
 import android.util.Size;
 import android.graphics.SurfaceTexture;
 import androidx.activity.result.ActivityResultLauncher;
@@ -39,6 +40,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import org.opencv.android.OpenCVLoader;
 
+import com.quicinc.tflite.LatencyRecorder;
+import com.quicinc.tflite.PipelineTrace;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -49,6 +53,7 @@ import java.util.concurrent.TimeUnit;
 
 public class CameraFragment extends Fragment
 {
+    private static final String TAG = "CameraFragment";
     private long lastTic = 0;
 
     private FragmentRender mFragmentRender;
@@ -242,9 +247,25 @@ public class CameraFragment extends Fragment
     public void onPause() {
         closeCamera();
         stopBackgroundThread();
+        logLatencySummary();
         super.onPause();
     }
 
+    /**
+     * Log the per-stage latency distribution of every frame processed so far.
+     */
+    private void logLatencySummary() {
+        if (segmentor == null) {
+            return;
+        }
+        LatencyRecorder recorder = segmentor.getLatencyRecorder();
+        for (LatencyRecorder.Stage stage : LatencyRecorder.Stage.values()) {
+            if (recorder.getCount(stage) > 0) {
+                Log.i(TAG, recorder.summarize(stage));
+            }
+        }
+    }
+
     @Override
     public void onDestroy() {
         stopBackgroundThread();
@@ -533,31 +554,48 @@ public class CameraFragment extends Fragment
                 CaptureRequest request, @NonNull TotalCaptureResult result) {
 
             super.onCaptureCompleted(session, request, result);
-
-            if (lastTic == 0) {
-                lastTic = System.currentTimeMillis();
-            } else {
-                long newTic = System.currentTimeMillis();
-                if (lastTic != newTic) {
-                    fps = 1000.f / (float)(newTic - lastTic);
+            long frameArrivalTime = System.nanoTime();
+            PipelineTrace.begin("CameraFragment#onCaptureCompleted");
+            try {
+                if (lastTic == 0) {
+                    lastTic = System.currentTimeMillis();
+                } else {
+                    long newTic = System.currentTimeMillis();
+                    if (lastTic != newTic) {
+                        fps = 1000.f / (float)(newTic - lastTic);
+                    }
+                    lastTic = newTic;
                 }
-                lastTic = newTic;
-            }
 
-            if (segmentor != null) {
-                // Save camera feed to Bitmap at its native resolution
-                Bitmap mBitmap = mTextureView.getBitmap();
-                if (mBitmap == null) {
-                    return;
-                }
+                if (segmentor != null) {
+                    // Save camera feed to Bitmap at its native resolution
+                    Bitmap mBitmap;
+                    PipelineTrace.begin("CameraFragment#getBitmap");
+                    try {
+                        mBitmap = mTextureView.getBitmap();
+                    } finally {
+                        PipelineTrace.end();
+                    }
+                    if (mBitmap == null) {
+                        return;
+                    }
 
-                Bitmap outputImage = segmentor.predict(mBitmap, mSensorOrientation);
-                mFragmentRender.render(
-                        outputImage,
-                        fps,
-                        segmentor.getLastInferenceTime(),
-                        segmentor.getLastPreprocessingTime(),
-                        segmentor.getLastPostprocessingTime());
+                    segmentor.getLatencyRecorder().record(LatencyRecorder.Stage.QUEUEING, System.nanoTime() - frameArrivalTime);
+                    Bitmap outputImage = segmentor.predict(mBitmap, mSensorOrientation);
+                    PipelineTrace.begin("CameraFragment#renderHandoff");
+                    try {
+                        mFragmentRender.render(
+                                outputImage,
+                                fps,
+                                segmentor.getLastInferenceTime(),
+                                segmentor.getLastPreprocessingTime(),
+                                segmentor.getLastPostprocessingTime());
+                    } finally {
+                        PipelineTrace.end();
+                    }
+                }
+            } finally {
+                PipelineTrace.end();
             }
         }
 
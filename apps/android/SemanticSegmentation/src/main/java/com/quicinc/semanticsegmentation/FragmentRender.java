@@ -17,6 +17,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.util.AttributeSet;
 import android.view.View;
+
+import com.quicinc.tflite.PipelineTrace;
+
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -56,37 +59,41 @@ public class FragmentRender extends View {
     @SuppressLint("DefaultLocale")
     @Override
     protected void onDraw(@NonNull Canvas canvas) {
+        PipelineTrace.begin("FragmentRender#onDraw");
         mLock.lock();
+        try {
+            if (mBitmap != null) {
+                int insetHeight, insetWidth;
 
-        if (mBitmap != null) {
-            int insetHeight, insetWidth;
+                float canvasRatio = (float) getWidth() / (float) getHeight();
+                float bitmapRatio = (float) mBitmap.getWidth() / mBitmap.getHeight();
+                if (canvasRatio > bitmapRatio) {
+                    insetHeight = getHeight();
+                    insetWidth = (int) ((float) getHeight() * bitmapRatio);
+                } else {
+                    insetWidth = getWidth();
+                    insetHeight = (int) ((float) getWidth() / bitmapRatio);
+                }
 
-            float canvasRatio = (float) getWidth() / (float) getHeight();
-            float bitmapRatio = (float) mBitmap.getWidth() / mBitmap.getHeight();
-            if (canvasRatio > bitmapRatio) {
-                insetHeight = getHeight();
-                insetWidth = (int) ((float) getHeight() * bitmapRatio);
-            } else {
-                insetWidth = getWidth();
-                insetHeight = (int) ((float) getWidth() / bitmapRatio);
-            }
+                int offsetWidth = (getWidth() - insetWidth) / 2;
+                int offsetHeight = (getHeight() - insetHeight) / 2;
+                mTargetRect.left = offsetWidth;
+                mTargetRect.top = offsetHeight;
+                mTargetRect.right = offsetWidth + insetWidth;
+                mTargetRect.bottom = offsetHeight + insetHeight;
+                canvas.drawBitmap(mBitmap, null, mTargetRect, null);
+                canvas.rotate(90, 0, 0);
+                canvas.translate(offsetHeight, -insetWidth - offsetWidth);
 
-            int offsetWidth = (getWidth() - insetWidth) / 2;
-            int offsetHeight = (getHeight() - insetHeight) / 2;
-            mTargetRect.left = offsetWidth;
-            mTargetRect.top = offsetHeight;
-            mTargetRect.right = offsetWidth + insetWidth;
-            mTargetRect.bottom = offsetHeight + insetHeight;
-            canvas.drawBitmap(mBitmap, null, mTargetRect, null);
-            canvas.rotate(90, 0, 0);
-            canvas.translate(offsetHeight, -insetWidth - offsetWidth);
-
-            canvas.drawText("FPS: " + String.format("%.0f", fps), 15, 50, mTextColor);
-            canvas.drawText("Preprocess: " + String.format("%.0f", (float)preprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 2, mTextColor);
-            canvas.drawText("Infer: " + String.format("%.0f", (float)inferTime / 1_000_000) + "ms", 15, 55 + 60 * 3, mTextColor);
-            canvas.drawText("Postprocess: " + String.format("%.0f", (float)postprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 4, mTextColor);
-            canvas.drawText("Note: Will only produce sensible results on street scenes", 15, insetWidth - 15  , mTextColor);
+                canvas.drawText("FPS: " + String.format("%.0f", fps), 15, 50, mTextColor);
+                canvas.drawText("Preprocess: " + String.format("%.0f", (float)preprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 2, mTextColor);
+                canvas.drawText("Infer: " + String.format("%.0f", (float)inferTime / 1_000_000) + "ms", 15, 55 + 60 * 3, mTextColor);
+                canvas.drawText("Postprocess: " + String.format("%.0f", (float)postprocessTime / 1_000_000) + "ms", 15, 55 + 60 * 4, mTextColor);
+                canvas.drawText("Note: Will only produce sensible results on street scenes", 15, insetWidth - 15  , mTextColor);
+            }
+        } finally {
+            mLock.unlock();
+            PipelineTrace.end();
         }
-        mLock.unlock();
     }
 }
@@ -9,6 +9,10 @@ import android.graphics.Bitmap;
 import android.util.Pair;
 
 import com.quicinc.tflite.AIHubDefaults;
+import com.quicinc.tflite.LatencyRecorder;
+import com.quicinc.tflite.LoadReport;
+import com.quicinc.tflite.ModelStore;
+import com.quicinc.tflite.PipelineTrace;
 import com.quicinc.tflite.TFLiteHelpers;
 
 import org.opencv.android.Utils;
@@ -40,6 +44,8 @@ public class SemanticSegmentation implements AutoCloseable {
     private long preprocessingTime;
     private long inferenceTime;
     private long postprocessingTime;
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private final LoadReport loadReport = new LoadReport();
     private final int NUM_CLASSES = 19; // Output classes (CityScapes dataset)
     // Re-usable memory
     private final ByteBuffer inputByteBuffer;
@@ -65,18 +71,22 @@ public class SemanticSegmentation implements AutoCloseable {
         new OpenCVNativeLoader().init();
 
         // Load TF Lite model
-        Pair<MappedByteBuffer, String> modelAndHash = TFLiteHelpers.loadModelFile(context.getAssets(), modelPath);
+        Pair<MappedByteBuffer, String> modelAndHash = new ModelStore(context).loadModelFile(modelPath, loadReport);
         Pair<Interpreter, Map<TFLiteHelpers.DelegateType, Delegate>> iResult = TFLiteHelpers.CreateInterpreterAndDelegatesFromOptions(
                 modelAndHash.first,
                 delegatePriorityOrder,
                 AIHubDefaults.numCPUThreads,
                 context.getApplicationInfo().nativeLibraryDir,
                 context.getCacheDir().getAbsolutePath(),
-                modelAndHash.second
+                modelAndHash.second,
+                loadReport
         );
         tfLiteInterpreter = iResult.first;
         tfLiteDelegateStore = iResult.second;
 
+        // Absorb the first-inference spike (lazy delegate init, kernel compilation) while the model is loading.
+        TFLiteHelpers.WarmUpInterpreter(tfLiteInterpreter, AIHubDefaults.numWarmUpIterations, false, loadReport);
+
         // Validate TF Lite model fits requirements for this app
         assert tfLiteInterpreter.getInputTensorCount() == 1;
         Tensor inputTensor = tfLiteInterpreter.getInputTensor(0);
@@ -160,6 +170,20 @@ public class SemanticSegmentation implements AutoCloseable {
         return postprocessingTime;
     }
 
+    /**
+     * @return latency distributions of every frame processed by this segmentor.
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * @return cold-start breakdown of loading the model and creating the interpreter.
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
     /**
      * Predicts and overlays
      * @param image Input image
@@ -179,57 +203,93 @@ public class SemanticSegmentation implements AutoCloseable {
         // Preprocessing
         //
 
-        // Copy input image into OpenCV Mat
-        Utils.bitmapToMat(image, inputMatAbgr);
-
-        // OpenCV loads the image as BGR, but the network expects RGB
-        Imgproc.cvtColor(inputMatAbgr, inputMatRgb, Imgproc.COLOR_BGRA2RGB);
-        Imgproc.cvtColor(inputMatAbgr, inputMatBgr, Imgproc.COLOR_BGRA2BGR);
-
-        // Rotate if necessary
-        Mat correctRotInputImageRgb = new Mat();
-        switch (sensorOrientation) {
-            case 0:
-                correctRotInputImageRgb = inputMatRgb;
-                break;
-            case 90:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_COUNTERCLOCKWISE);
-                break;
-            case 180:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_180);
-                break;
-            case 270:
-                Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_CLOCKWISE);
-                break;
-            default:
-                break;
+        PipelineTrace.begin("SemanticSegmentation#preprocess");
+        try {
+            // Copy input image into OpenCV Mat
+            PipelineTrace.begin("SemanticSegmentation#bitmapToMat");
+            try {
+                Utils.bitmapToMat(image, inputMatAbgr);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            // OpenCV loads the image as BGR, but the network expects RGB
+            PipelineTrace.begin("SemanticSegmentation#cvtColor");
+            try {
+                Imgproc.cvtColor(inputMatAbgr, inputMatRgb, Imgproc.COLOR_BGRA2RGB);
+                Imgproc.cvtColor(inputMatAbgr, inputMatBgr, Imgproc.COLOR_BGRA2BGR);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            // Rotate if necessary
+            Mat correctRotInputImageRgb = new Mat();
+            PipelineTrace.begin("SemanticSegmentation#rotate");
+            try {
+                switch (sensorOrientation) {
+                    case 0:
+                        correctRotInputImageRgb = inputMatRgb;
+                        break;
+                    case 90:
+                        Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_COUNTERCLOCKWISE);
+                        break;
+                    case 180:
+                        Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_180);
+                        break;
+                    case 270:
+                        Core.rotate(inputMatRgb, correctRotInputImageRgb, Core.ROTATE_90_CLOCKWISE);
+                        break;
+                    default:
+                        break;
+                }
+            } finally {
+                PipelineTrace.end();
+            }
+
+            int inputHeight = inputShape[1];
+            int inputWidth = inputShape[2];
+
+            // Scale image to the network
+            Mat scaledImage = new Mat(inputHeight, inputWidth, CvType.CV_8UC3);
+            PipelineTrace.begin("SemanticSegmentation#resize");
+            try {
+                Imgproc.resize(correctRotInputImageRgb, scaledImage, scaledImage.size(), 0, 0, Imgproc.INTER_LINEAR);
+                scaledImage.convertTo(scaledImage, CvType.CV_32FC3, 1 / 255f);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            //
+            // TFLite inference
+            //
+
+            // Convert from OpenCV to TFLite expected ByteBuffer
+            // To minimize IO overhead, we create a direct-allocated buffer in native order.
+
+            PipelineTrace.begin("SemanticSegmentation#copyInput");
+            try {
+                scaledImage.get(0, 0, inputFloatArray);
+                FloatBuffer inputFloatBuffer = inputByteBuffer.asFloatBuffer();
+                inputFloatBuffer.put(inputFloatArray);
+            } finally {
+                PipelineTrace.end();
+            }
+        } finally {
+            PipelineTrace.end();
         }
 
-        int inputHeight = inputShape[1];
-        int inputWidth = inputShape[2];
-
-        // Scale image to the network
-        Mat scaledImage = new Mat(inputHeight, inputWidth, CvType.CV_8UC3);
-        Imgproc.resize(correctRotInputImageRgb, scaledImage, scaledImage.size(), 0, 0, Imgproc.INTER_LINEAR);
-        scaledImage.convertTo(scaledImage, CvType.CV_32FC3, 1 / 255f);
-
-        //
-        // TFLite inference
-        //
-
-        // Convert from OpenCV to TFLite expected ByteBuffer
-        // To minimize IO overhead, we create a direct-allocated buffer in native order.
-
-        scaledImage.get(0, 0, inputFloatArray);
-        FloatBuffer inputFloatBuffer = inputByteBuffer.asFloatBuffer();
-        inputFloatBuffer.put(inputFloatArray);
-
         long inferenceStartTime = System.nanoTime();
         preprocessingTime = inferenceStartTime - preStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.PREPROCESSING, preprocessingTime);
 
         // Run inference
         ByteBuffer[] inputs = new ByteBuffer[] {inputByteBuffer};
-        tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        PipelineTrace.begin("SemanticSegmentation#runForMultipleInputsOutputs");
+        try {
+            tfLiteInterpreter.runForMultipleInputsOutputs(inputs, new HashMap<>());
+        } finally {
+            PipelineTrace.end();
+        }
 
         //
         // Postprocessing
@@ -237,58 +297,87 @@ public class SemanticSegmentation implements AutoCloseable {
 
         long postStartTime = System.nanoTime();
         inferenceTime = postStartTime - inferenceStartTime;
-
-        int outputHeight = outputShape[1];
-        int outputWidth = outputShape[2];
-
-        // Convert output to 3D OpenCV image
-        Mat outputs = new Mat(new int[]{outputHeight, outputWidth, NUM_CLASSES}, CvType.CV_32F);
-        ByteBuffer outputBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
-        FloatBuffer floatBuf = outputBuffer.asFloatBuffer();
-        float[] arr = new float[floatBuf.remaining()];
-        floatBuf.get(arr);
-        outputs.put(new int[]{0, 0, 0}, arr);
-
-        // Take argmax (top class prediction) and scale up
-        Core.reduceArgMax(outputs, outputCategories, 2);
-        outputCategories.convertTo(outputCategories, CvType.CV_8UC1);
-        outputCategories = outputCategories.reshape(1, new int[]{outputHeight, outputWidth});
-
-        // Spread out the indices to fill up [0, 1]
-        // This will make better use of the rainbow color map below
-        Core.multiply(outputCategories, new Scalar(255.0f / (float)(NUM_CLASSES - 1)), outputCategories);
-
-        // Rotate output to match input
-        switch (sensorOrientation) {
-            case 90:
-                Core.rotate(outputCategories, outputCategories, Core.ROTATE_90_CLOCKWISE);
-                break;
-            case 180:
-                Core.rotate(outputCategories, outputCategories, Core.ROTATE_180);
-                break;
-            case 270:
-                Core.rotate(outputCategories, outputCategories, Core.ROTATE_90_COUNTERCLOCKWISE);
-                break;
-            default:
-                break;
+        latencyRecorder.record(LatencyRecorder.Stage.INFERENCE, inferenceTime);
+
+        Bitmap outputBitmap;
+        PipelineTrace.begin("SemanticSegmentation#postprocess");
+        try {
+            int outputHeight = outputShape[1];
+            int outputWidth = outputShape[2];
+
+            // Convert output to 3D OpenCV image
+            Mat outputs = new Mat(new int[]{outputHeight, outputWidth, NUM_CLASSES}, CvType.CV_32F);
+            PipelineTrace.begin("SemanticSegmentation#readOutputs");
+            try {
+                ByteBuffer outputBuffer = tfLiteInterpreter.getOutputTensor(0).asReadOnlyBuffer();
+                FloatBuffer floatBuf = outputBuffer.asFloatBuffer();
+                float[] arr = new float[floatBuf.remaining()];
+                floatBuf.get(arr);
+                outputs.put(new int[]{0, 0, 0}, arr);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            // Take argmax (top class prediction) and scale up
+            PipelineTrace.begin("SemanticSegmentation#argmax");
+            try {
+                Core.reduceArgMax(outputs, outputCategories, 2);
+                outputCategories.convertTo(outputCategories, CvType.CV_8UC1);
+                outputCategories = outputCategories.reshape(1, new int[]{outputHeight, outputWidth});
+
+                // Spread out the indices to fill up [0, 1]
+                // This will make better use of the rainbow color map below
+                Core.multiply(outputCategories, new Scalar(255.0f / (float)(NUM_CLASSES - 1)), outputCategories);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            // Rotate output to match input
+            Mat resizeImage = new Mat(image.getHeight(), image.getWidth(), CvType.CV_8UC1);
+            PipelineTrace.begin("SemanticSegmentation#rotateAndResizeOutput");
+            try {
+                switch (sensorOrientation) {
+                    case 90:
+                        Core.rotate(outputCategories, outputCategories, Core.ROTATE_90_CLOCKWISE);
+                        break;
+                    case 180:
+                        Core.rotate(outputCategories, outputCategories, Core.ROTATE_180);
+                        break;
+                    case 270:
+                        Core.rotate(outputCategories, outputCategories, Core.ROTATE_90_COUNTERCLOCKWISE);
+                        break;
+                    default:
+                        break;
+                }
+
+                // Resize back to input size
+                Imgproc.resize(outputCategories, resizeImage, resizeImage.size(), 0, 0, Imgproc.INTER_LINEAR);
+            } finally {
+                PipelineTrace.end();
+            }
+
+            // Convert grayscale indices map to an RGB image (with rainbow color map)
+            PipelineTrace.begin("SemanticSegmentation#overlay");
+            try {
+                Mat mask = new Mat(image.getWidth(), image.getHeight(), CvType.CV_8UC3);
+                Imgproc.applyColorMap(resizeImage, mask, Imgproc.COLORMAP_RAINBOW);
+
+                // Overlay on top of camera preview
+                Core.addWeighted(inputMatBgr, 0.7, mask, 0.3, 0.0, inputMatBgr);
+
+                // Convert from OpenCV Mat to Android Bitmap
+                outputBitmap = Bitmap.createBitmap(inputMatBgr.width(), inputMatBgr.height(), Bitmap.Config.ARGB_8888);
+                Utils.matToBitmap(inputMatBgr, outputBitmap);
+            } finally {
+                PipelineTrace.end();
+            }
+        } finally {
+            PipelineTrace.end();
         }
-
-        // Resize back to input size
-        Mat resizeImage = new Mat(image.getHeight(), image.getWidth(), CvType.CV_8UC1);
-        Imgproc.resize(outputCategories, resizeImage, resizeImage.size(), 0, 0, Imgproc.INTER_LINEAR);
-
-        // Convert grayscale indices map to an RGB image (with rainbow color map)
-        Mat mask = new Mat(image.getWidth(), image.getHeight(), CvType.CV_8UC3);
-        Imgproc.applyColorMap(resizeImage, mask, Imgproc.COLORMAP_RAINBOW);
-
-        // Overlay on top of camera preview
-        Core.addWeighted(inputMatBgr, 0.7, mask, 0.3, 0.0, inputMatBgr);
-
-        // Convert from OpenCV Mat to Android Bitmap
-        Bitmap outputBitmap = Bitmap.createBitmap(inputMatBgr.width(), inputMatBgr.height(), Bitmap.Config.ARGB_8888);
-        Utils.matToBitmap(inputMatBgr, outputBitmap);
         long endTime = System.nanoTime();
         postprocessingTime = endTime - postStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.POSTPROCESSING, postprocessingTime);
+        latencyRecorder.record(LatencyRecorder.Stage.END_TO_END, endTime - preStartTime);
         return outputBitmap;
     }
 }
@@ -0,0 +1,142 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Headless benchmark runner.
+ *
+ * Loads a model once per delegate tier, runs it for a fixed number of iterations,
+ * and writes the per-stage latency distributions collected by the model's LatencyRecorder to a JSON report.
+ */
+public class LatencyBenchmark {
+    private static final String TAG = "QualcommLatencyBenchmark";
+
+    /**
+     * Creates a model instance that uses the given delegates.
+     */
+    public interface ModelFactory<T extends AutoCloseable> {
+        T create(TFLiteHelpers.DelegateType[][] delegatePriorityOrder) throws Exception;
+    }
+
+    /**
+     * @return Delegate tiers benchmarked by default, keyed by a human readable tier name.
+     *         Each tier is a delegate priority order, as accepted by TFLiteHelpers::CreateInterpreterAndDelegatesFromOptions.
+     */
+    public static Map<String, TFLiteHelpers.DelegateType[][]> defaultDelegateTiers() {
+        Map<String, TFLiteHelpers.DelegateType[][]> tiers = new LinkedHashMap<>();
+        // NPU + GPU + CPU (AI Hub defaults)
+        tiers.put("all", AIHubDefaults.delegatePriorityOrder);
+        // GPU + CPU
+        tiers.put("gpu", AIHubDefaults.delegatePriorityOrderForDelegates(
+                Collections.singleton(TFLiteHelpers.DelegateType.GPUv2)));
+        // CPU (XNNPack) only
+        tiers.put("cpu", AIHubDefaults.delegatePriorityOrderForDelegates(Collections.emptySet()));
+        return tiers;
+    }
+
+    /**
+     * Run the benchmark and write the report.
+     *
+     * @param modelName        Name of the model, written to the report.
+     * @param delegateTiers    Delegate tiers to benchmark, keyed by tier name.
+     * @param factory          Creates a model instance for a given tier.
+     * @param latencyRecorder  Returns the latency recorder fed by a model instance.
+     * @param iteration        Runs one end-to-end prediction on a model instance.
+     * @param warmupIterations Number of iterations to run (and discard) before measuring.
+     * @param iterations       Number of measured iterations per tier.
+     * @param reportFile       File to write the JSON report to.
+     * @return The JSON report.
+     */
+    public static <T extends AutoCloseable> JSONObject run(
+            String modelName,
+            Map<String, TFLiteHelpers.DelegateType[][]> delegateTiers,
+            ModelFactory<T> factory,
+            Function<T, LatencyRecorder> latencyRecorder,
+            Consumer<T> iteration,
+            int warmupIterations,
+            int iterations,
+            File reportFile) throws IOException {
+        JSONObject report = new JSONObject();
+        JSONObject tierResults = new JSONObject();
+        try {
+            report.put("model", modelName);
+            report.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            report.put("soc", Build.SOC_MODEL);
+            report.put("warmupIterations", warmupIterations);
+            report.put("iterations", iterations);
+
+            for (Map.Entry<String, TFLiteHelpers.DelegateType[][]> tier : delegateTiers.entrySet()) {
+                Log.i(TAG, "Benchmarking " + modelName + " on tier: " + tier.getKey());
+                JSONObject tierResult = new JSONObject();
+                long loadStartTime = System.nanoTime();
+                try (T model = factory.create(tier.getValue())) {
+                    tierResult.put("loadNs", System.nanoTime() - loadStartTime);
+                    LatencyRecorder recorder = latencyRecorder.apply(model);
+                    for (int i = 0; i < warmupIterations; i++) {
+                        iteration.accept(model);
+                    }
+                    recorder.reset();
+
+                    for (int i = 0; i < iterations; i++) {
+                        iteration.accept(model);
+                    }
+
+                    for (LatencyRecorder.Stage stage : LatencyRecorder.Stage.values()) {
+                        if (recorder.getCount(stage) == 0) {
+                            continue;
+                        }
+                        tierResult.put(stage.name(), stageToJson(recorder, stage));
+                        Log.i(TAG, tier.getKey() + " | " + recorder.summarize(stage));
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Benchmark failed for tier " + tier.getKey() + " | " + e.getMessage());
+                    tierResult.put("error", String.valueOf(e.getMessage()));
+                }
+                tierResults.put(tier.getKey(), tierResult);
+            }
+            report.put("tiers", tierResults);
+
+            try (Writer writer = new FileWriter(reportFile)) {
+                writer.write(report.toString(2));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Unable to serialize benchmark report: " + e.getMessage());
+        }
+
+        Log.i(TAG, "Benchmark report written to " + reportFile.getAbsolutePath());
+        return report;
+    }
+
+    /**
+     * @return Summary statistics (in nanoseconds) of one stage in the given recorder.
+     */
+    public static JSONObject stageToJson(LatencyRecorder recorder, LatencyRecorder.Stage stage) throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("count", recorder.getCount(stage));
+        result.put("minNs", recorder.getMinNanos(stage));
+        result.put("meanNs", recorder.getMeanNanos(stage));
+        result.put("p50Ns", recorder.getPercentileNanos(stage, 50));
+        result.put("p90Ns", recorder.getPercentileNanos(stage, 90));
+        result.put("p99Ns", recorder.getPercentileNanos(stage, 99));
+        result.put("maxNs", recorder.getMaxNanos(stage));
+        return result;
+    }
+}
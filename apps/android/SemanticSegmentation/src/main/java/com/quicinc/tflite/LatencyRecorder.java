@@ -0,0 +1,174 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records per-stage latency distributions for a model pipeline.
+ *
+ * Samples are stored in a log-linear (HDR histogram style) bucket layout with microsecond resolution:
+ * values are exact below 64us, and every power of two above that is split into 32 linear sub-buckets,
+ * which bounds the relative error of any reported percentile to ~3%.
+ *
+ * record() is lock-free and allocation-free, so it is safe to call from camera / inference threads
+ * while another thread (eg. the UI or a benchmark runner) reads percentiles.
+ */
+public class LatencyRecorder {
+    public enum Stage {
+        // Time a request waited before the model started working on it (eg. frame arrival -> preprocess start).
+        QUEUEING,
+        PREPROCESSING,
+        INFERENCE,
+        POSTPROCESSING,
+        // Preprocessing + inference + postprocessing, measured as a single wall clock interval.
+        END_TO_END,
+    }
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Largest trackable value is 2^36 us (~19 hours). Larger samples are clamped.
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_TRACKABLE_MICROS = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private static final int NUM_STAGES = Stage.values().length;
+    // Per-stage summary slots, stored after the buckets of that stage.
+    private static final int SLOT_COUNT = 0;
+    private static final int SLOT_SUM_NANOS = 1;
+    private static final int SLOT_MIN_NANOS = 2;
+    private static final int SLOT_MAX_NANOS = 3;
+    private static final int STAGE_STRIDE = BUCKET_COUNT + 4;
+
+    private final AtomicLongArray data = new AtomicLongArray(NUM_STAGES * STAGE_STRIDE);
+
+    public LatencyRecorder() {
+        reset();
+    }
+
+    /**
+     * Record a single sample.
+     *
+     * @param stage         Pipeline stage the sample belongs to.
+     * @param durationNanos Duration of the stage, in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(Stage stage, long durationNanos) {
+        long nanos = Math.max(0, durationNanos);
+        int base = stage.ordinal() * STAGE_STRIDE;
+
+        data.incrementAndGet(base + bucketIndex(nanos / 1000));
+        data.incrementAndGet(base + BUCKET_COUNT + SLOT_COUNT);
+        data.addAndGet(base + BUCKET_COUNT + SLOT_SUM_NANOS, nanos);
+
+        int minSlot = base + BUCKET_COUNT + SLOT_MIN_NANOS;
+        long min;
+        while (nanos < (min = data.get(minSlot)) && !data.compareAndSet(minSlot, min, nanos)) { }
+
+        int maxSlot = base + BUCKET_COUNT + SLOT_MAX_NANOS;
+        long max;
+        while (nanos > (max = data.get(maxSlot)) && !data.compareAndSet(maxSlot, max, nanos)) { }
+    }
+
+    /**
+     * Discard all recorded samples.
+     * Samples recorded concurrently with a reset may be partially kept.
+     */
+    public void reset() {
+        for (int stage = 0; stage < NUM_STAGES; stage++) {
+            int base = stage * STAGE_STRIDE;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                data.set(base + i, 0);
+            }
+            data.set(base + BUCKET_COUNT + SLOT_COUNT, 0);
+            data.set(base + BUCKET_COUNT + SLOT_SUM_NANOS, 0);
+            data.set(base + BUCKET_COUNT + SLOT_MIN_NANOS, Long.MAX_VALUE);
+            data.set(base + BUCKET_COUNT + SLOT_MAX_NANOS, 0);
+        }
+    }
+
+    /**
+     * @return Number of samples recorded for the given stage.
+     */
+    public long getCount(Stage stage) {
+        return data.get(stage.ordinal() * STAGE_STRIDE + BUCKET_COUNT + SLOT_COUNT);
+    }
+
+    /**
+     * @param stage      Stage to query.
+     * @param percentile Percentile in range [0, 100].
+     * @return Latency (in nanoseconds) at or below which the given percentage of samples fall, or 0 if
+     *         there are no samples. Accurate to the bucket width (~3%), and never larger than the max sample.
+     */
+    public long getPercentileNanos(Stage stage, double percentile) {
+        int base = stage.ordinal() * STAGE_STRIDE;
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += data.get(base + i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += data.get(base + i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBoundMicros(i) * 1000 + 999, getMaxNanos(stage));
+            }
+        }
+        return getMaxNanos(stage);
+    }
+
+    /**
+     * @return Mean latency of the given stage in nanoseconds, or 0 if there are no samples.
+     */
+    public long getMeanNanos(Stage stage) {
+        long count = getCount(stage);
+        return count == 0 ? 0 : data.get(stage.ordinal() * STAGE_STRIDE + BUCKET_COUNT + SLOT_SUM_NANOS) / count;
+    }
+
+    /**
+     * @return Smallest sample of the given stage in nanoseconds, or 0 if there are no samples.
+     */
+    public long getMinNanos(Stage stage) {
+        long min = data.get(stage.ordinal() * STAGE_STRIDE + BUCKET_COUNT + SLOT_MIN_NANOS);
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    /**
+     * @return Largest sample of the given stage in nanoseconds, or 0 if there are no samples.
+     */
+    public long getMaxNanos(Stage stage) {
+        return data.get(stage.ordinal() * STAGE_STRIDE + BUCKET_COUNT + SLOT_MAX_NANOS);
+    }
+
+    /**
+     * @return A one-line, human readable summary of the given stage (for logcat).
+     */
+    public String summarize(Stage stage) {
+        return String.format("%s: n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                stage.name(),
+                getCount(stage),
+                getMeanNanos(stage) / 1e6,
+                getPercentileNanos(stage, 50) / 1e6,
+                getPercentileNanos(stage, 90) / 1e6,
+                getPercentileNanos(stage, 99) / 1e6,
+                getMaxNanos(stage) / 1e6);
+    }
+
+    private static int bucketIndex(long micros) {
+        long value = Math.min(micros, MAX_TRACKABLE_MICROS);
+        int highestBit = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, highestBit - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long bucketUpperBoundMicros(int index) {
+        int shift = Math.max(0, index / SUB_BUCKET_COUNT - 1);
+        long subBucket = index - (long) shift * SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -15,6 +15,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.MediaStore;
+import android.util.Log;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
@@ -32,7 +33,10 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.quicinc.ImageProcessing;
 import com.quicinc.tflite.AIHubDefaults;
+import com.quicinc.tflite.LatencyBenchmark;
+import com.quicinc.tflite.LatencyRecorder;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
@@ -44,6 +48,14 @@ import java.util.concurrent.Executors;
 
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
+
+    // Launching the activity with this extra runs a headless latency benchmark instead of the interactive UI, eg.
+    //   adb shell am start -n com.quicinc.superresolution/.MainActivity --ei benchmarkIterations 100
+    // The JSON report is written to the app's external files directory.
+    public static final String BENCHMARK_ITERATIONS_EXTRA = "benchmarkIterations";
+    private static final int BENCHMARK_WARMUP_ITERATIONS = 5;
+
     // UI Elements
     RadioGroup delegateSelectionGroup;
     RadioButton allDelegatesButton;
@@ -85,6 +97,13 @@ public class MainActivity extends AppCompatActivity {
         // UI Initialization
         //
         setContentView(R.layout.main_activity);
+
+        int benchmarkIterations = getIntent().getIntExtra(BENCHMARK_ITERATIONS_EXTRA, 0);
+        if (benchmarkIterations > 0) {
+            runBenchmarkAsync(benchmarkIterations);
+            return;
+        }
+
         selectedImageView = (ImageView) findViewById(R.id.selectedImageView);
         delegateSelectionGroup = (RadioGroup) findViewById(R.id.delegateSelectionGroup);
         cpuOnlyButton = (RadioButton)findViewById(R.id.cpuOnlyRadio);
@@ -304,8 +323,10 @@ public class MainActivity extends AppCompatActivity {
         }
 
         // Exit the main UI thread and execute the model in the background.
+        long submitTime = System.nanoTime();
         backgroundTaskExecutor.execute(() -> {
             // Background task
+            imageClassification.getLatencyRecorder().record(LatencyRecorder.Stage.QUEUEING, System.nanoTime() - submitTime);
             Bitmap result = imageClassification.generateUpscaledImage(selectedImage);
             long inferenceTime = imageClassification.getLastInferenceTime();
             long predictionTime = imageClassification.getLastPostprocessingTime() + inferenceTime + imageClassification.getLastPreprocessingTime();
@@ -357,6 +378,32 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Run the headless latency benchmark on every delegate tier, write the JSON report, and close the activity.
+     *
+     * @param iterations Number of measured iterations per delegate tier.
+     */
+    void runBenchmarkAsync(int iterations) {
+        backgroundTaskExecutor.execute(() -> {
+            String tfLiteModelAsset = this.getResources().getString(R.string.tfLiteModelAsset);
+            try (InputStream inputImage = getAssets().open("images/Sample1.jpg")) {
+                Bitmap image = BitmapFactory.decodeStream(inputImage);
+                LatencyBenchmark.run(
+                        tfLiteModelAsset,
+                        LatencyBenchmark.defaultDelegateTiers(),
+                        order -> new SuperResolution(this, tfLiteModelAsset, order),
+                        SuperResolution::getLatencyRecorder,
+                        model -> model.generateUpscaledImage(image),
+                        BENCHMARK_WARMUP_ITERATIONS,
+                        iterations,
+                        new File(getExternalFilesDir(null), "benchmark_" + tfLiteModelAsset + ".json"));
+            } catch (IOException e) {
+                Log.e(TAG, "Benchmark failed: " + e.getMessage());
+            }
+            mainLooperHandler.post(this::finish);
+        });
+    }
+
     /**
      * Destroy this activity and release memory used by held objects.
      */
@@ -11,6 +11,10 @@ import android.util.Pair;
 
 import com.quicinc.ImageProcessing;
 import com.quicinc.tflite.AIHubDefaults;
+import com.quicinc.tflite.LatencyRecorder;
+import com.quicinc.tflite.LoadReport;
+import com.quicinc.tflite.ModelStore;
+import com.quicinc.tflite.PipelineTrace;
 import com.quicinc.tflite.TFLiteHelpers;
 
 import org.tensorflow.lite.DataType;
@@ -40,6 +44,8 @@ public class SuperResolution implements AutoCloseable {
     private final DataType outputType;
     private long preprocessingTime;
     private long postprocessingTime;
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private final LoadReport loadReport = new LoadReport();
     private final ImageProcessor inputImageProcessor;
     private final ImageProcessor outputImageProcessor;
     private final TensorBuffer outputBuffer;
@@ -73,18 +79,22 @@ public class SuperResolution implements AutoCloseable {
                            String modelPath,
                            TFLiteHelpers.DelegateType[][] delegatePriorityOrder) throws IOException, NoSuchAlgorithmException {
         // Load TF Lite model
-        Pair<MappedByteBuffer, String> modelAndHash = TFLiteHelpers.loadModelFile(context.getAssets(), modelPath);
+        Pair<MappedByteBuffer, String> modelAndHash = new ModelStore(context).loadModelFile(modelPath, loadReport);
         Pair<Interpreter, Map<TFLiteHelpers.DelegateType, Delegate>> iResult = TFLiteHelpers.CreateInterpreterAndDelegatesFromOptions(
                 modelAndHash.first,
                 delegatePriorityOrder,
                 AIHubDefaults.numCPUThreads,
                 context.getApplicationInfo().nativeLibraryDir,
                 context.getCacheDir().getAbsolutePath(),
-                modelAndHash.second
+                modelAndHash.second,
+                loadReport
         );
         tfLiteInterpreter = iResult.first;
         tfLiteDelegateStore = iResult.second;
 
+        // Absorb the first-inference spike (lazy delegate init, kernel compilation) while the model is loading.
+        TFLiteHelpers.WarmUpInterpreter(tfLiteInterpreter, AIHubDefaults.numWarmUpIterations, false, loadReport);
+
         // Validate TF Lite model fits requirements for this app
         assert tfLiteInterpreter.getInputTensorCount() == 1;
         Tensor inputTensor = tfLiteInterpreter.getInputTensor(0);
@@ -157,6 +167,20 @@ public class SuperResolution implements AutoCloseable {
         return postprocessingTime;
     }
 
+    /**
+     * @return latency distributions of every upscale run by this model.
+     */
+    public LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    /**
+     * @return cold-start breakdown of loading the model and creating the interpreter.
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
     /** Model input height and width. **/
     public int[] getInputWidthHeight() {
         return new int[] {inputShape[1], inputShape[2]};
@@ -179,22 +203,33 @@ public class SuperResolution implements AutoCloseable {
             // While this app could easily resize the large image to fit, that defeats the purpose of super resolution.
             throw new RuntimeException("Input image is too big for this model. Expected Width of " + inputShape[1] + " and Height of " + inputShape[2]);
         } else if (image.getHeight() != inputShape[1] || image.getWidth() != inputShape[2]) {
-            resizedImg = ImageProcessing.resizeAndPadMaintainAspectRatio(image, inputShape[1], inputShape[2], 0xFF);
+            PipelineTrace.begin("SuperResolution#resize");
+            try {
+                resizedImg = ImageProcessing.resizeAndPadMaintainAspectRatio(image, inputShape[1], inputShape[2], 0xFF);
+            } finally {
+                PipelineTrace.end();
+            }
         } else {
             resizedImg = image;
         }
 
         // Convert type and fill input buffer
         ByteBuffer inputBuffer;
-        TensorImage tImg = TensorImage.fromBitmap(resizedImg);
-        if (inputType == DataType.FLOAT32) {
-            // Divide float values by 255
-            inputBuffer = inputImageProcessor.process(tImg).getBuffer();
-        } else {
-            inputBuffer = tImg.getTensorBuffer().getBuffer();
+        PipelineTrace.begin("SuperResolution#convertType");
+        try {
+            TensorImage tImg = TensorImage.fromBitmap(resizedImg);
+            if (inputType == DataType.FLOAT32) {
+                // Divide float values by 255
+                inputBuffer = inputImageProcessor.process(tImg).getBuffer();
+            } else {
+                inputBuffer = tImg.getTensorBuffer().getBuffer();
+            }
+        } finally {
+            PipelineTrace.end();
         }
 
         preprocessingTime = System.nanoTime() - prepStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.PREPROCESSING, preprocessingTime);
         Log.d(TAG, "Preprocessing Time: " + preprocessingTime / 1000000 + " ms");
 
         return new ByteBuffer[] {inputBuffer};
@@ -208,15 +243,21 @@ public class SuperResolution implements AutoCloseable {
      */
     private Bitmap postprocess() {
         long postStartTime = System.nanoTime();
-
-        TensorImage img = outputImage;
-        if (outputType == DataType.FLOAT32) {
-            // Multiply float values by 255
-            img = outputImageProcessor.process(outputImage);
+        Bitmap bitmap;
+        PipelineTrace.begin("SuperResolution#postprocess");
+        try {
+            TensorImage img = outputImage;
+            if (outputType == DataType.FLOAT32) {
+                // Multiply float values by 255
+                img = outputImageProcessor.process(outputImage);
+            }
+            bitmap = img.getBitmap();
+        } finally {
+            PipelineTrace.end();
         }
-        Bitmap bitmap = img.getBitmap();
 
         postprocessingTime = System.nanoTime() - postStartTime;
+        latencyRecorder.record(LatencyRecorder.Stage.POSTPROCESSING, postprocessingTime);
         Log.d(TAG, "Postprocessing Time: " + postprocessingTime / 1000000 + " ms");
 
         return bitmap;
@@ -229,14 +270,24 @@ public class SuperResolution implements AutoCloseable {
      * @return Predicted, upscaled image, in RGBA-8888 format.
      */
     public Bitmap generateUpscaledImage(Bitmap image) {
+        long startTime = System.nanoTime();
+
         // Preprocessing: Resize, convert type
         ByteBuffer[] inputs = preprocess(image);
 
         // Inference
         outputBuffer.getBuffer().clear();
-        tfLiteInterpreter.runForMultipleInputsOutputs(inputs, outputBindings);
+        PipelineTrace.begin("SuperResolution#runForMultipleInputsOutputs");
+        try {
+            tfLiteInterpreter.runForMultipleInputsOutputs(inputs, outputBindings);
+        } finally {
+            PipelineTrace.end();
+        }
+        latencyRecorder.record(LatencyRecorder.Stage.INFERENCE, getLastInferenceTime());
 
         // Postprocessing: Compute top K indices and convert to labels
-        return postprocess();
+        Bitmap upscaled = postprocess();
+        latencyRecorder.record(LatencyRecorder.Stage.END_TO_END, System.nanoTime() - startTime);
+        return upscaled;
     }
 }
@@ -0,0 +1,79 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import android.os.Trace;
+
+/**
+ * Lightweight tracing facade for app pipeline stages (capture, preprocessing, inference, postprocessing, rendering).
+ *
+ * By default, sections are forwarded to android.os.Trace so they show up in Perfetto / systrace captures.
+ * Tests can swap in a RingBufferTracer to record the same sections in memory.
+ *
+ * Sections are synchronous: end() closes the most recent section begun on the same thread.
+ */
+public class PipelineTrace {
+    // Set to false to compile every trace section out of the app.
+    public static final boolean ENABLED = true;
+
+    public interface Tracer {
+        void beginSection(String name);
+        void endSection();
+    }
+
+    // Forwards sections to the Android system tracer.
+    // Section names longer than 127 characters are truncated by Android.
+    public static final Tracer ANDROID_TRACER = new Tracer() {
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+    };
+
+    // Drops all sections.
+    public static final Tracer NO_OP_TRACER = new Tracer() {
+        @Override
+        public void beginSection(String name) { }
+
+        @Override
+        public void endSection() { }
+    };
+
+    private static volatile Tracer tracer = ANDROID_TRACER;
+
+    /**
+     * Replace the active tracer. Sections already begun must be ended before switching tracers.
+     *
+     * @param newTracer Tracer to forward sections to.
+     */
+    public static void setTracer(Tracer newTracer) {
+        tracer = newTracer;
+    }
+
+    /**
+     * Begin a section on the calling thread.
+     *
+     * @param name Section name.
+     */
+    public static void begin(String name) {
+        if (ENABLED) {
+            tracer.beginSection(name);
+        }
+    }
+
+    /**
+     * End the most recent section begun on the calling thread.
+     */
+    public static void end() {
+        if (ENABLED) {
+            tracer.endSection();
+        }
+    }
+}
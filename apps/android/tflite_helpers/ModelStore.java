@@ -0,0 +1,440 @@
+// ---------------------------------------------------------------------
+// Copyright (c) 2025 Qualcomm Technologies, Inc. and/or its subsidiaries.
+// SPDX-License-Identifier: BSD-3-Clause
+// ---------------------------------------------------------------------
+package com.quicinc.tflite;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+import android.util.Pair;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Extracts model assets to app storage once, so they can be memory-mapped from real files.
+ *
+ * TFLiteHelpers::loadModelFile maps a slice of the APK, which only works if the asset is stored uncompressed.
+ * ModelStore instead copies the asset to a file (using sendfile when the asset is uncompressed), and then maps that file.
+ *
+ * Extraction is crash safe and resumable:
+ *  - Bytes are written to a ".part" file, which is renamed to the final file name only once it is complete, synced,
+ *    and its MD5 checksum matches the checksum of the asset itself.
+ *  - If the app is killed mid-copy, the next extraction continues from the end of the ".part" file. If the resumed
+ *    prefix turns out to be torn (eg. zero-filled after a power loss), the checksums differ and the model is
+ *    extracted again from scratch.
+ *  - An ".info" file next to the model records the app version the model was extracted from, its size, and its MD5 checksum.
+ *    A model is only re-used if all of these match. The checksum doubles as the model identifier for delegate caches,
+ *    so the model does not have to be re-hashed on every load.
+ *
+ * Extracted models use additional disk space (the APK still holds the original asset).
+ */
+public class ModelStore {
+    private static final String TAG = "QualcommModelStore";
+    private static final String PART_SUFFIX = ".part";
+    private static final String INFO_SUFFIX = ".info";
+    private static final String INFO_SOURCE_VERSION = "sourceVersion";
+    private static final String INFO_SIZE = "size";
+    private static final String INFO_MD5 = "md5";
+    // Bytes copied per transfer call. Bounds the time spent in a single (uninterruptible) native copy.
+    private static final long TRANSFER_CHUNK_SIZE = 64L * 1024 * 1024;
+    // Serializes extraction across ModelStore instances in this process.
+    private static final Object EXTRACTION_LOCK = new Object();
+
+    private final AssetManager assets;
+    private final File storeDir;
+    private final long sourceVersion;
+
+    /**
+     * Create a model store in the app's internal files directory.
+     * Models are re-extracted whenever the app is updated.
+     *
+     * @param context App context.
+     */
+    public ModelStore(Context context) {
+        this(context.getAssets(), new File(context.getFilesDir(), "models"), getAppUpdateTime(context));
+    }
+
+    /**
+     * @param assets        Android app asset manager.
+     * @param storeDir      Directory to extract models to.
+     * @param sourceVersion Version of the assets (eg. app update time). Models extracted from a different version are replaced.
+     */
+    public ModelStore(AssetManager assets, File storeDir, long sourceVersion) {
+        this.assets = assets;
+        this.storeDir = storeDir;
+        this.sourceVersion = sourceVersion;
+    }
+
+    /**
+     * Load a TF Lite model, extracting it from the app assets first if necessary.
+     * Drop-in replacement for TFLiteHelpers::loadModelFile.
+     *
+     * @param assetName  Asset path of the model to load.
+     * @param loadReport Records extract / hash / map durations and the number of model bytes mapped.
+     * @return The loaded model in MappedByteBuffer format, and a unique model identifier hash string.
+     * @throws IOException If the model asset does not exist or cannot be extracted.
+     */
+    public Pair<MappedByteBuffer, String> loadModelFile(String assetName, LoadReport loadReport)
+            throws IOException, NoSuchAlgorithmException {
+        Pair<File, String> modelAndHash = getModelFile(assetName, loadReport);
+        MappedByteBuffer buffer;
+
+        try (FileInputStream inputStream = new FileInputStream(modelAndHash.first)) {
+            FileChannel fileChannel = inputStream.getChannel();
+            long startTime = loadReport.beginPhase("MapModel");
+            try {
+                buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            } finally {
+                loadReport.endPhase("MapModel", startTime);
+            }
+            loadReport.setModelBytesMapped(fileChannel.size());
+        }
+
+        return new Pair<>(buffer, modelAndHash.second);
+    }
+
+    /**
+     * Get the extracted copy of the given asset, extracting (or finishing a partial extraction) if necessary.
+     *
+     * @param assetName  Asset path of the model.
+     * @param loadReport Records extraction and hash durations, if the model had to be extracted.
+     * @return The extracted model file, and its MD5 checksum.
+     * @throws IOException If the asset does not exist or cannot be extracted.
+     */
+    public Pair<File, String> getModelFile(String assetName, LoadReport loadReport)
+            throws IOException, NoSuchAlgorithmException {
+        File modelFile = new File(storeDir, assetName);
+        File infoFile = new File(modelFile.getPath() + INFO_SUFFIX);
+
+        synchronized (EXTRACTION_LOCK) {
+            String md5 = readValidChecksum(modelFile, infoFile);
+            if (md5 != null) {
+                return new Pair<>(modelFile, md5);
+            }
+
+            File parentDir = modelFile.getParentFile();
+            if (parentDir != null && !parentDir.isDirectory() && !parentDir.mkdirs()) {
+                throw new IOException("Unable to create model directory " + parentDir);
+            }
+            infoFile.delete();
+            modelFile.delete();
+
+            File partFile = new File(modelFile.getPath() + "." + sourceVersion + PART_SUFFIX);
+            deleteStalePartFiles(modelFile, partFile);
+
+            long startTime = loadReport.beginPhase("HashAsset");
+            String assetMD5;
+            try {
+                assetMD5 = computeAssetMD5(assetName);
+            } finally {
+                loadReport.endPhase("HashAsset", startTime);
+            }
+
+            md5 = extractAndHash(assetName, partFile, loadReport);
+            if (!assetMD5.equals(md5)) {
+                // The resumed prefix did not hold the bytes of the asset; start over.
+                Log.w(TAG, "Checksum mismatch for partially extracted " + assetName + ". Extracting it again.");
+                partFile.delete();
+                md5 = extractAndHash(assetName, partFile, loadReport);
+                if (!assetMD5.equals(md5)) {
+                    partFile.delete();
+                    throw new IOException("Checksum mismatch for extracted " + assetName + ": expected " + assetMD5 + ", got " + md5);
+                }
+            }
+
+            Files.move(partFile.toPath(), modelFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            writeInfo(infoFile, modelFile.length(), md5);
+            Log.i(TAG, "Extracted " + assetName + " (" + modelFile.length() + " bytes) to " + modelFile);
+            return new Pair<>(modelFile, md5);
+        }
+    }
+
+    /**
+     * Extract (or finish extracting) an asset to the given file, then hash the file.
+     *
+     * @return Hex string of the MD5 hash of the extracted file.
+     */
+    private String extractAndHash(String assetName, File partFile, LoadReport loadReport)
+            throws IOException, NoSuchAlgorithmException {
+        long startTime = loadReport.beginPhase("ExtractModel");
+        try {
+            extractAsset(assetName, partFile);
+        } finally {
+            loadReport.endPhase("ExtractModel", startTime);
+        }
+
+        startTime = loadReport.beginPhase("HashModel");
+        try {
+            return computeMD5(partFile);
+        } finally {
+            loadReport.endPhase("HashModel", startTime);
+        }
+    }
+
+    /**
+     * Re-hash an extracted model and compare it to the checksum recorded when it was extracted.
+     * If the model is corrupt, it is deleted, so that the next load re-extracts it.
+     *
+     * @param assetName Asset path of the model.
+     * @return True if the model is extracted and intact.
+     */
+    public boolean verify(String assetName) throws IOException, NoSuchAlgorithmException {
+        File modelFile = new File(storeDir, assetName);
+        File infoFile = new File(modelFile.getPath() + INFO_SUFFIX);
+
+        synchronized (EXTRACTION_LOCK) {
+            String md5 = readValidChecksum(modelFile, infoFile);
+            if (md5 == null) {
+                return false;
+            }
+            if (md5.equals(computeMD5(modelFile))) {
+                return true;
+            }
+            Log.w(TAG, "Checksum mismatch for extracted model " + modelFile + ". Deleting it.");
+            infoFile.delete();
+            modelFile.delete();
+            return false;
+        }
+    }
+
+    /**
+     * @return The recorded checksum of the model file, or null if the model was not fully extracted from the current source version.
+     */
+    private String readValidChecksum(File modelFile, File infoFile) {
+        if (!modelFile.isFile() || !infoFile.isFile()) {
+            return null;
+        }
+
+        Properties info = new Properties();
+        try (FileInputStream in = new FileInputStream(infoFile)) {
+            info.load(in);
+            if (Long.parseLong(info.getProperty(INFO_SOURCE_VERSION, "-1")) != sourceVersion
+                    || Long.parseLong(info.getProperty(INFO_SIZE, "-1")) != modelFile.length()) {
+                return null;
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Unable to read " + infoFile + " | " + e.getMessage());
+            return null;
+        }
+        return info.getProperty(INFO_MD5);
+    }
+
+    /**
+     * Write the info file to a temporary file first, so a crash never leaves a partially written info file.
+     */
+    private void writeInfo(File infoFile, long size, String md5) throws IOException {
+        Properties info = new Properties();
+        info.setProperty(INFO_SOURCE_VERSION, Long.toString(sourceVersion));
+        info.setProperty(INFO_SIZE, Long.toString(size));
+        info.setProperty(INFO_MD5, md5);
+
+        File tmpFile = new File(infoFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            info.store(out, null);
+            out.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), infoFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Delete partial extractions of this model left behind by other source versions.
+     */
+    private static void deleteStalePartFiles(File modelFile, File currentPartFile) {
+        File[] files = modelFile.getParentFile() == null ? null : modelFile.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(modelFile.getName() + ".") && name.endsWith(PART_SUFFIX) && !file.equals(currentPartFile)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Copy an asset to the given file, continuing from the end of the file if it already holds a partial copy.
+     */
+    private void extractAsset(String assetName, File partFile) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(partFile, "rw")) {
+            FileChannel outChannel = out.getChannel();
+            long position = outChannel.size();
+
+            AssetFileDescriptor fileDescriptor = null;
+            try {
+                fileDescriptor = assets.openFd(assetName);
+            } catch (FileNotFoundException e) {
+                // openFd fails for compressed assets. Fall back to streaming below.
+            }
+
+            if (fileDescriptor != null) {
+                // Uncompressed asset: copy straight from the APK with FileChannel.transferTo (sendfile on Android).
+                try (AssetFileDescriptor fd = fileDescriptor;
+                     FileInputStream in = new FileInputStream(fd.getFileDescriptor())) {
+                    FileChannel inChannel = in.getChannel();
+                    long startOffset = fd.getStartOffset();
+                    long length = fd.getDeclaredLength();
+                    if (position > length) {
+                        position = 0;
+                        outChannel.truncate(0);
+                    }
+                    if (position > 0) {
+                        Log.i(TAG, "Resuming extraction of " + assetName + " at byte " + position + " of " + length);
+                    }
+
+                    outChannel.position(position);
+                    while (position < length) {
+                        long transferred = inChannel.transferTo(startOffset + position, Math.min(TRANSFER_CHUNK_SIZE, length - position), outChannel);
+                        if (transferred <= 0) {
+                            throw new IOException("Unexpected end of asset " + assetName + " at byte " + position + " of " + length);
+                        }
+                        position += transferred;
+                    }
+                }
+            } else {
+                // Compressed asset: the already extracted prefix still has to be decompressed, but is not re-written.
+                boolean resumed;
+                try (InputStream in = assets.open(assetName, AssetManager.ACCESS_STREAMING)) {
+                    resumed = skipFully(in, position) == position;
+                    if (resumed) {
+                        if (position > 0) {
+                            Log.i(TAG, "Resuming extraction of " + assetName + " at byte " + position);
+                        }
+                        transferStream(in, outChannel, position);
+                    }
+                }
+                if (!resumed) {
+                    // Partial copy is longer than the asset; start over.
+                    outChannel.truncate(0);
+                    try (InputStream in = assets.open(assetName, AssetManager.ACCESS_STREAMING)) {
+                        transferStream(in, outChannel, 0);
+                    }
+                }
+            }
+
+            outChannel.force(true);
+        }
+    }
+
+    /**
+     * Copies the rest of the given stream into the given channel, starting at the given position of the channel.
+     * The stream is not closed.
+     */
+    private static void transferStream(InputStream in, FileChannel outChannel, long position) throws IOException {
+        ReadableByteChannel inChannel = Channels.newChannel(in);
+        long transferred;
+        while ((transferred = outChannel.transferFrom(inChannel, position, TRANSFER_CHUNK_SIZE)) > 0) {
+            position += transferred;
+        }
+    }
+
+    /**
+     * @return Number of bytes skipped. Less than count only if the stream ended first.
+     */
+    private static long skipFully(InputStream in, long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            long n = in.skip(count - skipped);
+            if (n <= 0) {
+                break;
+            }
+            skipped += n;
+        }
+        return skipped;
+    }
+
+    /**
+     * @return Hex string of the MD5 hash of the given file. This matches the model identifier computed by TFLiteHelpers::loadModelFile.
+     */
+    static String computeMD5(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest hashDigest = MessageDigest.getInstance("MD5");
+        try (FileInputStream in = new FileInputStream(file)) {
+            updateDigest(hashDigest, in.getChannel(), 0, Long.MAX_VALUE);
+        }
+        return toHex(hashDigest);
+    }
+
+    /**
+     * @return Hex string of the MD5 hash of the given asset, read from the APK. This is the reference checksum of extracted copies.
+     */
+    private String computeAssetMD5(String assetName) throws IOException, NoSuchAlgorithmException {
+        MessageDigest hashDigest = MessageDigest.getInstance("MD5");
+
+        AssetFileDescriptor fileDescriptor = null;
+        try {
+            fileDescriptor = assets.openFd(assetName);
+        } catch (FileNotFoundException e) {
+            // openFd fails for compressed assets. Fall back to streaming below.
+        }
+
+        if (fileDescriptor != null) {
+            try (AssetFileDescriptor fd = fileDescriptor;
+                 FileInputStream in = new FileInputStream(fd.getFileDescriptor())) {
+                updateDigest(hashDigest, in.getChannel(), fd.getStartOffset(), fd.getDeclaredLength());
+            }
+        } else {
+            try (ReadableByteChannel in = Channels.newChannel(assets.open(assetName, AssetManager.ACCESS_STREAMING))) {
+                updateDigest(hashDigest, in, 0, Long.MAX_VALUE);
+            }
+        }
+        return toHex(hashDigest);
+    }
+
+    /**
+     * Feed up to length bytes of the channel, starting at the given offset, to the digest.
+     * The offset is only supported for file channels.
+     */
+    private static void updateDigest(MessageDigest hashDigest, ReadableByteChannel channel, long offset, long length) throws IOException {
+        if (channel instanceof FileChannel) {
+            ((FileChannel) channel).position(offset);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        long remaining = length;
+        while (remaining > 0) {
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            int numRead = channel.read(buffer);
+            if (numRead <= 0) {
+                break;
+            }
+            remaining -= numRead;
+            buffer.flip();
+            hashDigest.update(buffer);
+            buffer.clear();
+        }
+    }
+
+    private static String toHex(MessageDigest hashDigest) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hashDigest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static long getAppUpdateTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+}